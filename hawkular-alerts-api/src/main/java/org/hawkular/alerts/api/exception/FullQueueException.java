@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.exception;
+
+
+/**
+ * Indicates the alerts engine can not accept more data or events at the moment because its pending queue is full.
+ * The caller should retry later.
+ *
+ * @author agent
+ */
+public class FullQueueException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public FullQueueException() {
+    }
+
+    public FullQueueException(String message) {
+        super(message);
+    }
+}
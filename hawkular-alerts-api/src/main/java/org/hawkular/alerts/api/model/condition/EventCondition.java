@@ -19,10 +19,12 @@ package org.hawkular.alerts.api.model.condition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.Mode;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -154,10 +156,15 @@ public class EventCondition extends Condition {
 
     public void setExpression(String expression) {
         this.expression = expression;
+        this.clauses = null;
     }
 
     private static Pattern cleanComma = Pattern.compile("\\\\,");
 
+    // The parsed expression, computed on the first match and reset when the expression changes
+    @JsonIgnore
+    private transient List<Clause> clauses;
+
     public boolean match(Event value) {
         if (null == value) {
             return false;
@@ -165,22 +172,31 @@ public class EventCondition extends Condition {
         if (null == expression || expression.isEmpty()) {
             return true;
         }
-        List<String> expressions = new ArrayList<>();
+        List<Clause> parsed = clauses;
+        if (null == parsed) {
+            parsed = parse(expression);
+            clauses = parsed;
+        }
+        for (Clause clause : parsed) {
+            if (!clause.match(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Clause> parse(String expression) {
+        List<Clause> parsed = new ArrayList<>();
         int j = 0;
         for (int i = 0; i < expression.length(); i++) {
             if (expression.charAt(i) == ','
                     && (i == 0 || (i > 0 && expression.charAt(i - 1) != '\\'))) {
-                expressions.add(cleanComma.matcher(expression.substring(j, i).trim()).replaceAll(","));
+                parsed.add(new Clause(cleanComma.matcher(expression.substring(j, i).trim()).replaceAll(",")));
                 j = i + 1;
             }
         }
-        expressions.add(cleanComma.matcher(expression.substring(j).trim()).replaceAll(","));
-        for (String expression : expressions) {
-            if (!processExpression(expression, value)) {
-                return false;
-            }
-        }
-        return true;
+        parsed.add(new Clause(cleanComma.matcher(expression.substring(j).trim()).replaceAll(",")));
+        return parsed;
     }
 
     private static final String TENANT_ID = "tenantId";
@@ -201,127 +217,166 @@ public class EventCondition extends Condition {
     private static final String GT = ">";
     private static final String GTE = ">=";
 
-    private boolean processExpression(String expression, Event value) {
-        if (null == expression || expression.isEmpty() || null == value) {
-            return false;
-        }
-        String[] tokens = expression.split(" ");
-        if (tokens.length < 3) {
-            return false;
-        }
-        String eventField = tokens[0];
-        String operator = tokens[1];
-        String constant = tokens[2];
-        for (int i = 3; i < tokens.length; ++i) {
-            constant += " ";
-            constant += tokens[i];
-        }
-        String sEventValue = null;
-        Long lEventValue = null;
-        String sConstantValue = null;
-        Double dConstantValue = null;
-
-        if (eventField == null || eventField.isEmpty()) {
-            return false;
-        }
-        if (TENANT_ID.equals(eventField)) {
-            sEventValue = value.getTenantId();
-        } else if (ID.equals(eventField)) {
-            sEventValue = value.getId();
-        } else if (CTIME.equals(eventField)) {
-            lEventValue = value.getCtime();
-        } else if (TEXT.equals(eventField)) {
-            sEventValue = value.getText();
-        } else if (CATEGORY.equals(eventField)) {
-            sEventValue = value.getCategory();
-        } else if (eventField.startsWith(TAGS)) {
-            // We get the key from tags.<key> string
-            String key = eventField.substring(5);
-            sEventValue = value.getTags().get(key);
-        }
-        if (sEventValue == null && lEventValue == null) {
-            return false;
-        }
-        if (constant == null) {
-            return false;
-        }
-        int constantLength = constant.length();
-        if (constant.charAt(0) == '\'' && constant.charAt(constantLength - 1) == '\'') {
-            sConstantValue = constant.substring(1, constantLength - 1);
-        } else if (constant.charAt(0) == '\'' && constant.charAt(constantLength - 1) != '\'') {
-            return false;
-        } else if (constant.charAt(0) != '\'' && constant.charAt(constantLength - 1) == '\'') {
-            return false;
-        } else {
-            dConstantValue = Double.valueOf(constant);
-        }
-
-        if (EQ.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.equals(sConstantValue);
-            }
-            if (lEventValue != null && dConstantValue != null) {
-                return lEventValue.longValue() == dConstantValue.doubleValue();
+    /*
+        A single <event.field> <operator> <constant> expression, tokenized once. The constant and the regex of a
+        matches operator are also parsed once; if they are not valid the evaluation fails as it did parsing them on
+        every event, that is, only when the event field is present.
+     */
+    private static class Clause {
+        private final boolean valid;
+        private String eventField;
+        private String operator;
+        private String constant;
+
+        private String sConstantValue = null;
+        private Double dConstantValue = null;
+        private boolean malformedConstant = false;
+        private boolean constantError = false;
+        private Pattern pattern = null;
+
+        Clause(String expression) {
+            String[] tokens = expression.split(" ");
+            if (tokens.length < 3 || tokens[0].isEmpty()) {
+                valid = false;
+                return;
             }
-            return false;
-        } else if (NON_EQ.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return !sEventValue.equals(sConstantValue);
+            valid = true;
+            eventField = tokens[0];
+            operator = tokens[1];
+            StringBuilder sb = new StringBuilder(tokens[2]);
+            for (int i = 3; i < tokens.length; ++i) {
+                sb.append(' ').append(tokens[i]);
             }
-            if (lEventValue != null && dConstantValue != null) {
-                return lEventValue.longValue() != dConstantValue.doubleValue();
+            constant = sb.toString();
+            try {
+                parseConstant();
+            } catch (RuntimeException e) {
+                constantError = true;
+                return;
             }
-            return false;
-        } else if (STARTS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.startsWith(sConstantValue);
+            if (MATCHES.equals(operator) && sConstantValue != null) {
+                try {
+                    pattern = Pattern.compile(sConstantValue);
+                } catch (PatternSyntaxException e) {
+                    pattern = null;
+                }
             }
-            return false;
-        } else if (ENDS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.endsWith(sConstantValue);
+        }
+
+        private void parseConstant() {
+            int constantLength = constant.length();
+            if (constant.charAt(0) == '\'' && constant.charAt(constantLength - 1) == '\'') {
+                sConstantValue = constant.substring(1, constantLength - 1);
+            } else if (constant.charAt(0) == '\'' || constant.charAt(constantLength - 1) == '\'') {
+                malformedConstant = true;
+            } else {
+                dConstantValue = Double.valueOf(constant);
             }
-            return false;
-        } else if (CONTAINS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.contains(sConstantValue);
+        }
+
+        boolean match(Event value) {
+            if (!valid) {
+                return false;
             }
-            return false;
-        } else if (MATCHES.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.matches(sConstantValue);
+            String sEventValue = null;
+            Long lEventValue = null;
+
+            if (TENANT_ID.equals(eventField)) {
+                sEventValue = value.getTenantId();
+            } else if (ID.equals(eventField)) {
+                sEventValue = value.getId();
+            } else if (CTIME.equals(eventField)) {
+                lEventValue = value.getCtime();
+            } else if (TEXT.equals(eventField)) {
+                sEventValue = value.getText();
+            } else if (CATEGORY.equals(eventField)) {
+                sEventValue = value.getCategory();
+            } else if (eventField.startsWith(TAGS)) {
+                // We get the key from tags.<key> string
+                String key = eventField.substring(5);
+                sEventValue = value.getTags().get(key);
             }
-            return false;
-        } else if (GT.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue > dConstantValue;
+            if (sEventValue == null && lEventValue == null) {
+                return false;
             }
-            return false;
-        } else if (GTE.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue >= dConstantValue;
+            if (constantError) {
+                // Throws the same exception as the original parsing
+                parseConstant();
             }
-            return false;
-        } else if (LT.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue < dConstantValue;
+            if (malformedConstant) {
+                return false;
             }
-            return false;
-        } else if (LTE.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue <= dConstantValue;
+
+            if (EQ.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    return sEventValue.equals(sConstantValue);
+                }
+                if (lEventValue != null && dConstantValue != null) {
+                    return lEventValue.longValue() == dConstantValue.doubleValue();
+                }
+                return false;
+            } else if (NON_EQ.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    return !sEventValue.equals(sConstantValue);
+                }
+                if (lEventValue != null && dConstantValue != null) {
+                    return lEventValue.longValue() != dConstantValue.doubleValue();
+                }
+                return false;
+            } else if (STARTS.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    return sEventValue.startsWith(sConstantValue);
+                }
+                return false;
+            } else if (ENDS.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    return sEventValue.endsWith(sConstantValue);
+                }
+                return false;
+            } else if (CONTAINS.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    return sEventValue.contains(sConstantValue);
+                }
+                return false;
+            } else if (MATCHES.equals(operator)) {
+                if (sEventValue != null && sConstantValue != null) {
+                    if (null != pattern) {
+                        return pattern.matcher(sEventValue).matches();
+                    }
+                    return sEventValue.matches(sConstantValue);
+                }
+                return false;
+            } else if (GT.equals(operator)) {
+                Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
+                dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
+                if (dEventValue != null && dConstantValue != null) {
+                    return dEventValue > dConstantValue;
+                }
+                return false;
+            } else if (GTE.equals(operator)) {
+                Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
+                dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
+                if (dEventValue != null && dConstantValue != null) {
+                    return dEventValue >= dConstantValue;
+                }
+                return false;
+            } else if (LT.equals(operator)) {
+                Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
+                dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
+                if (dEventValue != null && dConstantValue != null) {
+                    return dEventValue < dConstantValue;
+                }
+                return false;
+            } else if (LTE.equals(operator)) {
+                Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
+                dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
+                if (dEventValue != null && dConstantValue != null) {
+                    return dEventValue <= dConstantValue;
+                }
+                return false;
             }
             return false;
         }
-        return false;
     }
 
     @Override
@@ -63,14 +63,14 @@ public class RateConditionEval extends ConditionEval {
     }
 
     public RateConditionEval(RateCondition condition, Data data, Data previousData) {
-        super(Type.RATE, condition.match(data.getTimestamp(), Double.valueOf(data.getValue()),
-                previousData.getTimestamp(), Double.valueOf(previousData.getValue())), data.getTimestamp(),
+        super(Type.RATE, condition.match(data.getTimestamp(), data.getNumericValue(),
+                previousData.getTimestamp(), previousData.getNumericValue()), data.getTimestamp(),
                 data.getContext());
         this.condition = condition;
         this.time = data.getTimestamp();
-        this.value = Double.valueOf(data.getValue());
+        this.value = data.getNumericValue();
         this.previousTime = previousData.getTimestamp();
-        this.previousValue = Double.valueOf(previousData.getValue());
+        this.previousValue = previousData.getNumericValue();
         this.rate = condition.getRate(this.time, this.value, this.previousTime, this.previousValue);
     }
 
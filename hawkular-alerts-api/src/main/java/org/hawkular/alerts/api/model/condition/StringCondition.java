@@ -16,8 +16,11 @@
  */
 package org.hawkular.alerts.api.model.condition;
 
+import java.util.regex.Pattern;
+
 import org.hawkular.alerts.api.model.trigger.Mode;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -47,6 +50,13 @@ public class StringCondition extends Condition {
     @JsonInclude
     private boolean ignoreCase;
 
+    // The pattern prepared for the operator, computed on the first match and reset when the condition changes
+    @JsonIgnore
+    private transient String matchPattern;
+
+    @JsonIgnore
+    private transient Pattern compiledPattern;
+
     public StringCondition() {
         /*
             Default constructor is needed for JSON libraries in JAX-RS context.
@@ -114,6 +124,7 @@ public class StringCondition extends Condition {
 
     public void setIgnoreCase(boolean ignoreCase) {
         this.ignoreCase = ignoreCase;
+        resetMatchPattern();
     }
 
     public Operator getOperator() {
@@ -122,6 +133,7 @@ public class StringCondition extends Condition {
 
     public void setOperator(Operator operator) {
         this.operator = operator;
+        resetMatchPattern();
     }
 
     public String getPattern() {
@@ -130,6 +142,7 @@ public class StringCondition extends Condition {
 
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetMatchPattern();
     }
 
     public String getLog(String value) {
@@ -137,25 +150,40 @@ public class StringCondition extends Condition {
                 pattern + " " + "ignoreCase=" + ignoreCase;
     }
 
+    private void resetMatchPattern() {
+        this.matchPattern = null;
+        this.compiledPattern = null;
+    }
+
     public boolean match(String value) {
+        if (operator == Operator.MATCH) {
+            Pattern p = compiledPattern;
+            if (null == p) {
+                p = Pattern.compile(ignoreCase ? ("(?i)" + pattern) : pattern);
+                compiledPattern = p;
+            }
+            return p.matcher(value).matches();
+        }
 
-        if (ignoreCase && operator != Operator.MATCH) {
-            pattern = pattern.toLowerCase();
+        String p = matchPattern;
+        if (null == p) {
+            p = ignoreCase ? pattern.toLowerCase() : pattern;
+            matchPattern = p;
+        }
+        if (ignoreCase) {
             value = value.toLowerCase();
         }
         switch (operator) {
             case EQUAL:
-                return value.equals(pattern);
+                return value.equals(p);
             case NOT_EQUAL:
-                return !value.equals(pattern);
+                return !value.equals(p);
             case ENDS_WITH:
-                return value.endsWith(pattern);
+                return value.endsWith(p);
             case STARTS_WITH:
-                return value.startsWith(pattern);
+                return value.startsWith(p);
             case CONTAINS:
-                return value.contains(pattern);
-            case MATCH:
-                return value.matches(ignoreCase ? ("(?i)" + pattern) : pattern);
+                return value.contains(p);
             default:
                 throw new IllegalStateException("Unknown operator: " + operator.name());
         }
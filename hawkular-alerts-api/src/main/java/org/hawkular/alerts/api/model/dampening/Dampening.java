@@ -343,6 +343,19 @@ public class Dampening implements Serializable {
     }
 
     public void perform(Match match, Set<ConditionEval> conditionEvalSet) {
+        perform(match, conditionEvalSet, false);
+    }
+
+    /**
+     * Apply a set of condition evaluations to the dampening.
+     *
+     * @param match the match of the trigger conditions
+     * @param conditionEvalSet the most recent condition evaluations of the trigger, not empty
+     * @param eventTime if true the dampening clock (RELAXED_TIME, STRICT_TIME, STRICT_TIMEOUT) is the most recent data
+     * timestamp of <code>conditionEvalSet</code> instead of the system time, so historical data can be evaluated
+     * with the same results as it was received live.
+     */
+    public void perform(Match match, Set<ConditionEval> conditionEvalSet, boolean eventTime) {
         if (null == match) {
             throw new IllegalArgumentException("Match can not be null");
         }
@@ -387,7 +400,7 @@ public class Dampening implements Serializable {
         }
 
         // If we had previously started our time and now have exceeded our time limit then we must start over
-        long now = System.currentTimeMillis();
+        long now = eventTime ? getDataTime(conditionEvalSet) : System.currentTimeMillis();
         if (type == Type.RELAXED_TIME && trueEvalsStartTime != 0L) {
             if ((now - trueEvalsStartTime) > evalTimeSetting) {
                 reset();
@@ -445,6 +458,14 @@ public class Dampening implements Serializable {
         }
     }
 
+    private static long getDataTime(Set<ConditionEval> conditionEvalSet) {
+        long dataTime = 0L;
+        for (ConditionEval ce : conditionEvalSet) {
+            dataTime = Math.max(dataTime, ce.getDataTimestamp());
+        }
+        return dataTime;
+    }
+
     public void reset() {
         this.numTrueEvals = 0;
         this.numEvals = 0;
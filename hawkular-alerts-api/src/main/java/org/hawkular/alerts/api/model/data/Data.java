@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -53,6 +54,17 @@ public class Data implements Comparable<Data>, Serializable {
     @JsonInclude(Include.NON_EMPTY)
     protected String value;
 
+    /**
+     * The value of a numeric datum as a primitive, valid when <code>numeric</code> is set. Numeric datums created
+     * with forNumeric() only format the String value when it is requested (i.e. on JSON serialization), and String
+     * values are parsed at most once, so numeric condition evaluations don't parse the value on every evaluation.
+     */
+    @JsonIgnore
+    protected double numericValue;
+
+    @JsonIgnore
+    protected boolean numeric;
+
     /** [FUTURE]
      * For multi-value condition types. Null otherwise. See the condition type for expected key-value information.
      * Note: if and when we need this we may want to get rid of the 'value' field and roll the single-value case
@@ -146,21 +158,27 @@ public class Data implements Comparable<Data>, Serializable {
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value));
+        return forNumeric(tenantId, null, id, timestamp, value, null);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value));
+        return forNumeric(tenantId, source, id, timestamp, value, null);
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value), null, context);
+        return forNumeric(tenantId, null, id, timestamp, value, context);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context);
+        if (null == value) {
+            return new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context);
+        }
+        Data data = new Data(tenantId, source, id, timestamp, null, null, context);
+        data.numericValue = value;
+        data.numeric = true;
+        return data;
     }
 
     public static Data forString(String tenantId, String id, long timestamp, String value) {
@@ -240,11 +258,29 @@ public class Data implements Comparable<Data>, Serializable {
     }
 
     public String getValue() {
+        if (null == value && numeric) {
+            value = String.valueOf(numericValue);
+        }
         return value;
     }
 
     public void setValue(String value) {
         this.value = value;
+        this.numeric = false;
+    }
+
+    /**
+     * @return the value as a double. The String value is parsed only the first time for datums not created as
+     * numeric.
+     * @throws NumberFormatException if the value is not numeric
+     */
+    @JsonIgnore
+    public double getNumericValue() {
+        if (!numeric) {
+            numericValue = Double.parseDouble(value);
+            numeric = true;
+        }
+        return numericValue;
     }
 
     public Map<String, String> getContext() {
@@ -329,7 +365,7 @@ public class Data implements Comparable<Data>, Serializable {
 
     @Override
     public String toString() {
-        return "Data [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value=" + value
+        return "Data [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value=" + getValue()
                 + ", context=" + context + "]";
     }
 
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.model.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A columnar batch of single-value {@link Data} samples of a tenant and source, i.e. the samples collected on a
+ * scrape of a collector.
+ *
+ * Instead of one object per sample, each one with its own tenantId, source and id, the batch holds parallel arrays:
+ * a reference to a dictionary of distinct dataIds, the timestamps, the numeric values and an optional column for
+ * string and availability values, only allocated when the batch holds any non-numeric sample.  The batch is handed
+ * as a unit through the alerts service and the engine, samples are converted to {@link Data} only when they are
+ * evaluated.
+ *
+ * A batch is built by a single thread and should not be modified once it has been sent.
+ *
+ * @author agent
+ */
+public class DataBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final String tenantId;
+
+    private final String source;
+
+    /** The distinct dataIds of the batch */
+    private String[] ids;
+    private int numIds;
+
+    /** Per sample columns */
+    private int[] idRefs;
+    private long[] timestamps;
+    private double[] values;
+    /** Null for numeric samples, null if all the samples of the batch are numeric */
+    private String[] stringValues;
+    private int size;
+
+    private transient Map<String, Integer> idIndex;
+
+    /**
+     * @param tenantId not null
+     * @param source optional, the source of all the samples
+     */
+    public DataBatch(String tenantId, String source) {
+        this(tenantId, source, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param tenantId not null
+     * @param source optional, the source of all the samples
+     * @param capacity the expected number of samples
+     */
+    public DataBatch(String tenantId, String source, int capacity) {
+        if (capacity < 1) {
+            capacity = DEFAULT_CAPACITY;
+        }
+        this.tenantId = tenantId;
+        this.source = null == source || source.trim().isEmpty() ? Data.SOURCE_NONE : source;
+        this.ids = new String[DEFAULT_CAPACITY];
+        this.numIds = 0;
+        this.idRefs = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.stringValues = null;
+        this.size = 0;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @param id not null, unique within tenant
+     * @param timestamp in millis, if less than 1 assigned currentTime.
+     * @param value the numeric value
+     * @return this batch
+     */
+    public DataBatch addNumeric(String id, long timestamp, double value) {
+        add(id, timestamp);
+        values[size++] = value;
+        return this;
+    }
+
+    /**
+     * @param id not null, unique within tenant
+     * @param timestamp in millis, if less than 1 assigned currentTime.
+     * @param value the string value
+     * @return this batch
+     */
+    public DataBatch addString(String id, long timestamp, String value) {
+        if (null == value) {
+            throw new IllegalArgumentException("Value must be not null");
+        }
+        add(id, timestamp);
+        if (null == stringValues) {
+            stringValues = new String[idRefs.length];
+        }
+        stringValues[size++] = value;
+        return this;
+    }
+
+    /**
+     * @param id not null, unique within tenant
+     * @param timestamp in millis, if less than 1 assigned currentTime.
+     * @param value the availability value
+     * @return this batch
+     */
+    public DataBatch addAvailability(String id, long timestamp, AvailabilityType value) {
+        if (null == value) {
+            throw new IllegalArgumentException("Value must be not null");
+        }
+        return addString(id, timestamp, value.name());
+    }
+
+    private void add(String id, long timestamp) {
+        if (null == id) {
+            throw new IllegalArgumentException("DataId must be not null");
+        }
+        if (size == idRefs.length) {
+            int capacity = idRefs.length * 2;
+            idRefs = Arrays.copyOf(idRefs, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (null != stringValues) {
+                stringValues = Arrays.copyOf(stringValues, capacity);
+            }
+        }
+        idRefs[size] = idRef(id);
+        timestamps[size] = (timestamp <= 0) ? System.currentTimeMillis() : timestamp;
+    }
+
+    private int idRef(String id) {
+        if (null == idIndex) {
+            idIndex = new HashMap<>();
+            for (int i = 0; i < numIds; i++) {
+                idIndex.put(ids[i], i);
+            }
+        }
+        Integer ref = idIndex.get(id);
+        if (null == ref) {
+            if (numIds == ids.length) {
+                ids = Arrays.copyOf(ids, numIds * 2);
+            }
+            ref = numIds;
+            ids[numIds++] = id;
+            idIndex.put(id, ref);
+        }
+        return ref;
+    }
+
+    /**
+     * @return the number of samples
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the distinct dataIds of the batch, in order of appearance
+     */
+    public Set<String> getDataIds() {
+        Set<String> dataIds = new LinkedHashSet<>(numIds * 2);
+        for (int i = 0; i < numIds; i++) {
+            dataIds.add(ids[i]);
+        }
+        return dataIds;
+    }
+
+    public String getId(int i) {
+        checkIndex(i);
+        return ids[idRefs[i]];
+    }
+
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return timestamps[i];
+    }
+
+    public boolean isNumeric(int i) {
+        checkIndex(i);
+        return null == stringValues || null == stringValues[i];
+    }
+
+    /**
+     * @return the numeric value of the i-th sample, parsed from its string value if it is not numeric
+     * @throws NumberFormatException if the value is not numeric
+     */
+    public double getNumericValue(int i) {
+        return isNumeric(i) ? values[i] : Double.parseDouble(stringValues[i]);
+    }
+
+    /**
+     * @return the value of the i-th sample as on {@link Data#getValue()}
+     */
+    public String getValue(int i) {
+        return isNumeric(i) ? String.valueOf(values[i]) : stringValues[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+
+    /**
+     * @return the i-th sample as a {@link Data}
+     */
+    public Data toData(int i) {
+        if (isNumeric(i)) {
+            return Data.forNumeric(tenantId, source, getId(i), timestamps[i], values[i]);
+        }
+        return Data.forString(tenantId, source, getId(i), timestamps[i], stringValues[i]);
+    }
+
+    /**
+     * @return all the samples as {@link Data}
+     */
+    public List<Data> toData() {
+        List<Data> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            data.add(toData(i));
+        }
+        return data;
+    }
+
+    /**
+     * @param dataIdFilter the filter to test each distinct dataId of the batch, it is invoked once per dataId
+     * @return a batch with the samples of the dataIds accepted by the filter, this batch if all are accepted
+     */
+    public DataBatch filter(Predicate<String> dataIdFilter) {
+        boolean[] accepted = new boolean[numIds];
+        int numAccepted = 0;
+        for (int i = 0; i < numIds; i++) {
+            accepted[i] = dataIdFilter.test(ids[i]);
+            if (accepted[i]) {
+                numAccepted++;
+            }
+        }
+        if (numAccepted == numIds) {
+            return this;
+        }
+        DataBatch filtered = new DataBatch(tenantId, source, size);
+        if (numAccepted == 0) {
+            return filtered;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!accepted[idRefs[i]]) {
+                continue;
+            }
+            if (isNumeric(i)) {
+                filtered.addNumeric(ids[idRefs[i]], timestamps[i], values[i]);
+            } else {
+                filtered.addString(ids[idRefs[i]], timestamps[i], stringValues[i]);
+            }
+        }
+        return filtered;
+    }
+
+    @Override
+    public String toString() {
+        return "DataBatch [tenantId=" + tenantId + ", source=" + source + ", dataIds=" + numIds + ", size=" + size
+                + "]";
+    }
+}
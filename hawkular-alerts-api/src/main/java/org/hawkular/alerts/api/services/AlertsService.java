@@ -23,6 +23,7 @@ import java.util.Set;
 
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.paging.Page;
@@ -217,6 +218,15 @@ public interface AlertsService {
      */
     void sendData(Collection<Data> data) throws Exception;
 
+    /**
+     * Send a columnar batch of data into the alerting system for evaluation. The samples of the batch are not
+     * converted to individual {@link Data} until they are evaluated.
+     *
+     * @param batch Not Null.  The data to be evaluated by the alerting engine.
+     * @throws Exception any problem.
+     */
+    void sendData(DataBatch batch) throws Exception;
+
     /**
      * Send event to the engine for alerts evaluation.
      * The event sent is not persisted into the alerts engine.
@@ -27,6 +27,7 @@ import org.hawkular.alerts.api.model.export.Definitions;
 import org.hawkular.alerts.api.model.export.ImportType;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
 import org.hawkular.alerts.api.model.trigger.Mode;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.DefinitionsEvent.Type;
@@ -208,6 +209,14 @@ public interface DefinitionsService {
      */
     Collection<Trigger> getAllTriggers() throws Exception;
 
+    /**
+     * Get all stored Triggers for all Tenants, with their Conditions and Dampenings. This is a bulk fetch intended to
+     * load the whole set of definitions, i.e. on engine startup.
+     * @return The existing triggers with their conditions and dampenings. Not null.
+     * @throws Exception on any problem
+     */
+    Collection<FullTrigger> getAllFullTriggers() throws Exception;
+
     /**
      * Get all stored Triggers for all Tenants with a specific Tag. This can be inefficient.
      * @param name The tag name, not null.
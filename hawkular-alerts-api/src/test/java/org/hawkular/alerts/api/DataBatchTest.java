@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class DataBatchTest {
+
+    @Test
+    public void columnsTest() {
+        DataBatch batch = new DataBatch("tenant", null, 2);
+        for (int i = 1; i <= 10; i++) {
+            batch.addNumeric("NumericData-01", i, i * 1.5);
+            batch.addNumeric("NumericData-02", i, i * 2.5);
+        }
+        batch.addString("StringData-01", 11, "DOWN");
+        batch.addAvailability("Availability-01", 12, AvailabilityType.UP);
+
+        assertEquals(22, batch.size());
+        assertEquals(Data.SOURCE_NONE, batch.getSource());
+        assertEquals(Arrays.asList("NumericData-01", "NumericData-02", "StringData-01", "Availability-01"),
+                Arrays.asList(batch.getDataIds().toArray()));
+
+        assertEquals("NumericData-02", batch.getId(3));
+        assertEquals(2, batch.getTimestamp(3));
+        assertTrue(batch.isNumeric(3));
+        assertTrue(batch.getNumericValue(3) == 5.0);
+        assertFalse(batch.isNumeric(20));
+        assertEquals("DOWN", batch.getValue(20));
+        assertEquals("UP", batch.getValue(21));
+
+        List<Data> data = batch.toData();
+        assertEquals(22, data.size());
+        assertEquals(Data.forNumeric("tenant", "NumericData-02", 2, 5.0), data.get(3));
+        assertTrue(data.get(3).getNumericValue() == 5.0);
+        assertEquals("5.0", data.get(3).getValue());
+        assertEquals("DOWN", data.get(20).getValue());
+        assertEquals(AvailabilityType.UP, AvailabilityType.valueOf(data.get(21).getValue()));
+    }
+
+    @Test
+    public void filterTest() {
+        DataBatch batch = new DataBatch("tenant", "source");
+        for (int i = 1; i <= 10; i++) {
+            batch.addNumeric("NumericData-01", i, i);
+            batch.addString("StringData-01", i, "value-" + i);
+            batch.addNumeric("NumericData-02", i, i);
+        }
+
+        Set<String> tested = new HashSet<>();
+        assertSame(batch, batch.filter(tested::add));
+        assertEquals(3, tested.size());
+
+        DataBatch filtered = batch.filter(id -> !id.equals("NumericData-02"));
+        assertEquals(20, filtered.size());
+        assertEquals("source", filtered.getSource());
+        for (int i = 0; i < filtered.size(); i++) {
+            assertFalse(filtered.getId(i).equals("NumericData-02"));
+        }
+        assertEquals("StringData-01", filtered.getId(3));
+        assertEquals("value-2", filtered.getValue(3));
+
+        assertTrue(batch.filter(id -> false).isEmpty());
+    }
+}
@@ -18,6 +18,9 @@ package org.hawkular.alerts.api;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.regex.PatternSyntaxException;
 
 import org.hawkular.alerts.api.model.condition.EventCondition;
 import org.hawkular.alerts.api.model.event.Event;
@@ -183,4 +186,38 @@ public class EventConditionTest {
         assertFalse(condition.match(bpmEvent2));
     }
 
+    @Test
+    public void testMatchesExpressionChange() {
+        EventCondition condition = new EventCondition("tenant", "trigger-1", "app.war", "text matches 'DOWN.*'");
+        Event event = new Event();
+        event.setText("DOWN since 5 minutes");
+
+        assertTrue(condition.match(event));
+        assertTrue(condition.match(event));
+
+        condition.setExpression("text matches 'UP.*'");
+
+        assertFalse(condition.match(event));
+
+        event.setText("UP again");
+
+        assertTrue(condition.match(event));
+    }
+
+    @Test
+    public void testInvalidMatchesExpression() {
+        EventCondition condition = new EventCondition("tenant", "trigger-1", "app.war", "text matches 'DOWN[.*'");
+        Event event = new Event();
+
+        // Not evaluated as the event has no text
+        assertFalse(condition.match(event));
+
+        event.setText("DOWN");
+        try {
+            condition.match(event);
+            fail("Pattern should be invalid");
+        } catch (PatternSyntaxException e) {
+            // expected
+        }
+    }
 }
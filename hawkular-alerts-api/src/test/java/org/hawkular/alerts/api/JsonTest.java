@@ -968,6 +968,27 @@ public class JsonTest {
         assertTrue(output.contains("v1"));
     }
 
+    @Test
+    public void jsonNumericDataTest() throws Exception {
+        Data nData = Data.forNumeric(TEST_TENANT, "test", 1, 10.45);
+        assertTrue(nData.getNumericValue() == 10.45);
+
+        String output = objectMapper.writeValueAsString(nData);
+
+        assertTrue(output, output.contains("\"value\":\"10.45\""));
+        assertTrue(output, !output.contains("numeric"));
+
+        Data nData2 = objectMapper.readValue(output, Data.class);
+
+        assertEquals(nData, nData2);
+        assertEquals("10.45", nData2.getValue());
+        assertTrue(nData2.getNumericValue() == 10.45);
+
+        nData2.setValue("20.5");
+
+        assertTrue(nData2.getNumericValue() == 20.5);
+    }
+
     @Test
     public void jsonTriggerTest() throws Exception {
         String str = "{\"name\":\"test-name\",\"description\":\"test-description\"," +
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition.Operator;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class StringConditionTest {
+
+    @Test
+    public void testIgnoreCase() {
+        StringCondition condition = new StringCondition("tenant", "trigger-1", "StringData-01",
+                Operator.STARTS_WITH, "Down", true);
+
+        assertTrue(condition.match("DOWN since 5 minutes"));
+        assertTrue(condition.match("down since 5 minutes"));
+        assertFalse(condition.match("UP since 5 minutes"));
+        // The condition is not modified by the evaluation
+        assertEquals("Down", condition.getPattern());
+
+        condition.setIgnoreCase(false);
+
+        assertFalse(condition.match("DOWN since 5 minutes"));
+        assertTrue(condition.match("Down since 5 minutes"));
+    }
+
+    @Test
+    public void testMatch() {
+        StringCondition condition = new StringCondition("tenant", "trigger-1", "StringData-01",
+                Operator.MATCH, "down.*", true);
+
+        assertTrue(condition.match("DOWN since 5 minutes"));
+        assertFalse(condition.match("UP since 5 minutes"));
+
+        condition.setIgnoreCase(false);
+
+        assertFalse(condition.match("DOWN since 5 minutes"));
+        assertTrue(condition.match("down since 5 minutes"));
+
+        condition.setPattern("UP.*");
+
+        assertTrue(condition.match("UP since 5 minutes"));
+        assertFalse(condition.match("down since 5 minutes"));
+
+        condition.setOperator(Operator.CONTAINS);
+
+        assertFalse(condition.match("UP since 5 minutes"));
+        assertTrue(condition.match("the UP.* pattern"));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.util.MpscRingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Producer throughput of the AlertsEngine pending data queue.
+ *
+ * <code>mpsc</code> measures the lock-free MpscRingBuffer used by AlertsEngineImpl, <code>synchronizedList</code>
+ * measures the previous synchronized ArrayList. In both cases a background thread plays the RulesInvoker role,
+ * draining the queue continuously.
+ *
+ * Run {@link #main(String[])} to get the producer scaling from 1 to 32 ingest threads, or use the standard JMH
+ * <code>-t</code> option to run a specific number of threads.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestionQueueBenchmark {
+
+    private static final int CAPACITY = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class Producer {
+        @Param({"1", "100"})
+        int batchSize;
+
+        List<Data> batch;
+
+        @Setup
+        public void setup() {
+            batch = new ArrayList<>(batchSize);
+            String dataId = "NumericData-" + Thread.currentThread().getId();
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(Data.forNumeric("tenant", dataId, i + 1, (double) i));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MpscQueue {
+        MpscRingBuffer<Data> pending;
+        Thread consumer;
+        volatile boolean running;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            pending = new MpscRingBuffer<>(CAPACITY);
+            running = true;
+            consumer = new Thread(() -> {
+                while (running) {
+                    if (pending.drain(d -> {}, 5000) == 0) {
+                        Thread.yield();
+                    }
+                }
+            }, "mpsc-consumer");
+            consumer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            consumer.join();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SynchronizedQueue {
+        List<Data> pending;
+        Thread consumer;
+        volatile boolean running;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            pending = new ArrayList<>();
+            running = true;
+            consumer = new Thread(() -> {
+                while (running) {
+                    List<Data> drained;
+                    synchronized (pending) {
+                        drained = new ArrayList<>(pending);
+                        pending.clear();
+                    }
+                    if (drained.isEmpty()) {
+                        Thread.yield();
+                    }
+                }
+            }, "synchronized-consumer");
+            consumer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            consumer.join();
+        }
+    }
+
+    @Benchmark
+    public void mpsc(MpscQueue queue, Producer producer) {
+        for (Data d : producer.batch) {
+            while (!queue.pending.offer(d)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Benchmark
+    public void synchronizedList(SynchronizedQueue queue, Producer producer) {
+        synchronized (queue.pending) {
+            queue.pending.addAll(producer.batch);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = { 1, 2, 4, 8, 16, 32 };
+        for (int t : threads) {
+            Options opt = new OptionsBuilder()
+                    .include(IngestionQueueBenchmark.class.getSimpleName())
+                    .threads(t)
+                    .build();
+            new Runner(opt).run();
+        }
+    }
+}
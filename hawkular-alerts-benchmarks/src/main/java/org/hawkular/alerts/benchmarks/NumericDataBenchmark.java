@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.data.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of creating and evaluating a numeric sample against a ThresholdCondition, as done by the Threshold rule.
+ *
+ * <code>numeric</code> creates the sample with Data.forNumeric(), which keeps the value as a primitive double.
+ * <code>string</code> creates the sample with a String value, as received from the REST API, which is parsed once
+ * on evaluation. <code>stringValue</code> adds the formatting of the numeric value into a String, as Data did for
+ * every numeric sample before holding the primitive value.
+ *
+ * Run {@link #main(String[])} to get the gc.alloc.rate.norm (bytes allocated per evaluated sample) of each case,
+ * or add <code>-prof gc</code> to the JMH command line.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NumericDataBenchmark {
+
+    private static final String TENANT = "tenant";
+
+    ThresholdCondition condition;
+    long timestamp;
+    double value;
+
+    @Setup
+    public void setup() {
+        condition = new ThresholdCondition(TENANT, "trigger", "NumericData-01", ThresholdCondition.Operator.GT,
+                10.0);
+        timestamp = 1;
+        value = 0.5;
+    }
+
+    private double nextValue() {
+        value += 1.25;
+        if (value > 20.0) {
+            value = 0.5;
+        }
+        return value;
+    }
+
+    @Benchmark
+    public boolean numeric() {
+        Data data = Data.forNumeric(TENANT, "NumericData-01", timestamp++, nextValue());
+        return new ThresholdConditionEval(condition, data).isMatch();
+    }
+
+    @Benchmark
+    public boolean string() {
+        Data data = Data.forString(TENANT, "NumericData-01", timestamp++, String.valueOf(nextValue()));
+        return new ThresholdConditionEval(condition, data).isMatch();
+    }
+
+    @Benchmark
+    public boolean stringValue() {
+        Data data = Data.forNumeric(TENANT, "NumericData-01", timestamp++, nextValue());
+        data.getValue();
+        return new ThresholdConditionEval(condition, data).isMatch();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(NumericDataBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.CassPayload;
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of encoding and decoding the Alert, Event and Action payloads stored in Cassandra, with the JSON text codec
+ * and with the Smile binary codec of {@link CassPayload}.
+ *
+ * The payloads are those generated by a trigger with two conditions (threshold and range, ALL match) and a STRICT
+ * dampening of <code>evalSets</code> evaluations: the Alert embeds the Trigger, the Dampening and the evalSets, the
+ * Event is the trigger event of the same evaluation and the Action is the action history entry of the Alert.
+ * <code>*Thin</code> methods decode skipping the thin fields, as done by the alerts and actions queries with the thin
+ * option. The size in bytes of each encoded payload is logged on setup, for Alerts and Events also the size when
+ * the Trigger and Dampening are stored on a {@link org.hawkular.alerts.engine.impl.CassSnapshots} snapshot.
+ *
+ * Run {@link #main(String[])} to get the gc.alloc.rate.norm of each case, or add <code>-prof gc</code> to the JMH
+ * command line.
+ *
+ * @author agent
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadCodecBenchmark {
+
+    private static final String TENANT = "28026b36-8fe4-4332-84c8-524e173a68bf";
+    private static final Logger log = Logger.getLogger(PayloadCodecBenchmark.class);
+
+    public enum PayloadType {
+        ALERT, EVENT, ACTION
+    }
+
+    @Param({"ALERT", "EVENT", "ACTION"})
+    PayloadType payload;
+
+    @Param({"1", "5"})
+    int evalSets;
+
+    Object resource;
+    Class<?> type;
+    String json;
+    byte[] smile;
+
+    @Setup
+    public void setup() {
+        String resourceId = "MI~R~[dhcp130-144~Local~~]~MT~WildFly Memory Metrics~Heap Used";
+        String triggerId = "heap-used-" + resourceId;
+
+        Map<String, String> context = new HashMap<>();
+        context.put("resourceType", "App Server");
+        context.put("resourceName", "dhcp130-144~Local~~");
+        context.put("triggerType", "Threshold");
+        Map<String, String> tags = new HashMap<>();
+        tags.put("HawkularMetrics", "MetricsCondition");
+        tags.put("resourceId", resourceId);
+
+        Trigger trigger = new Trigger(TENANT, triggerId, "JVM Heap Used", context, tags);
+        trigger.setDescription("Heap used above 80% of the max heap or outside of the expected range");
+        trigger.setEventText("JVM heap used is above the expected values");
+        trigger.setEnabled(true);
+        trigger.setAutoDisable(true);
+
+        String heapUsed = resourceId;
+        String heapMax = "MI~R~[dhcp130-144~Local~~]~MT~WildFly Memory Metrics~Heap Max";
+        ThresholdCondition threshold = new ThresholdCondition(TENANT, triggerId, Mode.FIRING, 2, 1, heapUsed,
+                ThresholdCondition.Operator.GT, 838860800.0);
+        ThresholdRangeCondition range = new ThresholdRangeCondition(TENANT, triggerId, Mode.FIRING, 2, 2, heapMax,
+                ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                536870912.0, 1073741824.0, false);
+        Dampening dampening = Dampening.forStrict(TENANT, triggerId, Mode.FIRING, evalSets);
+
+        long timestamp = 1476700000000L;
+        List<Set<ConditionEval>> evals = new ArrayList<>();
+        for (int i = 0; i < evalSets; i++) {
+            Set<ConditionEval> evalSet = new HashSet<>();
+            evalSet.add(new ThresholdConditionEval(threshold,
+                    Data.forNumeric(TENANT, heapUsed, timestamp, 901234567.0 + i)));
+            evalSet.add(new ThresholdRangeConditionEval(range,
+                    Data.forNumeric(TENANT, heapMax, timestamp, 1234567890.0)));
+            evals.add(evalSet);
+            timestamp += 5000;
+        }
+
+        Alert alert = new Alert(TENANT, trigger, dampening, evals);
+        switch (payload) {
+            case ALERT:
+                resource = alert;
+                break;
+            case EVENT:
+                resource = new Event(TENANT, trigger, dampening, evals);
+                break;
+            case ACTION:
+                resource = new Action(TENANT, "email", "email-to-admin", alert);
+                break;
+        }
+        type = resource.getClass();
+        json = JsonUtil.toJson(resource);
+        smile = CassPayload.toSmile(resource);
+        if (resource instanceof Event) {
+            ByteBuffer noSnapshot = (ByteBuffer) CassPayload.encodeNoSnapshot((Event) resource);
+            log.infof("%s with %s evalSets: json %s bytes, smile %s bytes, smile referencing a snapshot %s bytes",
+                    payload, evalSets, json.length(), smile.length, noSnapshot.remaining());
+        } else {
+            log.infof("%s with %s evalSets: json %s bytes, smile %s bytes", payload, evalSets, json.length(),
+                    smile.length);
+        }
+    }
+
+    @Benchmark
+    public String jsonWrite() {
+        return JsonUtil.toJson(resource);
+    }
+
+    @Benchmark
+    public byte[] smileWrite() {
+        return CassPayload.toSmile(resource);
+    }
+
+    @Benchmark
+    public Object jsonRead() {
+        return JsonUtil.fromJson(json, type, false);
+    }
+
+    @Benchmark
+    public Object smileRead() {
+        return CassPayload.fromSmile(smile, 0, smile.length, type, false);
+    }
+
+    @Benchmark
+    public Object jsonReadThin() {
+        return JsonUtil.fromJson(json, type, true);
+    }
+
+    @Benchmark
+    public Object smileReadThin() {
+        return CassPayload.fromSmile(smile, 0, smile.length, type, true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(PayloadCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
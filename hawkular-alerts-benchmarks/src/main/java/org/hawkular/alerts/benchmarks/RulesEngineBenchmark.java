@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of a rules execution of DroolsRulesEngineImpl, as done by the AlertsEngineImpl RulesInvoker: a batch
+ * of <code>batchSize</code> datums (or events) is added to the rules engine and the rules are fired.
+ *
+ * The session holds <code>triggers</code> triggers, each one with a single <code>condition</code> on its own dataId
+ * and a FIRING dampening of <code>dampening</code> type. Each batch sends data to the next <code>batchSize</code>
+ * dataIds in round robin, with increasing timestamps, half of them matching the condition. A batch bigger than the
+ * number of triggers sends several datums per dataId, which are processed on successive firing cycles.
+ *
+ * The reported ops/s are rules executions per second, the datums per second are ops/s * batchSize. Run
+ * {@link #main(String[])} to get the gc.alloc.rate of each configuration, or add <code>-prof gc</code> to the JMH
+ * command line. Large configurations are slow to setup, use the JMH <code>-p</code> option to select a subset, i.e.
+ * <code>-p condition=THRESHOLD -p triggers=1000000</code>, and give the forked JVM enough heap for 1M triggers with
+ * <code>-jvmArgsAppend -Xmx8g</code>.
+ *
+ * The per-datum cost with many loaded triggers is measured with <code>-p triggers=100000 -p batchSize=1</code>.
+ *
+ * This replaces the previous PerfRulesEngineTest, which measured a single firing inside JUnit without warmup.
+ *
+ * @author agent
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RulesEngineBenchmark {
+
+    private static final String TENANT = "tenant";
+    private static final Logger log = Logger.getLogger(RulesEngineBenchmark.class);
+
+    public enum ConditionType {
+        THRESHOLD, RANGE, COMPARE, RATE, STRING, EVENT
+    }
+
+    public enum DampeningType {
+        STRICT, RELAXED_COUNT, RELAXED_TIME, STRICT_TIME, STRICT_TIMEOUT
+    }
+
+    @Param({"THRESHOLD", "RANGE", "COMPARE", "RATE", "STRING", "EVENT"})
+    ConditionType condition;
+
+    @Param({"STRICT", "RELAXED_COUNT", "RELAXED_TIME", "STRICT_TIME", "STRICT_TIMEOUT"})
+    DampeningType dampening;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int triggers;
+
+    @Param({"1", "100", "10000"})
+    int batchSize;
+
+    DroolsRulesEngineImpl rules;
+    List<Alert> alerts = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
+
+    List<Data> dataBatch;
+    List<Event> eventBatch;
+    int next;
+    long timestamp;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rules = new DroolsRulesEngineImpl();
+        rules.addGlobal("log", log);
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", events);
+        rules.addGlobal("pendingTimeouts", pendingTimeouts);
+        rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rules.addGlobal("disabledTriggers", disabledTriggers);
+
+        List<Object> facts = new ArrayList<>();
+        for (int i = 0; i < triggers; i++) {
+            String triggerId = "trigger-" + i;
+            Trigger t = new Trigger(TENANT, triggerId, triggerId);
+            t.setEnabled(true);
+            facts.add(t);
+            facts.add(condition(triggerId, i));
+            facts.add(dampening(triggerId));
+            if (facts.size() >= 30000) {
+                rules.addFacts(facts);
+                facts.clear();
+            }
+        }
+        rules.addFacts(facts);
+
+        dataBatch = new ArrayList<>(batchSize);
+        eventBatch = new ArrayList<>(batchSize);
+        next = 0;
+        timestamp = 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rules.reset();
+    }
+
+    private Object condition(String triggerId, int i) {
+        switch (condition) {
+            case THRESHOLD:
+                return new ThresholdCondition(TENANT, triggerId, "NumericData-" + i,
+                        ThresholdCondition.Operator.GT, 10.0);
+            case RANGE:
+                return new ThresholdRangeCondition(TENANT, triggerId, "NumericData-" + i,
+                        ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                        10.0, 20.0, true);
+            case COMPARE:
+                return new CompareCondition(TENANT, triggerId, "NumericData-" + i,
+                        CompareCondition.Operator.GT, 1.0, "NumericData2-" + i);
+            case RATE:
+                return new RateCondition(TENANT, triggerId, "NumericData-" + i,
+                        RateCondition.Direction.INCREASING, RateCondition.Period.SECOND,
+                        RateCondition.Operator.GT, 1.0);
+            case STRING:
+                return new StringCondition(TENANT, triggerId, "StringData-" + i,
+                        StringCondition.Operator.EQUAL, "DOWN", false);
+            case EVENT:
+                return new EventCondition(TENANT, triggerId, "EventData-" + i, "text == 'DOWN'");
+            default:
+                throw new IllegalArgumentException(condition.name());
+        }
+    }
+
+    private Dampening dampening(String triggerId) {
+        switch (dampening) {
+            case STRICT:
+                return Dampening.forStrict(TENANT, triggerId, Mode.FIRING, 2);
+            case RELAXED_COUNT:
+                return Dampening.forRelaxedCount(TENANT, triggerId, Mode.FIRING, 2, 4);
+            case RELAXED_TIME:
+                return Dampening.forRelaxedTime(TENANT, triggerId, Mode.FIRING, 2, 60000);
+            case STRICT_TIME:
+                return Dampening.forStrictTime(TENANT, triggerId, Mode.FIRING, 60000);
+            case STRICT_TIMEOUT:
+                return Dampening.forStrictTimeout(TENANT, triggerId, Mode.FIRING, 60000);
+            default:
+                throw new IllegalArgumentException(dampening.name());
+        }
+    }
+
+    /*
+        Half of the values match the condition: numeric values alternate between 5 and 15 (in range 10-20, 15 > 5 for
+        compare), string and event texts alternate between UP and DOWN. Rate values always increase 2 per second, so
+        all rate evaluations match.
+     */
+    private void nextBatch() {
+        dataBatch.clear();
+        eventBatch.clear();
+        for (int n = 0; n < batchSize; n++) {
+            int i = next;
+            next = (next + 1) % triggers;
+            long ts = timestamp++;
+            boolean match = (ts & 1) == 0;
+            switch (condition) {
+                case THRESHOLD:
+                case RANGE:
+                    dataBatch.add(Data.forNumeric(TENANT, "NumericData-" + i, ts, match ? 15.0 : 5.0));
+                    break;
+                case COMPARE:
+                    dataBatch.add(Data.forNumeric(TENANT, "NumericData-" + i, ts, match ? 15.0 : 5.0));
+                    dataBatch.add(Data.forNumeric(TENANT, "NumericData2-" + i, ts, 5.0));
+                    break;
+                case RATE:
+                    dataBatch.add(Data.forNumeric(TENANT, "NumericData-" + i, ts * 1000, ts * 2.0));
+                    break;
+                case STRING:
+                    dataBatch.add(Data.forString(TENANT, "StringData-" + i, ts, match ? "DOWN" : "UP"));
+                    break;
+                case EVENT:
+                    eventBatch.add(new Event(TENANT, "event-" + ts, ts, "EventData-" + i, "Alert",
+                            match ? "DOWN" : "UP"));
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public int fire() {
+        nextBatch();
+        if (ConditionType.EVENT == condition) {
+            rules.addEvents(eventBatch);
+        } else {
+            rules.addData(dataBatch);
+        }
+        rules.fire();
+        int generated = alerts.size() + events.size();
+        alerts.clear();
+        events.clear();
+        return generated;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(RulesEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cold start time of the rules engine: creation of the DroolsRulesEngineImpl and the first evaluation of a datum.
+ *
+ * <code>compiledRules=false</code> compiles the drl on startup, as before the rules were compiled on build time,
+ * <code>compiledRules=true</code> loads the packages compiled on build time. The KieBase is cached per classloader,
+ * so each measurement runs on a new JVM.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class RulesEngineStartupBenchmark {
+
+    @Param({"false", "true"})
+    boolean compiledRules;
+
+    @Benchmark
+    public List<Alert> startup() {
+        RulesEngine rules = new DroolsRulesEngineImpl(false, 0, compiledRules);
+        List<Alert> alerts = new ArrayList<>();
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", new ArrayList<>());
+        rules.addGlobal("pendingTimeouts", new HashSet<>());
+        rules.addGlobal("autoResolvedTriggers", new HashMap<>());
+        rules.addGlobal("disabledTriggers", new HashSet<>());
+
+        Trigger trigger = new Trigger("tenant", "trigger", "trigger");
+        trigger.setEnabled(true);
+        rules.addFact(trigger);
+        rules.addFact(new ThresholdCondition("tenant", "trigger", 1, 1, "data", ThresholdCondition.Operator.GT,
+                10.0));
+        rules.addData(Data.forNumeric("tenant", "data", 1, 20.0));
+        rules.fire();
+        if (alerts.size() != 1) {
+            throw new IllegalStateException("Expected 1 alert, found " + alerts);
+        }
+        return alerts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(RulesEngineStartupBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reloading triggers into a large rules session, as done by AlertsEngineImpl on a partition change.
+ *
+ * The session holds <code>sessionTriggers</code> triggers (each one with a condition and a dampening) and
+ * <code>reloadTriggers</code> of them are removed and added again on each invocation.
+ *
+ * <code>indexed</code> removes the facts using the per-trigger FactHandle index, <code>scan</code> uses the previous
+ * approach, a predicate evaluated against every fact in the session.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TriggerReloadBenchmark {
+
+    private static final String TENANT = "tenant";
+
+    @Param({"100000"})
+    int sessionTriggers;
+
+    @Param({"10000"})
+    int reloadTriggers;
+
+    DroolsRulesEngineImpl rules;
+    List<Trigger> triggers;
+    List<Condition> conditions;
+    List<Dampening> dampenings;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rules = new DroolsRulesEngineImpl();
+        triggers = new ArrayList<>(sessionTriggers);
+        conditions = new ArrayList<>(sessionTriggers);
+        dampenings = new ArrayList<>(sessionTriggers);
+        for (int i = 0; i < sessionTriggers; i++) {
+            String triggerId = "trigger-" + i;
+            Trigger t = new Trigger(TENANT, triggerId, triggerId);
+            t.setEnabled(true);
+            triggers.add(t);
+            conditions.add(new ThresholdCondition(TENANT, triggerId, 1, 1, "NumericData-" + i,
+                    ThresholdCondition.Operator.GT, 10.0));
+            dampenings.add(Dampening.forStrict(TENANT, triggerId,
+                    org.hawkular.alerts.api.model.trigger.Mode.FIRING, 2));
+        }
+        rules.addFacts(triggers);
+        rules.addFacts(conditions);
+        rules.addFacts(dampenings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rules.reset();
+    }
+
+    @Benchmark
+    public void indexed() {
+        for (int i = 0; i < reloadTriggers; i++) {
+            Trigger t = triggers.get(i);
+            rules.removeTriggerFacts(t.getTenantId(), t.getId());
+            reload(i);
+        }
+    }
+
+    @Benchmark
+    public void scan() {
+        for (int i = 0; i < reloadTriggers; i++) {
+            Trigger t = triggers.get(i);
+            final String triggerId = t.getId();
+            rules.removeFact(t);
+            rules.removeFacts(f -> {
+                if (f instanceof Dampening) {
+                    return ((Dampening) f).getTriggerId().equals(triggerId);
+                } else if (f instanceof Condition) {
+                    return ((Condition) f).getTriggerId().equals(triggerId);
+                }
+                return false;
+            });
+            reload(i);
+        }
+    }
+
+    private void reload(int i) {
+        rules.addFact(triggers.get(i));
+        rules.addFact(conditions.get(i));
+        rules.addFact(dampenings.get(i));
+    }
+}
@@ -35,8 +35,10 @@ import org.hawkular.alerts.engine.impl.AlertsContext;
 import org.hawkular.alerts.engine.impl.AlertsEngineImpl;
 import org.hawkular.alerts.engine.impl.CassActionsServiceImpl;
 import org.hawkular.alerts.engine.impl.CassAlertsServiceImpl;
+import org.hawkular.alerts.engine.impl.CassBuckets;
 import org.hawkular.alerts.engine.impl.CassDefinitionsServiceImpl;
 import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.PropertiesServiceImpl;
 import org.jboss.logging.Logger;
 
 import com.datastax.driver.core.Session;
@@ -68,6 +70,9 @@ public class StandaloneAlerts {
         definitions = new CassDefinitionsServiceImpl();
         alerts = new CassAlertsServiceImpl();
         alerts.setSession(session);
+        CassBuckets timeBuckets = new CassBuckets(new PropertiesServiceImpl());
+        timeBuckets.init(session);
+        alerts.setTimeBuckets(timeBuckets);
         alertsContext = new AlertsContext();
 
         definitions.setSession(session);
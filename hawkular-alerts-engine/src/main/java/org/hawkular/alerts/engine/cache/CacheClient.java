@@ -25,6 +25,7 @@ import javax.enterprise.context.ApplicationScoped;
 
 import org.hawkular.alerts.api.model.data.CacheKey;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.event.Event;
 import org.infinispan.Cache;
 
@@ -64,6 +65,17 @@ public class CacheClient {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * @return a batch with the samples of the dataIds in use, the cache is checked once per distinct dataId
+     */
+    public DataBatch filterData(DataBatch batch) {
+        final CacheKey tester = new CacheKey(batch.getTenantId(), "");
+        return batch.filter(dataId -> {
+            tester.setDataId(dataId);
+            return cache.containsKey(tester);
+        });
+    }
+
     public Collection<Event> filterEvents(Collection<Event> events) {
         final CacheKey tester = new CacheKey("", "");
         return events.stream()
@@ -16,18 +16,26 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -39,18 +47,29 @@ import javax.ejb.Startup;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
+import org.hawkular.alerts.api.model.action.Action;
 import org.hawkular.alerts.api.model.condition.CompareCondition;
 import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerAction;
+import org.hawkular.alerts.api.services.ActionListener;
+import org.hawkular.alerts.api.services.ActionsCriteria;
 import org.hawkular.alerts.api.services.ActionsService;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.PropertiesService;
 import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataEntry;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.service.AlertsEngine;
@@ -59,6 +78,16 @@ import org.hawkular.alerts.engine.service.PartitionManager;
 import org.hawkular.alerts.engine.service.PartitionManager.Operation;
 import org.hawkular.alerts.engine.service.PartitionTriggerListener;
 import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.BatchDispatcher;
+import org.hawkular.alerts.engine.util.EngineSnapshot;
+import org.hawkular.alerts.engine.util.IngestQueue;
+import org.hawkular.alerts.engine.util.PendingQueue;
+import org.hawkular.alerts.engine.util.PendingQueue.Policy;
+import org.hawkular.alerts.engine.util.ReorderBuffer;
+import org.hawkular.alerts.engine.util.TenantPendingQueue;
+import org.hawkular.alerts.engine.util.TenantPendingQueue.Quota;
+import org.hawkular.alerts.engine.util.TimeoutWheel;
+import org.hawkular.alerts.engine.util.WriteBehindQueue;
 import org.jboss.logging.Logger;
 
 /**
@@ -86,19 +115,246 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
      */
     private static final String ENGINE_PERIOD = "hawkular-alerts.engine-period";
 
+    /*
+        ENGINE_MODE defines how rules execution is scheduled:
+        - "timer": rules are fired every ENGINE_PERIOD milliseconds (default)
+        - "batch": rules are fired as soon as new data or events arrive, batching incoming data
+     */
+    private static final String ENGINE_MODE = "hawkular-alerts.engine-mode";
+
+    /*
+        ENGINE_BATCH_SIZE defines the max number of datums and events processed in a single rules execution.
+        On "timer" mode a tick runs several executions when more items are pending
+     */
+    private static final String ENGINE_BATCH_SIZE = "hawkular-alerts.engine-batch-size";
+
+    /*
+        ENGINE_BATCH_LINGER defined in milliseconds, max time to wait for more data before to fire rules on "batch"
+        mode
+     */
+    private static final String ENGINE_BATCH_LINGER = "hawkular-alerts.engine-batch-linger";
+
+    /*
+        ENGINE_QUEUE_CAPACITY defines the max number of pending datums and the max number of pending events that
+        can be buffered before to be processed by the rules engine. It is rounded up to the next power of two.
+     */
+    private static final String ENGINE_QUEUE_CAPACITY = "hawkular-alerts.engine-queue-capacity";
+
+    /*
+        ENGINE_QUEUE_POLICY defines what to do when a pending queue is full:
+        - "block": the caller waits until the rules engine makes room in the queue
+        - "reject": the incoming data or events are rejected, the REST API responds with HTTP 429. A request with
+          more items than the queue capacity can never fit, it is refused with HTTP 400
+        - "drop_oldest": the data that do not fit in the queue are kept on an overflow buffer, the most recent
+          ENGINE_QUEUE_OVERFLOW_DEPTH datums per dataId are kept, older are dropped. Queued data are not dropped
+        - "latest": only the latest datum per dataId is kept, older are coalesced
+     */
+    private static final String ENGINE_QUEUE_POLICY = "hawkular-alerts.engine-queue-policy";
+
+    /*
+        ENGINE_QUEUE_OVERFLOW_DEPTH defines the max number of datums (or events) per dataId kept when a pending queue
+        is full under the "drop_oldest" policy
+     */
+    private static final String ENGINE_QUEUE_OVERFLOW_DEPTH = "hawkular-alerts.engine-queue-overflow-depth";
+
+    /*
+        ENGINE_QUEUE_BATCH_CAPACITY defines the max number of pending DataBatch. A batch is queued as a unit and its
+        samples are converted to Data on the rules execution, under the "block" and "reject" policies. Under the
+        "drop_oldest" and "latest" policies the overflow is handled per dataId, so the samples of a batch are queued
+        as Data on the data queue instead.
+     */
+    private static final String ENGINE_QUEUE_BATCH_CAPACITY = "hawkular-alerts.engine-queue-batch-capacity";
+
+    /*
+        ENGINE_REORDER_LATENESS defines in ms the allowed lateness of out of order data. Data is held per dataId and
+        handed to the rules engine in timestamp order once a datum with a timestamp ENGINE_REORDER_LATENESS ms more
+        recent is received, or once it has been held for ENGINE_REORDER_LATENESS ms. Data older than the last datum
+        handed to the rules engine for its dataId is dropped. 0 disables the reordering.
+     */
+    private static final String ENGINE_REORDER_LATENESS = "hawkular-alerts.engine-reorder-lateness";
+
+    /*
+        ENGINE_REORDER_DEPTH defines the max number of datums held per dataId for reordering, older datums are handed
+        to the rules engine early on overflow.
+     */
+    private static final String ENGINE_REORDER_DEPTH = "hawkular-alerts.engine-reorder-depth";
+
+    /*
+        ENGINE_TENANT_FAIRNESS enables a pending sub-queue per tenant. Sub-queues are drained in a weighted round-robin,
+        so a tenant sending a burst of data can not delay the data of the other tenants. ENGINE_QUEUE_POLICY is applied
+        per tenant, when its sub-queue is full.
+     */
+    private static final String ENGINE_TENANT_FAIRNESS = "hawkular-alerts.engine-tenant-fairness";
+
+    /*
+        ENGINE_TENANT_QUEUE_CAPACITY defines the max number of pending datums and the max number of pending events of a
+        tenant with ENGINE_TENANT_FAIRNESS enabled. It can be defined for a specific tenant with the
+        "hawkular-alerts.engine-tenant-queue-capacity.<tenantId>" property.
+        The sub-queues of a tenant are allocated with their full capacity when the tenant sends its first items, one
+        reference (4 or 8 bytes) per slot for the data and events sub-queues, plus the batches sub-queue capped by
+        ENGINE_QUEUE_BATCH_CAPACITY. The default is kept small, about 36 KB per active tenant with compressed
+        references, and it should be raised only for the tenants sending large bursts.
+     */
+    private static final String ENGINE_TENANT_QUEUE_CAPACITY = "hawkular-alerts.engine-tenant-queue-capacity";
+
+    /*
+        ENGINE_TENANT_WEIGHT defines the share of a tenant on each round of the rules execution with
+        ENGINE_TENANT_FAIRNESS enabled. A tenant with weight 2 can process twice as many datums as a tenant with
+        weight 1. It can be defined for a specific tenant with the "hawkular-alerts.engine-tenant-weight.<tenantId>"
+        property.
+     */
+    private static final String ENGINE_TENANT_WEIGHT = "hawkular-alerts.engine-tenant-weight";
+
+    /*
+        ENGINE_RULES_SHARDS defines the number of independent rules sessions. Triggers are partitioned across them
+        by (tenantId, triggerId) and sessions are fired in parallel. A value of 1 uses a single rules session.
+     */
+    private static final String ENGINE_RULES_SHARDS = "hawkular-alerts.engine-rules-shards";
+
+    /*
+        ENGINE_FAST_PATH enables the evaluation of simple single-condition triggers in plain java, bypassing the
+        rules session. Triggers not supported by the fast path are evaluated by the rules session.
+     */
+    private static final String ENGINE_FAST_PATH = "hawkular-alerts.engine-fast-path";
+
+    /*
+        ENGINE_PERSIST_MODE defines how generated alerts and events are persisted:
+        - "sync": they are written on the rules execution, waiting for the storage. This is the default.
+        - "async": they are handed to write-behind queues, written in batches by tasks of the managed executor.
+          A rules execution that auto-resolves a trigger waits for the queued alerts to be written before to resolve
+          them, up to PERSIST_FLUSH_TIMEOUT ms. Alerts and events are visible on the storage once written, and those
+          that can not be written are spilled to ENGINE_PERSIST_SPILL_DIR, so they are lost if the node loses its
+          local disk before to replay them.
+     */
+    private static final String ENGINE_PERSIST_MODE = "hawkular-alerts.engine-persist-mode";
+
+    /*
+        ENGINE_PERSIST_QUEUE_CAPACITY defines the max number of alerts (or events) waiting to be written on "async"
+        persist mode. Alerts and events that do not fit are spilled to ENGINE_PERSIST_SPILL_DIR.
+     */
+    private static final String ENGINE_PERSIST_QUEUE_CAPACITY = "hawkular-alerts.engine-persist-queue-capacity";
+
+    /*
+        ENGINE_PERSIST_BATCH_SIZE defines the max number of alerts (or events) written in a single batch
+     */
+    private static final String ENGINE_PERSIST_BATCH_SIZE = "hawkular-alerts.engine-persist-batch-size";
+
+    /*
+        ENGINE_PERSIST_RETRIES defines the number of retries of a failed batch before to spill it
+     */
+    private static final String ENGINE_PERSIST_RETRIES = "hawkular-alerts.engine-persist-retries";
+
+    /*
+        ENGINE_PERSIST_RETRY_DELAY defined in milliseconds, delay before the first retry, doubled on each retry
+     */
+    private static final String ENGINE_PERSIST_RETRY_DELAY = "hawkular-alerts.engine-persist-retry-delay";
+
+    /*
+        ENGINE_PERSIST_SPILL_DIR defines the local directory where alerts and events are spilled when they can not be
+        queued or written. Spilled items are written back when the queues are idle.
+     */
+    private static final String ENGINE_PERSIST_SPILL_DIR = "hawkular-alerts.engine-persist-spill-dir";
+
+    /*
+        ENGINE_EVENT_TIME drives the dampening clocks from the data timestamps and the event ctimes instead of the
+        system time, so recorded data can be replayed or backfilled as fast as it can be processed, with the same
+        results as it was received live:
+        - RELAXED_TIME and STRICT_TIME dampenings use the timestamp of the evaluated data.
+        - STRICT_TIMEOUT dampenings expire when the watermark, the max timestamp of the processed data and events,
+          reaches their deadline. The data and events of a rules execution are inserted in timestamp order, the
+          rules are fired on the items before a timeout deadline before the timeout is checked.
+        Data must be sent in timestamp order per dataId.
+     */
+    private static final String ENGINE_EVENT_TIME = "hawkular-alerts.engine-event-time";
+
+    /*
+        ENGINE_SNAPSHOT_PERIOD defines the min period in ms between snapshots of the rules engine evaluation state
+        (dampening counters, previous data of rate and compare conditions, autoresolve modes). A snapshot is only taken
+        if there were rules executions since the previous one, and on shutdown.
+        The snapshot is restored after the reload() on startup, in a non-distributed deployment.
+        0 disables the snapshots.
+     */
+    private static final String ENGINE_SNAPSHOT_PERIOD = "hawkular-alerts.engine-snapshot-period";
+
+    /*
+        ENGINE_SNAPSHOT_FILE defines the local file where the rules engine evaluation state is stored.
+     */
+    private static final String ENGINE_SNAPSHOT_FILE = "hawkular-alerts.engine-snapshot-file";
+
+    /*
+        ENGINE_SNAPSHOT_MAX_AGE defines the max age in ms of a snapshot to be restored on startup. Older snapshots are
+        ignored as their state is no longer relevant.
+     */
+    private static final String ENGINE_SNAPSHOT_MAX_AGE = "hawkular-alerts.engine-snapshot-max-age";
+
+    private static final long SHUTDOWN_PERSIST_TIMEOUT = 5000L;
+
+    private static final long PERSIST_FLUSH_TIMEOUT = 5000L;
+
+    private static final int RELOAD_BATCH_SIZE = 10000;
+
+    /*
+        STRICT_TIMEOUT dampening timeouts are kept on a timing wheel with a resolution of TIMEOUTS_TICK ms and a
+        rotation of TIMEOUTS_TICK * TIMEOUTS_WHEEL_SIZE ms.
+     */
+    private static final long TIMEOUTS_TICK = 100L;
+    private static final int TIMEOUTS_WHEEL_SIZE = 1024;
+
+    /*
+        The state of the rules engine (facts, deferred data, rule activations) is collected for the metrics at most
+        once every METRICS_STATE_PERIOD ms, as it can be proportional to the number of triggers.
+     */
+    private static final long METRICS_STATE_PERIOD = 1000L;
+
+    private enum EngineMode {
+        TIMER, BATCH
+    }
+
     private int delay;
     private int period;
-
-    private final List<Data> pendingData;
-    private final List<Event> pendingEvents;
+    private EngineMode mode;
+    private int batchSize;
+    private int batchLinger;
+    private int rulesShards;
+    private boolean fastPath;
+    private boolean persistAsync;
+    private long snapshotPeriod;
+    private long snapshotMaxAge;
+    private boolean eventTime;
+
+    // Max timestamp of the data and events processed on ENGINE_EVENT_TIME, only accessed by the rules execution
+    private long watermark = 0L;
+
+    private final IngestQueue<Data> pendingData;
+    private final IngestQueue<Event> pendingEvents;
+    private final IngestQueue<DataBatch> pendingBatches;
+    // Samples of the pending batches
+    private final AtomicInteger pendingBatchSamples = new AtomicInteger();
+    private final boolean queueBatches;
+    private final ReorderBuffer<Data> reorderData;
+    private final CoalescedDataIndex coalescedData = new CoalescedDataIndex();
+    private final AtomicLong coalescedDataSkipped = new AtomicLong();
     private final List<Alert> alerts;
     private final List<Event> events;
-    private final Set<Dampening> pendingTimeouts;
+    private final TimeoutWheel<Dampening> pendingTimeouts;
     private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
     private final Set<Trigger> disabledTriggers;
 
     private final Timer wakeUpTimer;
     private TimerTask rulesTask;
+    private volatile BatchDispatcher batchDispatcher;
+
+    private final WriteBehindQueue<Alert> alertsWriter;
+    private final WriteBehindQueue<Event> eventsWriter;
+
+    private final EngineSnapshot snapshot;
+    private boolean restoreSnapshot = false;
+    private volatile boolean snapshotDirty = false;
+    private volatile long nextSnapshot = 0L;
+
+    private final EngineMetrics metrics = new EngineMetrics();
+    private final TimedActionsService timedActions = new TimedActionsService();
+    private long nextMetricsState = 0L;
 
     // All incoming Data and Events go through first-line global filtering and therefore, in a non-distributed
     // env the global filtering is equivalent to node-specific filtering. As such we don't need to filter
@@ -110,6 +366,9 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     @EJB
     RulesEngine rules;
 
+    // The sharded rules engine owns a thread pool, it is closed on shutdown
+    private ShardedRulesEngineImpl shardedRules;
+
     @EJB
     DefinitionsService definitions;
 
@@ -122,15 +381,52 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     @EJB
     PartitionManager partitionManager;
 
+    @EJB
+    PropertiesService properties;
+
     @Resource
     private ManagedExecutorService executor;
 
     public AlertsEngineImpl() {
-        pendingData = new ArrayList<>();
-        pendingEvents = new ArrayList<>();
+        int queueCapacity = new Integer(AlertProperties.getProperty(ENGINE_QUEUE_CAPACITY, "1048576"));
+        Policy queuePolicy = Policy.valueOf(AlertProperties.getProperty(ENGINE_QUEUE_POLICY, "block").trim()
+                .toUpperCase());
+        int queueOverflowDepth = new Integer(AlertProperties.getProperty(ENGINE_QUEUE_OVERFLOW_DEPTH, "10"));
+        int batchQueueCapacity = new Integer(AlertProperties.getProperty(ENGINE_QUEUE_BATCH_CAPACITY, "1024"));
+        queueBatches = Policy.BLOCK == queuePolicy || Policy.REJECT == queuePolicy;
+        if (Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_TENANT_FAIRNESS, "false"))) {
+            pendingData = new TenantPendingQueue<>("Data", queuePolicy, Data::getTenantId,
+                    d -> d.getTenantId() + ":" + d.getSource() + ":" + d.getId(), queueOverflowDepth,
+                    this::getTenantQuota, this::signalPending);
+            pendingEvents = new TenantPendingQueue<>("Events", queuePolicy, Event::getTenantId,
+                    e -> e.getTenantId() + ":" + e.getDataSource() + ":" + e.getDataId(), queueOverflowDepth,
+                    this::getTenantQuota, this::signalPending);
+            pendingBatches = new TenantPendingQueue<>("DataBatch", queuePolicy, DataBatch::getTenantId,
+                    b -> b.getTenantId() + ":" + b.getSource(), queueOverflowDepth,
+                    tenantId -> {
+                        Quota quota = getTenantQuota(tenantId);
+                        return new Quota(Math.min(quota.getCapacity(), batchQueueCapacity), quota.getWeight());
+                    }, this::signalPending);
+        } else {
+            pendingData = new PendingQueue<>("Data", queueCapacity, queuePolicy,
+                    d -> d.getTenantId() + ":" + d.getSource() + ":" + d.getId(), queueOverflowDepth,
+                    this::signalPending);
+            pendingEvents = new PendingQueue<>("Events", queueCapacity, queuePolicy,
+                    e -> e.getTenantId() + ":" + e.getDataSource() + ":" + e.getDataId(), queueOverflowDepth,
+                    this::signalPending);
+            pendingBatches = new PendingQueue<>("DataBatch", batchQueueCapacity, queuePolicy,
+                    b -> b.getTenantId() + ":" + b.getSource(), queueOverflowDepth, this::signalPending);
+        }
+        long reorderLateness = new Long(AlertProperties.getProperty(ENGINE_REORDER_LATENESS, "0"));
+        int reorderDepth = new Integer(AlertProperties.getProperty(ENGINE_REORDER_DEPTH, "100"));
+        reorderData = reorderLateness > 0 ? new ReorderBuffer<>(reorderLateness, reorderDepth,
+                d -> d.getTenantId() + ":" + d.getSource() + ":" + d.getId(), Data::getTimestamp) : null;
         alerts = new ArrayList<>();
         events = new ArrayList<>();
-        pendingTimeouts = new HashSet<>();
+        eventTime = Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_EVENT_TIME, "false"));
+        // On event time the watermark can start at any time in the past
+        pendingTimeouts = new TimeoutWheel<>(TIMEOUTS_TICK, TIMEOUTS_WHEEL_SIZE,
+                d -> d.getTrueEvalsStartTime() + d.getEvalTimeSetting(), eventTime ? 0L : System.currentTimeMillis());
         autoResolvedTriggers = new HashMap<>();
         disabledTriggers = new HashSet<>();
 
@@ -138,6 +434,35 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
         delay = new Integer(AlertProperties.getProperty(ENGINE_DELAY, "1000"));
         period = new Integer(AlertProperties.getProperty(ENGINE_PERIOD, "2000"));
+        mode = EngineMode.valueOf(AlertProperties.getProperty(ENGINE_MODE, "timer").trim().toUpperCase());
+        batchSize = new Integer(AlertProperties.getProperty(ENGINE_BATCH_SIZE, "5000"));
+        batchLinger = new Integer(AlertProperties.getProperty(ENGINE_BATCH_LINGER, "10"));
+        rulesShards = new Integer(AlertProperties.getProperty(ENGINE_RULES_SHARDS, "1"));
+        fastPath = Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_FAST_PATH, "false"));
+
+        persistAsync = "async".equalsIgnoreCase(AlertProperties.getProperty(ENGINE_PERSIST_MODE, "sync").trim());
+        int persistCapacity = new Integer(AlertProperties.getProperty(ENGINE_PERSIST_QUEUE_CAPACITY, "100000"));
+        int persistBatchSize = new Integer(AlertProperties.getProperty(ENGINE_PERSIST_BATCH_SIZE, "1000"));
+        int persistRetries = new Integer(AlertProperties.getProperty(ENGINE_PERSIST_RETRIES, "3"));
+        long persistRetryDelay = new Long(AlertProperties.getProperty(ENGINE_PERSIST_RETRY_DELAY, "1000"));
+        File spillDir = new File(AlertProperties.getProperty(ENGINE_PERSIST_SPILL_DIR, defaultDataPath("spill")));
+        alertsWriter = new WriteBehindQueue<>("alerts", Alert.class, persistCapacity, persistBatchSize,
+                persistRetries, persistRetryDelay, spillDir, batch -> alertsService.addAlerts(batch));
+        eventsWriter = new WriteBehindQueue<>("events", Event.class, persistCapacity, persistBatchSize,
+                persistRetries, persistRetryDelay, spillDir, batch -> alertsService.persistEvents(batch));
+
+        snapshotPeriod = new Long(AlertProperties.getProperty(ENGINE_SNAPSHOT_PERIOD, "0"));
+        snapshotMaxAge = new Long(AlertProperties.getProperty(ENGINE_SNAPSHOT_MAX_AGE, "600000"));
+        snapshot = snapshotPeriod > 0 ? new EngineSnapshot(new File(AlertProperties.getProperty(ENGINE_SNAPSHOT_FILE,
+                defaultDataPath("engine.snapshot")))) : null;
+    }
+
+    private static String defaultDataPath(String name) {
+        String dataDir = System.getProperty("jboss.server.data.dir");
+        if (null != dataDir) {
+            return dataDir + File.separator + "hawkular-alerts" + File.separator + name;
+        }
+        return System.getProperty("java.io.tmpdir") + File.separator + "hawkular-alerts-" + name;
     }
 
     public RulesEngine getRules() {
@@ -172,9 +497,22 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         this.alertsService = alertsService;
     }
 
+    public void setExecutor(ManagedExecutorService executor) {
+        this.executor = executor;
+    }
+
     @PostConstruct
     public void initServices() {
         try {
+            if (rulesShards > 1) {
+                log.debug("Using [" + rulesShards + "] sharded rules sessions");
+                shardedRules = new ShardedRulesEngineImpl(rulesShards);
+                rules = shardedRules;
+            }
+            if (fastPath) {
+                log.debug("Using fast path for simple triggers");
+                rules = new FastPathRulesEngineImpl(rules);
+            }
             distributed = partitionManager.isDistributed();
             if (distributed) {
                 log.debug("Registering PartitionManager listeners...");
@@ -182,6 +520,12 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 partitionManager.registerDataListener(this);
                 partitionManager.registerTriggerListener(this);
             }
+            if (persistAsync) {
+                alertsWriter.start(executor);
+                eventsWriter.start(executor);
+            }
+            registerMetrics();
+            restoreSnapshot = null != snapshot && !distributed;
             executor.submit(() -> {
                 /*
                     A reload() operation means that all triggers from the backend should be reloaded into
@@ -200,72 +544,219 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
     @PreDestroy
     public void shutdown() {
-        rulesTask.cancel();
+        stopRulesTask();
         wakeUpTimer.cancel();
+        if (snapshotDirty) {
+            saveSnapshot();
+        }
+        alertsWriter.stop(SHUTDOWN_PERSIST_TIMEOUT);
+        eventsWriter.stop(SHUTDOWN_PERSIST_TIMEOUT);
+        unregisterMetrics();
+        if (null != shardedRules) {
+            shardedRules.close();
+        }
+    }
+
+    private void registerMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(EngineMetrics.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            metrics.setTenantStats(this::getTenantStats);
+            server.registerMBean(metrics, name);
+        } catch (Exception e) {
+            msgLog.warnCannotRegisterMetrics(EngineMetrics.OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    private void unregisterMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(EngineMetrics.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.debug("Cannot unregister " + EngineMetrics.OBJECT_NAME + ": " + e.getMessage());
+        }
     }
 
     @Override
     public void clear() {
-        rulesTask.cancel();
+        stopRulesTask();
 
         rules.clear();
+        coalescedData.clear();
 
         pendingData.clear();
         pendingEvents.clear();
+        pendingBatches.clear();
+        pendingBatchSamples.set(0);
+        if (null != reorderData) {
+            reorderData.clear();
+        }
         alerts.clear();
         events.clear();
         pendingTimeouts.clear();
         autoResolvedTriggers.clear();
         disabledTriggers.clear();
+        watermark = 0L;
 
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        startRulesTask();
     }
 
     @Override
     public void reload() {
         log.debug("Start a full reload of the AlertsEngine");
         rules.reset();
+        coalescedData.clear();
         if (distributed) {
             alertsEngineCache.clear();
         }
-        if (rulesTask != null) {
-            rulesTask.cancel();
-        }
-
-        Collection<Trigger> triggers = null;
-        try {
-            triggers = definitions.getAllTriggers();
-        } catch (Exception e) {
-            log.debug(e.getMessage(), e);
-            msgLog.errorDefinitionsService("Triggers", e.getMessage());
-        }
+        stopRulesTask();
 
-        if (triggers != null && !triggers.isEmpty()) {
+        if (distributed) {
+            Collection<Trigger> triggers = null;
+            try {
+                triggers = definitions.getAllTriggers();
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+                msgLog.errorDefinitionsService("Triggers", e.getMessage());
+            }
 
-            triggers.stream().filter(Trigger::isLoadable).forEach(t -> {
+            if (triggers != null && !triggers.isEmpty()) {
                 /*
                     In distributed scenario a reload should delegate into the PartitionManager to load the trigger on
                     the node which belongs
                  */
-                if (distributed) {
-                    partitionManager.notifyTrigger(Operation.UPDATE, t.getTenantId(), t.getId());
-                } else {
-                    reloadTrigger(t);
-                }
-            });
+                triggers.stream().filter(Trigger::isLoadable).forEach(t ->
+                        partitionManager.notifyTrigger(Operation.UPDATE, t.getTenantId(), t.getId()));
+            }
+        } else {
+            loadAllTriggers();
+            if (restoreSnapshot) {
+                restoreSnapshot = false;
+                restoreSnapshot();
+            }
         }
 
         rules.addGlobal("log", log);
-        rules.addGlobal("actions", actions);
+        rules.addGlobal("actions", timedActions);
         rules.addGlobal("alerts", alerts);
         rules.addGlobal("events", events);
         rules.addGlobal("pendingTimeouts", pendingTimeouts);
         rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
         rules.addGlobal("disabledTriggers", disabledTriggers);
+        rules.addGlobal("eventTime", eventTime);
+
+        startRulesTask();
+    }
+
+    /*
+        Load the whole definitions into the rules engine, fetched in bulk instead of querying the conditions and
+        dampenings of every trigger. Facts are added in batches of RELOAD_BATCH_SIZE facts.
+     */
+    private void loadAllTriggers() {
+        Collection<FullTrigger> fullTriggers = null;
+        try {
+            fullTriggers = definitions.getAllFullTriggers();
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.errorDefinitionsService("Triggers", e.getMessage());
+        }
+
+        if (fullTriggers == null || fullTriggers.isEmpty()) {
+            return;
+        }
+
+        List<Object> facts = new ArrayList<>(RELOAD_BATCH_SIZE);
+        int numTriggers = 0;
+        for (FullTrigger fullTrigger : fullTriggers) {
+            Trigger trigger = fullTrigger.getTrigger();
+            if (!trigger.isLoadable()) {
+                continue;
+            }
+            facts.add(trigger);
+            facts.addAll(fullTrigger.getConditions());
+            facts.addAll(fullTrigger.getDampenings());
+            coalescedData.add(trigger, fullTrigger.getConditions());
+            numTriggers++;
+            if (facts.size() >= RELOAD_BATCH_SIZE) {
+                rules.addFacts(facts);
+                facts.clear();
+            }
+        }
+        if (!facts.isEmpty()) {
+            rules.addFacts(facts);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + numTriggers + " triggers");
+        }
+    }
+
+    private void restoreSnapshot() {
+        try {
+            int restored = snapshot.restore(rules, snapshotMaxAge);
+            if (restored > 0) {
+                // Arm the restored timeouts, the DampeningTimeoutAdd rule only arms them on the first true eval
+                pendingTimeouts.addAll(EngineSnapshot.pendingTimeouts(rules));
+                msgLog.infoEngineSnapshotRestored(restored, snapshot.getFile().getPath());
+            }
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.warnEngineSnapshot(snapshot.getFile().getPath(), e.getMessage());
+        }
+    }
+
+    /*
+        Called from the RulesInvoker, or once the rules task is stopped, so the rules engine state is not modified
+        while the snapshot is taken.
+     */
+    private void saveSnapshot() {
+        snapshotDirty = false;
+        nextSnapshot = System.currentTimeMillis() + snapshotPeriod;
+        try {
+            snapshot.save(rules);
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.warnEngineSnapshot(snapshot.getFile().getPath(), e.getMessage());
+        }
+    }
 
+    /*
+        Returns the time of the next snapshot, or Long.MAX_VALUE if there is no pending snapshot
+     */
+    private long nextSnapshotTime() {
+        return null != snapshot && snapshotDirty ? nextSnapshot : Long.MAX_VALUE;
+    }
+
+    private void startRulesTask() {
         rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        if (EngineMode.TIMER == mode) {
+            wakeUpTimer.schedule(rulesTask, delay, period);
+        } else {
+            /*
+                On "batch" mode the BatchDispatcher runs on the managed executor, it waits for incoming data and events
+                and invokes the RulesInvoker as soon as there is something to process.
+                With nothing pending it only wakes up at the deadline of the next dampening timeout, data release or
+                snapshot, if any.
+             */
+            batchDispatcher = new BatchDispatcher(rulesTask, this::numPending, this::nextDeadline, delay, batchSize,
+                    batchLinger, TIMEOUTS_TICK);
+            executor.submit(batchDispatcher);
+        }
+    }
+
+    private void stopRulesTask() {
+        if (rulesTask != null) {
+            rulesTask.cancel();
+        }
+        if (batchDispatcher != null) {
+            batchDispatcher.shutdown();
+            batchDispatcher = null;
+        }
     }
 
     @Override
@@ -375,6 +866,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
                 rules.addFact(trigger);
                 rules.addFacts(conditionSet);
+                coalescedData.add(trigger, conditionSet);
                 if (!dampenings.isEmpty()) {
                     rules.addFacts(dampenings);
                 }
@@ -420,27 +912,16 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     }
 
     private void removeTrigger(Trigger trigger) {
+        coalescedData.remove(trigger.getTenantId(), trigger.getId());
         if (null != rules.getFact(trigger)) {
-            // First remove the related Trigger facts from the engine
-            rules.removeFact(trigger);
+            // Remove the Trigger and the related Condition and Dampening facts from the engine.
+            // The engine indexes these facts by trigger, so there is no need to loop through every Fact.
+            rules.removeTriggerFacts(trigger.getTenantId(), trigger.getId());
 
             // Remove dataId associated from cache
             if (distributed) {
                 alertsEngineCache.remove(trigger.getTenantId(), trigger.getId());
             }
-
-            // then remove everything else.
-            // We may want to do this with rules, because as is, we need to loop through every Fact in
-            // the rules engine doing a relatively slow check.
-            final String triggerId = trigger.getId();
-            rules.removeFacts(t -> {
-                if (t instanceof Dampening) {
-                    return ((Dampening)t).getTriggerId().equals(triggerId);
-                } else if (t instanceof Condition) {
-                    return ((Condition)t).getTriggerId().equals(triggerId);
-                }
-                return false;
-            });
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("Trigger not found. Not removed from rulebase " + trigger.toString());
@@ -448,6 +929,89 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
+    @Override
+    public Map<String, Long> getPendingStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pendingData", (long) pendingData.size());
+        stats.put("pendingDataDropped", pendingData.getDropped());
+        stats.put("pendingDataCoalesced", pendingData.getCoalesced());
+        stats.put("pendingDataRejected", pendingData.getRejected());
+        stats.put("pendingEvents", (long) pendingEvents.size());
+        stats.put("pendingEventsDropped", pendingEvents.getDropped());
+        stats.put("pendingEventsCoalesced", pendingEvents.getCoalesced());
+        stats.put("pendingEventsRejected", pendingEvents.getRejected());
+        stats.put("pendingBatches", (long) pendingBatches.size());
+        stats.put("pendingBatchSamples", (long) pendingBatchSamples.get());
+        stats.put("pendingBatchesDropped", pendingBatches.getDropped());
+        stats.put("pendingBatchesCoalesced", pendingBatches.getCoalesced());
+        stats.put("pendingBatchesRejected", pendingBatches.getRejected());
+        stats.put("coalescedDataSkipped", coalescedDataSkipped.get());
+        if (null != reorderData) {
+            stats.put("reorderData", (long) reorderData.size());
+            stats.put("reorderDataKeys", (long) reorderData.getNumKeys());
+            stats.put("reorderDataLate", reorderData.getLate());
+            stats.put("reorderDataDropped", reorderData.getDropped());
+        }
+        addPersistStats(stats, "persistAlerts", alertsWriter);
+        addPersistStats(stats, "persistEvents", eventsWriter);
+        return stats;
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getEngineStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        stats.put("cycles", metrics.getStats());
+        stats.put("ruleActivations", new TreeMap<>(metrics.getRuleActivations()));
+        return stats;
+    }
+
+    /*
+        Published through JMX only, the status endpoint is not tenant scoped and must not list the tenants.
+     */
+    private Map<String, Map<String, Long>> getTenantStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        addTenantStats(stats, "tenantData", pendingData);
+        addTenantStats(stats, "tenantEvents", pendingEvents);
+        addTenantStats(stats, "tenantBatches", pendingBatches);
+        return stats;
+    }
+
+    /*
+        Resolved when the pending sub-queue of a tenant is created, so quotas can be changed for a tenant once its
+        sub-queue is released after an idle period.
+     */
+    private Quota getTenantQuota(String tenantId) {
+        String defaultCapacity = getProperty(ENGINE_TENANT_QUEUE_CAPACITY, "4096");
+        String defaultWeight = getProperty(ENGINE_TENANT_WEIGHT, "1");
+        int capacity = new Integer(getProperty(ENGINE_TENANT_QUEUE_CAPACITY + "." + tenantId, defaultCapacity));
+        int weight = new Integer(getProperty(ENGINE_TENANT_WEIGHT + "." + tenantId, defaultWeight));
+        return new Quota(capacity, weight);
+    }
+
+    private String getProperty(String key, String defaultValue) {
+        return null == properties ? AlertProperties.getProperty(key, defaultValue)
+                : properties.getProperty(key, defaultValue);
+    }
+
+    private void addTenantStats(Map<String, Map<String, Long>> stats, String prefix, IngestQueue<?> queue) {
+        if (queue instanceof TenantPendingQueue) {
+            for (Map.Entry<String, Map<String, Long>> tenant : ((TenantPendingQueue<?>) queue).getTenantStats()
+                    .entrySet()) {
+                stats.put(prefix + "." + tenant.getKey(), tenant.getValue());
+            }
+        }
+    }
+
+    private void addPersistStats(Map<String, Long> stats, String prefix, WriteBehindQueue<?> writer) {
+        stats.put(prefix + "Queue", (long) writer.getQueueSize());
+        stats.put(prefix + "Written", writer.getWritten());
+        stats.put(prefix + "Spilled", writer.getSpilled());
+        stats.put(prefix + "Replayed", writer.getReplayed());
+        stats.put(prefix + "Dropped", writer.getDropped());
+        stats.put(prefix + "WriteLatencyAvg", writer.getAvgWriteLatency());
+        stats.put(prefix + "WriteLatencyMax", writer.getMaxWriteLatency());
+    }
+
     @Override
     public void sendData(Collection<Data> data) {
         if (data == null) {
@@ -464,6 +1028,20 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         sendData(Collections.singleton(data));
     }
 
+    @Override
+    public void sendData(DataBatch batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("DataBatch must be not null");
+        }
+        addPendingData(batch);
+        if (distributed) {
+            /*
+                Other nodes are notified of the individual Data, as the partition manager propagates Data
+             */
+            partitionManager.notifyData(batch.toData());
+        }
+    }
+
     @Override
     public void sendEvent(Event event) {
         sendEvents(Collections.singleton(event));
@@ -483,88 +1061,183 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     private void addPendingData(Collection<Data> data) {
         Collection<Data> filteredData = data;
         if (distributed) {
-            filteredData = new ArrayList<>(data);
-            for (Iterator<Data> i = filteredData.iterator(); i.hasNext(); ) {
-                Data d = i.next();
-                if (!alertsEngineCache.isDataIdActive(d.getId())) {
-                    i.remove();
+            filteredData = new ArrayList<>(data.size());
+            for (Data d : data) {
+                if (alertsEngineCache.isDataIdActive(d.getId())) {
+                    filteredData.add(d);
                 }
             }
         }
-        synchronized (pendingData) {
-            pendingData.addAll(filteredData);
-        }
+        pendingData.offer(filteredData);
+        signalPending();
     }
 
     private void addPendingData(Data data) {
         addPendingData(Collections.singleton(data));
     }
 
+    private void addPendingData(DataBatch batch) {
+        DataBatch filteredBatch = batch;
+        if (distributed) {
+            filteredBatch = batch.filter(alertsEngineCache::isDataIdActive);
+        }
+        if (filteredBatch.isEmpty()) {
+            return;
+        }
+        if (!queueBatches) {
+            /*
+                The overflow of the queue keeps the most recent items per key, a batch can hold many dataIds
+             */
+            pendingData.offer(filteredBatch.toData());
+            signalPending();
+            return;
+        }
+        pendingBatches.offer(Collections.singleton(filteredBatch));
+        pendingBatchSamples.addAndGet(filteredBatch.size());
+        signalPending();
+    }
+
     private void addPendingEvents(Collection<Event> events) {
         Collection<Event> filteredEvents = events;
         if (distributed) {
-            filteredEvents = new ArrayList<>(events);
-            for (Iterator<Event> i = filteredEvents.iterator(); i.hasNext(); ) {
-                Event e = i.next();
-                if (!alertsEngineCache.isDataIdActive(e.getDataId())) {
-                    i.remove();
+            filteredEvents = new ArrayList<>(events.size());
+            for (Event e : events) {
+                if (alertsEngineCache.isDataIdActive(e.getDataId())) {
+                    filteredEvents.add(e);
                 }
             }
         }
-        synchronized (pendingEvents) {
-            pendingEvents.addAll(filteredEvents);
-        }
+        pendingEvents.offer(filteredEvents);
+        signalPending();
     }
 
     private void addPendingEvent(Event event) {
         addPendingEvents(Collections.singleton(event));
     }
 
-    private synchronized Collection<Data> getAndClearPendingData() {
-        Collection<Data> result = new ArrayList<>(pendingData);
-        pendingData.clear();
-        return result;
+    /*
+        Wake up the BatchDispatcher, if any, as there is new data or events to process
+     */
+    private void signalPending() {
+        BatchDispatcher dispatcher = batchDispatcher;
+        if (null != dispatcher) {
+            dispatcher.signal();
+        }
     }
 
-    private synchronized Collection<Event> getAndClearPendingEvents() {
-        Collection<Event> result = new ArrayList<>(pendingEvents);
-        pendingEvents.clear();
-        return result;
+    private boolean hasPending() {
+        return !pendingData.isEmpty() || !pendingEvents.isEmpty() || !pendingBatches.isEmpty();
+    }
+
+    /*
+        Returns the number of pending datums and events, counting the samples of the pending batches
+     */
+    private int numPending() {
+        return pendingData.size() + pendingEvents.size() + pendingBatchSamples.get();
+    }
+
+    /*
+        Returns the time of the next dampening timeout, data release or snapshot, Long.MAX_VALUE if none.
+        Timeouts are armed by the rules execution, on the dispatcher thread, so the deadline can not move earlier
+        while the dispatcher waits.
+     */
+    private long nextDeadline() {
+        // On event time the timeouts only expire with new data
+        long nextDeadline = Math.min(eventTime ? Long.MAX_VALUE : pendingTimeouts.nextDeadline(), nextSnapshotTime());
+        if (null != reorderData && !reorderData.isEmpty()) {
+            nextDeadline = Math.min(nextDeadline, reorderData.nextRelease());
+        }
+        return nextDeadline;
     }
 
     private class RulesInvoker extends TimerTask {
+        private final Map<String, Data> coalescedBatch = new HashMap<>();
+        private final List<DataBatch> drainedBatches = new ArrayList<>(1);
+        private int coalescedSkipped = 0;
+        private volatile boolean cancelled = false;
+
+        // On event time the Data and Events of an execution are staged to be inserted in timestamp order
+        private final List<Data> stagedData = new ArrayList<>();
+        private final List<Event> stagedEvents = new ArrayList<>();
+        private int stagedSkipped = 0;
+
         @Override
-        public void run() {
-            int numTimeouts = checkPendingTimeouts();
+        public boolean cancel() {
+            cancelled = true;
+            return super.cancel();
+        }
 
-            if (!pendingData.isEmpty() || !pendingEvents.isEmpty() || numTimeouts > 0) {
-                Collection<Data> newData = getAndClearPendingData();
-                Collection<Event> newEvents = getAndClearPendingEvents();
+        @Override
+        public void run() {
+            /*
+                Every rules execution processes at most batchSize datums and events, so the tenant fairness of the
+                pending queues applies on each execution. On "timer" mode a tick runs as many executions as needed to
+                process the items pending at its start.
+             */
+            int rounds = EngineMode.TIMER == mode ? (numPending() + batchSize - 1) / batchSize : 1;
+            do {
+                execute();
+            } while (--rounds > 0 && !cancelled && hasPending());
+
+            if (System.currentTimeMillis() >= nextSnapshotTime()) {
+                saveSnapshot();
+            }
+        }
 
-                if (log.isDebugEnabled()) {
-                    log.debug("Executing rules engine on " + newData.size() + " datums, "
-                            + newEvents.size() + " events and "
-                            + numTimeouts +" dampening timeouts.");
-                }
+        private void execute() {
+            long start = System.nanoTime();
+            long now = System.currentTimeMillis();
+            int numTimeouts = eventTime ? 0 : checkPendingTimeouts(now);
+            boolean reorderDue = null != reorderData && !reorderData.isEmpty() && reorderData.nextRelease() <= now;
 
+            if (hasPending() || numTimeouts > 0 || reorderDue) {
                 try {
-                    if (newData.isEmpty() && newEvents.isEmpty()) {
+                    /*
+                        Pending items are handed directly from the queues to the rules engine.
+                        The number of drained items is bounded to the queue size at the start of the execution, so
+                        concurrent producers can not keep a single execution running forever.
+                     */
+                    int maxData = Math.min(pendingData.size(), batchSize);
+                    int maxEvents = Math.min(pendingEvents.size(), batchSize);
+                    Consumer<Data> insertData = eventTime ? stagedData::add : this::addData;
+                    Consumer<Data> dataSink = null == reorderData ? insertData : d -> reorderData.add(d, now);
+                    int numData = pendingData.drain(dataSink, maxData);
+                    numData += drainBatches(dataSink, batchSize - numData);
+                    if (null != reorderData) {
+                        numData = reorderData.release(now, insertData);
+                    }
+                    int numEvents = pendingEvents.drain(eventTime ? stagedEvents::add : this::addEvent, maxEvents);
+                    if (eventTime) {
+                        numTimeouts = addInTimeOrder();
+                        numData -= stagedSkipped;
+                    }
+                    numData -= addCoalescedData();
+                    long inserted = System.nanoTime();
+                    timedActions.resetTime();
+
+                    if (log.isDebugEnabled()) {
+                        log.debug("Executing rules engine on " + numData + " datums, "
+                                + numEvents + " events and "
+                                + numTimeouts +" dampening timeouts.");
+                    }
+
+                    if (numData == 0 && numEvents == 0) {
                         rules.fireNoData();
-                    } else {
-                        if (!newData.isEmpty()) {
-                            rules.addData(newData);
-                            newData.clear();
-                        }
-                        if (!newEvents.isEmpty()) {
-                            rules.addEvents(newEvents);
-                            newEvents.clear();
-                        }
                     }
 
                     rules.fire();
-                    alertsService.addAlerts(alerts);
+                    long fired = System.nanoTime();
+                    if (persistAsync) {
+                        /*
+                            The rules execution never waits on storage, alerts and events are written in background
+                         */
+                        alertsWriter.offer(alerts);
+                        eventsWriter.offer(events);
+                    } else {
+                        alertsService.addAlerts(alerts);
+                        alertsService.persistEvents(events);
+                    }
                     alerts.clear();
-                    alertsService.persistEvents(events);
                     if (distributed) {
                         /*
                             Generated events on a node should be notified to other nodes for chained triggers
@@ -572,9 +1245,14 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                         partitionManager.notifyEvents(events);
                     }
                     events.clear();
+                    long persisted = System.nanoTime();
                     handleDisabledTriggers();
                     handleAutoResolvedTriggers();
 
+                    metrics.recordCycle(inserted - start, fired - inserted, persisted - fired,
+                            timedActions.getTime(), System.nanoTime() - start, numData, numEvents, numTimeouts);
+                    recordMetricsState();
+
                 } catch (Exception e) {
                     e.printStackTrace();
                     if (log.isDebugEnabled()) {
@@ -584,44 +1262,200 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 } finally {
                     alerts.clear();
                     events.clear();
+                    snapshotDirty = null != snapshot;
                 }
             }
         }
 
-        private int checkPendingTimeouts() {
-            if (pendingTimeouts.isEmpty()) {
+        private void recordMetricsState() {
+            long now = System.currentTimeMillis();
+            if (now >= nextMetricsState) {
+                nextMetricsState = now + METRICS_STATE_PERIOD;
+                metrics.recordState(rules.getDeferredCount(), rules.getFactCount(), pendingTimeouts.size(),
+                        rules.getRuleActivations());
+            }
+        }
+
+        /*
+            Batches are drained whole, at least one per execution, while the number of samples is under the budget.
+            Their samples are converted to Data right before being handed to the rules engine. Returns the number of
+            samples.
+         */
+        private int drainBatches(Consumer<Data> dataSink, int budget) {
+            int numData = 0;
+            for (int maxBatches = pendingBatches.size(); maxBatches > 0 && (numData == 0 || numData < budget);
+                    maxBatches--) {
+                drainedBatches.clear();
+                if (0 == pendingBatches.drain(drainedBatches::add, 1)) {
+                    break;
+                }
+                DataBatch batch = drainedBatches.get(0);
+                pendingBatchSamples.addAndGet(-batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    dataSink.accept(batch.toData(i));
+                }
+                numData += batch.size();
+            }
+            drainedBatches.clear();
+            return numData;
+        }
+
+        private void addData(Data data) {
+            if (eventTime) {
+                watermark = Math.max(watermark, data.getTimestamp());
+            }
+            if (coalescedData.isCoalesced(data.getTenantId(), data.getId())) {
+                String key = data.getTenantId() + ":" + data.getSource() + ":" + data.getId();
+                Data previous = coalescedBatch.put(key, data);
+                if (null != previous) {
+                    if (previous.getTimestamp() > data.getTimestamp()) {
+                        coalescedBatch.put(key, previous);
+                    }
+                    coalescedSkipped++;
+                }
+                return;
+            }
+            rules.addData(data);
+        }
+
+        /*
+            Only the latest Data per coalesced dataId of the execution is handed to the rules engine. Returns the
+            number of skipped Data.
+         */
+        private int addCoalescedData() {
+            if (coalescedBatch.isEmpty()) {
                 return 0;
             }
+            for (Data data : coalescedBatch.values()) {
+                rules.addData(data);
+            }
+            coalescedBatch.clear();
+            int skipped = coalescedSkipped;
+            coalescedDataSkipped.addAndGet(skipped);
+            coalescedSkipped = 0;
+            return skipped;
+        }
 
-            long now = System.currentTimeMillis();
-            Set<Dampening> timeouts = null;
-            for (Dampening d : pendingTimeouts) {
-                if (now < d.getTrueEvalsStartTime() + d.getEvalTimeSetting()) {
-                    continue;
+        /*
+            Insert the staged Data and Events in timestamp order, advancing the watermark. When the next item reaches
+            the deadline of a pending dampening timeout, the rules are fired on the items inserted so far before the
+            timeout is checked, so an evaluation before the deadline can still reset the dampening. Returns the number
+            of expired timeouts.
+         */
+        private int addInTimeOrder() {
+            stagedData.sort(Comparator.comparingLong(Data::getTimestamp));
+            stagedEvents.sort(Comparator.comparingLong(Event::getCtime));
+            stagedSkipped = 0;
+            int numTimeouts = 0;
+            boolean inserted = false;
+            int i = 0;
+            int j = 0;
+            try {
+                while (i < stagedData.size() || j < stagedEvents.size()) {
+                    boolean nextIsData = j == stagedEvents.size() || (i < stagedData.size()
+                            && stagedData.get(i).getTimestamp() <= stagedEvents.get(j).getCtime());
+                    long next = nextIsData ? stagedData.get(i).getTimestamp() : stagedEvents.get(j).getCtime();
+                    if (next >= pendingTimeouts.nextDeadline()) {
+                        if (inserted) {
+                            stagedSkipped += addCoalescedData();
+                            rules.fire();
+                            inserted = false;
+                        }
+                        watermark = Math.max(watermark, next);
+                        numTimeouts += checkPendingTimeouts(watermark);
+                    }
+                    if (nextIsData) {
+                        addData(stagedData.get(i++));
+                    } else {
+                        addEvent(stagedEvents.get(j++));
+                    }
+                    inserted = true;
                 }
+                return numTimeouts + checkPendingTimeouts(watermark);
+            } finally {
+                stagedData.clear();
+                stagedEvents.clear();
+            }
+        }
+
+        private void addEvent(Event event) {
+            if (eventTime) {
+                watermark = Math.max(watermark, event.getCtime());
+            }
+            rules.addEvent(event);
+        }
 
+        private int checkPendingTimeouts(long now) {
+            if (pendingTimeouts.isEmpty()) {
+                return 0;
+            }
+
+            int numTimeouts = 0;
+            for (Dampening d : pendingTimeouts.pollExpired(now)) {
                 d.setSatisfied(true);
                 try {
                     if (log.isDebugEnabled()) {
                         log.debug("Dampening Timeout Hit! " + d.toString());
                     }
                     rules.updateFact(d);
-                    if (null == timeouts) {
-                        timeouts = new HashSet<>();
-                    }
-                    timeouts.add(d);
+                    numTimeouts++;
                 } catch (Exception e) {
                     log.error("Unable to update Dampening Fact on Timeout! " + d.toString(), e);
+                    // Already expired, it is retried on the next check
+                    pendingTimeouts.add(d);
                 }
-
             }
 
-            if (null == timeouts) {
-                return 0;
+            return numTimeouts;
+        }
+    }
+
+    /*
+        The ActionsService exposed to the rules, it measures the time spent on sending actions for the metrics.
+        Sharded rules sessions can send actions concurrently.
+     */
+    private class TimedActionsService implements ActionsService {
+        private final LongAdder time = new LongAdder();
+
+        void resetTime() {
+            time.reset();
+        }
+
+        long getTime() {
+            return time.sum();
+        }
+
+        @Override
+        public void send(TriggerAction triggerAction, Event event) {
+            if (null == actions) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                actions.send(triggerAction, event);
+            } finally {
+                time.add(System.nanoTime() - start);
             }
+        }
+
+        @Override
+        public void updateResult(Action action) {
+            actions.updateResult(action);
+        }
+
+        @Override
+        public Page<Action> getActions(String tenantId, ActionsCriteria criteria, Pager pager) throws Exception {
+            return actions.getActions(tenantId, criteria, pager);
+        }
+
+        @Override
+        public int deleteActions(String tenantId, ActionsCriteria criteria) throws Exception {
+            return actions.deleteActions(tenantId, criteria);
+        }
 
-            pendingTimeouts.removeAll(timeouts);
-            return timeouts.size();
+        @Override
+        public void addListener(ActionListener listener) {
+            actions.addListener(listener);
         }
     }
 
@@ -642,6 +1476,13 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
     private void handleAutoResolvedTriggers() {
         try {
+            if (persistAsync && !autoResolvedTriggers.isEmpty() && !alertsWriter.flush(PERSIST_FLUSH_TIMEOUT)) {
+                /*
+                    The alerts to resolve can be still on the write-behind queue, or spilled, resolveAlertsForTrigger()
+                    only resolves the stored ones.
+                 */
+                log.warnf("Alerts not written after %s ms, AutoResolve can leave them open", PERSIST_FLUSH_TIMEOUT);
+            }
             for (Entry<Trigger, List<Set<ConditionEval>>> entry : autoResolvedTriggers.entrySet()) {
                 Trigger t = entry.getKey();
                 boolean manualReload = !t.isAutoResolveAlerts();
@@ -730,12 +1571,15 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     @Override
     public void onPartitionChange(Map<String, List<String>> partition, Map<String, List<String>> removed,
             Map<String, List<String>> added) {
-        if (!pendingData.isEmpty() || !pendingEvents.isEmpty()) {
+        if (hasPending()) {
             if (!pendingData.isEmpty()) {
-                log.warn("Pending Data onPartitionChange: " + pendingData);
+                log.warn("Pending Data onPartitionChange: " + pendingData.size() + " datums");
+            }
+            if (!pendingBatches.isEmpty()) {
+                log.warn("Pending DataBatch onPartitionChange: " + pendingBatches.size() + " batches");
             }
-            if (!!pendingEvents.isEmpty()) {
-                log.warn("Pending Events onPartitionChange: " + pendingData);
+            if (!pendingEvents.isEmpty()) {
+                log.warn("Pending Events onPartitionChange: " + pendingEvents.size() + " events");
             }
         }
         if (log.isDebugEnabled()) {
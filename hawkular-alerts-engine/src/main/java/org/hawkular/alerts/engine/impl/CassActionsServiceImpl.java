@@ -36,7 +36,6 @@ import javax.ejb.TransactionAttributeType;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 
-import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.action.Action;
 import org.hawkular.alerts.api.model.action.ActionDefinition;
 import org.hawkular.alerts.api.model.event.Event;
@@ -194,7 +193,7 @@ public class CassActionsServiceImpl implements ActionsService {
             List<ResultSetFuture> futures = new ArrayList<>();
 
             futures.add(session.executeAsync(insertActionHistory.bind(action.getTenantId(), action.getActionPlugin(),
-                    action.getActionId(), action.getEvent().getId(), action.getCtime(), JsonUtil.toJson(action))));
+                    action.getActionId(), action.getEvent().getId(), action.getCtime(), CassPayload.encode(action))));
             futures.add(session.executeAsync(insertActionHistoryAction.bind(action.getTenantId(),
                     action.getActionId(), action.getActionPlugin(), action.getEvent().getId(),
                     action.getCtime())));
@@ -224,7 +223,7 @@ public class CassActionsServiceImpl implements ActionsService {
             Iterator<Row> itActionHistory = rsActionHistory.iterator();
             if (itActionHistory.hasNext()) {
                 Row row = itActionHistory.next();
-                actionHistory = JsonUtil.fromJson(row.getString("payload"), Action.class);
+                actionHistory = CassPayload.decode(row, Action.class);
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -259,7 +258,7 @@ public class CassActionsServiceImpl implements ActionsService {
                     action.getResult(), action.getActionPlugin(), action.getActionId(), action.getEvent().getId(),
                     action.getCtime())));
 
-            futures.add(session.executeAsync(updateActionHistory.bind(JsonUtil.toJson(action), action.getTenantId(),
+            futures.add(session.executeAsync(updateActionHistory.bind(CassPayload.encode(action), action.getTenantId(),
                     action.getActionPlugin(), action.getActionId(), action.getEvent().getId(),
                     action.getCtime())));
 
@@ -374,7 +373,7 @@ public class CassActionsServiceImpl implements ActionsService {
             Iterator<Row> itActionHistoryByTenant = rsActionHistoryByTenant.iterator();
             while (itActionHistoryByTenant.hasNext()) {
                 Row row = itActionHistoryByTenant.next();
-                Action actionHistory = JsonUtil.fromJson(row.getString("payload"), Action.class, thin);
+                Action actionHistory = CassPayload.decode(row, Action.class, thin);
                 actions.add(actionHistory);
             }
         } else {
@@ -386,7 +385,7 @@ public class CassActionsServiceImpl implements ActionsService {
             List<ResultSet> rsActionHistory = Futures.allAsList(futures).get();
             rsActionHistory.stream().forEach(r -> {
                 for (Row row : r) {
-                    Action actionHistory = JsonUtil.fromJson(row.getString("payload"), Action.class, thin);
+                    Action actionHistory = CassPayload.decode(row, Action.class, thin);
                     actions.add(actionHistory);
                 }
             });
@@ -20,10 +20,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -34,10 +36,10 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 
-import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Alert.Status;
 import org.hawkular.alerts.api.model.event.Event;
@@ -97,6 +99,9 @@ public class CassAlertsServiceImpl implements AlertsService {
     @CassClusterSession
     Session session;
 
+    @Inject
+    CassBuckets timeBuckets;
+
     @Inject
     CacheClient dataIdCache;
 
@@ -107,6 +112,10 @@ public class CassAlertsServiceImpl implements AlertsService {
         this.session = session;
     }
 
+    public void setTimeBuckets(CassBuckets timeBuckets) {
+        this.timeBuckets = timeBuckets;
+    }
+
     @Override
     public void addAlerts(Collection<Alert> alerts) throws Exception {
         if (alerts == null) {
@@ -118,33 +127,19 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (log.isDebugEnabled()) {
             log.debug("Adding " + alerts.size() + " alerts");
         }
-        PreparedStatement insertAlert = CassStatement.get(session, CassStatement.INSERT_ALERT);
-        PreparedStatement insertAlertTrigger = CassStatement.get(session, CassStatement.INSERT_ALERT_TRIGGER);
-        PreparedStatement insertAlertCtime = CassStatement.get(session, CassStatement.INSERT_ALERT_CTIME);
-        PreparedStatement insertAlertStatus = CassStatement.get(session, CassStatement.INSERT_ALERT_STATUS);
-        PreparedStatement insertAlertSeverity = CassStatement.get(session, CassStatement.INSERT_ALERT_SEVERITY);
-        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
+        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG_TTL);
 
         try {
+            deleteMoved(TagType.ALERT, alerts);
+
             List<ResultSetFuture> futures = new ArrayList<>();
             alerts.stream().forEach(a -> {
-                futures.add(session.executeAsync(insertAlert.bind(a.getTenantId(), a.getAlertId(),
-                        JsonUtil.toJson(a))));
-                futures.add(session.executeAsync(insertAlertTrigger.bind(a.getTenantId(),
-                        a.getAlertId(),
-                        a.getTriggerId())));
-                futures.add(session.executeAsync(insertAlertCtime.bind(a.getTenantId(),
-                        a.getAlertId(), a.getCtime())));
-                futures.add(session.executeAsync(insertAlertStatus.bind(a.getTenantId(),
-                        a.getAlertId(),
-                        a.getStatus().name())));
-                futures.add(session.executeAsync(insertAlertSeverity.bind(a.getTenantId(),
-                        a.getAlertId(),
-                        a.getSeverity().name())));
+                insertAlert(session, timeBuckets, a, futures);
 
+                int ttl = timeBuckets.ttl(a.getTenantId(), a.getCtime());
                 a.getTags().entrySet().stream().forEach(tag -> {
                     futures.add(session.executeAsync(insertTag.bind(a.getTenantId(), TagType.ALERT.name(),
-                            tag.getKey(), tag.getValue(), a.getId())));
+                            tag.getKey(), tag.getValue(), a.getId(), ttl)));
                 });
             });
             /*
@@ -175,28 +170,19 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (log.isDebugEnabled()) {
             log.debug("Adding " + events.size() + " events");
         }
-        PreparedStatement insertEvent = CassStatement.get(session, CassStatement.INSERT_EVENT);
-        PreparedStatement insertEventCategory = CassStatement.get(session, CassStatement.INSERT_EVENT_CATEGORY);
-        PreparedStatement insertEventCtime = CassStatement.get(session, CassStatement.INSERT_EVENT_CTIME);
-        PreparedStatement insertEventTrigger = CassStatement.get(session, CassStatement.INSERT_EVENT_TRIGGER);
-        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
+        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG_TTL);
 
         try {
+            deleteMoved(TagType.EVENT, events);
+
             List<ResultSetFuture> futures = new ArrayList<>();
             events.stream().forEach(e -> {
-                futures.add(session.executeAsync(insertEvent.bind(e.getTenantId(), e.getId(),
-                        JsonUtil.toJson(e))));
-                futures.add(session.executeAsync(insertEventCategory.bind(e.getTenantId(), e.getCategory(),
-                        e.getId())));
-                futures.add(session.executeAsync(insertEventCtime.bind(e.getTenantId(), e.getCtime(),
-                        e.getId())));
-                if (null != e.getTrigger()) {
-                    futures.add(session.executeAsync(insertEventTrigger.bind(e.getTenantId(), e.getTrigger().getId(),
-                            e.getId())));
-                }
+                insertEvent(session, timeBuckets, e, futures);
+
+                int ttl = timeBuckets.ttl(e.getTenantId(), e.getCtime());
                 e.getTags().entrySet().stream().forEach(tag -> {
                     futures.add(session.executeAsync(insertTag.bind(e.getTenantId(), TagType.EVENT.name(),
-                            tag.getKey(), tag.getValue(), e.getId())));
+                            tag.getKey(), tag.getValue(), e.getId(), ttl)));
                 });
             });
             /*
@@ -210,6 +196,41 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
+    /*
+        An Alert or Event sent again with a ctime in another bucket would leave its previous rows behind, delete them
+        before writing the new ones
+     */
+    private void deleteMoved(TagType type, Collection<? extends Event> events) throws Exception {
+        boolean alerts = TagType.ALERT == type;
+        PreparedStatement select = CassStatement.get(session,
+                alerts ? CassStatement.SELECT_ALERT : CassStatement.SELECT_EVENT);
+        Map<String, List<Event>> eventsByTenant = events.stream()
+                .collect(Collectors.groupingBy(Event::getTenantId));
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (Map.Entry<String, List<Event>> tenantEvents : eventsByTenant.entrySet()) {
+            String tenantId = tenantEvents.getKey();
+            Map<String, Long> located = timeBuckets.locate(session, type, tenantId, tenantEvents.getValue().stream()
+                    .map(Event::getId)
+                    .collect(Collectors.toSet()));
+            for (Event e : tenantEvents.getValue()) {
+                Long previous = located.get(e.getId());
+                if (null == previous || previous == timeBuckets.bucket(e.getCtime())) {
+                    continue;
+                }
+                Row row = session.execute(select.bind(tenantId, previous, e.getId())).one();
+                if (null == row) {
+                    continue;
+                }
+                if (alerts) {
+                    deleteAlert(session, tenantId, previous, decode(row, Alert.class, true), futures);
+                } else {
+                    deleteEvent(session, tenantId, previous, decode(row, Event.class, true), futures);
+                }
+            }
+        }
+        Futures.allAsList(futures).get();
+    }
+
     @Override
     public void addNote(String tenantId, String alertId, String user, String text) throws Exception {
         if (isEmpty(tenantId)) {
@@ -229,12 +250,8 @@ public class CassAlertsServiceImpl implements AlertsService {
 
         alert.addNote(user, text);
 
-        PreparedStatement updateAlert = CassStatement.get(session, CassStatement.UPDATE_ALERT);
-        if (updateAlert == null) {
-            throw new RuntimeException("updateAlert PreparedStatement is null");
-        }
         try {
-            session.execute(updateAlert.bind(JsonUtil.toJson(alert), alert.getTenantId(), alert.getAlertId()));
+            session.execute(bindUpdate(alert));
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
@@ -258,18 +275,18 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setAlertIds(alertIds);
         Page<Alert> existingAlerts = getAlerts(tenantId, criteria, null);
 
-        PreparedStatement updateAlert = CassStatement.get(session, CassStatement.UPDATE_ALERT);
-        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
+        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG_TTL);
 
         try {
             List<ResultSetFuture> futures = new ArrayList<>();
             existingAlerts.stream().forEach(a -> {
+                int ttl = timeBuckets.ttl(tenantId, a.getCtime());
                 tags.entrySet().stream().forEach(tag -> {
                     a.addTag(tag.getKey(), tag.getValue());
                     futures.add(session.executeAsync(insertTag.bind(tenantId, TagType.ALERT.name(),
-                            tag.getKey(), tag.getValue(), a.getId())));
+                            tag.getKey(), tag.getValue(), a.getId(), ttl)));
                 });
-                futures.add(session.executeAsync(updateAlert.bind(JsonUtil.toJson(a), tenantId, a.getAlertId())));
+                futures.add(session.executeAsync(bindUpdate(a)));
             });
             /*
                 main method is synchronous so we need to wait until futures are completed
@@ -299,18 +316,18 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setEventIds(eventIds);
         Page<Event> existingEvents = getEvents(tenantId, criteria, null);
 
-        PreparedStatement updateEvent = CassStatement.get(session, CassStatement.UPDATE_EVENT);
-        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
+        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG_TTL);
 
         try {
             List<ResultSetFuture> futures = new ArrayList<>();
             existingEvents.stream().forEach(a -> {
+                int ttl = timeBuckets.ttl(tenantId, a.getCtime());
                 tags.entrySet().stream().forEach(tag -> {
                     a.addTag(tag.getKey(), tag.getValue());
                     futures.add(session.executeAsync(insertTag.bind(tenantId, TagType.EVENT.name(),
-                            tag.getKey(), tag.getValue(), a.getId())));
+                            tag.getKey(), tag.getValue(), a.getId(), ttl)));
                 });
-                futures.add(session.executeAsync(updateEvent.bind(JsonUtil.toJson(a), tenantId, a.getId())));
+                futures.add(session.executeAsync(bindUpdate(a)));
             });
             /*
                 main method is synchronous so we need to wait until futures are completed
@@ -341,7 +358,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setAlertIds(alertIds);
         Page<Alert> existingAlerts = getAlerts(tenantId, criteria, null);
 
-        PreparedStatement updateAlert = CassStatement.get(session, CassStatement.UPDATE_ALERT);
         PreparedStatement deleteTag = CassStatement.get(session, CassStatement.DELETE_TAG);
 
         try {
@@ -354,7 +370,7 @@ public class CassAlertsServiceImpl implements AlertsService {
                         a.removeTag(tag);
                     }
                 });
-                futures.add(session.executeAsync(updateAlert.bind(JsonUtil.toJson(a), tenantId, a.getAlertId())));
+                futures.add(session.executeAsync(bindUpdate(a)));
             });
             /*
                 main method is synchronous so we need to wait until futures are completed
@@ -385,7 +401,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setEventIds(eventIds);
         Page<Event> existingEvents = getEvents(tenantId, criteria, null);
 
-        PreparedStatement updateEvent = CassStatement.get(session, CassStatement.UPDATE_EVENT);
         PreparedStatement deleteTag = CassStatement.get(session, CassStatement.DELETE_TAG);
 
         try {
@@ -398,7 +413,7 @@ public class CassAlertsServiceImpl implements AlertsService {
                         e.removeTag(tag);
                     }
                 });
-                futures.add(session.executeAsync(updateEvent.bind(JsonUtil.toJson(e), tenantId, e.getId())));
+                futures.add(session.executeAsync(bindUpdate(e)));
             });
             /*
                 main method is synchronous so we need to wait until futures are completed
@@ -425,11 +440,16 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
         Alert alert = null;
         try {
-            ResultSet rsAlert = session.execute(selectAlert.bind(tenantId, alertId));
+            Long bucket = timeBuckets.locate(session, TagType.ALERT, tenantId, Collections.singleton(alertId))
+                    .get(alertId);
+            if (null == bucket) {
+                return null;
+            }
+            ResultSet rsAlert = session.execute(selectAlert.bind(tenantId, bucket, alertId));
             Iterator<Row> itAlert = rsAlert.iterator();
             if (itAlert.hasNext()) {
                 Row row = itAlert.next();
-                alert = JsonUtil.fromJson(row.getString("payload"), Alert.class, thin);
+                alert = decode(row, Alert.class, thin);
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -452,11 +472,16 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
         Event event = null;
         try {
-            ResultSet rsEvent = session.execute(selectEvent.bind(tenantId, eventId));
+            Long bucket = timeBuckets.locate(session, TagType.EVENT, tenantId, Collections.singleton(eventId))
+                    .get(eventId);
+            if (null == bucket) {
+                return null;
+            }
+            ResultSet rsEvent = session.execute(selectEvent.bind(tenantId, bucket, eventId));
             Iterator<Row> itEvent = rsEvent.iterator();
             if (itEvent.hasNext()) {
                 Row row = itEvent.next();
-                event = JsonUtil.fromJson(row.getString("payload"), Event.class, thin);
+                event = decode(row, Event.class, thin);
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -488,23 +513,32 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
 
         List<Alert> alerts = new ArrayList<>();
-        Set<String> alertIds = new HashSet<>();
+        Map<String, Long> alertIds = new HashMap<>();
         boolean activeFilter = false;
 
         try {
+            /*
+                Only the buckets overlapping the ctime criteria can hold the Alerts looked for
+             */
+            List<Long> buckets = timeBuckets.buckets(session, TagType.ALERT, tenantId,
+                    filter ? criteria.getStartTime() : null, filter ? criteria.getEndTime() : null);
+            if (buckets.isEmpty()) {
+                return new Page<>(alerts, pager, 0);
+            }
+
             if (filter) {
                 /*
                     Get alertsIds explicitly added into the criteria. Start with these as there is no query involved
                  */
                 if (criteria.hasAlertIdCriteria()) {
-                    Set<String> alertIdsFilteredByAlerts = filterByAlerts(criteria);
+                    Map<String, Long> alertIdsFilteredByAlerts = filterByAlerts(criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByAlerts);
+                        retain(alertIds, alertIdsFilteredByAlerts);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByAlerts);
+                        alertIds.putAll(alertIdsFilteredByAlerts);
                     }
                     activeFilter = true;
                 }
@@ -513,14 +547,33 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get alertIds via tags
                  */
                 if (criteria.hasTagCriteria()) {
-                    Set<String> alertIdsFilteredByTags = getIdsByTags(tenantId, TagType.ALERT, criteria.getTags());
+                    Map<String, Long> alertIdsFilteredByTags = getIdsByTags(tenantId, TagType.ALERT,
+                            criteria.getTags());
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTags);
+                        retain(alertIds, alertIdsFilteredByTags);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByTags);
+                        alertIds.putAll(alertIdsFilteredByTags);
+                    }
+                    activeFilter = true;
+                }
+
+                /*
+                    Get alertIds of unresolved alerts from their index, not bucketed, filtered by triggerIds clause
+                 */
+                boolean unresolved = criteria.hasStatusCriteria()
+                        && !extractStatuses(criteria).contains(Status.RESOLVED);
+                if (unresolved) {
+                    Map<String, Long> alertIdsFilteredByUnresolved = filterByUnresolved(tenantId, criteria);
+                    if (activeFilter) {
+                        retain(alertIds, alertIdsFilteredByUnresolved);
+                        if (alertIds.isEmpty()) {
+                            return new Page<>(alerts, pager, 0);
+                        }
+                    } else {
+                        alertIds.putAll(alertIdsFilteredByUnresolved);
                     }
                     activeFilter = true;
                 }
@@ -528,15 +581,15 @@ public class CassAlertsServiceImpl implements AlertsService {
                 /*
                     Get alertIds filtered by triggerIds clause
                  */
-                if (criteria.hasTriggerIdCriteria()) {
-                    Set<String> alertIdsFilteredByTriggers = filterByTriggers(tenantId, criteria);
+                if (!unresolved && criteria.hasTriggerIdCriteria()) {
+                    Map<String, Long> alertIdsFilteredByTriggers = filterByTriggers(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTriggers);
+                        retain(alertIds, alertIdsFilteredByTriggers);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByTriggers);
+                        alertIds.putAll(alertIdsFilteredByTriggers);
                     }
                     activeFilter = true;
                 }
@@ -545,14 +598,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get alertsIds filtered by time clause
                  */
                 if (criteria.hasCTimeCriteria()) {
-                    Set<String> alertIdsFilteredByTime = filterByCTime(tenantId, criteria);
+                    Map<String, Long> alertIdsFilteredByTime = filterByCTime(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTime);
+                        retain(alertIds, alertIdsFilteredByTime);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByTime);
+                        alertIds.putAll(alertIdsFilteredByTime);
                     }
                     activeFilter = true;
                 }
@@ -561,14 +614,15 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get alertsIds filtered by resolved time clause
                  */
                 if (criteria.hasResolvedTimeCriteria()) {
-                    Set<String> alertIdsFilteredByResolvedTime = filterByResolvedTime(tenantId, criteria);
+                    Map<String, Long> alertIdsFilteredByResolvedTime = filterByResolvedTime(tenantId, buckets,
+                            criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByResolvedTime);
+                        retain(alertIds, alertIdsFilteredByResolvedTime);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByResolvedTime);
+                        alertIds.putAll(alertIdsFilteredByResolvedTime);
                     }
                     activeFilter = true;
                 }
@@ -577,14 +631,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get alertsIds filtered by ack time clause
                  */
                 if (criteria.hasAckTimeCriteria()) {
-                    Set<String> alertIdsFilteredByAckTime = filterByAckTime(tenantId, criteria);
+                    Map<String, Long> alertIdsFilteredByAckTime = filterByAckTime(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByAckTime);
+                        retain(alertIds, alertIdsFilteredByAckTime);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByAckTime);
+                        alertIds.putAll(alertIdsFilteredByAckTime);
                     }
                     activeFilter = true;
                 }
@@ -593,14 +647,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                      Get alertsIds filtered by severities clause
                  */
                 if (criteria.hasSeverityCriteria()) {
-                    Set<String> alertIdsFilteredBySeverity = filterBySeverities(tenantId, criteria);
+                    Map<String, Long> alertIdsFilteredBySeverity = filterBySeverities(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredBySeverity);
+                        retain(alertIds, alertIdsFilteredBySeverity);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredBySeverity);
+                        alertIds.putAll(alertIdsFilteredBySeverity);
                     }
                     activeFilter = true;
                 }
@@ -608,15 +662,15 @@ public class CassAlertsServiceImpl implements AlertsService {
                 /*
                     Get alertsIds filtered by statuses clause
                  */
-                if (criteria.hasStatusCriteria()) {
-                    Set<String> alertIdsFilteredByStatus = filterByStatuses(tenantId, criteria);
+                if (!unresolved && criteria.hasStatusCriteria()) {
+                    Map<String, Long> alertIdsFilteredByStatus = filterByStatuses(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByStatus);
+                        retain(alertIds, alertIdsFilteredByStatus);
                         if (alertIds.isEmpty()) {
                             return new Page<>(alerts, pager, 0);
                         }
                     } else {
-                        alertIds.addAll(alertIdsFilteredByStatus);
+                        alertIds.putAll(alertIdsFilteredByStatus);
                     }
                     activeFilter = true;
                 }
@@ -625,32 +679,37 @@ public class CassAlertsServiceImpl implements AlertsService {
                     If we have reached this point then we have at least 1 filtered alertId, so now
                     get the resulting Alerts...
                  */
+                locate(tenantId, TagType.ALERT, alertIds);
                 PreparedStatement selectAlertsByTenantAndAlert = CassStatement
                         .get(session, CassStatement.SELECT_ALERT);
-                List<ResultSetFuture> futures = alertIds.stream()
-                        .map(alertId -> session.executeAsync(selectAlertsByTenantAndAlert.bind(tenantId, alertId)))
+                List<ResultSetFuture> futures = alertIds.entrySet().stream()
+                        .map(e -> session.executeAsync(selectAlertsByTenantAndAlert.bind(tenantId, e.getValue(),
+                                e.getKey())))
                         .collect(Collectors.toList());
                 List<ResultSet> rsAlerts = Futures.allAsList(futures).get();
                 rsAlerts.stream().forEach(r -> {
                     for (Row row : r) {
-                        String payload = row.getString("payload");
-                        Alert alert = JsonUtil.fromJson(payload, Alert.class, thin);
+                        Alert alert = decode(row, Alert.class, thin);
                         alerts.add(alert);
                     }
                 });
 
             } else {
                 /*
-                    Get all alerts - Single query
+                    Get all alerts - One query per bucket
                  */
-                PreparedStatement selectAlertsByTenant = CassStatement.get(session,
-                        CassStatement.SELECT_ALERTS_BY_TENANT);
-                ResultSet rsAlerts = session.execute(selectAlertsByTenant.bind(tenantId));
-                for (Row row : rsAlerts) {
-                    String payload = row.getString("payload");
-                    Alert alert = JsonUtil.fromJson(payload, Alert.class, thin);
-                    alerts.add(alert);
-                }
+                PreparedStatement selectAlertsByBucket = CassStatement.get(session,
+                        CassStatement.SELECT_ALERTS_BY_BUCKET);
+                List<ResultSetFuture> futures = buckets.stream()
+                        .map(bucket -> session.executeAsync(selectAlertsByBucket.bind(tenantId, bucket)))
+                        .collect(Collectors.toList());
+                List<ResultSet> rsAlerts = Futures.allAsList(futures).get();
+                rsAlerts.stream().forEach(r -> {
+                    for (Row row : r) {
+                        Alert alert = decode(row, Alert.class, thin);
+                        alerts.add(alert);
+                    }
+                });
             }
 
         } catch (Exception e) {
@@ -695,40 +754,37 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
-    private Set<String> filterByAlerts(AlertsCriteria criteria) {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByAlerts(AlertsCriteria criteria) {
+        Map<String, Long> result = Collections.emptyMap();
         if (isEmpty(criteria.getAlertIds())) {
             if (!isEmpty(criteria.getAlertId())) {
-                result = new HashSet<>(1);
-                result.add(criteria.getAlertId());
+                result = new HashMap<>(1);
+                result.put(criteria.getAlertId(), null);
             }
         } else {
-            result = new HashSet<>();
-            result.addAll(criteria.getAlertIds());
+            result = new HashMap<>();
+            for (String alertId : criteria.getAlertIds()) {
+                result.put(alertId, null);
+            }
         }
         return result;
     }
 
-    private Set<String> filterByTriggers(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByTriggers(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
         Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
 
         if (triggerIds.size() > 0) {
             PreparedStatement selectAlertsTriggers = CassStatement.get(session, CassStatement.SELECT_ALERT_TRIGGER);
 
-            List<ResultSetFuture> futures = triggerIds.stream()
-                    .map(triggerId -> session.executeAsync(selectAlertsTriggers.bind(tenantId, triggerId)))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertIdsByTriggerIds = Futures.allAsList(futures).get();
-
-            Set<String> alertIds = new HashSet<>();
-            rsAlertIdsByTriggerIds.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertIds.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                for (String triggerId : triggerIds) {
+                    statements.add(selectAlertsTriggers.bind(tenantId, bucket, triggerId));
                 }
-            });
-            result = alertIds;
+            }
+            result = selectIds(statements, "alertId");
         }
 
         return result;
@@ -757,40 +813,36 @@ public class CassAlertsServiceImpl implements AlertsService {
         return triggerIds;
     }
 
-    private Set<String> filterByCTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByCTime(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
 
         if (criteria.getStartTime() != null || criteria.getEndTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundCtime;
-            if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
-                PreparedStatement selectAlertCTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START_END);
-                boundCtime = selectAlertCTimeStartEnd.bind(tenantId, criteria.getStartTime(),
-                        criteria.getEndTime());
-            } else if (criteria.getStartTime() != null) {
-                PreparedStatement selectAlertCTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START);
-                boundCtime = selectAlertCTimeStart.bind(tenantId, criteria.getStartTime());
-            } else {
-                PreparedStatement selectAlertCTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_END);
-                boundCtime = selectAlertCTimeEnd.bind(tenantId, criteria.getEndTime());
-            }
-
-            ResultSet rsAlertsCtimes = session.execute(boundCtime);
-            for (Row row : rsAlertsCtimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                BoundStatement boundCtime;
+                if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
+                    PreparedStatement selectAlertCTimeStartEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_CTIME_START_END);
+                    boundCtime = selectAlertCTimeStartEnd.bind(tenantId, bucket, criteria.getStartTime(),
+                            criteria.getEndTime());
+                } else if (criteria.getStartTime() != null) {
+                    PreparedStatement selectAlertCTimeStart = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_CTIME_START);
+                    boundCtime = selectAlertCTimeStart.bind(tenantId, bucket, criteria.getStartTime());
+                } else {
+                    PreparedStatement selectAlertCTimeEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_CTIME_END);
+                    boundCtime = selectAlertCTimeEnd.bind(tenantId, bucket, criteria.getEndTime());
+                }
+                statements.add(boundCtime);
             }
+            result = selectIds(statements, "alertId");
         }
         return result;
     }
 
-    private Set<String> filterByStatuses(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
+    private Set<Status> extractStatuses(AlertsCriteria criteria) {
         Set<Status> statuses = new HashSet<>();
         if (isEmpty(criteria.getStatusSet())) {
             if (criteria.getStatus() != null) {
@@ -799,32 +851,64 @@ public class CassAlertsServiceImpl implements AlertsService {
         } else {
             statuses.addAll(criteria.getStatusSet());
         }
+        return statuses;
+    }
+
+    private Map<String, Long> filterByUnresolved(String tenantId, AlertsCriteria criteria) throws Exception {
+        Set<Status> statuses = extractStatuses(criteria);
+        Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
 
+        List<BoundStatement> statements = new ArrayList<>();
+        if (triggerIds.isEmpty()) {
+            PreparedStatement selectAlertsUnresolved = CassStatement.get(session,
+                    CassStatement.SELECT_ALERTS_UNRESOLVED);
+            statements.add(selectAlertsUnresolved.bind(tenantId));
+        } else {
+            PreparedStatement selectAlertsUnresolvedTrigger = CassStatement.get(session,
+                    CassStatement.SELECT_ALERTS_UNRESOLVED_TRIGGER);
+            for (String triggerId : triggerIds) {
+                statements.add(selectAlertsUnresolvedTrigger.bind(tenantId, triggerId));
+            }
+        }
+        List<ResultSetFuture> futures = statements.stream()
+                .map(statement -> session.executeAsync(statement))
+                .collect(Collectors.toList());
+        List<ResultSet> rsIds = Futures.allAsList(futures).get();
+
+        Map<String, Long> ids = new HashMap<>();
+        rsIds.stream().forEach(r -> {
+            for (Row row : r) {
+                if (statuses.contains(Status.valueOf(row.getString("status")))) {
+                    ids.put(row.getString("alertId"), row.getLong("bucket"));
+                }
+            }
+        });
+        return ids;
+    }
+
+    private Map<String, Long> filterByStatuses(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
+
+        Set<Status> statuses = extractStatuses(criteria);
         if (statuses.size() > 0) {
             PreparedStatement selectAlertStatusByTenantAndStatus = CassStatement.get(session,
                     CassStatement.SELECT_ALERT_STATUS);
-            List<ResultSetFuture> futures = statuses.stream()
-                    .map(status -> session.executeAsync(selectAlertStatusByTenantAndStatus.bind(
-                            tenantId, status.name())))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertStatuses = Futures.allAsList(futures).get();
-
-            Set<String> alertIds = new HashSet<>();
-            rsAlertStatuses.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertIds.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                for (Status status : statuses) {
+                    statements.add(selectAlertStatusByTenantAndStatus.bind(tenantId, bucket, status.name()));
                 }
-            });
-            result = alertIds;
+            }
+            result = selectIds(statements, "alertId");
         }
         return result;
     }
 
-    private Set<String> filterBySeverities(String tenantId, AlertsCriteria criteria)
+    private Map<String, Long> filterBySeverities(String tenantId, List<Long> buckets, AlertsCriteria criteria)
             throws Exception {
 
-        Set<String> result = Collections.emptySet();
+        Map<String, Long> result = Collections.emptyMap();
 
         Set<Severity> severities = new HashSet<>();
         if (isEmpty(criteria.getSeverities())) {
@@ -838,106 +922,99 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (severities.size() > 0) {
             PreparedStatement selectAlertSeverityByTenantAndSeverity = CassStatement.get(session,
                     CassStatement.SELECT_ALERT_SEVERITY);
-            List<ResultSetFuture> futures = severities.stream()
-                    .map(severity -> session.executeAsync(selectAlertSeverityByTenantAndSeverity.bind(
-                            tenantId, severity.name())))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertSeverities = Futures.allAsList(futures).get();
-
-            Set<String> alertIds = new HashSet<>();
-            rsAlertSeverities.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertIds.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                for (Severity severity : severities) {
+                    statements.add(selectAlertSeverityByTenantAndSeverity.bind(tenantId, bucket, severity.name()));
                 }
-            });
-            result = alertIds;
+            }
+            result = selectIds(statements, "alertId");
         }
 
         return result;
     }
 
-    private Set<String> filterByEvents(EventsCriteria criteria) {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByEvents(EventsCriteria criteria) {
+        Map<String, Long> result = Collections.emptyMap();
         if (isEmpty(criteria.getEventIds())) {
             if (!isEmpty(criteria.getEventId())) {
-                result = new HashSet<>(1);
-                result.add(criteria.getEventId());
+                result = new HashMap<>(1);
+                result.put(criteria.getEventId(), null);
             }
         } else {
-            result = new HashSet<>();
-            result.addAll(criteria.getEventIds());
+            result = new HashMap<>();
+            for (String eventId : criteria.getEventIds()) {
+                result.put(eventId, null);
+            }
         }
         return result;
     }
 
-    private Set<String> filterByResolvedTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByResolvedTime(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
 
         if (criteria.getStartResolvedTime() != null || criteria.getEndResolvedTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundLifecycleTime;
-            if (criteria.getStartResolvedTime() != null && criteria.getEndResolvedTime() != null) {
-                PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
-                boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, Status.RESOLVED.name(),
-                        criteria.getStartResolvedTime(), criteria.getEndResolvedTime());
-            } else if (criteria.getStartResolvedTime() != null) {
-                PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START);
-                boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, Status.RESOLVED.name(),
-                        criteria.getStartResolvedTime());
-            } else {
-                PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_END);
-                boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, criteria.getEndResolvedTime());
-            }
-
-            ResultSet rsAlertsLifecycleTimes = session.execute(boundLifecycleTime);
-            for (Row row : rsAlertsLifecycleTimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                BoundStatement boundLifecycleTime;
+                if (criteria.getStartResolvedTime() != null && criteria.getEndResolvedTime() != null) {
+                    PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
+                    boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, bucket, Status.RESOLVED.name(),
+                            criteria.getStartResolvedTime(), criteria.getEndResolvedTime());
+                } else if (criteria.getStartResolvedTime() != null) {
+                    PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_START);
+                    boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, bucket, Status.RESOLVED.name(),
+                            criteria.getStartResolvedTime());
+                } else {
+                    PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_END);
+                    boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, bucket, Status.RESOLVED.name(),
+                            criteria.getEndResolvedTime());
+                }
+                statements.add(boundLifecycleTime);
             }
+            result = selectIds(statements, "alertId");
         }
         return result;
     }
 
-    private Set<String> filterByAckTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByAckTime(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
 
         if (criteria.getStartAckTime() != null || criteria.getEndAckTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundLifecycleTime;
-            if (criteria.getStartAckTime() != null && criteria.getEndAckTime() != null) {
-                PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
-                boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, Status.ACKNOWLEDGED.name(),
-                        criteria.getStartAckTime(), criteria.getEndAckTime());
-            } else if (criteria.getStartAckTime() != null) {
-                PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START);
-                boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, Status.ACKNOWLEDGED.name(),
-                        criteria.getStartAckTime());
-            } else {
-                PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_END);
-                boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, criteria.getEndAckTime());
-            }
-
-            ResultSet rsAlertsLifecycleTimes = session.execute(boundLifecycleTime);
-            for (Row row : rsAlertsLifecycleTimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                BoundStatement boundLifecycleTime;
+                if (criteria.getStartAckTime() != null && criteria.getEndAckTime() != null) {
+                    PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
+                    boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, bucket, Status.ACKNOWLEDGED.name(),
+                            criteria.getStartAckTime(), criteria.getEndAckTime());
+                } else if (criteria.getStartAckTime() != null) {
+                    PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_START);
+                    boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, bucket, Status.ACKNOWLEDGED.name(),
+                            criteria.getStartAckTime());
+                } else {
+                    PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
+                            CassStatement.SELECT_ALERT_LIFECYCLE_END);
+                    boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, bucket, Status.ACKNOWLEDGED.name(),
+                            criteria.getEndAckTime());
+                }
+                statements.add(boundLifecycleTime);
             }
+            result = selectIds(statements, "alertId");
         }
         return result;
     }
 
-    private Set<String> getIdsByTags(String tenantId, TagType tagType, Map<String, String> tags)
+    private Map<String, Long> getIdsByTags(String tenantId, TagType tagType, Map<String, String> tags)
             throws Exception {
-        Set<String> ids = new HashSet<>();
+        Map<String, Long> ids = new HashMap<>();
         List<ResultSetFuture> futures = new ArrayList<>();
         PreparedStatement selectTagsByName = CassStatement.get(session, CassStatement.SELECT_TAGS_BY_NAME);
         PreparedStatement selectTagsByNameAndValue = CassStatement.get(session,
@@ -952,12 +1029,54 @@ public class CassAlertsServiceImpl implements AlertsService {
         List<ResultSet> rsTags = Futures.allAsList(futures).get();
         rsTags.stream().forEach(r -> {
             for (Row row : r) {
-                ids.add(row.getString("id"));
+                ids.put(row.getString("id"), null);
             }
         });
         return ids;
     }
 
+    /*
+        Run the index queries of a filter and map every id found to the bucket of the partition holding it
+     */
+    private Map<String, Long> selectIds(List<BoundStatement> statements, String idColumn) throws Exception {
+        List<ResultSetFuture> futures = statements.stream()
+                .map(statement -> session.executeAsync(statement))
+                .collect(Collectors.toList());
+        List<ResultSet> rsIds = Futures.allAsList(futures).get();
+
+        Map<String, Long> ids = new HashMap<>();
+        rsIds.stream().forEach(r -> {
+            for (Row row : r) {
+                ids.put(row.getString(idColumn), row.getLong("bucket"));
+            }
+        });
+        return ids;
+    }
+
+    /*
+        Intersect the ids with the ids of a filter, completing the buckets not known yet
+     */
+    private static void retain(Map<String, Long> ids, Map<String, Long> filteredIds) {
+        ids.keySet().retainAll(filteredIds.keySet());
+        ids.replaceAll((id, bucket) -> null == bucket ? filteredIds.get(id) : bucket);
+    }
+
+    /*
+        Ids coming from the criteria or from tags have no bucket, look it up and drop the ids not stored
+     */
+    private void locate(String tenantId, TagType type, Map<String, Long> ids) throws Exception {
+        Set<String> unknown = ids.entrySet().stream()
+                .filter(e -> null == e.getValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        if (unknown.isEmpty()) {
+            return;
+        }
+        Map<String, Long> located = timeBuckets.locate(session, type, tenantId, unknown);
+        ids.replaceAll((id, bucket) -> null == bucket ? located.get(id) : bucket);
+        ids.values().removeIf(Objects::isNull);
+    }
+
     // TODO (jshaughn) The DB-Level filtering approach implemented below is a best-practice for dealing
     // with Cassandra.  It's basically a series of queries, one for each filter, with a progressive
     // intersection of the resulting ID set.  This will work well in most cases but we may want to consider
@@ -981,23 +1100,32 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
 
         List<Event> events = new ArrayList<>();
-        Set<String> eventIds = new HashSet<>();
+        Map<String, Long> eventIds = new HashMap<>();
         boolean activeFilter = false;
 
         try {
+            /*
+                Only the buckets overlapping the ctime criteria can hold the Events looked for
+             */
+            List<Long> buckets = timeBuckets.buckets(session, TagType.EVENT, tenantId,
+                    filter ? criteria.getStartTime() : null, filter ? criteria.getEndTime() : null);
+            if (buckets.isEmpty()) {
+                return new Page<>(events, pager, 0);
+            }
+
             if (filter) {
                 /*
                     Get eventIds explicitly added into the criteria. Start with these as there is no query involved
                  */
                 if (criteria.hasEventIdCriteria()) {
-                    Set<String> idsFilteredByEvents = filterByEvents(criteria);
+                    Map<String, Long> idsFilteredByEvents = filterByEvents(criteria);
                     if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByEvents);
+                        retain(eventIds, idsFilteredByEvents);
                         if (eventIds.isEmpty()) {
                             return new Page<>(events, pager, 0);
                         }
                     } else {
-                        eventIds.addAll(idsFilteredByEvents);
+                        eventIds.putAll(idsFilteredByEvents);
                     }
                     activeFilter = true;
                 }
@@ -1006,14 +1134,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get eventIds via tags
                  */
                 if (criteria.hasTagCriteria()) {
-                    Set<String> idsFilteredByTags = getIdsByTags(tenantId, TagType.EVENT, criteria.getTags());
+                    Map<String, Long> idsFilteredByTags = getIdsByTags(tenantId, TagType.EVENT, criteria.getTags());
                     if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTags);
+                        retain(eventIds, idsFilteredByTags);
                         if (eventIds.isEmpty()) {
                             return new Page<>(events, pager, 0);
                         }
                     } else {
-                        eventIds.addAll(idsFilteredByTags);
+                        eventIds.putAll(idsFilteredByTags);
                     }
                     activeFilter = true;
                 }
@@ -1022,14 +1150,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get eventIds filtered by triggerIds clause
                  */
                 if (criteria.hasTriggerIdCriteria()) {
-                    Set<String> idsFilteredByTriggers = filterByTriggers(tenantId, criteria);
+                    Map<String, Long> idsFilteredByTriggers = filterByTriggers(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTriggers);
+                        retain(eventIds, idsFilteredByTriggers);
                         if (eventIds.isEmpty()) {
                             return new Page<>(events, pager, 0);
                         }
                     } else {
-                        eventIds.addAll(idsFilteredByTriggers);
+                        eventIds.putAll(idsFilteredByTriggers);
                     }
                     activeFilter = true;
                 }
@@ -1038,14 +1166,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                     Get alertsIds filtered by time clause
                  */
                 if (criteria.hasCTimeCriteria()) {
-                    Set<String> idsFilteredByTime = filterByCTime(tenantId, criteria);
+                    Map<String, Long> idsFilteredByTime = filterByCTime(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTime);
+                        retain(eventIds, idsFilteredByTime);
                         if (eventIds.isEmpty()) {
                             return new Page<>(events, pager, 0);
                         }
                     } else {
-                        eventIds.addAll(idsFilteredByTime);
+                        eventIds.putAll(idsFilteredByTime);
                     }
                     activeFilter = true;
                 }
@@ -1054,14 +1182,14 @@ public class CassAlertsServiceImpl implements AlertsService {
                      Get alertsIds filtered by categories clause
                  */
                 if (criteria.hasCategoryCriteria()) {
-                    Set<String> idsFilteredByCategory = filterByCategories(tenantId, criteria);
+                    Map<String, Long> idsFilteredByCategory = filterByCategories(tenantId, buckets, criteria);
                     if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByCategory);
+                        retain(eventIds, idsFilteredByCategory);
                         if (eventIds.isEmpty()) {
                             return new Page<>(events, pager, 0);
                         }
                     } else {
-                        eventIds.addAll(idsFilteredByCategory);
+                        eventIds.putAll(idsFilteredByCategory);
                     }
                     activeFilter = true;
                 }
@@ -1070,63 +1198,36 @@ public class CassAlertsServiceImpl implements AlertsService {
                     If we have reached this point then we have at least 1 filtered alertId, so now
                     get the resulting Alerts...
                  */
+                locate(tenantId, TagType.EVENT, eventIds);
                 PreparedStatement selectEvent = CassStatement
                         .get(session, CassStatement.SELECT_EVENT);
-                List<ResultSetFuture> futures = eventIds.stream()
-                        .map(id -> session.executeAsync(selectEvent.bind(tenantId, id)))
+                List<ResultSetFuture> futures = eventIds.entrySet().stream()
+                        .map(e -> session.executeAsync(selectEvent.bind(tenantId, e.getValue(), e.getKey())))
                         .collect(Collectors.toList());
                 List<ResultSet> rsEvents = Futures.allAsList(futures).get();
                 rsEvents.stream().forEach(r -> {
                     for (Row row : r) {
-                        String payload = row.getString("payload");
-                        Event event = JsonUtil.fromJson(payload, Event.class, thin);
+                        Event event = decode(row, Event.class, thin);
                         events.add(event);
                     }
                 });
 
             } else {
                 /*
-                    Get all events for the tenant - We could pull all events and toss those outside the tenant
-                    but perhaps slightly better is to get the valid partitions and then concurrently query each...
-
-                PreparedStatement selectPartitionsEvents = CassStatement.get(session,
-                        CassStatement.SELECT_PARTITIONS_EVENTS);
-                PreparedStatement selectEventsByPartition = CassStatement.get(session,
-                        CassStatement.SELECT_EVENTS_BY_PARTITION);
-
-                Set<String> categories = new HashSet<>();
-                ResultSet rsPartitions = session.execute(selectPartitionsEvents.bind());
-                for (Row row : rsPartitions) {
-                    if (tenantId.equals(row.getString("tenantId"))) {
-                        categories.add(row.getString("category"));
-                    }
-                }
-
-                List<ResultSetFuture> futures = categories.stream().map(category ->
-                        session.executeAsync(selectEventsByPartition.bind(tenantId, category)))
+                    Get all events - One query per bucket
+                 */
+                PreparedStatement selectEventsByBucket = CassStatement.get(session,
+                        CassStatement.SELECT_EVENTS_BY_BUCKET);
+                List<ResultSetFuture> futures = buckets.stream()
+                        .map(bucket -> session.executeAsync(selectEventsByBucket.bind(tenantId, bucket)))
                         .collect(Collectors.toList());
                 List<ResultSet> rsEvents = Futures.allAsList(futures).get();
                 rsEvents.stream().forEach(r -> {
                     for (Row row : r) {
-                        String payload = row.getString("payload");
-                        Event event = JsonUtil.fromJson(payload, Event.class, thin);
+                        Event event = decode(row, Event.class, thin);
                         events.add(event);
                     }
                 });
-                 */
-
-                /*
-                Get all events - Single query
-                 */
-                PreparedStatement selectEventsByTenant = CassStatement.get(session,
-                        CassStatement.SELECT_EVENTS_BY_TENANT);
-                ResultSet rsEvents = session.execute(selectEventsByTenant.bind(tenantId));
-                for (Row row : rsEvents) {
-                    String payload = row.getString("payload");
-                    Event event = JsonUtil.fromJson(payload, Event.class, thin);
-                    events.add(event);
-                }
-
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -1171,30 +1272,21 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
-    private Set<String> filterByTriggers(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByTriggers(String tenantId, List<Long> buckets, EventsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
         Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
 
         if (triggerIds.size() > 0) {
-            List<ResultSetFuture> futures = new ArrayList<>();
             PreparedStatement selectEventsTriggers = CassStatement.get(session, CassStatement.SELECT_EVENT_TRIGGER);
 
-            for (String triggerId : triggerIds) {
-                if (isEmpty(triggerId)) {
-                    continue;
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                for (String triggerId : triggerIds) {
+                    statements.add(selectEventsTriggers.bind(tenantId, bucket, triggerId));
                 }
-                futures.add(session.executeAsync(selectEventsTriggers.bind(tenantId, triggerId)));
             }
-            List<ResultSet> rsIdsByTriggerIds = Futures.allAsList(futures).get();
-
-            Set<String> eventIds = new HashSet<>();
-            rsIdsByTriggerIds.stream().forEach(r -> {
-                for (Row row : r) {
-                    String eventId = row.getString("id");
-                    eventIds.add(eventId);
-                }
-            });
-            result = eventIds;
+            result = selectIds(statements, "id");
         }
 
         return result;
@@ -1223,39 +1315,38 @@ public class CassAlertsServiceImpl implements AlertsService {
         return triggerIds;
     }
 
-    private Set<String> filterByCTime(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByCTime(String tenantId, List<Long> buckets, EventsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
 
         if (criteria.getStartTime() != null || criteria.getEndTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundCtime;
-            if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
-                PreparedStatement selectEventCTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_START_END);
-                boundCtime = selectEventCTimeStartEnd.bind(tenantId, criteria.getStartTime(),
-                        criteria.getEndTime());
-            } else if (criteria.getStartTime() != null) {
-                PreparedStatement selectEventCTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_START);
-                boundCtime = selectEventCTimeStart.bind(tenantId, criteria.getStartTime());
-            } else {
-                PreparedStatement selectEventCTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_END);
-                boundCtime = selectEventCTimeEnd.bind(tenantId, criteria.getEndTime());
-            }
-
-            ResultSet rsIdsCtimes = session.execute(boundCtime);
-            for (Row row : rsIdsCtimes) {
-                String eventId = row.getString("id");
-                result.add(eventId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                BoundStatement boundCtime;
+                if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
+                    PreparedStatement selectEventCTimeStartEnd = CassStatement.get(session,
+                            CassStatement.SELECT_EVENT_CTIME_START_END);
+                    boundCtime = selectEventCTimeStartEnd.bind(tenantId, bucket, criteria.getStartTime(),
+                            criteria.getEndTime());
+                } else if (criteria.getStartTime() != null) {
+                    PreparedStatement selectEventCTimeStart = CassStatement.get(session,
+                            CassStatement.SELECT_EVENT_CTIME_START);
+                    boundCtime = selectEventCTimeStart.bind(tenantId, bucket, criteria.getStartTime());
+                } else {
+                    PreparedStatement selectEventCTimeEnd = CassStatement.get(session,
+                            CassStatement.SELECT_EVENT_CTIME_END);
+                    boundCtime = selectEventCTimeEnd.bind(tenantId, bucket, criteria.getEndTime());
+                }
+                statements.add(boundCtime);
             }
+            result = selectIds(statements, "id");
         }
         return result;
     }
 
-    private Set<String> filterByCategories(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
+    private Map<String, Long> filterByCategories(String tenantId, List<Long> buckets, EventsCriteria criteria)
+            throws Exception {
+        Map<String, Long> result = Collections.emptyMap();
 
         Set<String> categories = new HashSet<>();
         if (isEmpty(criteria.getCategories())) {
@@ -1269,19 +1360,13 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (categories.size() > 0) {
             PreparedStatement selectEventCategory = CassStatement.get(session,
                     CassStatement.SELECT_EVENT_CATEGORY);
-            List<ResultSetFuture> futures = categories.stream()
-                    .map(category -> session.executeAsync(selectEventCategory.bind(tenantId, category)))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertStatuses = Futures.allAsList(futures).get();
-
-            Set<String> eventIds = new HashSet<>();
-            rsAlertStatuses.stream().forEach(r -> {
-                for (Row row : r) {
-                    String eventId = row.getString("id");
-                    eventIds.add(eventId);
+            List<BoundStatement> statements = new ArrayList<>();
+            for (Long bucket : buckets) {
+                for (String category : categories) {
+                    statements.add(selectEventCategory.bind(tenantId, bucket, category));
                 }
-            });
-            result = eventIds;
+            }
+            result = selectIds(statements, "id");
         }
         return result;
     }
@@ -1331,30 +1416,15 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (alertsToDelete.isEmpty()) {
             return 0;
         }
-        PreparedStatement deleteAlert = CassStatement.get(session, CassStatement.DELETE_ALERT);
-        PreparedStatement deleteAlertCtime = CassStatement.get(session, CassStatement.DELETE_ALERT_CTIME);
-        PreparedStatement deleteAlertSeverity = CassStatement.get(session, CassStatement.DELETE_ALERT_SEVERITY);
-        PreparedStatement deleteAlertStatus = CassStatement.get(session, CassStatement.DELETE_ALERT_STATUS);
-        PreparedStatement deleteAlertTrigger = CassStatement.get(session, CassStatement.DELETE_ALERT_TRIGGER);
-        PreparedStatement deleteAlertLifecycle = CassStatement.get(session, CassStatement.DELETE_ALERT_LIFECYCLE);
-        if (deleteAlert == null || deleteAlertCtime == null || deleteAlertSeverity == null
-                || deleteAlertStatus == null || deleteAlertTrigger == null || deleteAlertLifecycle == null) {
-            throw new RuntimeException("delete*Alerts PreparedStatement is null");
+        PreparedStatement deleteBucketId = CassStatement.get(session, CassStatement.DELETE_BUCKET_ID);
+        if (deleteBucketId == null) {
+            throw new RuntimeException("deleteBucketId PreparedStatement is null");
         }
 
         for (Alert a : alertsToDelete) {
-            String id = a.getAlertId();
             List<ResultSetFuture> futures = new ArrayList<>();
-            futures.add(session.executeAsync(deleteAlert.bind(tenantId, id)));
-            futures.add(session.executeAsync(deleteAlertCtime.bind(tenantId, a.getCtime(), id)));
-            futures.add(session.executeAsync(deleteAlertSeverity.bind(tenantId, a.getSeverity().name(), id)));
-            futures.add(session.executeAsync(deleteAlertStatus.bind(tenantId, a.getStatus().name(), id)));
-            futures.add(session.executeAsync(deleteAlertTrigger.bind(tenantId, a.getTriggerId(), id)));
-            a.getLifecycle().stream().forEach(l -> {
-                futures.add(
-                        session.executeAsync(deleteAlertLifecycle.bind(tenantId, l.getStatus().name(), l.getStime(),
-                                a.getAlertId())));
-            });
+            deleteAlert(session, tenantId, timeBuckets.bucket(a.getCtime()), a, futures);
+            futures.add(session.executeAsync(deleteBucketId.bind(tenantId, TagType.ALERT.name(), a.getAlertId())));
             Futures.allAsList(futures).get();
         }
 
@@ -1378,24 +1448,15 @@ public class CassAlertsServiceImpl implements AlertsService {
             return 0;
         }
 
-        PreparedStatement deleteEvent = CassStatement.get(session, CassStatement.DELETE_EVENT);
-        PreparedStatement deleteEventCategory = CassStatement.get(session, CassStatement.DELETE_EVENT_CATEGORY);
-        PreparedStatement deleteEventCTime = CassStatement.get(session, CassStatement.DELETE_EVENT_CTIME);
-        PreparedStatement deleteEventTrigger = CassStatement.get(session, CassStatement.DELETE_EVENT_TRIGGER);
-        if (deleteEvent == null || deleteEventCTime == null || deleteEventCategory == null
-                || deleteEventTrigger == null) {
-            throw new RuntimeException("delete*Events PreparedStatement is null");
+        PreparedStatement deleteBucketId = CassStatement.get(session, CassStatement.DELETE_BUCKET_ID);
+        if (deleteBucketId == null) {
+            throw new RuntimeException("deleteBucketId PreparedStatement is null");
         }
 
         for (Event e : eventsToDelete) {
-            String id = e.getId();
             List<ResultSetFuture> futures = new ArrayList<>();
-            futures.add(session.executeAsync(deleteEvent.bind(tenantId, id)));
-            futures.add(session.executeAsync(deleteEventCategory.bind(tenantId, e.getCategory(), id)));
-            futures.add(session.executeAsync(deleteEventCTime.bind(tenantId, e.getCtime(), id)));
-            if (null != e.getTrigger()) {
-                futures.add(session.executeAsync(deleteEventTrigger.bind(tenantId, e.getTrigger().getId(), id)));
-            }
+            deleteEvent(session, tenantId, timeBuckets.bucket(e.getCtime()), e, futures);
+            futures.add(session.executeAsync(deleteBucketId.bind(tenantId, TagType.EVENT.name(), e.getId())));
             Futures.allAsList(futures).get();
         }
 
@@ -1487,23 +1548,33 @@ public class CassAlertsServiceImpl implements AlertsService {
                     CassStatement.INSERT_ALERT_STATUS);
             PreparedStatement insertAlertLifecycle = CassStatement.get(session,
                     CassStatement.INSERT_ALERT_LIFECYCLE);
-            PreparedStatement updateAlert = CassStatement.get(session,
-                    CassStatement.UPDATE_ALERT);
+            PreparedStatement insertAlertUnresolved = CassStatement.get(session,
+                    CassStatement.INSERT_ALERT_UNRESOLVED);
+            PreparedStatement deleteAlertUnresolved = CassStatement.get(session,
+                    CassStatement.DELETE_ALERT_UNRESOLVED);
 
+            long bucket = timeBuckets.bucket(alert.getCtime());
+            int ttl = timeBuckets.ttl(alert.getTenantId(), alert.getCtime());
             List<ResultSetFuture> futures = new ArrayList<>();
             for (Status statusToDelete : EnumSet.complementOf(EnumSet.of(alert.getStatus()))) {
-                futures.add(session.executeAsync(deleteAlertStatus.bind(alert.getTenantId(), statusToDelete.name(),
-                        alert.getAlertId())));
+                futures.add(session.executeAsync(deleteAlertStatus.bind(alert.getTenantId(), bucket,
+                        statusToDelete.name(), alert.getAlertId())));
+            }
+            futures.add(session.executeAsync(insertAlertStatus.bind(alert.getTenantId(), bucket, alert.getAlertId(),
+                    alert.getStatus().name(), ttl)));
+            if (Status.RESOLVED == alert.getStatus()) {
+                futures.add(session.executeAsync(deleteAlertUnresolved.bind(alert.getTenantId(),
+                        alert.getTriggerId(), alert.getAlertId())));
+            } else {
+                futures.add(session.executeAsync(insertAlertUnresolved.bind(alert.getTenantId(),
+                        alert.getTriggerId(), alert.getAlertId(), bucket, alert.getStatus().name(), ttl)));
             }
-            futures.add(session.executeAsync(insertAlertStatus.bind(alert.getTenantId(), alert.getAlertId(), alert
-                    .getStatus().name())));
             Alert.LifeCycle lifecycle = alert.getCurrentLifecycle();
             if (lifecycle != null) {
-                futures.add(session.executeAsync(insertAlertLifecycle.bind(alert.getTenantId(), alert.getAlertId(),
-                        lifecycle.getStatus().name(), lifecycle.getStime())));
+                futures.add(session.executeAsync(insertAlertLifecycle.bind(alert.getTenantId(), bucket,
+                        alert.getAlertId(), lifecycle.getStatus().name(), lifecycle.getStime(), ttl)));
             }
-            futures.add(session.executeAsync(updateAlert.bind(JsonUtil.toJson(alert), alert.getTenantId(),
-                    alert.getAlertId())));
+            futures.add(session.executeAsync(bindUpdate(alert)));
 
             @SuppressWarnings("unused")
             List<ResultSet> rsAlertsStatusToDelete = Futures.allAsList(futures).get();
@@ -1600,6 +1671,24 @@ public class CassAlertsServiceImpl implements AlertsService {
         alertsEngine.sendData(data);
     }
 
+    @Override
+    public void sendData(DataBatch batch) throws Exception {
+        if (null == batch || batch.isEmpty()) {
+            return;
+        }
+
+        // Front-line filtering, applied once per distinct dataId of the batch
+        batch = dataIdCache.filterData(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        checkDataDrivenGroupTriggers(batch);
+
+        // forward to the engine for node-specific filtering, propagation to other nodes, and/or evaluation
+        alertsEngine.sendData(batch);
+    }
+
     private void checkDataDrivenGroupTriggers(Collection<Data> data) throws Exception {
         if (!dataDrivenGroupCacheManager.isCacheActive()) {
             return;
@@ -1623,6 +1712,23 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
+    private void checkDataDrivenGroupTriggers(DataBatch batch) throws Exception {
+        if (!dataDrivenGroupCacheManager.isCacheActive() || Data.SOURCE_NONE.equals(batch.getSource())) {
+            return;
+        }
+        String tenantId = batch.getTenantId();
+        String dataSource = batch.getSource();
+        for (String dataId : batch.getDataIds()) {
+            Set<String> groupTriggerIds = dataDrivenGroupCacheManager.needsSourceMember(tenantId, dataId, dataSource);
+
+            // Add a trigger members for the source
+
+            for (String groupTriggerId : groupTriggerIds) {
+                definitionsService.addDataDrivenMemberTrigger(tenantId, groupTriggerId, dataSource);
+            }
+        }
+    }
+
     @Override
     public void addEvents(Collection<Event> events) throws Exception {
         if (null == events || events.isEmpty()) {
@@ -1663,6 +1769,155 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
+    /*
+        Write an Alert with its index rows into the bucket of its ctime, all of them expiring together with the TTL
+        of the tenant. Unresolved Alerts are also indexed by trigger out of the buckets. Tags are written by the
+        callers.
+     */
+    static void insertAlert(Session session, CassBuckets timeBuckets, Alert a, List<ResultSetFuture> futures) {
+        String tenantId = a.getTenantId();
+        String alertId = a.getAlertId();
+        long bucket = timeBuckets.bucket(a.getCtime());
+        int ttl = timeBuckets.ttl(tenantId, a.getCtime());
+
+        PreparedStatement insertAlertTrigger = CassStatement.get(session, CassStatement.INSERT_ALERT_TRIGGER);
+        PreparedStatement insertAlertCtime = CassStatement.get(session, CassStatement.INSERT_ALERT_CTIME);
+        PreparedStatement insertAlertStatus = CassStatement.get(session, CassStatement.INSERT_ALERT_STATUS);
+        PreparedStatement insertAlertSeverity = CassStatement.get(session, CassStatement.INSERT_ALERT_SEVERITY);
+        PreparedStatement insertAlertLifecycle = CassStatement.get(session, CassStatement.INSERT_ALERT_LIFECYCLE);
+        PreparedStatement insertAlertUnresolved = CassStatement.get(session, CassStatement.INSERT_ALERT_UNRESOLVED);
+
+        timeBuckets.register(session, TagType.ALERT, tenantId, a.getCtime());
+        futures.add(session.executeAsync(bindInsert(session, timeBuckets, a)));
+        futures.add(session.executeAsync(timeBuckets.bindId(session, TagType.ALERT, tenantId, alertId,
+                a.getCtime())));
+        futures.add(session.executeAsync(insertAlertTrigger.bind(tenantId, bucket, alertId, a.getTriggerId(), ttl)));
+        futures.add(session.executeAsync(insertAlertCtime.bind(tenantId, bucket, alertId, a.getCtime(), ttl)));
+        futures.add(session.executeAsync(insertAlertStatus.bind(tenantId, bucket, alertId, a.getStatus().name(),
+                ttl)));
+        futures.add(session.executeAsync(insertAlertSeverity.bind(tenantId, bucket, alertId,
+                a.getSeverity().name(), ttl)));
+        if (Status.RESOLVED != a.getStatus()) {
+            futures.add(session.executeAsync(insertAlertUnresolved.bind(tenantId, a.getTriggerId(), alertId, bucket,
+                    a.getStatus().name(), ttl)));
+        }
+        // only resolved and acknowledged times are queried, new alerts just carry their OPEN lifecycle
+        a.getLifecycle().stream().filter(l -> Status.OPEN != l.getStatus()).forEach(l -> {
+            futures.add(session.executeAsync(insertAlertLifecycle.bind(tenantId, bucket, alertId,
+                    l.getStatus().name(), l.getStime(), ttl)));
+        });
+    }
+
+    /*
+        Write an Event with its index rows into the bucket of its ctime, all of them expiring together with the TTL
+        of the tenant. Tags are written by the callers.
+     */
+    static void insertEvent(Session session, CassBuckets timeBuckets, Event e, List<ResultSetFuture> futures) {
+        String tenantId = e.getTenantId();
+        String id = e.getId();
+        long bucket = timeBuckets.bucket(e.getCtime());
+        int ttl = timeBuckets.ttl(tenantId, e.getCtime());
+
+        PreparedStatement insertEventCategory = CassStatement.get(session, CassStatement.INSERT_EVENT_CATEGORY);
+        PreparedStatement insertEventCtime = CassStatement.get(session, CassStatement.INSERT_EVENT_CTIME);
+        PreparedStatement insertEventTrigger = CassStatement.get(session, CassStatement.INSERT_EVENT_TRIGGER);
+
+        timeBuckets.register(session, TagType.EVENT, tenantId, e.getCtime());
+        futures.add(session.executeAsync(bindInsert(session, timeBuckets, e)));
+        futures.add(session.executeAsync(timeBuckets.bindId(session, TagType.EVENT, tenantId, id, e.getCtime())));
+        futures.add(session.executeAsync(insertEventCategory.bind(tenantId, bucket, e.getCategory(), id, ttl)));
+        futures.add(session.executeAsync(insertEventCtime.bind(tenantId, bucket, e.getCtime(), id, ttl)));
+        if (null != e.getTrigger()) {
+            futures.add(session.executeAsync(insertEventTrigger.bind(tenantId, bucket, e.getTrigger().getId(), id,
+                    ttl)));
+        }
+    }
+
+    /*
+        Delete the rows of an Alert from a bucket, except its bucket id. It can be thin, only its indexed fields are
+        needed.
+     */
+    static void deleteAlert(Session session, String tenantId, long bucket, Alert a, List<ResultSetFuture> futures) {
+        String alertId = a.getAlertId();
+
+        PreparedStatement deleteAlert = CassStatement.get(session, CassStatement.DELETE_ALERT);
+        PreparedStatement deleteAlertCtime = CassStatement.get(session, CassStatement.DELETE_ALERT_CTIME);
+        PreparedStatement deleteAlertSeverity = CassStatement.get(session, CassStatement.DELETE_ALERT_SEVERITY);
+        PreparedStatement deleteAlertStatus = CassStatement.get(session, CassStatement.DELETE_ALERT_STATUS);
+        PreparedStatement deleteAlertTrigger = CassStatement.get(session, CassStatement.DELETE_ALERT_TRIGGER);
+        PreparedStatement deleteAlertLifecycle = CassStatement.get(session, CassStatement.DELETE_ALERT_LIFECYCLE);
+        PreparedStatement deleteAlertUnresolved = CassStatement.get(session, CassStatement.DELETE_ALERT_UNRESOLVED);
+
+        futures.add(session.executeAsync(deleteAlert.bind(tenantId, bucket, alertId)));
+        futures.add(session.executeAsync(deleteAlertCtime.bind(tenantId, bucket, a.getCtime(), alertId)));
+        futures.add(session.executeAsync(deleteAlertSeverity.bind(tenantId, bucket, a.getSeverity().name(),
+                alertId)));
+        futures.add(session.executeAsync(deleteAlertStatus.bind(tenantId, bucket, a.getStatus().name(), alertId)));
+        futures.add(session.executeAsync(deleteAlertTrigger.bind(tenantId, bucket, a.getTriggerId(), alertId)));
+        a.getLifecycle().stream().forEach(l -> {
+            futures.add(session.executeAsync(deleteAlertLifecycle.bind(tenantId, bucket, l.getStatus().name(),
+                    l.getStime(), alertId)));
+        });
+        futures.add(session.executeAsync(deleteAlertUnresolved.bind(tenantId, a.getTriggerId(), alertId)));
+    }
+
+    /*
+        Delete the rows of an Event from a bucket, except its bucket id
+     */
+    static void deleteEvent(Session session, String tenantId, long bucket, Event e, List<ResultSetFuture> futures) {
+        String id = e.getId();
+
+        PreparedStatement deleteEvent = CassStatement.get(session, CassStatement.DELETE_EVENT);
+        PreparedStatement deleteEventCategory = CassStatement.get(session, CassStatement.DELETE_EVENT_CATEGORY);
+        PreparedStatement deleteEventCTime = CassStatement.get(session, CassStatement.DELETE_EVENT_CTIME);
+        PreparedStatement deleteEventTrigger = CassStatement.get(session, CassStatement.DELETE_EVENT_TRIGGER);
+
+        futures.add(session.executeAsync(deleteEvent.bind(tenantId, bucket, id)));
+        futures.add(session.executeAsync(deleteEventCategory.bind(tenantId, bucket, e.getCategory(), id)));
+        futures.add(session.executeAsync(deleteEventCTime.bind(tenantId, bucket, e.getCtime(), id)));
+        if (null != e.getTrigger()) {
+            futures.add(session.executeAsync(deleteEventTrigger.bind(tenantId, bucket, e.getTrigger().getId(), id)));
+        }
+    }
+
+    /*
+        With snapshots enabled the Trigger and Dampening of the Alert or Event are stored once as a snapshot, before
+        the row is written, and the row only references it. The definitions are embedded if the snapshot is not stored.
+     */
+    private static BoundStatement bindInsert(Session session, CassBuckets timeBuckets, Event e) {
+        boolean alert = e instanceof Alert;
+        long bucket = timeBuckets.bucket(e.getCtime());
+        int ttl = timeBuckets.ttl(e.getTenantId(), e.getCtime());
+        String snapshot = CassSnapshots.store(session, e);
+        if (null == snapshot) {
+            PreparedStatement insert = CassStatement.get(session,
+                    alert ? CassStatement.INSERT_ALERT : CassStatement.INSERT_EVENT);
+            return insert.bind(e.getTenantId(), bucket, e.getId(), CassPayload.encode(e), ttl);
+        }
+        PreparedStatement insert = CassStatement.get(session,
+                alert ? CassStatement.INSERT_ALERT_SNAPSHOT : CassStatement.INSERT_EVENT_SNAPSHOT);
+        return insert.bind(e.getTenantId(), bucket, e.getId(), CassPayload.encodeNoSnapshot(e), snapshot, ttl);
+    }
+
+    private BoundStatement bindUpdate(Event e) {
+        boolean alert = e instanceof Alert;
+        long bucket = timeBuckets.bucket(e.getCtime());
+        int ttl = timeBuckets.ttl(e.getTenantId(), e.getCtime());
+        String snapshot = CassSnapshots.store(session, e);
+        if (null == snapshot) {
+            PreparedStatement update = CassStatement.get(session,
+                    alert ? CassStatement.UPDATE_ALERT : CassStatement.UPDATE_EVENT);
+            return update.bind(ttl, CassPayload.encode(e), e.getTenantId(), bucket, e.getId());
+        }
+        PreparedStatement update = CassStatement.get(session,
+                alert ? CassStatement.UPDATE_ALERT_SNAPSHOT : CassStatement.UPDATE_EVENT_SNAPSHOT);
+        return update.bind(ttl, CassPayload.encodeNoSnapshot(e), snapshot, e.getTenantId(), bucket, e.getId());
+    }
+
+    private <T extends Event> T decode(Row row, Class<T> clazz, boolean thin) {
+        return CassSnapshots.hydrate(session, row, CassPayload.decode(row, clazz, thin), thin);
+    }
+
     private boolean isEmpty(Map<?, ?> m) {
         return null == m || m.isEmpty();
     }
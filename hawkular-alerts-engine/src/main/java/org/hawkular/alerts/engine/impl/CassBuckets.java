@@ -0,0 +1,438 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.PropertiesService;
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Time buckets and retention of the Alerts and Events stored in Cassandra.
+ *
+ * The <code>alerts</code> and <code>events</code> tables, and their index tables, are partitioned by
+ * (tenantId, bucket), where the bucket is the start of the day, or hour, of the ctime of the Alert or Event. A tenant
+ * no longer maps to a single unbounded partition, and queries with a ctime criteria only read the buckets covered by
+ * it. The buckets holding data are registered per tenant on the <code>buckets</code> table, and the bucket of each
+ * Alert and Event on the <code>buckets_ids</code> table, to read them by id.
+ *
+ * The bucket size is set by <code>hawkular-alerts.cassandra-time-bucket</code> (<code>day</code> or
+ * <code>hour</code>) the first time the keyspace is initialized, and it is kept on <code>sys_config</code>, as
+ * the stored rows depend on it. A different value on a later start is ignored with a warning.
+ *
+ * All the rows of an Alert or Event are written with the TTL left from its ctime to the retention of the tenant,
+ * <code>hawkular-alerts.cassandra-ttl.&lt;tenantId&gt;</code>, or <code>hawkular-alerts.cassandra-ttl</code> by
+ * default, in seconds. A TTL of 0 keeps the data until it is deleted.
+ *
+ * Alerts and Events stored by previous versions on the non bucketed tables are copied once to the bucketed ones, in
+ * background, by a single node of the cluster holding a lease on <code>sys_config</code>. The copy is done per
+ * tenant and recorded on <code>sys_config</code>, so an interrupted copy is resumed on the next start. Until it is
+ * finished the first read of a tenant copies its Alerts or Events, so they are found, and resolved, from the start.
+ * An id already stored on the bucketed tables is not copied, as it was written later.
+ *
+ * Rolling upgrades are not supported: all the nodes of the cluster must be upgraded together. Alerts and Events
+ * written by a node of a previous version after its tenant was copied are not copied.
+ *
+ * @author agent
+ */
+public class CassBuckets {
+    private static final Logger log = Logger.getLogger(CassBuckets.class);
+
+    private static final String CASSANDRA_TIME_BUCKET = "hawkular-alerts.cassandra-time-bucket";
+    private static final String CASSANDRA_TTL = "hawkular-alerts.cassandra-ttl";
+
+    private static final String SYS_CONFIG_ID = "org.hawkular.alerts";
+    private static final String SYS_CONFIG_TIME_BUCKET = "time-bucket";
+    private static final String SYS_CONFIG_BUCKETS_MIGRATION = "buckets-migration";
+    private static final String SYS_CONFIG_BUCKETS_MIGRATION_LEASE = "buckets-migration.lease";
+    private static final String MIGRATION_DONE = "done";
+
+    // Max TTL supported by Cassandra, 20 years
+    private static final int MAX_TTL = 630720000;
+    private static final int REGISTERED_CACHE_SIZE = 10000;
+    private static final int MIGRATION_FETCH_SIZE = 500;
+    // Seconds the copy is held by a node without renewing its lease
+    private static final int MIGRATION_LEASE_TTL = 60;
+
+    public enum Granularity {
+        DAY(TimeUnit.DAYS.toMillis(1)), HOUR(TimeUnit.HOURS.toMillis(1));
+
+        private final long millis;
+
+        Granularity(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final PropertiesService properties;
+    private volatile Granularity granularity;
+    private final int defaultTtl;
+    private final Map<String, Integer> ttls = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> registered;
+    private volatile boolean migrated = false;
+    private final Set<String> copied = ConcurrentHashMap.newKeySet();
+
+    public CassBuckets(PropertiesService properties) {
+        this.properties = properties;
+        granularity = Granularity.valueOf(properties.getProperty(CASSANDRA_TIME_BUCKET, "day").trim()
+                .toUpperCase());
+        defaultTtl = new Integer(properties.getProperty(CASSANDRA_TTL, "0"));
+        registered = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > REGISTERED_CACHE_SIZE;
+            }
+        });
+    }
+
+    /**
+     * Set the bucket size of the keyspace. It must be invoked once the schema is updated, before the Alerts and
+     * Events are accessed.
+     *
+     * @param session the Cassandra session
+     */
+    public void init(Session session) {
+        PreparedStatement insertSysConfig = CassStatement.get(session, CassStatement.INSERT_SYS_CONFIG);
+        ResultSet rsTimeBucket = session.execute(insertSysConfig.bind(SYS_CONFIG_ID, SYS_CONFIG_TIME_BUCKET,
+                granularity.name()));
+        if (!rsTimeBucket.wasApplied()) {
+            Granularity stored = Granularity.valueOf(rsTimeBucket.one().getString("value"));
+            if (stored != granularity) {
+                log.warnf("Keyspace uses [%s] time buckets, ignoring %s=%s", stored, CASSANDRA_TIME_BUCKET,
+                        granularity);
+                granularity = stored;
+            }
+        }
+    }
+
+    /**
+     * Copy in background the Alerts and Events stored by previous versions into the bucketed tables, if it was not
+     * done yet. Only the node holding the lease copies, the others wait for it to finish or to lose the lease.
+     *
+     * @param session the Cassandra session
+     * @param executor the executor running the copy
+     * @return the future of the number of Alerts and Events copied by this node
+     */
+    public Future<Integer> migrate(Session session, ExecutorService executor) {
+        return executor.submit(() -> {
+            String owner = UUID.randomUUID().toString();
+            while (!isMigrated(session)) {
+                if (!acquire(session, owner)) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(MIGRATION_LEASE_TTL));
+                    continue;
+                }
+                try {
+                    log.info("Copying Alerts and Events to the time-bucketed tables...");
+                    int count = migrate(session, true, () -> renew(session, owner));
+                    PreparedStatement insertSysConfig = CassStatement.get(session, CassStatement.INSERT_SYS_CONFIG);
+                    session.execute(insertSysConfig.bind(SYS_CONFIG_ID, SYS_CONFIG_BUCKETS_MIGRATION,
+                            String.valueOf(System.currentTimeMillis())));
+                    migrated = true;
+                    log.infof("Copied [%s] Alerts and Events to the time-bucketed tables", count);
+                    return count;
+                } catch (Exception e) {
+                    // The copy is idempotent, it is resumed on next start
+                    log.errorf("Failed copying Alerts and Events to the time-bucketed tables: %s", e.getMessage());
+                    throw e;
+                } finally {
+                    release(session, owner);
+                }
+            }
+            return 0;
+        });
+    }
+
+    private boolean isMigrated(Session session) {
+        if (!migrated) {
+            PreparedStatement selectSysConfig = CassStatement.get(session, CassStatement.SELECT_SYS_CONFIG);
+            migrated = null != session.execute(selectSysConfig.bind(SYS_CONFIG_ID, SYS_CONFIG_BUCKETS_MIGRATION))
+                    .one();
+        }
+        return migrated;
+    }
+
+    private boolean acquire(Session session, String owner) {
+        PreparedStatement insertLease = CassStatement.get(session, CassStatement.INSERT_SYS_CONFIG_LEASE);
+        return session.execute(insertLease.bind(SYS_CONFIG_ID, SYS_CONFIG_BUCKETS_MIGRATION_LEASE, owner,
+                MIGRATION_LEASE_TTL)).wasApplied();
+    }
+
+    private void renew(Session session, String owner) {
+        PreparedStatement updateLease = CassStatement.get(session, CassStatement.UPDATE_SYS_CONFIG_LEASE);
+        if (!session.execute(updateLease.bind(MIGRATION_LEASE_TTL, owner, SYS_CONFIG_ID,
+                SYS_CONFIG_BUCKETS_MIGRATION_LEASE, owner)).wasApplied()) {
+            throw new IllegalStateException("Lease of the copy to the time-bucketed tables lost");
+        }
+    }
+
+    private void release(Session session, String owner) {
+        try {
+            PreparedStatement deleteLease = CassStatement.get(session, CassStatement.DELETE_SYS_CONFIG_LEASE);
+            session.execute(deleteLease.bind(SYS_CONFIG_ID, SYS_CONFIG_BUCKETS_MIGRATION_LEASE, owner));
+        } catch (Exception e) {
+            // It expires anyway
+            log.debugf(e, "Lease of the copy to the time-bucketed tables not released");
+        }
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * @param ctime the ctime of an Alert or Event
+     * @return the bucket of the ctime, the start of its day or hour in milliseconds
+     */
+    public long bucket(long ctime) {
+        long size = granularity.getMillis();
+        return Math.floorDiv(ctime, size) * size;
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @return the retention in seconds of the Alerts and Events of the tenant, 0 if they do not expire
+     */
+    public int getTtl(String tenantId) {
+        return ttls.computeIfAbsent(tenantId, t -> {
+            int ttl = new Integer(properties.getProperty(CASSANDRA_TTL + "." + t, String.valueOf(defaultTtl)));
+            return Math.max(0, Math.min(MAX_TTL, ttl));
+        });
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @param ctime the ctime of an Alert or Event
+     * @return the TTL in seconds of a row written now for an Alert or Event with the ctime, 0 if it does not expire
+     */
+    public int ttl(String tenantId, long ctime) {
+        int ttl = getTtl(tenantId);
+        if (ttl == 0) {
+            return 0;
+        }
+        long remaining = ttl - (System.currentTimeMillis() - ctime) / 1000;
+        return (int) Math.max(1, Math.min(MAX_TTL, remaining));
+    }
+
+    boolean isExpired(String tenantId, long ctime) {
+        int ttl = getTtl(tenantId);
+        return ttl > 0 && System.currentTimeMillis() - ctime >= ttl * 1000L;
+    }
+
+    /**
+     * Register the bucket of a ctime for the tenant, if not already registered by this node. The bucket is kept
+     * until the retention of its last ctime.
+     */
+    void register(Session session, TagType type, String tenantId, long ctime) {
+        long bucket = bucket(ctime);
+        String key = tenantId + ":" + type.name() + ":" + bucket;
+        if (null != registered.get(key)) {
+            return;
+        }
+        PreparedStatement insertBucket = CassStatement.get(session, CassStatement.INSERT_BUCKET);
+        session.execute(insertBucket.bind(tenantId, type.name(), bucket,
+                ttl(tenantId, bucket + granularity.getMillis())));
+        registered.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * @return the registered buckets of the tenant overlapping the [start, end] ctime interval, a null start or end
+     * leaves the interval open
+     */
+    List<Long> buckets(Session session, TagType type, String tenantId, Long start, Long end) throws Exception {
+        readThrough(session, type, tenantId);
+        PreparedStatement selectBuckets = CassStatement.get(session, CassStatement.SELECT_BUCKETS);
+        long from = null == start ? Long.MIN_VALUE : bucket(start);
+        long to = null == end ? Long.MAX_VALUE : end;
+        List<Long> buckets = new ArrayList<>();
+        for (Row row : session.execute(selectBuckets.bind(tenantId, type.name(), from, to))) {
+            buckets.add(row.getLong("bucket"));
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the bucket of each of the ids found for the tenant
+     */
+    Map<String, Long> locate(Session session, TagType type, String tenantId, Collection<String> ids)
+            throws Exception {
+        readThrough(session, type, tenantId);
+        PreparedStatement selectBucketId = CassStatement.get(session, CassStatement.SELECT_BUCKET_ID);
+        List<ResultSetFuture> futures = ids.stream()
+                .map(id -> session.executeAsync(selectBucketId.bind(tenantId, type.name(), id)))
+                .collect(Collectors.toList());
+        List<ResultSet> rsBuckets = Futures.allAsList(futures).get();
+        Map<String, Long> located = new HashMap<>();
+        rsBuckets.stream().forEach(r -> {
+            for (Row row : r) {
+                located.put(row.getString("id"), row.getLong("bucket"));
+            }
+        });
+        return located;
+    }
+
+    BoundStatement bindId(Session session, TagType type, String tenantId, String id, long ctime) {
+        PreparedStatement insertBucketId = CassStatement.get(session, CassStatement.INSERT_BUCKET_ID);
+        return insertBucketId.bind(tenantId, type.name(), id, bucket(ctime), ttl(tenantId, ctime));
+    }
+
+    /*
+        Until the copy is finished, copy the Alerts or Events of the tenant before reading them
+     */
+    private void readThrough(Session session, TagType type, String tenantId) throws Exception {
+        String key = type.name() + "." + tenantId;
+        if (migrated || copied.contains(key)) {
+            return;
+        }
+        synchronized (copied) {
+            if (!copied.contains(key) && !isMigrated(session)) {
+                copy(session, type, tenantId, true, () -> { });
+            }
+            copied.add(key);
+        }
+    }
+
+    /**
+     * Copy the Alerts and Events stored on the non bucketed tables by previous versions to the bucketed tables,
+     * skipping those already expired for the retention of its tenant, and those already stored on the bucketed
+     * tables. The non bucketed tables are not modified.
+     *
+     * @param session the Cassandra session
+     * @param resume true to skip the tenants already copied, and record the tenants copied on
+     *               <code>sys_config</code>, false to copy all the tenants
+     * @return the number of Alerts and Events copied
+     */
+    public int migrate(Session session, boolean resume) throws Exception {
+        return migrate(session, resume, () -> { });
+    }
+
+    private int migrate(Session session, boolean resume, Runnable renew) throws Exception {
+        int count = 0;
+        for (TagType type : new TagType[] { TagType.ALERT, TagType.EVENT }) {
+            PreparedStatement selectTenants = CassStatement.get(session, TagType.ALERT == type
+                    ? CassStatement.SELECT_ALERTS_UNBUCKETED_TENANTS : CassStatement.SELECT_EVENTS_UNBUCKETED_TENANTS);
+            List<String> tenantIds = new ArrayList<>();
+            for (Row row : session.execute(selectTenants.bind())) {
+                tenantIds.add(row.getString("tenantId"));
+            }
+            for (String tenantId : tenantIds) {
+                count += copy(session, type, tenantId, resume, renew);
+                renew.run();
+            }
+        }
+        return count;
+    }
+
+    private int copy(Session session, TagType type, String tenantId, boolean resume, Runnable renew)
+            throws Exception {
+        PreparedStatement selectSysConfig = CassStatement.get(session, CassStatement.SELECT_SYS_CONFIG);
+        String progress = SYS_CONFIG_BUCKETS_MIGRATION + "." + type.name() + "." + tenantId;
+        if (resume && null != session.execute(selectSysConfig.bind(SYS_CONFIG_ID, progress)).one()) {
+            return 0;
+        }
+        boolean alerts = TagType.ALERT == type;
+        Class<? extends Event> clazz = alerts ? Alert.class : Event.class;
+        BoundStatement selectUnbucketed = CassStatement.get(session, alerts ? CassStatement.SELECT_ALERTS_UNBUCKETED
+                : CassStatement.SELECT_EVENTS_UNBUCKETED).bind(tenantId);
+        selectUnbucketed.setFetchSize(MIGRATION_FETCH_SIZE);
+
+        int count = 0;
+        List<Event> page = new ArrayList<>(MIGRATION_FETCH_SIZE);
+        for (Row row : session.execute(selectUnbucketed)) {
+            Event event = CassSnapshots.hydrate(session, row, CassPayload.decode(row, clazz, false), false);
+            if (null != event && !isExpired(tenantId, event.getCtime())) {
+                page.add(event);
+            }
+            if (page.size() == MIGRATION_FETCH_SIZE) {
+                count += copy(session, type, page);
+                page.clear();
+                renew.run();
+            }
+        }
+        count += copy(session, type, page);
+        if (resume) {
+            PreparedStatement insertSysConfig = CassStatement.get(session, CassStatement.INSERT_SYS_CONFIG);
+            session.execute(insertSysConfig.bind(SYS_CONFIG_ID, progress, MIGRATION_DONE));
+        }
+        return count;
+    }
+
+    /*
+        Claim the ids before copying them, an id already on buckets_ids was written by this version and is newer,
+        unless its row is missing because a previous copy was interrupted after the claim
+     */
+    private int copy(Session session, TagType type, List<Event> events) throws Exception {
+        boolean alerts = TagType.ALERT == type;
+        PreparedStatement insertBucketId = CassStatement.get(session, CassStatement.INSERT_BUCKET_ID_IF_NOT_EXISTS);
+        PreparedStatement select = CassStatement.get(session,
+                alerts ? CassStatement.SELECT_ALERT : CassStatement.SELECT_EVENT);
+        List<ResultSetFuture> claims = events.stream()
+                .map(e -> session.executeAsync(insertBucketId.bind(e.getTenantId(), type.name(), e.getId(),
+                        bucket(e.getCtime()), ttl(e.getTenantId(), e.getCtime()))))
+                .collect(Collectors.toList());
+        List<ResultSet> rsClaims = Futures.allAsList(claims).get();
+
+        int count = 0;
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            Event e = events.get(i);
+            ResultSet rsClaim = rsClaims.get(i);
+            if (!rsClaim.wasApplied()) {
+                long claimed = rsClaim.one().getLong("bucket");
+                if (null != session.execute(select.bind(e.getTenantId(), claimed, e.getId())).one()) {
+                    continue;
+                }
+            }
+            if (alerts) {
+                CassAlertsServiceImpl.insertAlert(session, this, (Alert) e, futures);
+            } else {
+                CassAlertsServiceImpl.insertEvent(session, this, e, futures);
+            }
+            count++;
+        }
+        Futures.allAsList(futures).get();
+        return count;
+    }
+}
@@ -26,6 +26,8 @@ import java.net.URL;
 import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.jar.Manifest;
 
@@ -33,13 +35,16 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.ejb.AccessTimeout;
+import javax.ejb.EJB;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.inject.Produces;
 import javax.net.ssl.SSLContext;
 
 import org.cassalog.core.Cassalog;
 import org.cassalog.core.CassalogBuilder;
+import org.hawkular.alerts.api.services.PropertiesService;
 import org.hawkular.alerts.engine.util.TokenReplacingReader;
 import org.infinispan.Cache;
 import org.infinispan.manager.EmbeddedCacheManager;
@@ -132,6 +137,8 @@ public class CassCluster {
 
     private Session session = null;
 
+    private CassBuckets timeBuckets = null;
+
     private boolean initialized = false;
 
     private boolean distributed = false;
@@ -150,6 +157,15 @@ public class CassCluster {
     @Resource(lookup = "java:jboss/infinispan/cache/hawkular-alerts/schema")
     private Cache schemaCache;
 
+    @EJB
+    PropertiesService properties;
+
+    /**
+     * Runs the copy of the Alerts and Events stored before the time buckets.
+     */
+    @Resource
+    private ManagedExecutorService executor;
+
     private void readProperties() {
         attempts = Integer.parseInt(AlertProperties.getProperty(ALERTS_CASSANDRA_RETRY_ATTEMPTS, "5"));
         timeout = Integer.parseInt(AlertProperties.getProperty(ALERTS_CASSANDRA_RETRY_TIMEOUT, "2000"));
@@ -269,6 +285,9 @@ public class CassCluster {
         if (keyspaceMetadata != null) {
             // If overwrite flag is true it should not check if all tables are created
             if (!overwrite) {
+                // Cassalog applies the schema updates not yet applied to the keyspace
+                log.infof("Updating Schema for keyspace %s", keyspace);
+                createSchema(session, keyspace, false);
                 waitForSchemaCheck();
                 if (!checkSchema()) {
                     log.errorf("Keyspace %s detected, but failed on check phase.", keyspace);
@@ -290,6 +309,23 @@ public class CassCluster {
                 log.infof("Done creating Schema for keyspace: %s", keyspace);
             }
         }
+        if (initialized) {
+            // Time buckets are fixed per keyspace, Alerts and Events stored before them are moved in background
+            timeBuckets = new CassBuckets(null != properties ? properties : new PropertiesServiceImpl());
+            timeBuckets.init(session);
+            migrateTimeBuckets();
+        }
+    }
+
+    private void migrateTimeBuckets() {
+        if (null != executor) {
+            timeBuckets.migrate(session, executor);
+        } else {
+            // Standalone use, the thread ends with the copy
+            ExecutorService standaloneExecutor = Executors.newSingleThreadExecutor();
+            timeBuckets.migrate(session, standaloneExecutor);
+            standaloneExecutor.shutdown();
+        }
     }
 
     private void waitForSchemaCheck() {
@@ -402,6 +438,12 @@ public class CassCluster {
         return session;
     }
 
+    @Produces
+    @AccessTimeout(value = 300, unit = TimeUnit.SECONDS)
+    public CassBuckets getTimeBuckets() {
+        return timeBuckets;
+    }
+
     @PreDestroy
     public void shutdown() {
         log.info("Closing Cassandra cluster session");
@@ -635,6 +635,64 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         return selectTriggers(null);
     }
 
+    /*
+        The whole definitions are fetched with a full scan per table, instead of a query per trigger, and they are
+        grouped in memory by tenantId and triggerId.
+     */
+    @Override
+    @AccessTimeout(value = 60, unit = TimeUnit.SECONDS)
+    public Collection<FullTrigger> getAllFullTriggers() throws Exception {
+        PreparedStatement selectTriggersAll = CassStatement.get(session, CassStatement.SELECT_TRIGGERS_ALL);
+        if (null == selectTriggersAll) {
+            throw new RuntimeException("selectTriggersAll PreparedStatement is null");
+        }
+        PreparedStatement selectTriggerActionsAll = CassStatement.get(session,
+                CassStatement.SELECT_TRIGGER_ACTIONS_ALL);
+        if (null == selectTriggerActionsAll) {
+            throw new RuntimeException("selectTriggerActionsAll PreparedStatement is null");
+        }
+
+        Map<String, FullTrigger> fullTriggers = new HashMap<>();
+        try {
+            ResultSet rsTriggers = session.execute(selectTriggersAll.bind());
+            for (Row row : rsTriggers) {
+                Trigger trigger = mapTrigger(row);
+                fullTriggers.put(trigger.getTenantId() + ":" + trigger.getId(),
+                        new FullTrigger(trigger, new ArrayList<>(), new ArrayList<>()));
+            }
+
+            ResultSet rsTriggerActions = session.execute(selectTriggerActionsAll.bind());
+            for (Row row : rsTriggerActions) {
+                FullTrigger fullTrigger = fullTriggers.get(row.getString("tenantId") + ":"
+                        + row.getString("triggerId"));
+                if (null != fullTrigger) {
+                    fullTrigger.getTrigger()
+                            .addAction(JsonUtil.fromJson(row.getString("payload"), TriggerAction.class));
+                }
+            }
+
+            for (Condition condition : getAllConditions()) {
+                FullTrigger fullTrigger = fullTriggers.get(condition.getTenantId() + ":"
+                        + condition.getTriggerId());
+                if (null != fullTrigger) {
+                    fullTrigger.getConditions().add(condition);
+                }
+            }
+
+            for (Dampening dampening : getAllDampenings()) {
+                FullTrigger fullTrigger = fullTriggers.get(dampening.getTenantId() + ":"
+                        + dampening.getTriggerId());
+                if (null != fullTrigger) {
+                    fullTrigger.getDampenings().add(dampening);
+                }
+            }
+        } catch (Exception e) {
+            msgLog.errorDatabaseException(e.getMessage());
+            throw e;
+        }
+        return fullTriggers.values();
+    }
+
     // TODO (jshaughn) The DB-Level filtering approach implemented below is a best-practice for dealing
     // with Cassandra.  It's basically a series of queries, one for each filter, with a progressive
     // intersection of the resulting ID set.
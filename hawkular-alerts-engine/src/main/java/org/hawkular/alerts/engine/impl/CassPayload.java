@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.hawkular.alerts.api.json.JacksonDeserializer;
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.utils.Bytes;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Encoding of the Alert, Event and Action payloads stored in Cassandra.
+ *
+ * With the JSON codec, the default, the payload is stored as JSON text in the <code>payload</code> column, as previous
+ * versions did, so the rows stay readable by nodes not knowing the <code>payload_blob</code> column during a rolling
+ * upgrade. With the SMILE codec the payload is stored as Jackson Smile, a binary JSON format, in the
+ * <code>payload_blob</code> column, with back references for repeated property names and short string values
+ * (tenantId, triggerId, dataId, etc.). SMILE should be enabled only once all the nodes of the cluster are upgraded.
+ *
+ * Reads do not depend on the configured codec: the blob is decoded when present, otherwise the row is an old (or a
+ * JSON codec) row and the text payload is parsed. Updates write the payload with the configured codec and clear the
+ * other column, so a row never holds two different versions of its payload.
+ *
+ * Alerts and Events referencing a {@link CassSnapshots} snapshot are encoded without their Trigger and Dampening.
+ *
+ * @author agent
+ */
+public class CassPayload {
+    private static final String CASSANDRA_PAYLOAD_CODEC = "hawkular-alerts.cassandra-payload-codec";
+
+    public static final String PAYLOAD = "payload";
+    public static final String PAYLOAD_BLOB = "payload_blob";
+
+    public enum Codec {
+        JSON, SMILE
+    }
+
+    private static final Codec codec;
+    private static final ObjectMapper mapper;
+    private static final ObjectMapper mapperThin;
+    private static final ObjectMapper mapperNoSnapshot;
+    private static final ObjectMapper jsonMapperNoSnapshot;
+
+    static {
+        codec = Codec.valueOf(AlertProperties.getProperty(CASSANDRA_PAYLOAD_CODEC, "json").trim().toUpperCase());
+
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        mapper = new ObjectMapper(factory);
+
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.setDeserializerModifier(new JacksonDeserializer.AlertThinDeserializer());
+        mapperThin = new ObjectMapper(factory);
+        mapperThin.registerModule(simpleModule);
+
+        mapperNoSnapshot = new ObjectMapper(factory);
+        mapperNoSnapshot.addMixIn(Event.class, NoSnapshotMixin.class);
+        jsonMapperNoSnapshot = new ObjectMapper();
+        jsonMapperNoSnapshot.addMixIn(Event.class, NoSnapshotMixin.class);
+    }
+
+    private CassPayload() {
+
+    }
+
+    public static Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return true if payloads are written on the <code>payload_blob</code> column
+     */
+    public static boolean isBinary() {
+        return Codec.SMILE == codec;
+    }
+
+    /**
+     * @return the payload column written by the configured codec
+     */
+    public static String column() {
+        return isBinary() ? PAYLOAD_BLOB : PAYLOAD;
+    }
+
+    /**
+     * @return the payload column not written by the configured codec
+     */
+    public static String otherColumn() {
+        return isBinary() ? PAYLOAD : PAYLOAD_BLOB;
+    }
+
+    /**
+     * @param resource the Alert, Event or Action to store
+     * @return the value to bind on the {@link #column()} of a statement, a String or a ByteBuffer
+     */
+    public static Object encode(Object resource) {
+        return isBinary() ? ByteBuffer.wrap(toSmile(resource)) : JsonUtil.toJson(resource);
+    }
+
+    /**
+     * @param event the Alert or Event to store, referencing a snapshot of its Trigger and Dampening
+     * @return the value to bind on the {@link #column()} of a statement, a String or a ByteBuffer
+     */
+    public static Object encodeNoSnapshot(Event event) {
+        try {
+            return isBinary() ? ByteBuffer.wrap(mapperNoSnapshot.writeValueAsBytes(event))
+                    : jsonMapperNoSnapshot.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static byte[] toSmile(Object resource) {
+        try {
+            return mapper.writeValueAsBytes(resource);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static <T> T fromSmile(byte[] smile, int offset, int length, Class<T> clazz, boolean thin) {
+        try {
+            return thin ? mapperThin.readValue(smile, offset, length, clazz)
+                    : mapper.readValue(smile, offset, length, clazz);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static <T> T decode(Row row, Class<T> clazz) {
+        return decode(row, clazz, false);
+    }
+
+    /**
+     * @param row a row selecting both the <code>payload</code> and the <code>payload_blob</code> columns
+     * @param clazz the type of the payload
+     * @param thin true to skip the thin fields of an Alert or Action
+     * @return the payload decoded from the blob column if present, otherwise parsed from the text column
+     */
+    public static <T> T decode(Row row, Class<T> clazz, boolean thin) {
+        ByteBuffer blob = row.getBytes(PAYLOAD_BLOB);
+        if (null == blob) {
+            return JsonUtil.fromJson(row.getString(PAYLOAD), clazz, thin);
+        }
+        if (blob.hasArray()) {
+            return fromSmile(blob.array(), blob.arrayOffset() + blob.position(), blob.remaining(), clazz, thin);
+        }
+        byte[] smile = Bytes.getArray(blob);
+        return fromSmile(smile, 0, smile.length, clazz, thin);
+    }
+
+    /*
+        Skips the Trigger and Dampening of an Alert or Event, stored on a snapshot.
+     */
+    abstract static class NoSnapshotMixin {
+        @JsonIgnore
+        abstract Trigger getTrigger();
+
+        @JsonIgnore
+        abstract Dampening getDampening();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Content-addressed snapshots of the Trigger and Dampening of the Alerts and Events generated by a trigger.
+ *
+ * Every Alert (or trigger Event) holds the Trigger and Dampening definitions at the time it was created. Instead of
+ * embedding them on every <code>alerts</code> (or <code>events</code>) row, the pair is stored once on the
+ * <code>snapshots</code> table, keyed by the SHA-1 of its content, and the row references it on its
+ * <code>snapshot</code> column. A trigger firing thousands of alerts with the same definition stores a single
+ * snapshot. The content is hashed with map entries ordered by key, so equal definitions get the same hash.
+ *
+ * Snapshots are hydrated on read through a local LRU cache of <code>cassandra-snapshot-cache-size</code> entries.
+ * Cached Trigger and Dampening instances are shared by all the hydrated Alerts and Events referencing them, so they
+ * must be treated as read-only. Thin reads of an Alert skip the Dampening, as it is a thin field.
+ *
+ * A snapshot not yet stored is inserted synchronously before the row referencing it is written, so a row never
+ * references a missing snapshot. If the insert fails the row is written with the definitions embedded.
+ *
+ * Rows written without snapshot, by previous versions or with <code>cassandra-alert-snapshots=false</code>, keep the
+ * definitions embedded on the payload and are read as before.
+ *
+ * Snapshots are opt-in, <code>cassandra-alert-snapshots=false</code> by default. Previous versions can not read the
+ * definitions of a row referencing a snapshot, so they must be enabled only once all the nodes of the cluster have
+ * been upgraded.
+ *
+ * @author agent
+ */
+public class CassSnapshots {
+    private static final Logger log = Logger.getLogger(CassSnapshots.class);
+
+    private static final String CASSANDRA_ALERT_SNAPSHOTS = "hawkular-alerts.cassandra-alert-snapshots";
+    private static final String CASSANDRA_SNAPSHOT_CACHE_SIZE = "hawkular-alerts.cassandra-snapshot-cache-size";
+
+    public static final String SNAPSHOT = "snapshot";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final boolean enabled;
+    private static final ObjectMapper hashMapper;
+    private static final Map<String, Snapshot> cache;
+
+    static {
+        enabled = Boolean.parseBoolean(AlertProperties.getProperty(CASSANDRA_ALERT_SNAPSHOTS, "false"));
+        int cacheSize = new Integer(AlertProperties.getProperty(CASSANDRA_SNAPSHOT_CACHE_SIZE, "1000"));
+        hashMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        cache = Collections.synchronizedMap(new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    private CassSnapshots() {
+
+    }
+
+    /**
+     * @return true if the Trigger and Dampening of Alerts and Events are stored as snapshots
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Store the snapshot of the Trigger and Dampening of an Alert or Event, if not already stored.
+     *
+     * @param session the Cassandra session
+     * @param event the Alert or Event to be written
+     * @return the hash referencing the snapshot, or null if the event must be written with embedded definitions
+     */
+    public static String store(Session session, Event event) {
+        if (!enabled || null == event.getTrigger()) {
+            return null;
+        }
+        Snapshot snapshot = new Snapshot(event.getTrigger(), event.getDampening());
+        String hash = hash(snapshot);
+        String key = key(event.getTenantId(), hash);
+        if (null != cache.get(key)) {
+            return hash;
+        }
+        PreparedStatement insertSnapshot = CassStatement.get(session, CassStatement.INSERT_SNAPSHOT);
+        Object payload = CassPayload.encode(snapshot);
+        // Cache a copy, the definitions of the event can be live instances of the engine
+        Snapshot stored = copy(payload);
+        try {
+            session.execute(insertSnapshot.bind(event.getTenantId(), hash, payload));
+        } catch (Exception e) {
+            log.debugf(e, "Snapshot [%s] of [%s] not stored for tenant [%s]", hash, event.getId(),
+                    event.getTenantId());
+            return null;
+        }
+        cache.put(key, stored);
+        return hash;
+    }
+
+    /**
+     * Set the Trigger and Dampening of an Alert or Event read from a row referencing a snapshot.
+     *
+     * @param session the Cassandra session
+     * @param row the row the event was read from, selecting the <code>snapshot</code> column
+     * @param event the Alert or Event decoded from the row payload
+     * @param thin true if the event was decoded thin
+     * @return the event
+     */
+    public static <T extends Event> T hydrate(Session session, Row row, T event, boolean thin) {
+        String hash = row.getString(SNAPSHOT);
+        if (null == hash || null == event) {
+            return event;
+        }
+        Snapshot snapshot = load(session, event.getTenantId(), hash);
+        if (null == snapshot) {
+            log.warnf("Snapshot [%s] of [%s] not found for tenant [%s]", hash, event.getId(), event.getTenantId());
+            return event;
+        }
+        event.setTrigger(snapshot.getTrigger());
+        if (!thin || !(event instanceof Alert)) {
+            event.setDampening(snapshot.getDampening());
+        }
+        return event;
+    }
+
+    private static Snapshot load(Session session, String tenantId, String hash) {
+        String key = key(tenantId, hash);
+        Snapshot snapshot = cache.get(key);
+        if (null == snapshot) {
+            PreparedStatement selectSnapshot = CassStatement.get(session, CassStatement.SELECT_SNAPSHOT);
+            Row row = session.execute(selectSnapshot.bind(tenantId, hash)).one();
+            if (null == row) {
+                return null;
+            }
+            snapshot = CassPayload.decode(row, Snapshot.class);
+            cache.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static String key(String tenantId, String hash) {
+        return tenantId + ":" + hash;
+    }
+
+    private static Snapshot copy(Object payload) {
+        if (payload instanceof String) {
+            return JsonUtil.fromJson((String) payload, Snapshot.class);
+        }
+        byte[] smile = ((ByteBuffer) payload).array();
+        return CassPayload.fromSmile(smile, 0, smile.length, Snapshot.class, false);
+    }
+
+    static String hash(Snapshot snapshot) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(hashMapper.writeValueAsString(snapshot).getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The Trigger and Dampening definitions referenced by Alerts and Events.
+     */
+    public static class Snapshot {
+
+        private Trigger trigger;
+
+        @JsonInclude(Include.NON_NULL)
+        private Dampening dampening;
+
+        public Snapshot() {
+            // for json assembly
+        }
+
+        public Snapshot(Trigger trigger, Dampening dampening) {
+            this.trigger = trigger;
+            this.dampening = dampening;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public void setTrigger(Trigger trigger) {
+            this.trigger = trigger;
+        }
+
+        public Dampening getDampening() {
+            return dampening;
+        }
+
+        public void setDampening(Dampening dampening) {
+            this.dampening = dampening;
+        }
+    }
+}
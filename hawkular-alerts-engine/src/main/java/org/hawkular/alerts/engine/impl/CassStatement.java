@@ -49,6 +49,8 @@ public class CassStatement {
     public static final String DELETE_ALERT_SEVERITY;
     public static final String DELETE_ALERT_STATUS;
     public static final String DELETE_ALERT_TRIGGER;
+    public static final String DELETE_ALERT_UNRESOLVED;
+    public static final String DELETE_BUCKET_ID;
     public static final String DELETE_CONDITIONS;
     public static final String DELETE_CONDITIONS_MODE;
     public static final String DELETE_DAMPENING_ID;
@@ -57,6 +59,7 @@ public class CassStatement {
     public static final String DELETE_EVENT_CATEGORY;
     public static final String DELETE_EVENT_CTIME;
     public static final String DELETE_EVENT_TRIGGER;
+    public static final String DELETE_SYS_CONFIG_LEASE;
     public static final String DELETE_TAG;
     public static final String DELETE_TRIGGER_ACTIONS;
     public static final String DELETE_TRIGGER;
@@ -73,8 +76,13 @@ public class CassStatement {
     public static final String INSERT_ALERT_CTIME;
     public static final String INSERT_ALERT_LIFECYCLE;
     public static final String INSERT_ALERT_SEVERITY;
+    public static final String INSERT_ALERT_SNAPSHOT;
     public static final String INSERT_ALERT_STATUS;
     public static final String INSERT_ALERT_TRIGGER;
+    public static final String INSERT_ALERT_UNRESOLVED;
+    public static final String INSERT_BUCKET;
+    public static final String INSERT_BUCKET_ID;
+    public static final String INSERT_BUCKET_ID_IF_NOT_EXISTS;
     public static final String INSERT_CONDITION_AVAILABILITY;
     public static final String INSERT_CONDITION_COMPARE;
     public static final String INSERT_CONDITION_EVENT;
@@ -87,8 +95,13 @@ public class CassStatement {
     public static final String INSERT_EVENT;
     public static final String INSERT_EVENT_CATEGORY;
     public static final String INSERT_EVENT_CTIME;
+    public static final String INSERT_EVENT_SNAPSHOT;
     public static final String INSERT_EVENT_TRIGGER;
+    public static final String INSERT_SNAPSHOT;
+    public static final String INSERT_SYS_CONFIG;
+    public static final String INSERT_SYS_CONFIG_LEASE;
     public static final String INSERT_TAG;
+    public static final String INSERT_TAG_TTL;
     public static final String INSERT_TRIGGER;
     public static final String INSERT_TRIGGER_ACTIONS;
 
@@ -119,7 +132,13 @@ public class CassStatement {
     public static final String SELECT_ALERT_STATUS;
     public static final String SELECT_ALERT_SEVERITY;
     public static final String SELECT_ALERT_TRIGGER;
-    public static final String SELECT_ALERTS_BY_TENANT;
+    public static final String SELECT_ALERTS_BY_BUCKET;
+    public static final String SELECT_ALERTS_UNBUCKETED;
+    public static final String SELECT_ALERTS_UNBUCKETED_TENANTS;
+    public static final String SELECT_ALERTS_UNRESOLVED;
+    public static final String SELECT_ALERTS_UNRESOLVED_TRIGGER;
+    public static final String SELECT_BUCKET_ID;
+    public static final String SELECT_BUCKETS;
     public static final String SELECT_CONDITION_ID;
     public static final String SELECT_CONDITIONS_ALL;
     public static final String SELECT_CONDITIONS_BY_TENANT;
@@ -132,14 +151,19 @@ public class CassStatement {
     public static final String SELECT_EVENT_CTIME_START;
     public static final String SELECT_EVENT_CTIME_START_END;
     public static final String SELECT_EVENT_TRIGGER;
-    public static final String SELECT_EVENTS_BY_TENANT;
+    public static final String SELECT_EVENTS_BY_BUCKET;
+    public static final String SELECT_EVENTS_UNBUCKETED;
+    public static final String SELECT_EVENTS_UNBUCKETED_TENANTS;
     //public static final String SELECT_EVENTS_BY_PARTITION;
     // public static final String SELECT_PARTITIONS_EVENTS;
     public static final String SELECT_PARTITIONS_TRIGGERS;
+    public static final String SELECT_SNAPSHOT;
+    public static final String SELECT_SYS_CONFIG;
     public static final String SELECT_TAGS_BY_NAME;
     public static final String SELECT_TAGS_BY_NAME_AND_VALUE;
     public static final String SELECT_TRIGGER;
     public static final String SELECT_TRIGGER_ACTIONS;
+    public static final String SELECT_TRIGGER_ACTIONS_ALL;
     public static final String SELECT_TRIGGER_CONDITIONS;
     public static final String SELECT_TRIGGER_CONDITIONS_TRIGGER_MODE;
     public static final String SELECT_TRIGGER_DAMPENINGS;
@@ -152,8 +176,12 @@ public class CassStatement {
     public static final String UPDATE_ACTION_PLUGIN;
     public static final String UPDATE_ACTION_PLUGIN_DEFAULT_PROPERTIES;
     public static final String UPDATE_ALERT;
+    public static final String UPDATE_ALERT_SNAPSHOT;
     public static final String UPDATE_DAMPENING_ID;
     public static final String UPDATE_EVENT;
+    public static final String UPDATE_EVENT_SNAPSHOT;
+    public static final String UPDATE_SYS_CONFIG;
+    public static final String UPDATE_SYS_CONFIG_LEASE;
     public static final String UPDATE_TRIGGER;
     public static final String UPDATE_TRIGGER_DATA_ID_MAP;
     public static final String UPDATE_TRIGGER_ENABLED;
@@ -161,6 +189,10 @@ public class CassStatement {
     static {
         keyspace = AlertProperties.getProperty(CASSANDRA_KEYSPACE, "hawkular_alerts");
 
+        // Alert, Event, Action and snapshot payload columns, written according to the CassPayload codec
+        String payload = CassPayload.column();
+        String otherPayload = CassPayload.otherColumn();
+
         DELETE_ACTION_DEFINITION = "DELETE FROM " + keyspace + ".actions_definitions "
                 + "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? ";
 
@@ -181,23 +213,30 @@ public class CassStatement {
 
         DELETE_ACTION_PLUGIN = "DELETE FROM " + keyspace + ".action_plugins WHERE actionPlugin = ? ";
 
-        DELETE_ALERT = "DELETE FROM " + keyspace + ".alerts " + "WHERE tenantId = ? AND alertId = ? ";
+        DELETE_ALERT = "DELETE FROM " + keyspace + ".alerts_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
+
+        DELETE_ALERT_CTIME = "DELETE FROM " + keyspace + ".alerts_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND alertId = ? ";
 
-        DELETE_ALERT_CTIME = "DELETE FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime = ? AND alertId = ? ";
+        DELETE_ALERT_LIFECYCLE = "DELETE FROM " + keyspace + ".alerts_lifecycle_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND stime = ? AND alertId = ? ";
 
-        DELETE_ALERT_LIFECYCLE = "DELETE FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime = ? AND alertId = ? ";
+        DELETE_ALERT_SEVERITY = "DELETE FROM " + keyspace + ".alerts_severities_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND severity = ? AND alertId = ? ";
 
-        DELETE_ALERT_SEVERITY = "DELETE FROM " + keyspace + ".alerts_severities "
-                + "WHERE tenantId = ? AND severity = ? AND alertId = ? ";
+        DELETE_ALERT_STATUS = "DELETE FROM " + keyspace + ".alerts_statuses_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND alertId = ? ";
 
-        DELETE_ALERT_STATUS = "DELETE FROM " + keyspace + ".alerts_statuses "
-                + "WHERE tenantId = ? AND status = ? AND alertId = ? ";
+        DELETE_ALERT_TRIGGER = "DELETE FROM " + keyspace + ".alerts_triggers_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND triggerId = ? AND alertId = ? ";
 
-        DELETE_ALERT_TRIGGER = "DELETE FROM " + keyspace + ".alerts_triggers "
+        DELETE_ALERT_UNRESOLVED = "DELETE FROM " + keyspace + ".alerts_unresolved "
                 + "WHERE tenantId = ? AND triggerId = ? AND alertId = ? ";
 
+        DELETE_BUCKET_ID = "DELETE FROM " + keyspace + ".buckets_ids "
+                + "WHERE tenantId = ? AND type = ? AND id = ? ";
+
         DELETE_CONDITIONS = "DELETE FROM " + keyspace + ".conditions " + "WHERE tenantId = ? AND triggerId = ? ";
 
         DELETE_CONDITIONS_MODE = "DELETE FROM " + keyspace + ".conditions "
@@ -208,16 +247,20 @@ public class CassStatement {
 
         DELETE_DAMPENINGS = "DELETE FROM " + keyspace + ".dampenings " + "WHERE tenantId = ? AND triggerId = ? ";
 
-        DELETE_EVENT = "DELETE FROM " + keyspace + ".events " + "WHERE tenantId = ? AND id = ? ";
+        DELETE_EVENT = "DELETE FROM " + keyspace + ".events_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND id = ? ";
 
-        DELETE_EVENT_CTIME = "DELETE FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime = ? AND id = ? ";
+        DELETE_EVENT_CTIME = "DELETE FROM " + keyspace + ".events_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND id = ? ";
 
-        DELETE_EVENT_CATEGORY = "DELETE FROM " + keyspace + ".events_categories "
-                + "WHERE tenantId = ? AND category = ? AND id = ? ";
+        DELETE_EVENT_CATEGORY = "DELETE FROM " + keyspace + ".events_categories_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND category = ? AND id = ? ";
 
-        DELETE_EVENT_TRIGGER = "DELETE FROM " + keyspace + ".events_triggers "
-                + "WHERE tenantId = ? AND triggerId = ? AND id = ? ";
+        DELETE_EVENT_TRIGGER = "DELETE FROM " + keyspace + ".events_triggers_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND triggerId = ? AND id = ? ";
+
+        DELETE_SYS_CONFIG_LEASE = "DELETE FROM " + keyspace + ".sys_config "
+                + "WHERE config_id = ? AND name = ? IF value = ? ";
 
         DELETE_TAG = "DELETE FROM " + keyspace + ".tags "
                 + "WHERE tenantId = ? AND type = ? AND name = ? and value = ? AND id = ?";
@@ -231,7 +274,7 @@ public class CassStatement {
                 + "(tenantId, actionPlugin, actionId, payload) VALUES (?, ?, ?, ?) ";
 
         INSERT_ACTION_HISTORY = "INSERT INTO " + keyspace + ".actions_history "
-                + "(tenantId, actionPlugin, actionId, alertId, ctime, payload) VALUES (?, ?, ?, ?, ?, ?) " +
+                + "(tenantId, actionPlugin, actionId, alertId, ctime, " + payload + ") VALUES (?, ?, ?, ?, ?, ?) " +
                 "IF NOT EXISTS";
 
         INSERT_ACTION_HISTORY_ACTION = "INSERT INTO " + keyspace + ".actions_history_actions "
@@ -256,22 +299,38 @@ public class CassStatement {
         INSERT_ACTION_PLUGIN_DEFAULT_PROPERTIES = "INSERT INTO " + keyspace + ".action_plugins "
                 + "(actionPlugin, properties, defaultProperties) VALUES (?, ?, ?) ";
 
-        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts " + "(tenantId, alertId, payload) VALUES (?, ?, ?) ";
+        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts_bucketed "
+                + "(tenantId, bucket, alertId, " + payload + ") VALUES (?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes_bucketed "
+                + "(tenantId, bucket, alertId, ctime) VALUES (?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_ALERT_LIFECYCLE = "INSERT INTO " + keyspace + ".alerts_lifecycle_bucketed "
+                + "(tenantId, bucket, alertId, status, stime) VALUES (?, ?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_ALERT_SEVERITY = "INSERT INTO " + keyspace + ".alerts_severities_bucketed "
+                + "(tenantId, bucket, alertId, severity) VALUES (?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_ALERT_SNAPSHOT = "INSERT INTO " + keyspace + ".alerts_bucketed "
+                + "(tenantId, bucket, alertId, " + payload + ", snapshot) VALUES (?, ?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_ALERT_STATUS = "INSERT INTO " + keyspace + ".alerts_statuses_bucketed "
+                + "(tenantId, bucket, alertId, status) VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes "
-                + "(tenantId, alertId, ctime) VALUES (?, ?, ?) ";
+        INSERT_ALERT_TRIGGER = "INSERT INTO " + keyspace + ".alerts_triggers_bucketed "
+                + "(tenantId, bucket, alertId, triggerId) VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_ALERT_LIFECYCLE = "INSERT INTO " + keyspace + ".alerts_lifecycle "
-                + "(tenantId, alertId, status, stime) VALUES (?, ?, ?, ?) ";
+        INSERT_ALERT_UNRESOLVED = "INSERT INTO " + keyspace + ".alerts_unresolved "
+                + "(tenantId, triggerId, alertId, bucket, status) VALUES (?, ?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_ALERT_SEVERITY = "INSERT INTO " + keyspace + ".alerts_severities "
-                + "(tenantId, alertId, severity) VALUES (?, ?, ?) ";
+        INSERT_BUCKET = "INSERT INTO " + keyspace + ".buckets "
+                + "(tenantId, type, bucket) VALUES (?, ?, ?) USING TTL ? ";
 
-        INSERT_ALERT_STATUS = "INSERT INTO " + keyspace + ".alerts_statuses "
-                + "(tenantId, alertId, status) VALUES (?, ?, ?) ";
+        INSERT_BUCKET_ID = "INSERT INTO " + keyspace + ".buckets_ids "
+                + "(tenantId, type, id, bucket) VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_ALERT_TRIGGER = "INSERT INTO " + keyspace + ".alerts_triggers "
-                + "(tenantId, alertId, triggerId) VALUES (?, ?, ?) ";
+        INSERT_BUCKET_ID_IF_NOT_EXISTS = "INSERT INTO " + keyspace + ".buckets_ids "
+                + "(tenantId, type, id, bucket) VALUES (?, ?, ?, ?) IF NOT EXISTS USING TTL ? ";
 
         INSERT_CONDITION_AVAILABILITY = "INSERT INTO " + keyspace + ".conditions "
                 + "(tenantId, triggerId, triggerMode, type, context, conditionSetSize, conditionSetIndex, " +
@@ -313,21 +372,36 @@ public class CassStatement {
                 + "(tenantId, triggerId, triggerMode, type, evalTrueSetting, evalTotalSetting, evalTimeSetting, "
                 + "dampeningId) VALUES (?, ?, ?, ?, ?, ?, ?, ?) ";
 
-        INSERT_EVENT = "INSERT INTO " + keyspace + ".events "
-                + "(tenantId, id, payload) VALUES (?, ?, ?) ";
+        INSERT_EVENT = "INSERT INTO " + keyspace + ".events_bucketed "
+                + "(tenantId, bucket, id, " + payload + ") VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_EVENT_CTIME = "INSERT INTO " + keyspace + ".events_ctimes "
-                + "(tenantId, ctime, id) VALUES (?, ?, ?) ";
+        INSERT_EVENT_CTIME = "INSERT INTO " + keyspace + ".events_ctimes_bucketed "
+                + "(tenantId, bucket, ctime, id) VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_EVENT_CATEGORY = "INSERT INTO " + keyspace + ".events_categories "
-                + "(tenantId, category, id) VALUES (?, ?, ?) ";
+        INSERT_EVENT_CATEGORY = "INSERT INTO " + keyspace + ".events_categories_bucketed "
+                + "(tenantId, bucket, category, id) VALUES (?, ?, ?, ?) USING TTL ? ";
 
-        INSERT_EVENT_TRIGGER = "INSERT INTO " + keyspace + ".events_triggers "
-                + "(tenantId, triggerId, id) VALUES (?, ?, ?) ";
+        INSERT_EVENT_SNAPSHOT = "INSERT INTO " + keyspace + ".events_bucketed "
+                + "(tenantId, bucket, id, " + payload + ", snapshot) VALUES (?, ?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_EVENT_TRIGGER = "INSERT INTO " + keyspace + ".events_triggers_bucketed "
+                + "(tenantId, bucket, triggerId, id) VALUES (?, ?, ?, ?) USING TTL ? ";
+
+        INSERT_SNAPSHOT = "INSERT INTO " + keyspace + ".snapshots "
+                + "(tenantId, hash, " + payload + ") VALUES (?, ?, ?) ";
+
+        INSERT_SYS_CONFIG = "INSERT INTO " + keyspace + ".sys_config "
+                + "(config_id, name, value) VALUES (?, ?, ?) IF NOT EXISTS";
+
+        INSERT_SYS_CONFIG_LEASE = "INSERT INTO " + keyspace + ".sys_config "
+                + "(config_id, name, value) VALUES (?, ?, ?) IF NOT EXISTS USING TTL ? ";
 
         INSERT_TAG = "INSERT INTO " + keyspace + ".tags "
                 + "(tenantId, type, name, value, id) VALUES (?, ?, ?, ?, ?) ";
 
+        INSERT_TAG_TTL = "INSERT INTO " + keyspace + ".tags "
+                + "(tenantId, type, name, value, id) VALUES (?, ?, ?, ?, ?) USING TTL ? ";
+
         INSERT_TRIGGER = "INSERT INTO " + keyspace + ".triggers " +
                 "(tenantId, id, autoDisable, autoEnable, autoResolve, autoResolveAlerts, autoResolveMatch, "
                 + "context, dataIdMap, description, enabled, eventCategory, eventText, eventType, firingMatch, "
@@ -343,7 +417,7 @@ public class CassStatement {
         SELECT_ACTION_DEFINITIONS_BY_TENANT = "SELECT payload FROM " + keyspace + ".actions_definitions "
                 + "WHERE tenantId = ? ";
 
-        SELECT_ACTION_HISTORY = "SELECT payload FROM " + keyspace + ".actions_history " +
+        SELECT_ACTION_HISTORY = "SELECT payload, payload_blob FROM " + keyspace + ".actions_history " +
                 "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? AND alertId = ? and ctime = ?";
 
         SELECT_ACTION_HISTORY_ACTION_ID = "SELECT tenantId, actionPlugin, actionId, alertId, ctime FROM " +
@@ -355,7 +429,7 @@ public class CassStatement {
         SELECT_ACTION_HISTORY_ALERT_ID = "SELECT tenantId, actionPlugin, actionId, alertId, ctime FROM " +
                 keyspace + ".actions_history_alerts WHERE tenantId = ? AND alertId = ?";
 
-        SELECT_ACTION_HISTORY_BY_TENANT = "SELECT payload FROM " + keyspace + ".actions_history " +
+        SELECT_ACTION_HISTORY_BY_TENANT = "SELECT payload, payload_blob FROM " + keyspace + ".actions_history " +
                 "WHERE tenantId = ?";
 
         SELECT_ACTION_HISTORY_CTIME_END = "SELECT tenantId, actionPlugin, actionId, alertId, ctime FROM " + keyspace +
@@ -386,37 +460,57 @@ public class CassStatement {
         SELECT_ACTION_ID_BY_PLUGIN = "SELECT actionId FROM " + keyspace + ".actions_definitions "
                 + "WHERE tenantId = ? AND actionPlugin = ? ";
 
-        SELECT_ALERT = "SELECT payload FROM " + keyspace + ".alerts "
-                + "WHERE tenantId = ? AND alertId = ? ";
+        SELECT_ALERT = "SELECT payload, payload_blob, snapshot FROM " + keyspace + ".alerts_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
 
-        SELECT_ALERT_CTIME_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime <= ? ";
+        SELECT_ALERT_CTIME_END = "SELECT alertId, bucket FROM " + keyspace + ".alerts_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime <= ? ";
 
-        SELECT_ALERT_CTIME_START = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? ";
+        SELECT_ALERT_CTIME_START = "SELECT alertId, bucket FROM " + keyspace + ".alerts_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? ";
 
-        SELECT_ALERT_CTIME_START_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? AND ctime <= ? ";
+        SELECT_ALERT_CTIME_START_END = "SELECT alertId, bucket FROM " + keyspace + ".alerts_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
 
-        SELECT_ALERT_LIFECYCLE_END = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime <= ? ";
+        SELECT_ALERT_LIFECYCLE_END = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_lifecycle_bucketed WHERE tenantId = ? AND bucket = ? AND status = ? AND stime <= ? ";
 
-        SELECT_ALERT_LIFECYCLE_START = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime >= ? ";
+        SELECT_ALERT_LIFECYCLE_START = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_lifecycle_bucketed WHERE tenantId = ? AND bucket = ? AND status = ? AND stime >= ? ";
 
-        SELECT_ALERT_LIFECYCLE_START_END = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime >= ? AND stime <= ? ";
+        SELECT_ALERT_LIFECYCLE_START_END = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_lifecycle_bucketed WHERE tenantId = ? AND bucket = ? AND status = ? "
+                + "AND stime >= ? AND stime <= ? ";
 
-        SELECT_ALERT_SEVERITY = "SELECT alertId FROM " + keyspace + ".alerts_severities "
-                + "WHERE tenantId = ? AND severity = ? ";
+        SELECT_ALERT_SEVERITY = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_severities_bucketed WHERE tenantId = ? AND bucket = ? AND severity = ? ";
 
-        SELECT_ALERT_STATUS = "SELECT alertId FROM " + keyspace + ".alerts_statuses "
-                + "WHERE tenantId = ? AND status = ? ";
+        SELECT_ALERT_STATUS = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_statuses_bucketed WHERE tenantId = ? AND bucket = ? AND status = ? ";
 
-        SELECT_ALERTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".alerts " + "WHERE tenantId = ? ";
+        SELECT_ALERTS_BY_BUCKET = "SELECT payload, payload_blob, snapshot FROM " + keyspace
+                + ".alerts_bucketed WHERE tenantId = ? AND bucket = ? ";
 
-        SELECT_ALERT_TRIGGER = "SELECT alertId FROM " + keyspace + ".alerts_triggers "
-                + "WHERE tenantId = ? AND triggerId = ? ";
+        // Alerts and Events stored before the time-bucketed tables, only read to migrate them
+        SELECT_ALERTS_UNBUCKETED = "SELECT payload, payload_blob, snapshot FROM " + keyspace + ".alerts "
+                + "WHERE tenantId = ? ";
+
+        SELECT_ALERTS_UNBUCKETED_TENANTS = "SELECT DISTINCT tenantId FROM " + keyspace + ".alerts ";
+
+        SELECT_ALERTS_UNRESOLVED = "SELECT alertId, bucket, status FROM " + keyspace + ".alerts_unresolved "
+                + "WHERE tenantId = ? ";
+
+        SELECT_ALERTS_UNRESOLVED_TRIGGER = "SELECT alertId, bucket, status FROM " + keyspace
+                + ".alerts_unresolved WHERE tenantId = ? AND triggerId = ? ";
+
+        SELECT_BUCKET_ID = "SELECT id, bucket FROM " + keyspace + ".buckets_ids "
+                + "WHERE tenantId = ? AND type = ? AND id = ? ";
+
+        SELECT_BUCKETS = "SELECT bucket FROM " + keyspace + ".buckets "
+                + "WHERE tenantId = ? AND type = ? AND bucket >= ? AND bucket <= ? ";
+
+        SELECT_ALERT_TRIGGER = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_triggers_bucketed WHERE tenantId = ? AND bucket = ? AND triggerId = ? ";
 
         SELECT_CONDITION_ID = "SELECT triggerId, triggerMode, type, conditionSetSize, "
                 + "conditionSetIndex, conditionId, dataId, operator, data2Id, data2Multiplier, pattern, "
@@ -452,28 +546,34 @@ public class CassStatement {
                 + "FROM " + keyspace + ".dampenings "
                 + "WHERE tenantId = ? ";
 
-        SELECT_EVENT = "SELECT payload FROM " + keyspace + ".events "
-                + "WHERE tenantId = ? AND  id = ? ";
+        SELECT_EVENT = "SELECT payload, payload_blob, snapshot FROM " + keyspace + ".events_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND id = ? ";
 
-        SELECT_EVENT_CATEGORY = "SELECT id FROM " + keyspace + ".events_categories "
-                + "WHERE tenantId = ? AND category = ? ";
+        SELECT_EVENT_CATEGORY = "SELECT id, bucket FROM " + keyspace
+                + ".events_categories_bucketed WHERE tenantId = ? AND bucket = ? AND category = ? ";
 
-        SELECT_EVENT_CTIME_END = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime <= ? ";
+        SELECT_EVENT_CTIME_END = "SELECT id, bucket FROM " + keyspace + ".events_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime <= ? ";
 
-        SELECT_EVENT_CTIME_START = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? ";
+        SELECT_EVENT_CTIME_START = "SELECT id, bucket FROM " + keyspace + ".events_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? ";
 
-        SELECT_EVENT_CTIME_START_END = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? AND ctime <= ? ";
+        SELECT_EVENT_CTIME_START_END = "SELECT id, bucket FROM " + keyspace + ".events_ctimes_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
 
-        SELECT_EVENT_TRIGGER = "SELECT id FROM " + keyspace + ".events_triggers "
-                + "WHERE tenantId = ? AND triggerId = ? ";
+        SELECT_EVENT_TRIGGER = "SELECT id, bucket FROM " + keyspace
+                + ".events_triggers_bucketed WHERE tenantId = ? AND bucket = ? AND triggerId = ? ";
 
         //SELECT_EVENTS_BY_PARTITION = "SELECT payload FROM " + keyspace + ".events "
         //        + "WHERE tenantId = ? AND category = ? ";
 
-        SELECT_EVENTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".events " + "WHERE tenantId = ? ";
+        SELECT_EVENTS_BY_BUCKET = "SELECT payload, payload_blob, snapshot FROM " + keyspace
+                + ".events_bucketed WHERE tenantId = ? AND bucket = ? ";
+
+        SELECT_EVENTS_UNBUCKETED = "SELECT payload, payload_blob, snapshot FROM " + keyspace + ".events "
+                + "WHERE tenantId = ? ";
+
+        SELECT_EVENTS_UNBUCKETED_TENANTS = "SELECT DISTINCT tenantId FROM " + keyspace + ".events ";
 
         // This is for use as a pre-query to gather all partitions to be subsequently queried. If the
         // partition key changes this should also change.
@@ -483,6 +583,12 @@ public class CassStatement {
         // partition key changes this should also change.
         SELECT_PARTITIONS_TRIGGERS = "SELECT DISTINCT tenantid FROM " + keyspace + ".triggers ";
 
+        SELECT_SNAPSHOT = "SELECT payload, payload_blob FROM " + keyspace + ".snapshots "
+                + "WHERE tenantId = ? AND hash = ? ";
+
+        SELECT_SYS_CONFIG = "SELECT value FROM " + keyspace + ".sys_config "
+                + "WHERE config_id = ? AND name = ? ";
+
         SELECT_TAGS_BY_NAME = "SELECT tenantId, value, id "
                 + "FROM " + keyspace + ".tags "
                 + "WHERE tenantId = ? AND type = ? and name = ? ";
@@ -501,6 +607,9 @@ public class CassStatement {
                 + "FROM " + keyspace + ".triggers_actions "
                 + "WHERE tenantId = ? AND triggerId = ? ";
 
+        SELECT_TRIGGER_ACTIONS_ALL = "SELECT tenantId, triggerId, actionPlugin, actionId, payload "
+                + "FROM " + keyspace + ".triggers_actions ";
+
         SELECT_TRIGGER_CONDITIONS = "SELECT triggerId, triggerMode, type, conditionSetSize, "
                 + "conditionSetIndex, conditionId, dataId, operator, data2Id, data2Multiplier, pattern, "
                 + "ignoreCase, threshold, operatorLow, operatorHigh, thresholdLow, thresholdHigh, inRange, "
@@ -539,7 +648,7 @@ public class CassStatement {
                 + "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? ";
 
         UPDATE_ACTION_HISTORY = "UPDATE " + keyspace + ".actions_history " +
-                "SET payload = ? " +
+                "SET " + payload + " = ?, " + otherPayload + " = null " +
                 "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? AND alertId = ? AND ctime = ?";
 
         UPDATE_ACTION_PLUGIN = "UPDATE " + keyspace + ".action_plugins SET properties = ? WHERE actionPlugin = ? ";
@@ -547,13 +656,31 @@ public class CassStatement {
         UPDATE_ACTION_PLUGIN_DEFAULT_PROPERTIES = "UPDATE " + keyspace + ".action_plugins " +
                 "SET properties = ?, defaultProperties = ? WHERE actionPlugin = ? ";
 
-        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts SET payload = ? WHERE tenantId = ? AND alertId = ? ";
+        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts_bucketed USING TTL ? "
+                + "SET " + payload + " = ?, " + otherPayload + " = null "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
+
+        UPDATE_ALERT_SNAPSHOT = "UPDATE " + keyspace + ".alerts_bucketed USING TTL ? "
+                + "SET " + payload + " = ?, " + otherPayload + " = null, snapshot = ? "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
 
         UPDATE_DAMPENING_ID = "UPDATE " + keyspace + ".dampenings "
                 + "SET type = ?, evalTrueSetting = ?, evalTotalSetting = ?, evalTimeSetting = ? "
                 + "WHERE tenantId = ? AND triggerId = ? AND triggerMode = ? AND dampeningId = ? ";
 
-        UPDATE_EVENT = "UPDATE " + keyspace + ".events SET payload = ? WHERE tenantId = ? AND id = ? ";
+        UPDATE_EVENT = "UPDATE " + keyspace + ".events_bucketed USING TTL ? "
+                + "SET " + payload + " = ?, " + otherPayload + " = null "
+                + "WHERE tenantId = ? AND bucket = ? AND id = ? ";
+
+        UPDATE_EVENT_SNAPSHOT = "UPDATE " + keyspace + ".events_bucketed USING TTL ? "
+                + "SET " + payload + " = ?, " + otherPayload + " = null, snapshot = ? "
+                + "WHERE tenantId = ? AND bucket = ? AND id = ? ";
+
+        UPDATE_SYS_CONFIG = "UPDATE " + keyspace + ".sys_config "
+                + "SET value = ? WHERE config_id = ? AND name = ? ";
+
+        UPDATE_SYS_CONFIG_LEASE = "UPDATE " + keyspace + ".sys_config USING TTL ? "
+                + "SET value = ? WHERE config_id = ? AND name = ? IF value = ? ";
 
         UPDATE_TRIGGER = "UPDATE " + keyspace + ".triggers "
                 + "SET autoDisable = ?, autoEnable = ?, autoResolve = ?, autoResolveAlerts = ?, autoResolveMatch = ?, "
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+/**
+ * Auxiliary index for AlertsEngine implementation.
+ *
+ * It stores the dataIds that can be coalesced on a rules execution: only the latest Data of a coalesced dataId is
+ * evaluated, older Data of the same dataId in the same execution are skipped.
+ *
+ * Coalescing is enabled per trigger with the {@link #COALESCE_CONTEXT} context property. A dataId is coalesced only
+ * if all the loaded triggers with a condition on it have coalescing enabled, so triggers not opted in always
+ * evaluate every Data.
+ *
+ * Updates are synchronized, {@link #isCoalesced(String, String)} can be called concurrently without locking.
+ *
+ * @author agent
+ */
+public class CoalescedDataIndex {
+
+    /**
+     * Trigger context property to enable the coalescing of the Data of the trigger conditions, "true" or "false".
+     */
+    public static final String COALESCE_CONTEXT = "alerts.coalesce-data";
+
+    private static class Usage {
+        int coalesced;
+        int notCoalesced;
+    }
+
+    private static class Registration {
+        final boolean coalesce;
+        final List<String> dataIds;
+
+        Registration(boolean coalesce, List<String> dataIds) {
+            this.coalesce = coalesce;
+            this.dataIds = dataIds;
+        }
+    }
+
+    // tenantId -> dataIds coalesced
+    private final Map<String, Set<String>> coalesced = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Usage> usages = new HashMap<>();
+    private final Map<String, Registration> triggers = new HashMap<>();
+
+    public static boolean isCoalesce(Trigger trigger) {
+        return null != trigger.getContext() && Boolean.parseBoolean(trigger.getContext().get(COALESCE_CONTEXT));
+    }
+
+    /**
+     * Register the dataIds of the conditions of a loaded trigger, replacing a previous registration of the trigger.
+     *
+     * @param trigger the loaded trigger
+     * @param conditions the conditions of the trigger
+     */
+    public synchronized void add(Trigger trigger, Collection<Condition> conditions) {
+        remove(trigger.getTenantId(), trigger.getId());
+        List<String> dataIds = new ArrayList<>(conditions.size());
+        for (Condition c : conditions) {
+            dataIds.add(c.getDataId());
+            if (Condition.Type.COMPARE == c.getType()) {
+                dataIds.add(((CompareCondition) c).getData2Id());
+            }
+        }
+        boolean coalesce = isCoalesce(trigger);
+        triggers.put(key(trigger.getTenantId(), trigger.getId()), new Registration(coalesce, dataIds));
+        for (String dataId : dataIds) {
+            String dataKey = key(trigger.getTenantId(), dataId);
+            Usage usage = usages.get(dataKey);
+            if (null == usage) {
+                usage = new Usage();
+                usages.put(dataKey, usage);
+            }
+            if (coalesce) {
+                usage.coalesced++;
+            } else {
+                usage.notCoalesced++;
+            }
+            update(trigger.getTenantId(), dataId, usage);
+        }
+    }
+
+    /**
+     * Unregister the dataIds of a trigger.
+     *
+     * @param tenantId the tenantId of the trigger
+     * @param triggerId the triggerId of the trigger
+     */
+    public synchronized void remove(String tenantId, String triggerId) {
+        Registration registration = triggers.remove(key(tenantId, triggerId));
+        if (null == registration) {
+            return;
+        }
+        for (String dataId : registration.dataIds) {
+            String dataKey = key(tenantId, dataId);
+            Usage usage = usages.get(dataKey);
+            if (registration.coalesce) {
+                usage.coalesced--;
+            } else {
+                usage.notCoalesced--;
+            }
+            if (0 == usage.coalesced && 0 == usage.notCoalesced) {
+                usages.remove(dataKey);
+            }
+            update(tenantId, dataId, usage);
+        }
+    }
+
+    private void update(String tenantId, String dataId, Usage usage) {
+        if (usage.coalesced > 0 && 0 == usage.notCoalesced) {
+            coalesced.computeIfAbsent(tenantId, t -> ConcurrentHashMap.newKeySet()).add(dataId);
+        } else {
+            Set<String> dataIds = coalesced.get(tenantId);
+            if (null != dataIds) {
+                dataIds.remove(dataId);
+                if (dataIds.isEmpty()) {
+                    coalesced.remove(tenantId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tenantId the tenantId of the Data
+     * @param dataId the dataId of the Data
+     * @return true if only the latest Data of the dataId needs to be evaluated on a rules execution
+     */
+    public boolean isCoalesced(String tenantId, String dataId) {
+        if (coalesced.isEmpty()) {
+            return false;
+        }
+        Set<String> dataIds = coalesced.get(tenantId);
+        return null != dataIds && dataIds.contains(dataId);
+    }
+
+    public boolean isEmpty() {
+        return coalesced.isEmpty();
+    }
+
+    public synchronized void clear() {
+        triggers.clear();
+        usages.clear();
+        coalesced.clear();
+    }
+
+    private static String key(String tenantId, String id) {
+        return tenantId + ":" + id;
+    }
+}
@@ -16,7 +16,13 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Predicate;
 
@@ -26,12 +32,22 @@ import javax.ejb.TransactionAttributeType;
 
 import org.drools.core.event.DebugAgendaEventListener;
 import org.drools.core.event.DebugRuleRuntimeEventListener;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.DampeningQueue;
+import org.hawkular.alerts.engine.util.DataQueue;
 import org.jboss.logging.Logger;
-import org.kie.api.KieServices;
-import org.kie.api.runtime.KieContainer;
+import org.kie.api.KieBase;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.ObjectFilter;
 import org.kie.api.runtime.rule.FactHandle;
@@ -49,20 +65,64 @@ import org.kie.api.runtime.rule.FactHandle;
 public class DroolsRulesEngineImpl implements RulesEngine {
     // private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(DroolsRulesEngineImpl.class);
-    private static final String SESSION_NAME = "hawkular-alerts-engine-session";
 
-    private KieServices ks;
-    private KieContainer kc;
+    /*
+        ENGINE_ORDERED_DATA defines how multiple Data (or Events) with the same dataId are processed on fire():
+        - "true": Data and Events are queued into a DataQueue fact and the ProvideNextData rule inserts them in time
+          order, so all of them are processed in a single execution of the rules
+        - "false": only the oldest Data per dataId is inserted on each execution of the rules, the rest are deferred
+          to subsequent executions
+     */
+    private static final String ENGINE_ORDERED_DATA = "hawkular-alerts.engine-ordered-data";
+
+    /*
+        ENGINE_RULE_STATS_SAMPLING defines how often the rule activations are counted: one of every N fired rules is
+        counted as N activations of its rule. 1 counts every activation, 0 disables the rule activation stats.
+     */
+    private static final String ENGINE_RULE_STATS_SAMPLING = "hawkular-alerts.engine-rule-stats-sampling";
+
+    /*
+        ENGINE_COMPILED_RULES defines if the rules are loaded from the packages compiled on build time, instead of
+        compiling the drl on startup. The drl is compiled if the compiled packages are not available.
+     */
+    private static final String ENGINE_COMPILED_RULES = "hawkular-alerts.engine-compiled-rules";
+
+    private final KieBase kBase;
     private KieSession kSession;
 
     TreeSet<Data> pendingData = new TreeSet<>();
     TreeSet<Event> pendingEvents = new TreeSet<>();
 
+    private final boolean orderedData;
+    private final DataQueue dataQueue = new DataQueue();
+    private final DampeningQueue dampeningQueue = new DampeningQueue();
+    private final TriggerFactsIndex triggerFacts = new TriggerFactsIndex();
+    private final RuleStatsListener ruleStats;
+    private long deferredCount = 0L;
+
     public DroolsRulesEngineImpl() {
+        this(Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_ORDERED_DATA, "false")));
+    }
+
+    public DroolsRulesEngineImpl(boolean orderedData) {
+        this(orderedData, new Integer(AlertProperties.getProperty(ENGINE_RULE_STATS_SAMPLING, "10")));
+    }
+
+    public DroolsRulesEngineImpl(boolean orderedData, int ruleStatsSampling) {
+        this(orderedData, ruleStatsSampling,
+                Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_COMPILED_RULES, "true")));
+    }
+
+    public DroolsRulesEngineImpl(boolean orderedData, int ruleStatsSampling, boolean compiledRules) {
         log.debug("Creating instance.");
-        ks = KieServices.Factory.get();
-        kc = ks.getKieClasspathContainer();
-        kSession = kc.newKieSession(SESSION_NAME);
+        this.orderedData = orderedData;
+        this.ruleStats = ruleStatsSampling > 0 ? new RuleStatsListener(ruleStatsSampling) : null;
+        kBase = KieBaseLoader.load(compiledRules);
+        kSession = kBase.newKieSession();
+        kSession.addEventListener(triggerFacts);
+        if (null != ruleStats) {
+            kSession.addEventListener(ruleStats);
+        }
 
         if (log.isEnabled(Logger.Level.TRACE)) {
             kSession.addEventListener(new DebugAgendaEventListener());
@@ -141,6 +201,9 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     @Override
     public void clear() {
+        dataQueue.clear();
+        dampeningQueue.clear();
+        triggerFacts.clear();
         for (FactHandle factHandle : kSession.getFactHandles()) {
             if (log.isDebugEnabled()) {
                 log.debug("Delete " + factHandle);
@@ -151,6 +214,11 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     @Override
     public void fire() {
+        provideDampeningQueue();
+        if (orderedData) {
+            fireOrdered();
+            return;
+        }
         // The rules engine requires that for any DataId only the oldest Data instance is processed in one
         // execution of the rules.  So, if we find multiple Data instances for the same Id, defer all but
         // the oldest to a subsequent run. Note that pendingData is already sorted by (id ASC, timestamp ASC) so
@@ -186,6 +254,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             if (!pendingData.isEmpty() && log.isDebugEnabled()) {
                 log.debug("Deferring [" + pendingData.size() + "] Datum(s) to next firing !!");
             }
+            deferredCount += pendingData.size();
 
             batchData.clear();
 
@@ -208,6 +277,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
                     }
                 }
             }
+            deferredCount += pendingEvents.size();
 
             if (log.isDebugEnabled()) {
                 log.debug("Firing cycle [" + fireCycle + "] - with these facts: ");
@@ -222,8 +292,48 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
     }
 
+    /*
+        All pending Data and Events are queued, time-ordered per dataId, into the DataQueue fact. The ProvideNextData
+        rule feeds them into the session one per dataId at a time, so a single execution of the rules processes all
+        of them without re-copying the pending sets on each cycle.
+     */
+    private void fireOrdered() {
+        if (pendingData.isEmpty() && pendingEvents.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Data found. Firing rules on [" + pendingData.size() + "] datums and " +
+                    "[" + pendingEvents.size() + "] events.");
+        }
+
+        dataQueue.addData(pendingData);
+        dataQueue.addEvents(pendingEvents);
+        pendingData.clear();
+        pendingEvents.clear();
+
+        FactHandle queueHandle = kSession.getFactHandle(dataQueue);
+        if (null == queueHandle) {
+            kSession.insert(dataQueue);
+        } else {
+            kSession.update(queueHandle, dataQueue);
+        }
+
+        kSession.fireAllRules();
+    }
+
+    /*
+        The DampeningQueue fact collects the ConditionEvals of a rules execution for the DampenTriggers rule. It is
+        inserted on demand as clear() removes all the facts from the session.
+     */
+    private void provideDampeningQueue() {
+        if (null == kSession.getFactHandle(dampeningQueue)) {
+            kSession.insert(dampeningQueue);
+        }
+    }
+
     @Override
     public void fireNoData() {
+        provideDampeningQueue();
         kSession.fireAllRules();
     }
 
@@ -246,6 +356,16 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         return result;
     }
 
+    @Override
+    public Collection<Object> getFacts(Predicate<Object> factFilter) {
+        return new ArrayList<>(kSession.getObjects(new ObjectFilter() {
+            @Override
+            public boolean accept(Object object) {
+                return factFilter.test(object);
+            }
+        }));
+    }
+
     @Override
     public void removeFact(Object fact) {
         FactHandle factHandle = kSession.getFactHandle(fact);
@@ -307,10 +427,39 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
 
         for (FactHandle h : handles) {
-            removeFact(h);
+            kSession.delete(h);
         }
     }
 
+    @Override
+    public void removeTriggerFacts(String tenantId, String triggerId) {
+        Set<FactHandle> handles = triggerFacts.remove(tenantId, triggerId);
+        if (null == handles) {
+            return;
+        }
+        for (FactHandle h : handles) {
+            if (log.isDebugEnabled()) {
+                log.debug("Delete " + h);
+            }
+            kSession.delete(h);
+        }
+    }
+
+    /*
+        Package visibility for ShardedRulesEngineImpl
+     */
+    Collection<Object> getTriggerFacts(String tenantId, String triggerId) {
+        Set<FactHandle> handles = triggerFacts.get(tenantId, triggerId);
+        if (null == handles) {
+            return Collections.emptyList();
+        }
+        Collection<Object> facts = new ArrayList<>(handles.size());
+        for (FactHandle h : handles) {
+            facts.add(kSession.getObject(h));
+        }
+        return facts;
+    }
+
     @Override
     public void removeGlobal(String name) {
         if (log.isDebugEnabled()) {
@@ -322,7 +471,130 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     @Override
     public void reset() {
         log.debug("Reset session");
+        dataQueue.clear();
+        dampeningQueue.clear();
+        triggerFacts.clear();
         kSession.dispose();
-        kSession = kc.newKieSession(SESSION_NAME);
+        kSession = kBase.newKieSession();
+        kSession.addEventListener(triggerFacts);
+        if (null != ruleStats) {
+            kSession.addEventListener(ruleStats);
+        }
+    }
+
+    @Override
+    public long getFactCount() {
+        return kSession.getFactCount();
+    }
+
+    @Override
+    public long getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * @return true if there are <code>Data</code> or <code>Event</code> added and not yet processed by a
+     * {@link #fire()}
+     */
+    public boolean hasPending() {
+        return !pendingData.isEmpty() || !pendingEvents.isEmpty();
+    }
+
+    @Override
+    public Map<String, Long> getRuleActivations() {
+        if (null == ruleStats) {
+            return Collections.emptyMap();
+        }
+        return new HashMap<>(ruleStats.activations);
+    }
+
+    /*
+        Counts the fired rules by rule name. Only one of every <sampling> fired rules is counted, as <sampling>
+        activations, so the cost per fired rule is a counter increment.
+        A session is fired by a single thread at a time, no synchronization is needed.
+     */
+    private static class RuleStatsListener extends DefaultAgendaEventListener {
+        private final int sampling;
+        private final Map<String, Long> activations = new HashMap<>();
+        private int fired = 0;
+
+        RuleStatsListener(int sampling) {
+            this.sampling = sampling;
+        }
+
+        @Override
+        public void afterMatchFired(AfterMatchFiredEvent event) {
+            if (++fired == sampling) {
+                fired = 0;
+                activations.merge(event.getMatch().getRule().getName(), (long) sampling, Long::sum);
+            }
+        }
+    }
+
+    /*
+        Index of the FactHandles of the Trigger, Condition and Dampening facts by (tenantId, triggerId).
+        It listens to the session so it also tracks the facts inserted and retracted by the rules (i.e. Dampening).
+     */
+    private static class TriggerFactsIndex implements RuleRuntimeEventListener {
+        private final Map<String, Set<FactHandle>> handles = new HashMap<>();
+
+        private static String key(Object fact) {
+            if (fact instanceof Trigger) {
+                return key(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+            } else if (fact instanceof Condition) {
+                return key(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+            } else if (fact instanceof Dampening) {
+                return key(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+            }
+            return null;
+        }
+
+        private static String key(String tenantId, String triggerId) {
+            return tenantId + ":" + triggerId;
+        }
+
+        Set<FactHandle> get(String tenantId, String triggerId) {
+            return handles.get(key(tenantId, triggerId));
+        }
+
+        Set<FactHandle> remove(String tenantId, String triggerId) {
+            return handles.remove(key(tenantId, triggerId));
+        }
+
+        void clear() {
+            handles.clear();
+        }
+
+        @Override
+        public void objectInserted(ObjectInsertedEvent event) {
+            String key = key(event.getObject());
+            if (null != key) {
+                Set<FactHandle> triggerHandles = handles.get(key);
+                if (null == triggerHandles) {
+                    triggerHandles = new HashSet<>();
+                    handles.put(key, triggerHandles);
+                }
+                triggerHandles.add(event.getFactHandle());
+            }
+        }
+
+        @Override
+        public void objectUpdated(ObjectUpdatedEvent event) {
+            // The FactHandle does not change
+        }
+
+        @Override
+        public void objectDeleted(ObjectDeletedEvent event) {
+            String key = key(event.getOldObject());
+            if (null != key) {
+                Set<FactHandle> triggerHandles = handles.get(key);
+                if (null != triggerHandles) {
+                    triggerHandles.remove(event.getFactHandle());
+                    if (triggerHandles.isEmpty()) {
+                        handles.remove(key);
+                    }
+                }
+            }
+        }
     }
 }
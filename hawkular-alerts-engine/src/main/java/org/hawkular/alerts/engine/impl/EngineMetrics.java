@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.engine.service.EngineMetricsMXBean;
+import org.hawkular.alerts.engine.util.Histogram;
+
+/**
+ * Metrics of the AlertsEngine rules executions.
+ *
+ * They are recorded by the RulesInvoker at the end of each rules execution, so reading them never waits on the rules
+ * engine. Published through JMX under {@link #OBJECT_NAME} and on the status endpoint. The per-tenant stats of the
+ * pending queues are published through JMX only, as the status endpoint is not tenant scoped.
+ *
+ * @author agent
+ */
+public class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.hawkular.alerts:type=AlertsEngine,name=Metrics";
+
+    private final Histogram cycleTime = new Histogram();
+    private final Histogram insertTime = new Histogram();
+    private final Histogram fireTime = new Histogram();
+    private final Histogram persistTime = new Histogram();
+    private final Histogram actionsTime = new Histogram();
+    private final Histogram cycleDatums = new Histogram();
+    private final Histogram cycleEvents = new Histogram();
+
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong datums = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private volatile long deferredData = 0L;
+    private volatile long facts = 0L;
+    private volatile long pendingTimeouts = 0L;
+    private volatile Map<String, Long> ruleActivations = Collections.emptyMap();
+    private volatile Supplier<Map<String, Map<String, Long>>> tenantStats = Collections::emptyMap;
+
+    /**
+     * Record a rules execution. Times are defined in nanoseconds.
+     * The fire time includes the actions time, it is recorded without it.
+     */
+    public void recordCycle(long insertNanos, long fireNanos, long persistNanos, long actionsNanos,
+            long cycleNanos, int numData, int numEvents, int numTimeouts) {
+        cycles.incrementAndGet();
+        datums.addAndGet(numData);
+        events.addAndGet(numEvents);
+        timeouts.addAndGet(numTimeouts);
+        insertTime.record(micros(insertNanos));
+        fireTime.record(micros(fireNanos - actionsNanos));
+        persistTime.record(micros(persistNanos));
+        actionsTime.record(micros(actionsNanos));
+        cycleTime.record(micros(cycleNanos));
+        cycleDatums.record(numData);
+        cycleEvents.record(numEvents);
+    }
+
+    /**
+     * Record the state of the rules engine at the end of a rules execution.
+     */
+    public void recordState(long deferredData, long facts, long pendingTimeouts, Map<String, Long> ruleActivations) {
+        this.deferredData = deferredData;
+        this.facts = facts;
+        this.pendingTimeouts = pendingTimeouts;
+        this.ruleActivations = ruleActivations;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    @Override
+    public long getDatums() {
+        return datums.get();
+    }
+
+    @Override
+    public long getEvents() {
+        return events.get();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    @Override
+    public long getDeferredData() {
+        return deferredData;
+    }
+
+    @Override
+    public long getFacts() {
+        return facts;
+    }
+
+    @Override
+    public long getPendingTimeouts() {
+        return pendingTimeouts;
+    }
+
+    @Override
+    public Map<String, Long> getCycleStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        addHistogram(stats, "cycleTime", cycleTime);
+        addHistogram(stats, "insertTime", insertTime);
+        addHistogram(stats, "fireTime", fireTime);
+        addHistogram(stats, "persistTime", persistTime);
+        addHistogram(stats, "actionsTime", actionsTime);
+        addHistogram(stats, "cycleDatums", cycleDatums);
+        addHistogram(stats, "cycleEvents", cycleEvents);
+        return stats;
+    }
+
+    private void addHistogram(Map<String, Long> stats, String prefix, Histogram histogram) {
+        stats.put(prefix + "Mean", histogram.getMean());
+        stats.put(prefix + "P50", histogram.getPercentile(50));
+        stats.put(prefix + "P99", histogram.getPercentile(99));
+        stats.put(prefix + "Max", histogram.getMax());
+    }
+
+    @Override
+    public Map<String, Long> getRuleActivations() {
+        return new HashMap<>(ruleActivations);
+    }
+
+    /**
+     * @param tenantStats the supplier of the per-tenant stats of the pending queues
+     */
+    public void setTenantStats(Supplier<Map<String, Map<String, Long>>> tenantStats) {
+        this.tenantStats = tenantStats;
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getTenantStats() {
+        return tenantStats.get();
+    }
+
+    @Override
+    public void reset() {
+        cycleTime.reset();
+        insertTime.reset();
+        fireTime.reset();
+        persistTime.reset();
+        actionsTime.reset();
+        cycleDatums.reset();
+        cycleEvents.reset();
+    }
+
+    /**
+     * @return the counters and the histograms of the rules executions
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("cycles", getCycles());
+        stats.put("datums", getDatums());
+        stats.put("events", getEvents());
+        stats.put("timeouts", getTimeouts());
+        stats.put("deferredData", getDeferredData());
+        stats.put("facts", getFacts());
+        stats.put("pendingTimeouts", getPendingTimeouts());
+        stats.putAll(getCycleStats());
+        return stats;
+    }
+}
@@ -0,0 +1,667 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerAction;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that evaluates simple triggers in plain java, delegating the rest of triggers to
+ * another RulesEngine (i.e. DroolsRulesEngineImpl).
+ *
+ * A simple trigger is a FIRING trigger, without AutoResolve, with a single Threshold, ThresholdRange, Availability
+ * or String condition and a FIRING dampening of any type except STRICT_TIMEOUT. For these triggers the fast path
+ * keeps an index (tenantId, dataId) -> trigger, evaluates the condition and applies Dampening.perform() directly,
+ * generating the same Alerts/Events than the ConditionMatch.drl rules.
+ *
+ * Trigger facts are held until the next firing, when each trigger is compiled into the fast path or handed to the
+ * delegate. Adding or removing a fact of a compiled trigger sends it back to compile on the next firing. Once a
+ * trigger is handed to the delegate, all its facts are managed by the delegate until all of them are removed.
+ *
+ * Events generated by fast path triggers are sent to the delegate to support chained triggers.
+ *
+ * This class is not an EJB, so public methods are synchronized to get the same serialized access that the container
+ * provides to the DroolsRulesEngineImpl singleton.
+ *
+ * @author agent
+ */
+public class FastPathRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(FastPathRulesEngineImpl.class);
+
+    private final RulesEngine delegate;
+
+    private ActionsService actions;
+    private List alerts;
+    private List events;
+    private Set disabledTriggers;
+    private boolean eventTime;
+
+    // tenantId:triggerId -> trigger facts
+    private final Map<String, TriggerEntry> triggers = new HashMap<>();
+
+    // Triggers with facts added/removed since last firing
+    private final Set<TriggerEntry> toCompile = new LinkedHashSet<>();
+
+    // tenantId:dataId -> compiled triggers
+    private final Map<String, List<TriggerEntry>> fastTriggers = new HashMap<>();
+
+    // tenantId:dataId -> number of delegated conditions using the dataId
+    private final Map<String, Integer> delegatedDataIds = new HashMap<>();
+
+    private TreeSet<Data> pendingData = new TreeSet<>();
+
+    public FastPathRulesEngineImpl(RulesEngine delegate) {
+        if (null == delegate) {
+            throw new IllegalArgumentException("Delegate must be not null");
+        }
+        log.debug("Creating instance.");
+        this.delegate = delegate;
+    }
+
+    public RulesEngine getDelegate() {
+        return delegate;
+    }
+
+    private enum State {
+        PENDING, FAST, DELEGATED
+    }
+
+    private static class TriggerEntry {
+        final String key;
+        State state = State.PENDING;
+        Trigger trigger;
+        final List<Condition> conditions = new ArrayList<>(1);
+        final List<Dampening> dampenings = new ArrayList<>(1);
+
+        // Only for FAST state
+        Dampening dampening;
+        Function<Data, ConditionEval> evaluator;
+
+        TriggerEntry(String key) {
+            this.key = key;
+        }
+
+        boolean isEmpty() {
+            return null == trigger && conditions.isEmpty() && dampenings.isEmpty();
+        }
+
+        List<Object> facts() {
+            List<Object> facts = new ArrayList<>(conditions.size() + dampenings.size() + 1);
+            if (null != trigger) {
+                facts.add(trigger);
+            }
+            facts.addAll(conditions);
+            facts.addAll(dampenings);
+            return facts;
+        }
+
+        Object find(Object fact) {
+            if (fact instanceof Trigger) {
+                return fact.equals(trigger) ? trigger : null;
+            }
+            List<?> facts = fact instanceof Condition ? conditions : dampenings;
+            int i = facts.indexOf(fact);
+            return i < 0 ? null : facts.get(i);
+        }
+
+        void add(Object fact) {
+            if (fact instanceof Trigger) {
+                trigger = (Trigger) fact;
+            } else if (fact instanceof Condition) {
+                replace(conditions, (Condition) fact);
+            } else {
+                replace(dampenings, (Dampening) fact);
+            }
+        }
+
+        boolean remove(Object fact) {
+            if (fact instanceof Trigger) {
+                if (fact.equals(trigger)) {
+                    trigger = null;
+                    return true;
+                }
+                return false;
+            }
+            return fact instanceof Condition ? conditions.remove(fact) : dampenings.remove(fact);
+        }
+
+        private static <T> void replace(List<T> facts, T fact) {
+            int i = facts.indexOf(fact);
+            if (i < 0) {
+                facts.add(fact);
+            } else {
+                facts.set(i, fact);
+            }
+        }
+    }
+
+    private static String key(String tenantId, String id) {
+        return tenantId + ":" + id;
+    }
+
+    /*
+        Returns the trigger key of a trigger related fact, or null if the fact is not related to a trigger.
+     */
+    private static String triggerKey(Object fact) {
+        if (fact instanceof Trigger) {
+            return key(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return key(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return key(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        }
+        return null;
+    }
+
+    /*
+        Returns the evaluator of a condition supported by the fast path, or null if the condition is not supported.
+     */
+    private static Function<Data, ConditionEval> evaluator(Condition c) {
+        switch (c.getType()) {
+            case THRESHOLD:
+                return d -> new ThresholdConditionEval((ThresholdCondition) c, d);
+            case RANGE:
+                return d -> new ThresholdRangeConditionEval((ThresholdRangeCondition) c, d);
+            case AVAILABILITY:
+                return d -> new AvailabilityConditionEval((AvailabilityCondition) c, d);
+            case STRING:
+                return d -> new StringConditionEval((StringCondition) c, d);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public synchronized void addGlobal(String name, Object global) {
+        setGlobal(name, global);
+        delegate.addGlobal(name, global);
+    }
+
+    @Override
+    public synchronized void removeGlobal(String name) {
+        setGlobal(name, null);
+        delegate.removeGlobal(name);
+    }
+
+    private void setGlobal(String name, Object global) {
+        switch (name) {
+            case "actions":
+                actions = (ActionsService) global;
+                break;
+            case "alerts":
+                alerts = (List) global;
+                break;
+            case "events":
+                events = (List) global;
+                break;
+            case "disabledTriggers":
+                disabledTriggers = (Set) global;
+                break;
+            case "eventTime":
+                eventTime = Boolean.TRUE.equals(global);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public synchronized void addFact(Object fact) {
+        if (fact instanceof Data || fact instanceof Event) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        String key = triggerKey(fact);
+        if (null == key) {
+            delegate.addFact(fact);
+            return;
+        }
+        TriggerEntry entry = triggers.get(key);
+        if (null == entry) {
+            entry = new TriggerEntry(key);
+            triggers.put(key, entry);
+        }
+        if (State.DELEGATED == entry.state) {
+            entry.add(fact);
+            indexDelegated(fact, 1);
+            delegate.addFact(fact);
+            return;
+        }
+        uncompile(entry);
+        entry.add(fact);
+    }
+
+    @Override
+    public synchronized void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            addFact(fact);
+        }
+    }
+
+    @Override
+    public synchronized Object getFact(Object fact) {
+        String key = triggerKey(fact);
+        TriggerEntry entry = null == key ? null : triggers.get(key);
+        if (null == entry || State.DELEGATED == entry.state) {
+            return delegate.getFact(fact);
+        }
+        return entry.find(fact);
+    }
+
+    @Override
+    public synchronized Collection<Object> getFacts(Predicate<Object> factFilter) {
+        Collection<Object> facts = delegate.getFacts(factFilter);
+        for (TriggerEntry entry : triggers.values()) {
+            if (State.DELEGATED != entry.state) {
+                for (Object fact : entry.facts()) {
+                    if (factFilter.test(fact)) {
+                        facts.add(fact);
+                    }
+                }
+            }
+        }
+        return facts;
+    }
+
+    @Override
+    public synchronized void removeFact(Object fact) {
+        String key = triggerKey(fact);
+        TriggerEntry entry = null == key ? null : triggers.get(key);
+        if (null == entry) {
+            delegate.removeFact(fact);
+            return;
+        }
+        if (State.DELEGATED == entry.state) {
+            delegate.removeFact(fact);
+        }
+        remove(entry, fact);
+    }
+
+    private void remove(TriggerEntry entry, Object fact) {
+        if (State.DELEGATED == entry.state) {
+            if (entry.remove(fact)) {
+                indexDelegated(fact, -1);
+            }
+        } else {
+            uncompile(entry);
+            entry.remove(fact);
+        }
+        if (entry.isEmpty()) {
+            triggers.remove(entry.key);
+            toCompile.remove(entry);
+        }
+    }
+
+    @Override
+    public synchronized void updateFact(Object fact) {
+        String key = triggerKey(fact);
+        TriggerEntry entry = null == key ? null : triggers.get(key);
+        if (null == entry || State.DELEGATED == entry.state) {
+            delegate.updateFact(fact);
+            return;
+        }
+        if (null != entry.find(fact)) {
+            uncompile(entry);
+            entry.add(fact);
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Predicate<Object> factFilter) {
+        delegate.removeFacts(factFilter);
+        for (TriggerEntry entry : new ArrayList<>(triggers.values())) {
+            for (Object fact : entry.facts()) {
+                if (factFilter.test(fact)) {
+                    remove(entry, fact);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removeTriggerFacts(String tenantId, String triggerId) {
+        TriggerEntry entry = triggers.remove(key(tenantId, triggerId));
+        if (null == entry) {
+            delegate.removeTriggerFacts(tenantId, triggerId);
+            return;
+        }
+        if (State.DELEGATED == entry.state) {
+            delegate.removeTriggerFacts(tenantId, triggerId);
+            for (Object fact : entry.facts()) {
+                indexDelegated(fact, -1);
+            }
+        } else {
+            uncompile(entry);
+            toCompile.remove(entry);
+        }
+    }
+
+    @Override
+    public synchronized void addData(Data data) {
+        pendingData.add(data);
+    }
+
+    @Override
+    public synchronized void addData(Collection<Data> data) {
+        pendingData.addAll(data);
+    }
+
+    @Override
+    public synchronized void addEvent(Event event) {
+        delegate.addEvent(event);
+    }
+
+    @Override
+    public synchronized void addEvents(Collection<Event> events) {
+        delegate.addEvents(events);
+    }
+
+    @Override
+    public synchronized void fire() {
+        compile();
+
+        if (!pendingData.isEmpty()) {
+            TreeSet<Data> batchData = pendingData;
+            pendingData = new TreeSet<>();
+            if (log.isDebugEnabled()) {
+                log.debug("Data found. Evaluating [" + batchData.size() + "] datums.");
+            }
+            List<Data> delegatedData = new ArrayList<>();
+            for (Data data : batchData) {
+                String key = key(data.getTenantId(), data.getId());
+                List<TriggerEntry> entries = fastTriggers.get(key);
+                if (null != entries) {
+                    // a trigger can be uncompiled on evaluation (i.e. autoDisable)
+                    for (TriggerEntry entry : entries.toArray(new TriggerEntry[entries.size()])) {
+                        evaluate(entry, data);
+                    }
+                }
+                if (delegatedDataIds.containsKey(key)) {
+                    delegatedData.add(data);
+                }
+            }
+            if (!delegatedData.isEmpty()) {
+                delegate.addData(delegatedData);
+            }
+        }
+
+        delegate.fire();
+    }
+
+    @Override
+    public synchronized void fireNoData() {
+        compile();
+        delegate.fireNoData();
+    }
+
+    /*
+        Equivalent to the ConditionMatch.drl rules for a single condition trigger: Condition eval, DampenTriggers and
+        AlertOnSatisfiedDampening.
+     */
+    private void evaluate(TriggerEntry entry, Data data) {
+        Trigger trigger = entry.trigger;
+        if (State.FAST != entry.state || !Objects.equals(trigger.getSource(), data.getSource())) {
+            return;
+        }
+        ConditionEval ce = entry.evaluator.apply(data);
+        if (log.isDebugEnabled()) {
+            log.debugf("FastPath Eval: %s %s", (ce.isMatch() ? "Match!" : "no match"), ce.getLog());
+        }
+        Set<ConditionEval> ces = new HashSet<>(1);
+        ces.add(ce);
+        Dampening dampening = entry.dampening;
+        dampening.perform(trigger.getMatch(), ces, eventTime);
+        if (!dampening.isSatisfied()) {
+            return;
+        }
+
+        Event newEvent;
+        if (trigger.getEventType() == EventType.ALERT) {
+            if (log.isDebugEnabled()) {
+                log.debugf("Alert! Dampening Satisfied! %s", dampening.log());
+            }
+            newEvent = new Alert(trigger.getTenantId(), trigger, dampening, dampening.getSatisfyingEvals());
+            if (null != alerts) {
+                alerts.add(newEvent);
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debugf("Event! Dampening Satisfied! %s", dampening.log());
+            }
+            newEvent = new Event(trigger.getTenantId(), trigger, dampening, dampening.getSatisfyingEvals());
+            if (null != events) {
+                events.add(newEvent);
+            }
+        }
+
+        // Generated events are sent to the delegate to allow chained conditions
+        delegate.addEvent(newEvent);
+
+        if (actions != null) {
+            for (TriggerAction triggerAction : trigger.getActions()) {
+                actions.send(triggerAction, newEvent);
+            }
+        }
+
+        dampening.reset();
+
+        if (trigger.isAutoDisable()) {
+            if (log.isDebugEnabled()) {
+                log.debugf("Setting Trigger Disabled! %s", trigger);
+            }
+            if (null != disabledTriggers) {
+                disabledTriggers.add(trigger);
+            }
+            uncompile(entry);
+            entry.trigger = null;
+        }
+    }
+
+    /*
+        Compile the pending triggers into the fast path, or hand them to the delegate when not supported.
+        A trigger without the Trigger fact stays pending, as no rule can be evaluated for it.
+     */
+    private void compile() {
+        if (toCompile.isEmpty()) {
+            return;
+        }
+        for (Iterator<TriggerEntry> i = toCompile.iterator(); i.hasNext();) {
+            TriggerEntry entry = i.next();
+            if (null == entry.trigger) {
+                continue;
+            }
+            i.remove();
+            if (!compileFast(entry)) {
+                entry.state = State.DELEGATED;
+                for (Object fact : entry.facts()) {
+                    indexDelegated(fact, 1);
+                }
+                delegate.addFact(entry.trigger);
+                delegate.addFacts(entry.conditions);
+                if (!entry.dampenings.isEmpty()) {
+                    delegate.addFacts(entry.dampenings);
+                }
+            }
+        }
+    }
+
+    private boolean compileFast(TriggerEntry entry) {
+        Trigger trigger = entry.trigger;
+        if (Mode.FIRING != trigger.getMode() || trigger.isAutoResolve() || entry.conditions.size() != 1) {
+            return false;
+        }
+        Condition condition = entry.conditions.get(0);
+        if (Mode.FIRING != condition.getTriggerMode() || condition.getConditionSetSize() != 1) {
+            return false;
+        }
+        Function<Data, ConditionEval> evaluator = evaluator(condition);
+        if (null == evaluator) {
+            return false;
+        }
+        Dampening dampening = null;
+        for (Dampening d : entry.dampenings) {
+            if (Mode.FIRING != d.getTriggerMode() || Dampening.Type.STRICT_TIMEOUT == d.getType()) {
+                return false;
+            }
+            dampening = d;
+        }
+        if (null == dampening) {
+            if (log.isDebugEnabled()) {
+                log.debugf("Adding default %s dampening for trigger! %s", Mode.FIRING, trigger.getId());
+            }
+            dampening = Dampening.forStrict(trigger.getTenantId(), trigger.getId(), Mode.FIRING, 1);
+            entry.dampenings.add(dampening);
+        }
+        entry.state = State.FAST;
+        entry.evaluator = evaluator;
+        entry.dampening = dampening;
+        String dataKey = key(condition.getTenantId(), condition.getDataId());
+        List<TriggerEntry> entries = fastTriggers.get(dataKey);
+        if (null == entries) {
+            entries = new ArrayList<>(1);
+            fastTriggers.put(dataKey, entries);
+        }
+        entries.add(entry);
+        if (log.isDebugEnabled()) {
+            log.debug("Compiled into fast path " + trigger);
+        }
+        return true;
+    }
+
+    private void uncompile(TriggerEntry entry) {
+        if (State.FAST == entry.state) {
+            Condition condition = entry.conditions.get(0);
+            String dataKey = key(condition.getTenantId(), condition.getDataId());
+            List<TriggerEntry> entries = fastTriggers.get(dataKey);
+            if (null != entries) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    fastTriggers.remove(dataKey);
+                }
+            }
+            entry.state = State.PENDING;
+            entry.evaluator = null;
+            entry.dampening = null;
+        }
+        toCompile.add(entry);
+    }
+
+    private void indexDelegated(Object fact, int delta) {
+        if (!(fact instanceof Condition)) {
+            return;
+        }
+        Condition c = (Condition) fact;
+        indexDelegated(key(c.getTenantId(), c.getDataId()), delta);
+        if (c instanceof CompareCondition) {
+            indexDelegated(key(c.getTenantId(), ((CompareCondition) c).getData2Id()), delta);
+        }
+    }
+
+    private void indexDelegated(String dataKey, int delta) {
+        int count = delegatedDataIds.getOrDefault(dataKey, 0) + delta;
+        if (count > 0) {
+            delegatedDataIds.put(dataKey, count);
+        } else {
+            delegatedDataIds.remove(dataKey);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        delegate.clear();
+        clearFastPath();
+    }
+
+    @Override
+    public synchronized void reset() {
+        log.debug("Reset session");
+        delegate.reset();
+        clearFastPath();
+    }
+
+    @Override
+    public synchronized long getFactCount() {
+        long factCount = delegate.getFactCount();
+        for (TriggerEntry entry : triggers.values()) {
+            if (State.DELEGATED != entry.state) {
+                factCount += entry.conditions.size() + entry.dampenings.size() + (null != entry.trigger ? 1 : 0);
+            }
+        }
+        return factCount;
+    }
+
+    @Override
+    public synchronized long getDeferredCount() {
+        return delegate.getDeferredCount();
+    }
+
+    /*
+        Fast path triggers are not evaluated by rules, only the rule activations of the delegate are reported
+     */
+    @Override
+    public synchronized Map<String, Long> getRuleActivations() {
+        return delegate.getRuleActivations();
+    }
+
+    private void clearFastPath() {
+        triggers.clear();
+        toCompile.clear();
+        fastTriggers.clear();
+        delegatedDataIds.clear();
+        pendingData.clear();
+    }
+}
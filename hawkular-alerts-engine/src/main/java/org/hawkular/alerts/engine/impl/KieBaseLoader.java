@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.drools.core.util.DroolsStreamUtils;
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+import org.kie.api.KieBase;
+import org.kie.api.KieBaseConfiguration;
+import org.kie.api.KieServices;
+import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.definition.KiePackage;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.definition.KnowledgePackage;
+
+/**
+ * Loads the KieBase of the rules engine.
+ *
+ * The rules are compiled at build time by {@link #main(String[])}, invoked on the process-classes phase of the
+ * hawkular-alerts-engine module, and the compiled packages are serialized into {@link #COMPILED_RULES}. At runtime
+ * the KieBase is built from the compiled packages, avoiding the compilation of the drl on each start. If the compiled
+ * packages are not found or can not be read, the rules are compiled from the drl through the kmodule.xml KieBase.
+ *
+ * @author agent
+ */
+public class KieBaseLoader {
+    private static final MsgLogger msgLog = MsgLogger.LOGGER;
+    private static final Logger log = Logger.getLogger(KieBaseLoader.class);
+
+    /**
+     * The KieBase defined on META-INF/kmodule.xml
+     */
+    public static final String KBASE_NAME = "hawkular-alerts-engine";
+
+    /**
+     * The classpath resource holding the compiled rules packages
+     */
+    public static final String COMPILED_RULES = "org/hawkular/alerts/engine/rules/hawkular-alerts-engine.pkgs";
+
+    private KieBaseLoader() {
+    }
+
+    /**
+     * @param compiled true to load the KieBase from the compiled rules packages if they are available
+     * @return the KieBase of the rules engine
+     */
+    public static KieBase load(boolean compiled) {
+        if (compiled) {
+            ClassLoader cl = KieBaseLoader.class.getClassLoader();
+            InputStream in = cl.getResourceAsStream(COMPILED_RULES);
+            if (null != in) {
+                try (InputStream bin = new BufferedInputStream(in)) {
+                    return newKieBase(readPackages(bin, cl));
+                } catch (Exception e) {
+                    msgLog.warnCannotLoadCompiledRules(COMPILED_RULES, e.toString());
+                }
+            } else if (log.isDebugEnabled()) {
+                log.debug("Compiled rules " + COMPILED_RULES + " not found. Compiling rules.");
+            }
+        }
+        return compile();
+    }
+
+    /**
+     * @return the KieBase compiled from the drl resources
+     */
+    public static KieBase compile() {
+        return KieServices.Factory.get().getKieClasspathContainer().getKieBase(KBASE_NAME);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<KnowledgePackage> readPackages(InputStream in, ClassLoader cl) throws Exception {
+        return (Collection<KnowledgePackage>) DroolsStreamUtils.streamIn(in, cl);
+    }
+
+    /*
+        Same configuration than the kmodule.xml KieBase
+     */
+    private static KieBase newKieBase(Collection<KnowledgePackage> packages) {
+        KieBaseConfiguration conf = KieServices.Factory.get().newKieBaseConfiguration();
+        conf.setOption(EqualityBehaviorOption.EQUALITY);
+        KnowledgeBase kBase = KnowledgeBaseFactory.newKnowledgeBase(conf);
+        kBase.addKnowledgePackages(packages);
+        return kBase;
+    }
+
+    /**
+     * Compile the rules and write the compiled packages.
+     *
+     * @param args the output directory, usually the classes directory of the module
+     * @throws Exception on any error compiling or writing the rules, failing the build
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: KieBaseLoader <outputDirectory>");
+        }
+        long start = System.currentTimeMillis();
+        Collection<KiePackage> packages = new ArrayList<>(compile().getKiePackages());
+        File file = new File(args[0], COMPILED_RULES);
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IllegalStateException("Cannot create " + file.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            DroolsStreamUtils.streamOut(out, packages);
+        }
+        log.infof("Compiled %s rules packages into %s in %s ms", packages.size(), file,
+                System.currentTimeMillis() - start);
+    }
+}
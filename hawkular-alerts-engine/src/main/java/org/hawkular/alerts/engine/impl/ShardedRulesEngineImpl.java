@@ -0,0 +1,548 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.CompareData;
+import org.hawkular.alerts.engine.util.RateData;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that partitions the triggers into N independent drools sessions (shards) and
+ * fires them in parallel.
+ *
+ * Trigger related facts (Trigger, Condition, Dampening and ConditionEval) are routed to a shard using a stable hash
+ * of (tenantId, triggerId). Data and Events are routed to every shard holding a Condition on its dataId.
+ *
+ * Globals are shared across shards with these considerations:
+ * - List globals (i.e. alerts, events) are private per shard and merged into the provided List after each firing.
+ * - Set and Map globals (i.e. pendingTimeouts, autoResolvedTriggers) are shared through a synchronized view.
+ * - Other globals are shared as they are, so they must be thread-safe.
+ *
+ * Events generated in one shard are inserted on the shard itself by the rules, for chained triggers. They are also
+ * routed to the rest of shards with conditions on them, firing those shards again until there are no more chained
+ * events.
+ *
+ * A firing runs every shard with pending data or events, and also every shard whose facts have changed since its
+ * last firing (i.e. a Dampening updated by an expired STRICT_TIMEOUT), so the activations of an idle shard are not
+ * left on its agenda until it gets new data.
+ *
+ * This class is not an EJB, so public methods are synchronized to get the same serialized access that the container
+ * provides to the DroolsRulesEngineImpl singleton.
+ *
+ * @author agent
+ */
+public class ShardedRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(ShardedRulesEngineImpl.class);
+
+    private final int numShards;
+    private final DroolsRulesEngineImpl[] shards;
+    private final ForkJoinPool pool;
+
+    // tenantId:dataId -> number of conditions using the dataId, per shard
+    private final Map<String, int[]> dataShards = new ConcurrentHashMap<>();
+
+    // Shards with facts added, updated or removed since their last firing
+    private final boolean[] dirty;
+
+    // List globals provided by the caller, and the private List per shard
+    private final Map<String, List> globalLists = new HashMap<>();
+    private final List<Map<String, List>> shardLists;
+
+    public ShardedRulesEngineImpl(int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("NumShards must be >= 1");
+        }
+        log.debug("Creating instance with [" + numShards + "] shards.");
+        this.numShards = numShards;
+        this.shards = new DroolsRulesEngineImpl[numShards];
+        this.dirty = new boolean[numShards];
+        this.shardLists = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new DroolsRulesEngineImpl();
+            shardLists.add(new HashMap<>());
+        }
+        this.pool = new ForkJoinPool(Math.min(numShards, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    /**
+     * @return the shard holding the facts of a trigger
+     */
+    public int getShard(String tenantId, String triggerId) {
+        return shard(tenantId, triggerId);
+    }
+
+    private int shard(String tenantId, String triggerId) {
+        return Math.floorMod((tenantId + ":" + triggerId).hashCode(), numShards);
+    }
+
+    /*
+        Returns the shard of a trigger related fact, or -1 if the fact is not related to a trigger.
+     */
+    private int shard(Object fact) {
+        if (fact instanceof Trigger) {
+            return shard(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return shard(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return shard(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        } else if (fact instanceof ConditionEval) {
+            return shard(((ConditionEval) fact).getTenantId(), ((ConditionEval) fact).getTriggerId());
+        }
+        return -1;
+    }
+
+    private String dataKey(String tenantId, String dataId) {
+        return tenantId + ":" + dataId;
+    }
+
+    private void index(int shard, Object fact, int delta) {
+        if (!(fact instanceof Condition)) {
+            return;
+        }
+        Condition c = (Condition) fact;
+        indexDataId(shard, dataKey(c.getTenantId(), c.getDataId()), delta);
+        if (c instanceof CompareCondition) {
+            indexDataId(shard, dataKey(c.getTenantId(), ((CompareCondition) c).getData2Id()), delta);
+        }
+    }
+
+    private void indexDataId(int shard, String key, int delta) {
+        dataShards.compute(key, (k, counts) -> {
+            if (null == counts) {
+                counts = new int[numShards];
+            }
+            counts[shard] = Math.max(0, counts[shard] + delta);
+            for (int count : counts) {
+                if (count > 0) {
+                    return counts;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void addGlobal(String name, Object global) {
+        if (log.isDebugEnabled()) {
+            log.debug("Add Global " + name + " = " + global);
+        }
+        if (global instanceof List) {
+            globalLists.put(name, (List) global);
+            for (int i = 0; i < numShards; i++) {
+                List shardList = new ArrayList();
+                shardLists.get(i).put(name, shardList);
+                shards[i].addGlobal(name, shardList);
+            }
+            return;
+        }
+        Object shared = global;
+        if (global instanceof Set) {
+            shared = Collections.synchronizedSet((Set) global);
+        } else if (global instanceof Map) {
+            shared = Collections.synchronizedMap((Map) global);
+        }
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.addGlobal(name, shared);
+        }
+    }
+
+    @Override
+    public synchronized void removeGlobal(String name) {
+        globalLists.remove(name);
+        for (int i = 0; i < numShards; i++) {
+            shardLists.get(i).remove(name);
+            shards[i].removeGlobal(name);
+        }
+    }
+
+    @Override
+    public synchronized void addFact(Object fact) {
+        if (fact instanceof Data || fact instanceof Event) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        if (fact instanceof RateData || fact instanceof CompareData) {
+            addDataFact(fact);
+            return;
+        }
+        int shard = Math.max(0, shard(fact));
+        shards[shard].addFact(fact);
+        dirty[shard] = true;
+        index(shard, fact, 1);
+    }
+
+    /*
+        RateData and CompareData hold the previous data of a dataId, they are added to every shard with conditions on
+        the dataId. Every shard gets its own copy as the rules update them.
+     */
+    private void addDataFact(Object fact) {
+        Data data = fact instanceof RateData ? ((RateData) fact).getData() : ((CompareData) fact).getData();
+        int[] counts = dataShards.get(dataKey(data.getTenantId(), data.getId()));
+        if (null == counts) {
+            return;
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (counts[i] > 0) {
+                shards[i].addFact(fact instanceof RateData ? new RateData(data) : new CompareData(data));
+                dirty[i] = true;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addFacts(Collection facts) {
+        List[] shardFacts = new List[numShards];
+        for (Object fact : facts) {
+            if (fact instanceof Data || fact instanceof Event) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+            if (fact instanceof RateData || fact instanceof CompareData) {
+                addDataFact(fact);
+                continue;
+            }
+            int shard = Math.max(0, shard(fact));
+            if (null == shardFacts[shard]) {
+                shardFacts[shard] = new ArrayList();
+            }
+            shardFacts[shard].add(fact);
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (null != shardFacts[i]) {
+                shards[i].addFacts(shardFacts[i]);
+                dirty[i] = true;
+                for (Object fact : shardFacts[i]) {
+                    index(i, fact, 1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized Object getFact(Object fact) {
+        int shard = shard(fact);
+        if (shard >= 0) {
+            return shards[shard].getFact(fact);
+        }
+        for (DroolsRulesEngineImpl s : shards) {
+            Object result = s.getFact(fact);
+            if (null != result) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Collection<Object> getFacts(Predicate<Object> factFilter) {
+        List<Object> facts = new ArrayList<>();
+        for (DroolsRulesEngineImpl s : shards) {
+            facts.addAll(s.getFacts(factFilter));
+        }
+        return facts;
+    }
+
+    @Override
+    public synchronized void removeFact(Object fact) {
+        int shard = shard(fact);
+        if (shard >= 0) {
+            if (null != shards[shard].getFact(fact)) {
+                index(shard, fact, -1);
+            }
+            shards[shard].removeFact(fact);
+            dirty[shard] = true;
+            return;
+        }
+        for (int i = 0; i < numShards; i++) {
+            shards[i].removeFact(fact);
+            dirty[i] = true;
+        }
+    }
+
+    @Override
+    public synchronized void updateFact(Object fact) {
+        int shard = shard(fact);
+        if (shard >= 0) {
+            shards[shard].updateFact(fact);
+            dirty[shard] = true;
+            return;
+        }
+        for (int i = 0; i < numShards; i++) {
+            shards[i].updateFact(fact);
+            dirty[i] = true;
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Predicate<Object> factFilter) {
+        for (int i = 0; i < numShards; i++) {
+            final int shard = i;
+            shards[i].removeFacts(fact -> {
+                boolean remove = factFilter.test(fact);
+                if (remove) {
+                    index(shard, fact, -1);
+                    dirty[shard] = true;
+                }
+                return remove;
+            });
+        }
+    }
+
+    @Override
+    public synchronized void removeTriggerFacts(String tenantId, String triggerId) {
+        int shard = shard(tenantId, triggerId);
+        for (Object fact : shards[shard].getTriggerFacts(tenantId, triggerId)) {
+            index(shard, fact, -1);
+        }
+        shards[shard].removeTriggerFacts(tenantId, triggerId);
+        dirty[shard] = true;
+    }
+
+    @Override
+    public synchronized void addData(Data data) {
+        int[] counts = dataShards.get(dataKey(data.getTenantId(), data.getId()));
+        if (null == counts) {
+            if (log.isTraceEnabled()) {
+                log.trace("No conditions found for " + data + ", discarding");
+            }
+            return;
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (counts[i] > 0) {
+                shards[i].addData(data);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addData(Collection<Data> data) {
+        for (Data d : data) {
+            addData(d);
+        }
+    }
+
+    @Override
+    public synchronized void addEvent(Event event) {
+        addEvent(event, -1);
+    }
+
+    /*
+        Route an event to all shards with conditions on its dataId, except the excluded one.
+        Return true if the event has been routed to any shard.
+     */
+    private boolean addEvent(Event event, int excludedShard) {
+        int[] counts = dataShards.get(dataKey(event.getTenantId(), event.getDataId()));
+        if (null == counts) {
+            return false;
+        }
+        boolean routed = false;
+        for (int i = 0; i < numShards; i++) {
+            if (counts[i] > 0 && i != excludedShard) {
+                shards[i].addEvent(event);
+                routed = true;
+            }
+        }
+        return routed;
+    }
+
+    @Override
+    public synchronized void addEvents(Collection<Event> events) {
+        for (Event e : events) {
+            addEvent(e);
+        }
+    }
+
+    @Override
+    public synchronized void fire() {
+        boolean pending = true;
+        while (pending) {
+            List<DroolsRulesEngineImpl> toFire = new ArrayList<>();
+            for (int i = 0; i < numShards; i++) {
+                if (dirty[i] || shards[i].hasPending()) {
+                    toFire.add(shards[i]);
+                    dirty[i] = false;
+                }
+            }
+            if (toFire.isEmpty()) {
+                return;
+            }
+            invokeAll(toFire, ShardedRulesEngineImpl::fireShard);
+            pending = mergeGlobalLists();
+        }
+    }
+
+    /*
+        A shard with no pending data or events only fires the activations of its updated facts, as fireNoData() does
+        on a single session. Drools fire() does nothing without pending data or events.
+     */
+    private static void fireShard(DroolsRulesEngineImpl shard) {
+        if (shard.hasPending()) {
+            shard.fire();
+        } else {
+            shard.fireNoData();
+        }
+    }
+
+    @Override
+    public synchronized void fireNoData() {
+        Arrays.fill(dirty, false);
+        invokeAll(Arrays.asList(shards), DroolsRulesEngineImpl::fireNoData);
+        if (mergeGlobalLists()) {
+            fire();
+        }
+    }
+
+    private void invokeAll(List<DroolsRulesEngineImpl> toFire, Consumer<DroolsRulesEngineImpl> action) {
+        if (toFire.size() == 1) {
+            action.accept(toFire.get(0));
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(toFire.size());
+        for (DroolsRulesEngineImpl shard : toFire) {
+            tasks.add(() -> {
+                action.accept(shard);
+                return null;
+            });
+        }
+        for (Future<Void> f : pool.invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /*
+        Move the items of the private shard Lists into the caller global Lists.
+        Events generated on a shard are routed to the rest of the shards interested on them.
+        Return true if any event has been routed, so a new firing is needed.
+     */
+    private boolean mergeGlobalLists() {
+        boolean chained = false;
+        for (Entry<String, List> global : globalLists.entrySet()) {
+            for (int i = 0; i < numShards; i++) {
+                List shardList = shardLists.get(i).get(global.getKey());
+                if (null == shardList || shardList.isEmpty()) {
+                    continue;
+                }
+                for (Object item : shardList) {
+                    if (item instanceof Event) {
+                        chained |= addEvent((Event) item, i);
+                    }
+                }
+                global.getValue().addAll(shardList);
+                shardList.clear();
+            }
+        }
+        return chained;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.clear();
+        }
+        dataShards.clear();
+        Arrays.fill(dirty, false);
+    }
+
+    @Override
+    public synchronized void reset() {
+        log.debug("Reset sessions");
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.reset();
+        }
+        dataShards.clear();
+        Arrays.fill(dirty, false);
+    }
+
+    /**
+     * Release the threads used to fire the shards in parallel. The instance can not be fired after it.
+     */
+    public synchronized void close() {
+        log.debug("Close sessions");
+        pool.shutdown();
+    }
+
+    @Override
+    public synchronized long getFactCount() {
+        long factCount = 0;
+        for (DroolsRulesEngineImpl shard : shards) {
+            factCount += shard.getFactCount();
+        }
+        return factCount;
+    }
+
+    @Override
+    public synchronized long getDeferredCount() {
+        long deferredCount = 0;
+        for (DroolsRulesEngineImpl shard : shards) {
+            deferredCount += shard.getDeferredCount();
+        }
+        return deferredCount;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getRuleActivations() {
+        Map<String, Long> activations = new HashMap<>();
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.getRuleActivations().forEach((rule, n) -> activations.merge(rule, n, Long::sum));
+        }
+        return activations;
+    }
+}
@@ -109,4 +109,32 @@ public interface MsgLogger extends BasicLogger {
     @Message(id = 220022, value = "Publish Cache is disabled")
     void warnDisabledPublishCache();
 
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220023, value = "Persistence queue [%s] is full. Spilled [%s] items to [%s]")
+    void warnPersistenceQueueSpilled(String queue, int items, String file);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 220024, value = "Persistence queue [%s] cannot spill [%s] items. Items are lost. Msg: [%s]")
+    void errorPersistenceQueueSpill(String queue, int items, String msg);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220025, value = "Persistence queue [%s] failed to write [%s] items after [%s] retries. Msg: [%s]")
+    void warnPersistenceQueueWrite(String queue, int items, int retries, String msg);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 220026, value = "Restored engine state of [%s] triggers from snapshot [%s]")
+    void infoEngineSnapshotRestored(int triggers, String file);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220027, value = "Engine snapshot [%s] cannot be saved or restored. Msg: [%s]")
+    void warnEngineSnapshot(String file, String msg);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220028, value = "Engine metrics [%s] cannot be registered on JMX. Msg: [%s]")
+    void warnCannotRegisterMetrics(String name, String msg);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220029, value = "Compiled rules [%s] cannot be loaded, rules are compiled. Msg: [%s]")
+    void warnCannotLoadCompiledRules(String resource, String msg);
+
 }
@@ -17,8 +17,10 @@
 package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 
@@ -41,6 +43,22 @@ public interface AlertsEngine {
      */
     Trigger getLoadedTrigger(Trigger trigger);
 
+    /**
+     * @return counters of the pending data, events and data batches queues: current size and the number of items
+     * dropped, coalesced or rejected because the queues were full. Also counters of the alerts and events persistence
+     * queues: current size, written, spilled, replayed and dropped items, and write latency.
+     */
+    Map<String, Long> getPendingStats();
+
+    /**
+     * @return metrics of the rules executions, by section: "cycles" holds the counters of processed datums, events
+     * and dampening timeouts, the state of the rules engine and the histograms of the rules executions wall time
+     * (in microseconds) split into insert, fire, persist and actions phases; "ruleActivations" holds the number of
+     * times each rule has been fired. The per-tenant stats are published through JMX only, see
+     * {@link EngineMetricsMXBean#getTenantStats()}.
+     */
+    Map<String, Map<String, Long>> getEngineStats();
+
     /**
      * Send data into the alerting system for evaluation.
      *
@@ -53,10 +71,25 @@ public interface AlertsEngine {
      * Send data into the alerting system for evaluation.
      *
      * @param data Not Null.  The data to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.FullQueueException if the engine can not accept the data at the
+     * moment (only with "reject" queue policy).
+     * @throws IllegalArgumentException if the collection is larger than the pending queue capacity (only with "reject"
+     * queue policy), it must be split.
      * @throws Exception any problem.
      */
     void sendData(Collection<Data> data) throws Exception;
 
+    /**
+     * Send a columnar batch of data into the alerting system for evaluation. The batch is queued as a unit and its
+     * samples are converted to {@link Data} on the rules execution.
+     *
+     * @param batch Not Null.  The data to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.FullQueueException if the engine can not accept the batch at the
+     * moment (only with "reject" queue policy).
+     * @throws Exception any problem.
+     */
+    void sendData(DataBatch batch) throws Exception;
+
     /**
      * Send event into the alerting system for evaluation.
      * Events are persisted after inference.
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.service;
+
+import java.util.Map;
+
+/**
+ * JMX interface of the AlertsEngine rules execution metrics.
+ *
+ * Times are defined in microseconds. Counters are accumulated since the AlertsEngine was started, histograms since
+ * the AlertsEngine was started or since the last {@link #reset()}.
+ *
+ * @author agent
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * @return the number of rules executions
+     */
+    long getCycles();
+
+    /**
+     * @return the number of datums processed by the rules executions
+     */
+    long getDatums();
+
+    /**
+     * @return the number of events processed by the rules executions
+     */
+    long getEvents();
+
+    /**
+     * @return the number of dampening timeouts processed by the rules executions
+     */
+    long getTimeouts();
+
+    /**
+     * @return the number of datums and events deferred to a later firing cycle because an older datum or event with
+     * the same dataId was processed on the same firing cycle
+     */
+    long getDeferredData();
+
+    /**
+     * @return the number of facts in the rules engine at the end of the last rules execution
+     */
+    long getFacts();
+
+    /**
+     * @return the number of pending dampening timeouts at the end of the last rules execution
+     */
+    long getPendingTimeouts();
+
+    /**
+     * @return mean, p50, p99 and max of the wall time of the rules executions, split into insert, fire, persist and
+     * actions phases, and of the number of datums and events per rules execution
+     */
+    Map<String, Long> getCycleStats();
+
+    /**
+     * @return the number of times each rule has been fired, by rule name. It can be an estimation if the rule
+     * activations are sampled.
+     */
+    Map<String, Long> getRuleActivations();
+
+    /**
+     * @return with tenant fairness enabled, the pending queue depth, counters and queue latency of each tenant, by
+     * "tenantData.&lt;tenantId&gt;", "tenantEvents.&lt;tenantId&gt;" and "tenantBatches.&lt;tenantId&gt;"
+     */
+    Map<String, Map<String, Long>> getTenantStats();
+
+    /**
+     * Reset the histograms of the rules executions.
+     */
+    void reset();
+}
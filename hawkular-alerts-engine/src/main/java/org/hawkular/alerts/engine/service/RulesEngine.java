@@ -17,6 +17,7 @@
 package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import org.hawkular.alerts.api.model.data.Data;
@@ -50,6 +51,12 @@ public interface RulesEngine {
      */
     Object getFact(Object fact);
 
+    /**
+     * @param factFilter the filter of the facts to return
+     * @return The facts accepted by <code>factFilter</code>. Not null.
+     */
+    Collection<Object> getFacts(Predicate<Object> factFilter);
+
     /**
      * Retrieves the FactHandle for <code>fact</code> and then deletes the fact from the rules engine.
      * @param fact the fact
@@ -83,6 +90,14 @@ public interface RulesEngine {
      */
     void removeFacts(Predicate<Object> factFilter);
 
+    /**
+     * Deletes the Trigger, Condition and Dampening facts of a trigger from the rules engine. The cost of this
+     * operation does not depend on the number of facts in the rules engine.
+     * @param tenantId the tenantId of the trigger
+     * @param triggerId the triggerId of the trigger
+     */
+    void removeTriggerFacts(String tenantId, String triggerId);
+
     /**
      * Add to the accumulated <code>Data</code> to be processed the next time {@link #fire()} is called. After the
      * rules are fired on the accumulated <code>Data</code> it will be cleared.
@@ -131,4 +146,22 @@ public interface RulesEngine {
      * Completely reset the rules engine session. Disposes of any existing session before creating a new session.
      */
     void reset();
+
+    /**
+     * @return the number of facts in the rules engine.
+     */
+    long getFactCount();
+
+    /**
+     * @return the number of <code>Data</code> and <code>Event</code> deferred to a later firing cycle, since the
+     * rules engine was created, because an older <code>Data</code> or <code>Event</code> with the same dataId was
+     * processed on the same firing cycle.
+     */
+    long getDeferredCount();
+
+    /**
+     * @return the number of times each rule has been fired, by rule name, since the rules engine was created. It can
+     * be an estimation if the rule activations are sampled. Not null.
+     */
+    Map<String, Long> getRuleActivations();
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A dispatcher loop that invokes a task as soon as there are pending items, batching the items arriving close in
+ * time into the same invocation.
+ *
+ * The dispatcher is a {@link Runnable} so it can be submitted to a container managed executor. It waits until
+ * {@link #signal()} is called with pending items, or until the deadline returned by <code>nextDeadline</code>.
+ * When the first item arrives, it lingers up to <code>batchLinger</code> ms, or until <code>batchSize</code> items
+ * are pending, before to invoke the task.
+ *
+ * Producers must call {@link #signal()} after adding items, {@link #shutdown()} stops the loop and waits for an
+ * invocation in progress to finish. Interrupting the thread running the dispatcher also stops the loop.
+ *
+ * @author agent
+ */
+public class BatchDispatcher implements Runnable {
+    private static final Logger log = Logger.getLogger(BatchDispatcher.class);
+
+    private final Runnable invoker;
+    private final IntSupplier numPending;
+    private final LongSupplier nextDeadline;
+    private final long delay;
+    private final int batchSize;
+    private final long batchLinger;
+    private final long minWait;
+
+    private final Object signal = new Object();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private boolean running = true;
+    private Thread runner;
+
+    /**
+     * @param invoker the task invoked with pending items or on the next deadline
+     * @param numPending the number of pending items
+     * @param nextDeadline the time in ms of the next invocation with no pending items, Long.MAX_VALUE if none
+     * @param delay the time in ms to wait before the first invocation
+     * @param batchSize the number of pending items that ends the linger
+     * @param batchLinger the max time in ms to wait for more items once the first one is pending
+     * @param minWait the min time in ms to wait for an overdue deadline
+     */
+    public BatchDispatcher(Runnable invoker, IntSupplier numPending, LongSupplier nextDeadline, long delay,
+            int batchSize, long batchLinger, long minWait) {
+        if (null == invoker) {
+            throw new IllegalArgumentException("Invoker must be not null");
+        }
+        if (null == numPending) {
+            throw new IllegalArgumentException("NumPending must be not null");
+        }
+        if (null == nextDeadline) {
+            throw new IllegalArgumentException("NextDeadline must be not null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be >= 1");
+        }
+        if (minWait < 1) {
+            throw new IllegalArgumentException("MinWait must be >= 1");
+        }
+        this.invoker = invoker;
+        this.numPending = numPending;
+        this.nextDeadline = nextDeadline;
+        this.delay = delay;
+        this.batchSize = batchSize;
+        this.batchLinger = batchLinger;
+        this.minWait = minWait;
+    }
+
+    /**
+     * Wake up the dispatcher as there are new pending items.
+     */
+    public void signal() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        synchronized (signal) {
+            if (!running) {
+                finished.countDown();
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        try {
+            if (delay > 0) {
+                long delayEnd = System.currentTimeMillis() + delay;
+                synchronized (signal) {
+                    long remaining = delay;
+                    while (running && remaining > 0) {
+                        signal.wait(remaining);
+                        remaining = delayEnd - System.currentTimeMillis();
+                    }
+                }
+            }
+            while (isRunning() && !Thread.currentThread().isInterrupted()) {
+                synchronized (signal) {
+                    if (running && 0 == numPending.getAsInt()) {
+                        waitNextDeadline();
+                    }
+                }
+                if (batchLinger > 0 && numPending.getAsInt() > 0) {
+                    long lingerEnd = System.currentTimeMillis() + batchLinger;
+                    synchronized (signal) {
+                        long remaining = batchLinger;
+                        while (running && numPending.getAsInt() < batchSize && remaining > 0) {
+                            signal.wait(remaining);
+                            remaining = lingerEnd - System.currentTimeMillis();
+                        }
+                    }
+                }
+                if (isRunning()) {
+                    invoker.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("BatchDispatcher interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (signal) {
+                running = false;
+            }
+            finished.countDown();
+        }
+    }
+
+    /*
+        Wait until signaled or until the next deadline. The deadline is computed by the invocations, on this thread, so
+        it can not move earlier while waiting.
+     */
+    private void waitNextDeadline() throws InterruptedException {
+        long deadline = nextDeadline.getAsLong();
+        if (Long.MAX_VALUE == deadline) {
+            signal.wait();
+            return;
+        }
+        // Overdue deadlines are only left by a failed invocation, they are retried after minWait
+        signal.wait(Math.max(deadline - System.currentTimeMillis(), minWait));
+    }
+
+    private boolean isRunning() {
+        synchronized (signal) {
+            return running;
+        }
+    }
+
+    /**
+     * Stop the dispatcher, waiting for an invocation in progress to finish. When called from the dispatcher itself,
+     * or before the dispatcher has started, it only stops the loop.
+     */
+    public void shutdown() {
+        Thread current;
+        synchronized (signal) {
+            running = false;
+            signal.notifyAll();
+            current = runner;
+        }
+        if (null != current && Thread.currentThread() != current) {
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return true if the dispatcher loop has finished, after a shutdown or an interruption
+     */
+    public boolean isFinished() {
+        return 0 == finished.getCount();
+    }
+}
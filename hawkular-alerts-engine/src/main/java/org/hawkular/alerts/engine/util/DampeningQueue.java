@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+/**
+ * Holds the ConditionEvals produced on a rules execution grouped by trigger, as a single Fact in Drools' working
+ * memory.
+ *
+ * The QueueConditionEval rule moves every ConditionEval from working memory into this queue as soon as it is
+ * produced, keyed by (tenantId, triggerId). When all the Data and Events of the cycle have been processed the
+ * DampenTriggers rule applies each trigger's set of evals to its Dampening. This replaces a per-trigger accumulate
+ * of the ConditionEvals, whose network had to be re-evaluated for every trigger on each Data or Event insert and
+ * retract.
+ *
+ * @author agent
+ */
+public class DampeningQueue {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * @param trigger the Trigger of the eval
+     * @param dampening the Dampening of the Trigger on its current mode
+     * @param eval the ConditionEval to apply to the dampening
+     * @return true if the queue was empty before adding the eval
+     */
+    public boolean add(Trigger trigger, Dampening dampening, ConditionEval eval) {
+        boolean wasEmpty = entries.isEmpty();
+        String key = trigger.getTenantId() + ":" + trigger.getId();
+        Entry entry = entries.get(key);
+        if (null == entry) {
+            entry = new Entry(trigger, dampening);
+            entries.put(key, entry);
+        }
+        entry.evals.add(eval);
+        return wasEmpty;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return the queued entries, one per trigger, removing them from the queue
+     */
+    public List<Entry> drain() {
+        List<Entry> drained = new ArrayList<>(entries.values());
+        entries.clear();
+        return drained;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "DampeningQueue [triggers=" + entries.size() + "]";
+    }
+
+    public static class Entry {
+        private final Trigger trigger;
+        private final Dampening dampening;
+        private final Set<ConditionEval> evals = new HashSet<>();
+
+        Entry(Trigger trigger, Dampening dampening) {
+            this.trigger = trigger;
+            this.dampening = dampening;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public Dampening getDampening() {
+            return dampening;
+        }
+
+        public Set<ConditionEval> getEvals() {
+            return evals;
+        }
+    }
+}
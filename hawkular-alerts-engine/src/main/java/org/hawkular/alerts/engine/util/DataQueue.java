@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+
+/**
+ * The rules engine requires that for any DataId only the oldest Data instance is processed at a time. This class
+ * holds the Data and Events queued for a rules execution, grouped by dataId and time-ordered, as a single Fact in
+ * Drools' working memory.
+ *
+ * The ProvideNextData rule takes the oldest Data and Event of every dataId when there is nothing else to do in the
+ * agenda, so all the queued samples are evaluated and dampened in sequence within one execution of the rules.
+ *
+ * @author agent
+ */
+public class DataQueue {
+
+    private final Map<String, ArrayDeque<Data>> data = new LinkedHashMap<>();
+    private final Map<String, ArrayDeque<Event>> events = new LinkedHashMap<>();
+    private int size = 0;
+
+    /**
+     * @param sortedData Data to queue, expected to be sorted by (tenantId, source, id, timestamp)
+     */
+    public void addData(Collection<Data> sortedData) {
+        for (Data d : sortedData) {
+            String key = d.getTenantId() + ":" + d.getSource() + ":" + d.getId();
+            ArrayDeque<Data> queue = data.get(key);
+            if (null == queue) {
+                queue = new ArrayDeque<>();
+                data.put(key, queue);
+            }
+            queue.addLast(d);
+            size++;
+        }
+    }
+
+    /**
+     * @param sortedEvents Events to queue, expected to be sorted by (dataId, ctime)
+     */
+    public void addEvents(Collection<Event> sortedEvents) {
+        for (Event e : sortedEvents) {
+            String key = e.getTenantId() + ":" + e.getDataId();
+            ArrayDeque<Event> queue = events.get(key);
+            if (null == queue) {
+                queue = new ArrayDeque<>();
+                events.put(key, queue);
+            }
+            queue.addLast(e);
+            size++;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the oldest Data and Event of every dataId, removing them from the queue
+     */
+    public List<Object> next() {
+        List<Object> next = new ArrayList<>(data.size() + events.size());
+        poll(data, next);
+        poll(events, next);
+        size -= next.size();
+        return next;
+    }
+
+    private static <T> void poll(Map<String, ArrayDeque<T>> queues, List<Object> next) {
+        for (Iterator<ArrayDeque<T>> i = queues.values().iterator(); i.hasNext();) {
+            ArrayDeque<T> queue = i.next();
+            next.add(queue.pollFirst());
+            if (queue.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        data.clear();
+        events.clear();
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DataQueue [dataIds=" + data.size() + ", eventDataIds=" + events.size() + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * A snapshot of the evaluation state held by the rules engine, stored in a local file to survive a restart.
+ *
+ * The snapshot keeps, per trigger, the AUTORESOLVE mode and the state of its Dampenings (counters, start time and
+ * current evals). It also keeps the previous data used by RateConditions (RateData) and CompareConditions
+ * (CompareData). Definitions are not part of the snapshot, they are restored on top of the triggers loaded from the
+ * backend, and only for the Dampenings whose settings have not changed.
+ *
+ * The file is a compact binary format: a header with a magic number, version, timestamp, length and CRC32 of the
+ * payload, followed by the payload. It is written through a memory-mapped temporary file that is atomically moved
+ * over the previous snapshot, so a crash while saving keeps the previous snapshot.
+ *
+ * This class does not synchronize access to the rules engine facts, {@link #save(RulesEngine)} and
+ * {@link #restore(RulesEngine, long)} must not run concurrently with a rules execution.
+ *
+ * @author agent
+ */
+public class EngineSnapshot {
+    private final Logger log = Logger.getLogger(EngineSnapshot.class);
+
+    private static final int MAGIC = 0x48414553;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+
+    private static final byte RATE_DATA = 0;
+    private static final byte COMPARE_DATA = 1;
+
+    private final File file;
+
+    private static class TriggerState {
+        final String tenantId;
+        final String triggerId;
+        Mode mode = Mode.FIRING;
+        final List<Dampening> dampenings = new ArrayList<>(2);
+
+        TriggerState(String tenantId, String triggerId) {
+            this.tenantId = tenantId;
+            this.triggerId = triggerId;
+        }
+    }
+
+    public EngineSnapshot(File file) {
+        if (null == file) {
+            throw new IllegalArgumentException("File must be not null");
+        }
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Store the evaluation state of the rules engine, replacing the previous snapshot.
+     *
+     * @param rules the rules engine
+     * @return the number of triggers with state stored in the snapshot
+     * @throws IOException on any problem writing the file
+     */
+    public int save(RulesEngine rules) throws IOException {
+        Map<String, TriggerState> triggers = new LinkedHashMap<>();
+        Map<String, Data> rateData = new HashMap<>();
+        Map<String, Data> compareData = new HashMap<>();
+        for (Object fact : rules.getFacts(f -> f instanceof Trigger || f instanceof Dampening
+                || f instanceof RateData || f instanceof CompareData)) {
+            if (fact instanceof Trigger) {
+                Trigger t = (Trigger) fact;
+                if (Mode.AUTORESOLVE == t.getMode()) {
+                    state(triggers, t.getTenantId(), t.getId()).mode = Mode.AUTORESOLVE;
+                }
+            } else if (fact instanceof Dampening) {
+                Dampening d = (Dampening) fact;
+                if (d.getNumEvals() > 0 || d.getTrueEvalsStartTime() != 0L || !d.getCurrentEvals().isEmpty()) {
+                    state(triggers, d.getTenantId(), d.getTriggerId()).dampenings.add(d);
+                }
+            } else if (fact instanceof RateData) {
+                latest(rateData, ((RateData) fact).getData());
+            } else {
+                latest(compareData, ((CompareData) fact).getData());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(triggers.size());
+        for (TriggerState state : triggers.values()) {
+            writeString(out, state.tenantId);
+            writeString(out, state.triggerId);
+            out.writeByte(state.mode.ordinal());
+            out.writeInt(state.dampenings.size());
+            for (Dampening d : state.dampenings) {
+                writeDampening(out, d);
+            }
+        }
+        out.writeInt(rateData.size() + compareData.size());
+        for (Data d : rateData.values()) {
+            out.writeByte(RATE_DATA);
+            writeData(out, d);
+        }
+        for (Data d : compareData.values()) {
+            out.writeByte(COMPARE_DATA);
+            writeData(out, d);
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (null != dir && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create snapshot directory " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + payload.length);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putInt(payload.length);
+            buffer.putLong(crc.getValue());
+            buffer.put(payload);
+            buffer.force();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Saved snapshot of " + triggers.size() + " triggers and " + (rateData.size()
+                    + compareData.size()) + " data into " + file);
+        }
+        return triggers.size();
+    }
+
+    /**
+     * Restore the evaluation state stored in the snapshot into the triggers loaded in the rules engine. Triggers not
+     * loaded are ignored.
+     *
+     * @param rules the rules engine, with the triggers already loaded
+     * @param maxAge the max age of the snapshot in ms, an older snapshot is ignored
+     * @return the number of triggers restored, 0 if there is no valid snapshot
+     * @throws IOException on any problem reading the file
+     */
+    public int restore(RulesEngine rules, long maxAge) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                log.warn("Ignoring invalid snapshot " + file);
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long timestamp = buffer.getLong();
+            int length = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (MAGIC != magic || VERSION != version || buffer.remaining() != length) {
+                log.warn("Ignoring invalid snapshot " + file);
+                return 0;
+            }
+            ByteBuffer payload = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                log.warn("Ignoring corrupted snapshot " + file);
+                return 0;
+            }
+            if (System.currentTimeMillis() - timestamp > maxAge) {
+                log.debug("Ignoring snapshot older than " + maxAge + " ms " + file);
+                return 0;
+            }
+            return restore(rules, payload);
+        }
+    }
+
+    private int restore(RulesEngine rules, ByteBuffer in) {
+        int restored = 0;
+        int numTriggers = in.getInt();
+        for (int i = 0; i < numTriggers; i++) {
+            String tenantId = readString(in);
+            String triggerId = readString(in);
+            Mode mode = Mode.values()[in.get()];
+            int numDampenings = in.getInt();
+            List<Dampening> dampenings = new ArrayList<>(numDampenings);
+            for (int j = 0; j < numDampenings; j++) {
+                dampenings.add(readDampening(in, tenantId, triggerId));
+            }
+
+            Trigger trigger = (Trigger) rules.getFact(new Trigger(tenantId, triggerId, "snapshot"));
+            if (null == trigger) {
+                continue;
+            }
+            for (Dampening d : dampenings) {
+                Dampening loaded = (Dampening) rules.getFact(d);
+                if (null == loaded) {
+                    // Only the default dampening is created by the engine, others come from the definitions
+                    Dampening defaultDampening = Dampening.forStrict(tenantId, triggerId, d.getTriggerMode(), 1);
+                    if (sameSettings(defaultDampening, d)) {
+                        rules.addFact(d);
+                    }
+                } else if (sameSettings(loaded, d)) {
+                    loaded.setNumTrueEvals(d.getNumTrueEvals());
+                    loaded.setNumEvals(d.getNumEvals());
+                    loaded.setTrueEvalsStartTime(d.getTrueEvalsStartTime());
+                    loaded.getCurrentEvals().clear();
+                    loaded.getCurrentEvals().putAll(d.getCurrentEvals());
+                    loaded.setSatisfyingEvals(d.getSatisfyingEvals());
+                    rules.updateFact(loaded);
+                }
+            }
+            if (Mode.AUTORESOLVE == mode && trigger.isAutoResolve() && Mode.FIRING == trigger.getMode()) {
+                trigger.setMode(Mode.AUTORESOLVE);
+                rules.updateFact(trigger);
+            }
+            restored++;
+        }
+
+        Set<String> rateDataIds = new HashSet<>();
+        Set<String> compareDataIds = new HashSet<>();
+        for (Object fact : rules.getFacts(f -> f instanceof RateCondition || f instanceof CompareCondition)) {
+            Condition c = (Condition) fact;
+            if (c instanceof RateCondition) {
+                rateDataIds.add(c.getTenantId() + ":" + c.getDataId());
+            } else {
+                compareDataIds.add(c.getTenantId() + ":" + c.getDataId());
+                compareDataIds.add(c.getTenantId() + ":" + ((CompareCondition) c).getData2Id());
+            }
+        }
+        int numData = in.getInt();
+        for (int i = 0; i < numData; i++) {
+            byte type = in.get();
+            Data d = readData(in);
+            String dataId = d.getTenantId() + ":" + d.getId();
+            if (RATE_DATA == type && rateDataIds.contains(dataId)) {
+                rules.addFact(new RateData(d));
+            } else if (COMPARE_DATA == type && compareDataIds.contains(dataId)) {
+                rules.addFact(new CompareData(d));
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Restored snapshot of " + restored + " triggers from " + file);
+        }
+        return restored;
+    }
+
+    private static TriggerState state(Map<String, TriggerState> triggers, String tenantId, String triggerId) {
+        return triggers.computeIfAbsent(tenantId + ":" + triggerId, k -> new TriggerState(tenantId, triggerId));
+    }
+
+    private static void latest(Map<String, Data> data, Data d) {
+        data.merge(d.getTenantId() + ":" + d.getSource() + ":" + d.getId(), d,
+                (d1, d2) -> d1.getTimestamp() >= d2.getTimestamp() ? d1 : d2);
+    }
+
+    private static boolean sameSettings(Dampening d1, Dampening d2) {
+        return d1.getType() == d2.getType()
+                && d1.getEvalTrueSetting() == d2.getEvalTrueSetting()
+                && d1.getEvalTotalSetting() == d2.getEvalTotalSetting()
+                && d1.getEvalTimeSetting() == d2.getEvalTimeSetting();
+    }
+
+    private static void writeDampening(DataOutputStream out, Dampening d) throws IOException {
+        out.writeByte(d.getTriggerMode().ordinal());
+        out.writeByte(d.getType().ordinal());
+        out.writeInt(d.getEvalTrueSetting());
+        out.writeInt(d.getEvalTotalSetting());
+        out.writeLong(d.getEvalTimeSetting());
+        out.writeInt(d.getNumTrueEvals());
+        out.writeInt(d.getNumEvals());
+        out.writeLong(d.getTrueEvalsStartTime());
+        out.writeInt(d.getCurrentEvals().size());
+        for (Map.Entry<Integer, ConditionEval> e : d.getCurrentEvals().entrySet()) {
+            out.writeInt(e.getKey());
+            writeString(out, JsonUtil.toJson(e.getValue()));
+        }
+        List<Set<ConditionEval>> satisfyingEvals = d.getSatisfyingEvals();
+        out.writeInt(satisfyingEvals.size());
+        for (Set<ConditionEval> evals : satisfyingEvals) {
+            out.writeInt(evals.size());
+            for (ConditionEval ce : evals) {
+                writeString(out, JsonUtil.toJson(ce));
+            }
+        }
+    }
+
+    private static Dampening readDampening(ByteBuffer in, String tenantId, String triggerId) {
+        Dampening d = new Dampening();
+        d.setTenantId(tenantId);
+        d.setTriggerId(triggerId);
+        d.setTriggerMode(Mode.values()[in.get()]);
+        d.setType(Dampening.Type.values()[in.get()]);
+        d.setEvalTrueSetting(in.getInt());
+        d.setEvalTotalSetting(in.getInt());
+        d.setEvalTimeSetting(in.getLong());
+        d.setNumTrueEvals(in.getInt());
+        d.setNumEvals(in.getInt());
+        d.setTrueEvalsStartTime(in.getLong());
+        int numCurrentEvals = in.getInt();
+        for (int i = 0; i < numCurrentEvals; i++) {
+            int index = in.getInt();
+            d.getCurrentEvals().put(index, JsonUtil.fromJson(readString(in), ConditionEval.class));
+        }
+        int numSatisfyingEvals = in.getInt();
+        List<Set<ConditionEval>> satisfyingEvals = new ArrayList<>(numSatisfyingEvals);
+        for (int i = 0; i < numSatisfyingEvals; i++) {
+            int size = in.getInt();
+            Set<ConditionEval> evals = new HashSet<>();
+            for (int j = 0; j < size; j++) {
+                evals.add(JsonUtil.fromJson(readString(in), ConditionEval.class));
+            }
+            satisfyingEvals.add(evals);
+        }
+        d.setSatisfyingEvals(satisfyingEvals);
+        return d;
+    }
+
+    private static void writeData(DataOutputStream out, Data d) throws IOException {
+        writeString(out, d.getTenantId());
+        writeString(out, d.getSource());
+        writeString(out, d.getId());
+        out.writeLong(d.getTimestamp());
+        writeString(out, d.getValue());
+        Map<String, String> context = d.getContext();
+        out.writeInt(null == context ? -1 : context.size());
+        if (null != context) {
+            for (Map.Entry<String, String> e : context.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+        }
+    }
+
+    private static Data readData(ByteBuffer in) {
+        String tenantId = readString(in);
+        String source = readString(in);
+        String id = readString(in);
+        long timestamp = in.getLong();
+        String value = readString(in);
+        Map<String, String> context = null;
+        int contextSize = in.getInt();
+        if (contextSize >= 0) {
+            context = new HashMap<>();
+            for (int i = 0; i < contextSize; i++) {
+                context.put(readString(in), readString(in));
+            }
+        }
+        Data d = new Data(tenantId, source, id, timestamp, value);
+        d.setContext(context);
+        return d;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (null == s) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * The DampeningTimeoutAdd rule only arms the timeout of a STRICT_TIMEOUT Dampening on its first true eval, so
+     * the timeouts in progress of the restored Dampenings, at any number of true evals, must be armed by the caller.
+     *
+     * @param rules the rules engine, with the snapshot restored
+     * @return the restored STRICT_TIMEOUT Dampenings with a timeout in progress
+     */
+    public static Collection<Dampening> pendingTimeouts(RulesEngine rules) {
+        List<Dampening> pendingTimeouts = new ArrayList<>();
+        for (Object fact : rules.getFacts(f -> f instanceof Dampening
+                && Dampening.Type.STRICT_TIMEOUT == ((Dampening) f).getType()
+                && ((Dampening) f).getNumTrueEvals() >= 1
+                && !((Dampening) f).isSatisfied())) {
+            pendingTimeouts.add((Dampening) fact);
+        }
+        return pendingTimeouts;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "EngineSnapshot [file=" + file + "]";
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative long values (i.e. latencies in microseconds or sizes) with a fixed memory footprint.
+ *
+ * Values are counted on log-linear buckets: every power of two is split into 8 sub-buckets, so a percentile is
+ * reported with a relative error below 12.5%. Values lower than 8 are counted exactly.
+ *
+ * Recording and reading are synchronized, it is intended to record a few values per rules execution and to be read
+ * from status and JMX requests.
+ *
+ * @author agent
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] buckets = new long[NUM_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public synchronized void record(long value) {
+        long v = Math.max(0, value);
+        buckets[index(v)]++;
+        count++;
+        sum += v;
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the recorded values, 0 if there are no values
+     */
+    public synchronized long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param percentile the requested percentile, between 0 and 100
+     * @return an upper bound of the value at the given percentile, never greater than the max recorded value. 0 if
+     * there are no values.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(lowerBound(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index >= NUM_BUCKETS) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Histogram [count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99="
+                + getPercentile(99) + ", max=" + max + "]";
+    }
+}
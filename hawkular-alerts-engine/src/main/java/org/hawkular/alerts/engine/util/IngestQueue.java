@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue of items (i.e. Data or Events) pending to be processed by the rules engine.
+ *
+ * Multiple threads can offer items, only one thread at a time can drain or clear the queue.
+ *
+ * @author agent
+ */
+public interface IngestQueue<T> {
+
+    /**
+     * @param items the items to add to the queue
+     * @throws org.hawkular.alerts.engine.exception.FullQueueApplicationException if the queue rejects the items
+     */
+    void offer(Collection<T> items);
+
+    /**
+     * Single consumer only. Remove up to <code>limit</code> items from the queue, handing each of them to the
+     * <code>consumer</code>.
+     *
+     * @param consumer the consumer of the drained items
+     * @param limit the max number of items to drain
+     * @return the number of drained items
+     */
+    int drain(Consumer<T> consumer, int limit);
+
+    /**
+     * @return an estimation of the number of pending items
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * Single consumer only.
+     */
+    void clear();
+
+    /**
+     * @return the number of items dropped since the queue was created
+     */
+    long getDropped();
+
+    /**
+     * @return the number of items replaced by a more recent item with the same key since the queue was created
+     */
+    long getCoalesced();
+
+    /**
+     * @return the number of items rejected to the caller since the queue was created
+     */
+    long getRejected();
+}
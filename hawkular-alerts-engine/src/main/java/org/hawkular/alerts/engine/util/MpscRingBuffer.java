@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free, multi-producer/single-consumer ring buffer of references.
+ *
+ * Producers claim a slot with a CAS on the producer index and then publish the element into the slot. The single
+ * consumer reads the slot at the consumer index, clears it and advances the consumer index. A claimed but not yet
+ * published slot is seen by the consumer as a null element with a producer index ahead of the consumer index; in
+ * that case the consumer spins until the element is published.
+ *
+ * {@link #offer(Object)} can be called from any thread. {@link #poll()}, {@link #drain(Consumer, int)} and
+ * {@link #clear()} must be called from a single thread at a time.
+ *
+ * @author agent
+ */
+public class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param requestedCapacity the minimum capacity of the buffer, it is rounded up to the next power of two.
+     */
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be >= 1");
+        }
+        if (requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be <= 2^30");
+        }
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param e the element to add, not null
+     * @return true if the element was added, false if the buffer is full
+     */
+    public boolean offer(E e) {
+        if (null == e) {
+            throw new NullPointerException("Element must be not null");
+        }
+        long p;
+        do {
+            p = producerIndex.get();
+            if (p - consumerIndex.get() >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(p, p + 1));
+        buffer.lazySet(offset(p), e);
+        return true;
+    }
+
+    /**
+     * Single consumer only.
+     *
+     * @return the oldest element of the buffer, or null if the buffer is empty
+     */
+    public E poll() {
+        long c = consumerIndex.get();
+        int offset = offset(c);
+        E e = buffer.get(offset);
+        if (null == e) {
+            if (c == producerIndex.get()) {
+                return null;
+            }
+            // A producer has claimed the slot but has not published the element yet
+            do {
+                e = buffer.get(offset);
+            } while (null == e);
+        }
+        buffer.lazySet(offset, null);
+        consumerIndex.lazySet(c + 1);
+        return e;
+    }
+
+    /**
+     * Single consumer only. Remove up to <code>limit</code> elements from the buffer, in order, handing each of
+     * them to the <code>consumer</code>. No intermediate collection is created.
+     *
+     * @param consumer the consumer of the drained elements
+     * @param limit the max number of elements to drain
+     * @return the number of drained elements
+     */
+    public int drain(Consumer<E> consumer, int limit) {
+        int drained = 0;
+        E e;
+        while (drained < limit && (e = poll()) != null) {
+            consumer.accept(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return an estimation of the number of elements in the buffer, it can be stale on concurrent access.
+     */
+    public int size() {
+        long c = consumerIndex.get();
+        long size = producerIndex.get() - c;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    /**
+     * Single consumer only.
+     */
+    public void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+
+    private int offset(long index) {
+        return (int) (index & mask);
+    }
+
+    @Override
+    public String toString() {
+        return "MpscRingBuffer [capacity=" + capacity + ", size=" + size() + "]";
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hawkular.alerts.engine.exception.FullQueueApplicationException;
+
+/**
+ * A bounded queue of items pending to be processed by the rules engine, with a policy to apply when the queue is
+ * full.
+ *
+ * Items are buffered in a {@link MpscRingBuffer}. When it is full the {@link Policy} defines what to do:
+ * <ul>
+ * <li>BLOCK: the caller waits until there is space in the queue.</li>
+ * <li>REJECT: the whole collection of items is rejected with a {@link FullQueueApplicationException}. The room for a
+ * collection is reserved atomically before to add its items, so concurrent callers never get a collection partially
+ * accepted, nor items dropped. A collection larger than the capacity of the queue can never fit, it is rejected up
+ * front with an {@link IllegalArgumentException} so the caller splits it instead of retrying it.</li>
+ * <li>DROP_OLDEST: items are kept in an overflow buffer holding up to <code>overflowDepth</code> items per key
+ * (i.e. per dataId); when a key is full its oldest item on the overflow buffer is dropped. Items already accepted by
+ * the ring buffer are never dropped, so the dropped items are the oldest of the ones that did not fit.</li>
+ * <li>LATEST: items are kept in an overflow buffer holding only the latest item per key; previous items of the same
+ * key are coalesced.</li>
+ * </ul>
+ * The overflow buffer is bounded by the number of keys, and it is drained after the ring buffer, as it always holds
+ * the most recent items. While it is not empty new items are routed to it to preserve the arrival order per key.
+ *
+ * Multiple threads can offer items, only one thread at a time can drain or clear the queue.
+ *
+ * @author agent
+ */
+public class PendingQueue<T> implements IngestQueue<T> {
+
+    public enum Policy {
+        BLOCK, REJECT, DROP_OLDEST, LATEST
+    }
+
+    private static final long FULL_PARK_NANOS = 100000L;
+
+    private final String name;
+    private final MpscRingBuffer<T> buffer;
+    private final Policy policy;
+    private final Function<T, String> keyFunction;
+    private final int overflowDepth;
+    private final Runnable onFull;
+
+    // Guarded by overflow
+    private final Map<String, ArrayDeque<T>> overflow = new LinkedHashMap<>();
+    private volatile int overflowSize = 0;
+
+    // Items of the REJECT offers in progress, reserved but not yet on the ring buffer
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name the name of the queue, used on error messages
+     * @param capacity the capacity of the ring buffer
+     * @param policy the policy to apply when the ring buffer is full
+     * @param keyFunction the function that computes the overflow key of an item, used by DROP_OLDEST and LATEST
+     * @param overflowDepth the max number of items per key kept on overflow by DROP_OLDEST
+     * @param onFull an optional callback invoked when the ring buffer is found full, i.e. to wake up the consumer
+     */
+    public PendingQueue(String name, int capacity, Policy policy, Function<T, String> keyFunction,
+            int overflowDepth, Runnable onFull) {
+        if (null == policy) {
+            throw new IllegalArgumentException("Policy must be not null");
+        }
+        if (null == keyFunction && (Policy.DROP_OLDEST == policy || Policy.LATEST == policy)) {
+            throw new IllegalArgumentException("KeyFunction must be not null for " + policy + " policy");
+        }
+        if (overflowDepth < 1) {
+            throw new IllegalArgumentException("OverflowDepth must be >= 1");
+        }
+        this.name = name;
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.policy = policy;
+        this.keyFunction = keyFunction;
+        this.overflowDepth = Policy.LATEST == policy ? 1 : overflowDepth;
+        this.onFull = onFull;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @param items the items to add to the queue
+     * @throws FullQueueApplicationException if the policy is REJECT and there is no room for all the items
+     * @throws IllegalArgumentException if the policy is REJECT and there are more items than the queue capacity
+     */
+    @Override
+    public void offer(Collection<T> items) {
+        if (Policy.REJECT == policy && items.size() > buffer.capacity()) {
+            throw new IllegalArgumentException("Pending " + name + " queue can not accept [" + items.size()
+                    + "] items at once, max is [" + buffer.capacity() + "]. Split the items.");
+        }
+        if (Policy.REJECT == policy && !reserve(items.size())) {
+            rejected.addAndGet(items.size());
+            fireOnFull();
+            throw new FullQueueApplicationException("Pending " + name + " queue is full. Rejected ["
+                    + items.size() + "] items. Retry later.");
+        }
+        for (T item : items) {
+            offer(item);
+        }
+    }
+
+    /*
+        Reserve room for numItems on the ring buffer. The ring buffer items plus the reserved ones never undercount
+        the claimed slots, as an offered item is released from the reservation only once it is on the ring buffer.
+     */
+    private boolean reserve(int numItems) {
+        for (;;) {
+            int current = reserved.get();
+            if (buffer.size() + current + numItems > buffer.capacity()) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + numItems)) {
+                return true;
+            }
+        }
+    }
+
+    private void offer(T item) {
+        switch (policy) {
+            case BLOCK:
+                while (!buffer.offer(item)) {
+                    fireOnFull();
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+                break;
+            case REJECT:
+                // The room is reserved, the ring buffer can only be full until the consumer releases its slots
+                while (!buffer.offer(item)) {
+                    fireOnFull();
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+                reserved.decrementAndGet();
+                break;
+            case DROP_OLDEST:
+            case LATEST:
+                if (overflowSize > 0 || !buffer.offer(item)) {
+                    offerOverflow(item);
+                    fireOnFull();
+                }
+                break;
+        }
+    }
+
+    private void offerOverflow(T item) {
+        String key = keyFunction.apply(item);
+        synchronized (overflow) {
+            ArrayDeque<T> items = overflow.get(key);
+            if (null == items) {
+                items = new ArrayDeque<>(overflowDepth);
+                overflow.put(key, items);
+            }
+            int size = overflowSize;
+            if (items.size() >= overflowDepth) {
+                items.pollFirst();
+                size--;
+                if (Policy.LATEST == policy) {
+                    coalesced.incrementAndGet();
+                } else {
+                    dropped.incrementAndGet();
+                }
+            }
+            items.addLast(item);
+            overflowSize = size + 1;
+        }
+    }
+
+    private void fireOnFull() {
+        if (null != onFull) {
+            onFull.run();
+        }
+    }
+
+    /**
+     * Single consumer only. Remove up to <code>limit</code> items from the queue, in order, handing each of them to
+     * the <code>consumer</code>.
+     *
+     * @param consumer the consumer of the drained items
+     * @param limit the max number of items to drain
+     * @return the number of drained items
+     */
+    @Override
+    public int drain(Consumer<T> consumer, int limit) {
+        int drained = buffer.drain(consumer, limit);
+        if (drained < limit && overflowSize > 0) {
+            synchronized (overflow) {
+                int size = overflowSize;
+                for (Iterator<ArrayDeque<T>> i = overflow.values().iterator(); i.hasNext() && drained < limit;) {
+                    ArrayDeque<T> items = i.next();
+                    while (!items.isEmpty() && drained < limit) {
+                        consumer.accept(items.pollFirst());
+                        drained++;
+                        size--;
+                    }
+                    if (items.isEmpty()) {
+                        i.remove();
+                    }
+                }
+                overflowSize = size;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return an estimation of the number of pending items
+     */
+    @Override
+    public int size() {
+        return buffer.size() + overflowSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return buffer.isEmpty() && overflowSize == 0;
+    }
+
+    /**
+     * Single consumer only.
+     */
+    @Override
+    public void clear() {
+        buffer.clear();
+        synchronized (overflow) {
+            overflow.clear();
+            overflowSize = 0;
+        }
+    }
+
+    /**
+     * @return the number of items dropped since the queue was created
+     */
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of items replaced by a more recent item with the same key since the queue was created
+     */
+    @Override
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of items rejected to the caller since the queue was created
+     */
+    @Override
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PendingQueue [name=" + name + ", policy=" + policy + ", capacity=" + buffer.capacity()
+                + ", size=" + size() + ", dropped=" + dropped + ", coalesced=" + coalesced
+                + ", rejected=" + rejected + "]";
+    }
+}
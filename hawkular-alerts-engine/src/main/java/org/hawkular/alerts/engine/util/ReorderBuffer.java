@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A buffer that reorders items by timestamp per key (i.e. per dataId), tolerating items arriving up to an allowed
+ * lateness out of order.
+ *
+ * Items of a key are held until the watermark of the key, its max timestamp minus the allowed lateness, passes their
+ * timestamp, and then released in timestamp order. Items are also released when they have been held for the allowed
+ * lateness in system time, so a key that stops receiving items is not held forever.
+ *
+ * An item with a timestamp not after the last item released for its key is too late: it is dropped and counted.
+ * At most <code>maxDepth</code> items are held per key; on overflow the oldest items are released early.
+ *
+ * A key with no held items is evicted once it has been idle for the allowed lateness, so the buffer does not grow
+ * with the dataIds seen over time. Only the timestamp of its last released item is retained, in a map bounded to
+ * <code>maxRetiredKeys</code> keys, so too late items of an evicted key are still dropped. Items of a key evicted
+ * from that map too are handled as the items of a new key.
+ *
+ * A release only visits the keys with items to release: the keys whose watermark or depth has been passed by an
+ * added item, and the keys of the items expired on the heap of the held items by arrival.
+ *
+ * Not thread-safe, it is used by the rules execution thread. Counters can be read from any thread.
+ *
+ * @author agent
+ */
+public class ReorderBuffer<T> {
+
+    private class Held {
+        final KeyState state;
+        final T item;
+        final long timestamp;
+        final long arrival;
+        boolean released = false;
+
+        Held(KeyState state, T item, long timestamp, long arrival) {
+            this.state = state;
+            this.item = item;
+            this.timestamp = timestamp;
+            this.arrival = arrival;
+        }
+    }
+
+    private class KeyState {
+        final String key;
+        final PriorityQueue<Held> held = new PriorityQueue<>(4, (h1, h2) -> Long.compare(h1.timestamp,
+                h2.timestamp));
+        long maxTimestamp = Long.MIN_VALUE;
+        long lastReleased = Long.MIN_VALUE;
+        // System time when the key became idle
+        long idleSince;
+
+        KeyState(String key, long lastReleased) {
+            this.key = key;
+            this.lastReleased = lastReleased;
+        }
+    }
+
+    private static final int MAX_RETIRED_KEYS = 65536;
+
+    private final long allowedLateness;
+    private final int maxDepth;
+    private final Function<T, String> keyFunction;
+    private final ToLongFunction<T> timestampFunction;
+
+    private final Map<String, KeyState> keys = new HashMap<>();
+    // Keys with items to release on the next release
+    private final Set<KeyState> ready = new LinkedHashSet<>();
+    // Keys with no held items, in the order they became idle
+    private final Set<KeyState> idle = new LinkedHashSet<>();
+    // Held items by arrival, released items are removed lazily
+    private final PriorityQueue<Held> arrivals = new PriorityQueue<>(16, (h1, h2) -> Long.compare(h1.arrival,
+            h2.arrival));
+    // Last released timestamp of the evicted keys, the least recently evicted key is removed on overflow
+    private final Map<String, Long> retired;
+
+    private volatile int size = 0;
+    private final AtomicLong late = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param allowedLateness the max time in ms an item can arrive after a more recent item of the same key
+     * @param maxDepth the max number of items held per key
+     * @param keyFunction the function that computes the key of an item
+     * @param timestampFunction the function that computes the timestamp of an item
+     */
+    public ReorderBuffer(long allowedLateness, int maxDepth, Function<T, String> keyFunction,
+            ToLongFunction<T> timestampFunction) {
+        this(allowedLateness, maxDepth, MAX_RETIRED_KEYS, keyFunction, timestampFunction);
+    }
+
+    /**
+     * @param allowedLateness the max time in ms an item can arrive after a more recent item of the same key
+     * @param maxDepth the max number of items held per key
+     * @param maxRetiredKeys the max number of evicted keys whose last released timestamp is retained
+     * @param keyFunction the function that computes the key of an item
+     * @param timestampFunction the function that computes the timestamp of an item
+     */
+    public ReorderBuffer(long allowedLateness, int maxDepth, int maxRetiredKeys, Function<T, String> keyFunction,
+            ToLongFunction<T> timestampFunction) {
+        if (allowedLateness < 1) {
+            throw new IllegalArgumentException("AllowedLateness must be >= 1");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("MaxDepth must be >= 1");
+        }
+        if (maxRetiredKeys < 0) {
+            throw new IllegalArgumentException("MaxRetiredKeys must be >= 0");
+        }
+        if (null == keyFunction || null == timestampFunction) {
+            throw new IllegalArgumentException("KeyFunction and TimestampFunction must be not null");
+        }
+        this.allowedLateness = allowedLateness;
+        this.maxDepth = maxDepth;
+        this.keyFunction = keyFunction;
+        this.timestampFunction = timestampFunction;
+        this.retired = new LinkedHashMap<String, Long>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxRetiredKeys;
+            }
+        };
+    }
+
+    /**
+     * @param item the item to hold
+     * @param now the current system time in ms
+     * @return false if the item is too late and it has been dropped
+     */
+    public boolean add(T item, long now) {
+        String key = keyFunction.apply(item);
+        KeyState state = keys.get(key);
+        if (null == state) {
+            Long lastReleased = retired.remove(key);
+            state = new KeyState(key, null == lastReleased ? Long.MIN_VALUE : lastReleased);
+            keys.put(key, state);
+        }
+        long timestamp = timestampFunction.applyAsLong(item);
+        if (timestamp <= state.lastReleased) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (timestamp < state.maxTimestamp) {
+            late.incrementAndGet();
+        } else {
+            state.maxTimestamp = timestamp;
+        }
+        if (state.held.isEmpty()) {
+            idle.remove(state);
+        }
+        Held held = new Held(state, item, timestamp, now);
+        state.held.add(held);
+        arrivals.add(held);
+        if (state.held.peek().timestamp <= state.maxTimestamp - allowedLateness || state.held.size() > maxDepth) {
+            ready.add(state);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Release, in timestamp order per key, the items passed by the watermark of their key, held for the allowed
+     * lateness, or exceeding the max depth of their key.
+     *
+     * @param now the current system time in ms
+     * @param consumer the consumer of the released items
+     * @return the number of released items
+     */
+    public int release(long now, Consumer<T> consumer) {
+        int released = 0;
+        long arrivedBefore = now - allowedLateness;
+        /*
+            Expired items are removed from the arrivals heap. An expired item behind a more recent head of its key is
+            released right after its head, as the head arrived later.
+         */
+        Held expired;
+        while ((expired = arrivals.peek()) != null && (expired.released || expired.arrival <= arrivedBefore)) {
+            arrivals.poll();
+            if (!expired.released) {
+                ready.add(expired.state);
+            }
+        }
+        for (KeyState state : ready) {
+            long watermark = state.maxTimestamp - allowedLateness;
+            Held head;
+            while ((head = state.held.peek()) != null
+                    && (head.timestamp <= watermark || head.arrival <= arrivedBefore
+                            || state.held.size() > maxDepth)) {
+                state.held.poll();
+                head.released = true;
+                state.lastReleased = head.timestamp;
+                consumer.accept(head.item);
+                released++;
+            }
+            if (state.held.isEmpty()) {
+                state.idleSince = now;
+                idle.add(state);
+            }
+        }
+        ready.clear();
+        size -= released;
+        purgeArrivals();
+        evictIdle(now);
+        return released;
+    }
+
+    private void purgeArrivals() {
+        while (!arrivals.isEmpty() && arrivals.peek().released) {
+            arrivals.poll();
+        }
+    }
+
+    /*
+        Idle keys are evicted once the allowed lateness has passed since their last release
+     */
+    private void evictIdle(long now) {
+        for (Iterator<KeyState> i = idle.iterator(); i.hasNext();) {
+            KeyState state = i.next();
+            if (now - state.idleSince < allowedLateness) {
+                break;
+            }
+            i.remove();
+            retire(state);
+        }
+    }
+
+    private void retire(KeyState state) {
+        keys.remove(state.key);
+        if (Long.MIN_VALUE != state.lastReleased) {
+            retired.put(state.key, state.lastReleased);
+        }
+    }
+
+    /**
+     * Release all the held items, in timestamp order per key, and evict the keys.
+     *
+     * @param consumer the consumer of the released items
+     * @return the number of released items
+     */
+    public int flush(Consumer<T> consumer) {
+        int released = release(Long.MAX_VALUE, consumer);
+        for (KeyState state : idle) {
+            retire(state);
+        }
+        idle.clear();
+        return released;
+    }
+
+    /**
+     * @return the system time in ms when the next held item is released by the allowed lateness, or Long.MAX_VALUE
+     * if there are no held items.
+     */
+    public long nextRelease() {
+        purgeArrivals();
+        return arrivals.isEmpty() ? Long.MAX_VALUE : arrivals.peek().arrival + allowedLateness;
+    }
+
+    public void clear() {
+        keys.clear();
+        ready.clear();
+        idle.clear();
+        arrivals.clear();
+        retired.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of keys tracked, with held items or idle for less than the allowed lateness
+     */
+    public int getNumKeys() {
+        return keys.size();
+    }
+
+    /**
+     * @return the number of evicted keys whose last released timestamp is retained
+     */
+    public int getNumRetiredKeys() {
+        return retired.size();
+    }
+
+    /**
+     * @return the number of held items
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of items received out of order and reordered since the buffer was created
+     */
+    public long getLate() {
+        return late.get();
+    }
+
+    /**
+     * @return the number of items dropped because they arrived too late since the buffer was created
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReorderBuffer [allowedLateness=" + allowedLateness + ", maxDepth=" + maxDepth + ", keys="
+                + keys.size() + ", size=" + size + ", late=" + late + ", dropped=" + dropped + "]";
+    }
+}
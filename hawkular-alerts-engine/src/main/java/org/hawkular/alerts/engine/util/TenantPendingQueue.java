@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hawkular.alerts.engine.util.PendingQueue.Policy;
+
+/**
+ * A queue of items pending to be processed by the rules engine, with a bounded sub-queue per tenant and a fair
+ * scheduling of the tenants on drain.
+ *
+ * Every tenant gets its own {@link PendingQueue}, with its own capacity, so a tenant sending more items than the
+ * engine can process only fills its own sub-queue and the queue policy (block, reject, drop...) only applies to it.
+ *
+ * Sub-queues are drained with a deficit round-robin scheduler: on its turn a tenant can drain up to
+ * <code>QUANTUM * weight</code> items, then the next tenant with pending items is served. A drain limited by
+ * <code>limit</code> resumes on the next drain where it was left.
+ *
+ * The capacity and weight of a tenant are resolved by a quota function when its sub-queue is created. Sub-queues of
+ * tenants idle for <code>IDLE_TIMEOUT</code> ms are released, so the quota of a tenant is resolved again after it.
+ *
+ * Each item is wrapped with its enqueue time to measure the queue latency per tenant.
+ *
+ * @author agent
+ */
+public class TenantPendingQueue<T> implements IngestQueue<T> {
+
+    private static final int QUANTUM = 100;
+    private static final long IDLE_TIMEOUT = 60000L;
+
+    /**
+     * The quota of a tenant: the capacity of its sub-queue and its weight on the scheduling.
+     */
+    public static class Quota {
+        private final int capacity;
+        private final int weight;
+
+        public Quota(int capacity, int weight) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be >= 1");
+            }
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight must be >= 1");
+            }
+            this.capacity = capacity;
+            this.weight = weight;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    private static class Pending<T> {
+        final T item;
+        final long enqueued;
+
+        Pending(T item, long enqueued) {
+            this.item = item;
+            this.enqueued = enqueued;
+        }
+    }
+
+    private class TenantQueue {
+        final String tenantId;
+        final int weight;
+        final PendingQueue<Pending<T>> queue;
+        final AtomicInteger writers = new AtomicInteger();
+        volatile boolean retired = false;
+
+        final Histogram latency = new Histogram();
+        volatile long drained = 0L;
+
+        // Consumer only
+        long deficit = 0L;
+        long lastActive = System.currentTimeMillis();
+
+        TenantQueue(String tenantId, Quota quota) {
+            this.tenantId = tenantId;
+            this.weight = quota.getWeight();
+            this.queue = new PendingQueue<>(name + "[" + tenantId + "]", quota.getCapacity(), policy,
+                    null == keyFunction ? null : p -> keyFunction.apply(p.item), overflowDepth, onFull);
+        }
+    }
+
+    private final String name;
+    private final Policy policy;
+    private final Function<T, String> tenantFunction;
+    private final Function<T, String> keyFunction;
+    private final int overflowDepth;
+    private final Function<String, Quota> quotaFunction;
+    private final Runnable onFull;
+
+    private final Map<String, TenantQueue> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TenantQueue> created = new ConcurrentLinkedQueue<>();
+
+    // Consumer only, the round-robin order of the tenants
+    private final List<TenantQueue> ring = new ArrayList<>();
+    private int cursor = 0;
+
+    // Counters of the released sub-queues
+    private final AtomicLong releasedDropped = new AtomicLong();
+    private final AtomicLong releasedCoalesced = new AtomicLong();
+    private final AtomicLong releasedRejected = new AtomicLong();
+
+    /**
+     * @param name the name of the queue, used on error messages
+     * @param policy the policy to apply when a tenant sub-queue is full
+     * @param tenantFunction the function that computes the tenant of an item
+     * @param keyFunction the function that computes the overflow key of an item, used by DROP_OLDEST and LATEST
+     * @param overflowDepth the max number of items per key kept on overflow by DROP_OLDEST
+     * @param quotaFunction the function that resolves the quota of a tenant
+     * @param onFull an optional callback invoked when a tenant sub-queue is found full
+     */
+    public TenantPendingQueue(String name, Policy policy, Function<T, String> tenantFunction,
+            Function<T, String> keyFunction, int overflowDepth, Function<String, Quota> quotaFunction,
+            Runnable onFull) {
+        if (null == tenantFunction) {
+            throw new IllegalArgumentException("TenantFunction must be not null");
+        }
+        if (null == quotaFunction) {
+            throw new IllegalArgumentException("QuotaFunction must be not null");
+        }
+        if (null == policy) {
+            throw new IllegalArgumentException("Policy must be not null");
+        }
+        if (null == keyFunction && (Policy.DROP_OLDEST == policy || Policy.LATEST == policy)) {
+            throw new IllegalArgumentException("KeyFunction must be not null for " + policy + " policy");
+        }
+        if (overflowDepth < 1) {
+            throw new IllegalArgumentException("OverflowDepth must be >= 1");
+        }
+        this.name = name;
+        this.policy = policy;
+        this.tenantFunction = tenantFunction;
+        this.keyFunction = keyFunction;
+        this.overflowDepth = overflowDepth;
+        this.quotaFunction = quotaFunction;
+        this.onFull = onFull;
+    }
+
+    /**
+     * @param items the items to add to the queue
+     * @throws org.hawkular.alerts.engine.exception.FullQueueApplicationException if the policy is REJECT and there
+     * is no room for the items of a tenant. Items of other tenants in the same collection can be already queued.
+     * @throws IllegalArgumentException if the policy is REJECT and there are more items of a tenant than the
+     * capacity of its sub-queue, as for a full sub-queue the items of other tenants can be already queued.
+     */
+    @Override
+    public void offer(Collection<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Map<String, List<Pending<T>>> byTenant = new LinkedHashMap<>();
+        for (T item : items) {
+            String tenantId = tenantFunction.apply(item);
+            List<Pending<T>> tenantItems = byTenant.get(tenantId);
+            if (null == tenantItems) {
+                tenantItems = new ArrayList<>(items.size());
+                byTenant.put(tenantId, tenantItems);
+            }
+            tenantItems.add(new Pending<>(item, now));
+        }
+        for (Map.Entry<String, List<Pending<T>>> entry : byTenant.entrySet()) {
+            offer(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /*
+        A sub-queue is released by the consumer only when it is empty and there are no writers. A writer announces
+        itself before checking the retired flag, and the consumer sets the retired flag before checking the writers,
+        so either the writer sees the sub-queue retired and retries with a new one, or the consumer sees the writer
+        and keeps the sub-queue.
+     */
+    private void offer(String tenantId, List<Pending<T>> items) {
+        while (true) {
+            TenantQueue tenantQueue = tenants.computeIfAbsent(tenantId, this::newTenantQueue);
+            tenantQueue.writers.incrementAndGet();
+            try {
+                if (!tenantQueue.retired) {
+                    tenantQueue.queue.offer(items);
+                    return;
+                }
+            } finally {
+                tenantQueue.writers.decrementAndGet();
+            }
+            Thread.yield();
+        }
+    }
+
+    private TenantQueue newTenantQueue(String tenantId) {
+        TenantQueue tenantQueue = new TenantQueue(tenantId, quotaFunction.apply(tenantId));
+        created.add(tenantQueue);
+        return tenantQueue;
+    }
+
+    @Override
+    public int drain(Consumer<T> consumer, int limit) {
+        for (TenantQueue tenantQueue; (tenantQueue = created.poll()) != null;) {
+            ring.add(tenantQueue);
+        }
+        if (ring.isEmpty()) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        int drained = 0;
+        int idle = 0;
+        while (drained < limit && idle < ring.size()) {
+            if (cursor >= ring.size()) {
+                cursor = 0;
+            }
+            TenantQueue tenantQueue = ring.get(cursor);
+            if (0 == tenantQueue.deficit) {
+                tenantQueue.deficit = (long) QUANTUM * tenantQueue.weight;
+            }
+            int n = tenantQueue.queue.drain(p -> {
+                tenantQueue.latency.record(TimeUnit.NANOSECONDS.toMicros(now - p.enqueued));
+                consumer.accept(p.item);
+            }, (int) Math.min(tenantQueue.deficit, limit - drained));
+            drained += n;
+            tenantQueue.deficit -= n;
+            if (n > 0) {
+                idle = 0;
+                tenantQueue.drained += n;
+                tenantQueue.lastActive = System.currentTimeMillis();
+            } else {
+                idle++;
+            }
+            if (tenantQueue.queue.isEmpty()) {
+                tenantQueue.deficit = 0;
+            }
+            // The turn ends when the quantum is consumed or there is nothing else pending, otherwise the limit was
+            // reached and the tenant resumes its turn on the next drain
+            if (0 == tenantQueue.deficit) {
+                cursor++;
+            }
+        }
+        releaseIdle();
+        return drained;
+    }
+
+    private void releaseIdle() {
+        long idleSince = System.currentTimeMillis() - IDLE_TIMEOUT;
+        for (int i = ring.size() - 1; i >= 0; i--) {
+            TenantQueue tenantQueue = ring.get(i);
+            if (tenantQueue.lastActive > idleSince || !tenantQueue.queue.isEmpty()) {
+                continue;
+            }
+            tenantQueue.retired = true;
+            if (0 == tenantQueue.writers.get() && tenantQueue.queue.isEmpty()) {
+                tenants.remove(tenantQueue.tenantId, tenantQueue);
+                ring.remove(i);
+                if (cursor > i) {
+                    cursor--;
+                }
+                releasedDropped.addAndGet(tenantQueue.queue.getDropped());
+                releasedCoalesced.addAndGet(tenantQueue.queue.getCoalesced());
+                releasedRejected.addAndGet(tenantQueue.queue.getRejected());
+            } else {
+                tenantQueue.retired = false;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (TenantQueue tenantQueue : tenants.values()) {
+            size += tenantQueue.queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (TenantQueue tenantQueue : tenants.values()) {
+            if (!tenantQueue.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (TenantQueue tenantQueue : tenants.values()) {
+            tenantQueue.queue.clear();
+            tenantQueue.deficit = 0;
+        }
+    }
+
+    @Override
+    public long getDropped() {
+        long dropped = releasedDropped.get();
+        for (TenantQueue tenantQueue : tenants.values()) {
+            dropped += tenantQueue.queue.getDropped();
+        }
+        return dropped;
+    }
+
+    @Override
+    public long getCoalesced() {
+        long coalesced = releasedCoalesced.get();
+        for (TenantQueue tenantQueue : tenants.values()) {
+            coalesced += tenantQueue.queue.getCoalesced();
+        }
+        return coalesced;
+    }
+
+    @Override
+    public long getRejected() {
+        long rejected = releasedRejected.get();
+        for (TenantQueue tenantQueue : tenants.values()) {
+            rejected += tenantQueue.queue.getRejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * @return the number of tenants with a sub-queue
+     */
+    public int getNumTenants() {
+        return tenants.size();
+    }
+
+    /**
+     * @return per tenant: the pending, drained, dropped, coalesced and rejected items, and the mean, p50, p99 and max
+     * queue latency in microseconds. Tenants are sorted by tenantId.
+     */
+    public Map<String, Map<String, Long>> getTenantStats() {
+        if (tenants.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Map<String, Long>> stats = new TreeMap<>();
+        for (TenantQueue tenantQueue : tenants.values()) {
+            Map<String, Long> tenantStats = new LinkedHashMap<>();
+            tenantStats.put("pending", (long) tenantQueue.queue.size());
+            tenantStats.put("drained", tenantQueue.drained);
+            tenantStats.put("dropped", tenantQueue.queue.getDropped());
+            tenantStats.put("coalesced", tenantQueue.queue.getCoalesced());
+            tenantStats.put("rejected", tenantQueue.queue.getRejected());
+            tenantStats.put("latencyMean", tenantQueue.latency.getMean());
+            tenantStats.put("latencyP50", tenantQueue.latency.getPercentile(50));
+            tenantStats.put("latencyP99", tenantQueue.latency.getPercentile(99));
+            tenantStats.put("latencyMax", tenantQueue.latency.getMax());
+            stats.put(tenantQueue.tenantId, tenantStats);
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantPendingQueue [name=" + name + ", policy=" + policy + ", tenants=" + tenants.size()
+                + ", size=" + size() + ", dropped=" + getDropped() + ", coalesced=" + getCoalesced()
+                + ", rejected=" + getRejected() + "]";
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * A hashed timing wheel of elements with a deadline, exposed as a {@link Set} so it can be used as a rules global.
+ *
+ * The deadline of an element is computed with the <code>deadlineFunction</code> when the element is added. The
+ * element is placed on the wheel bucket of its deadline tick, so adding and removing an element cost O(1).
+ * {@link #pollExpired(long)} only visits the buckets of the ticks elapsed since the previous poll, instead of all the
+ * elements. Deadlines further than a wheel rotation stay on their bucket until the rotation that reaches them.
+ *
+ * Elements are compared with equals(), as in a HashSet; adding an element already present does not change its
+ * deadline. All methods are synchronized.
+ *
+ * @author agent
+ */
+public class TimeoutWheel<E> extends AbstractSet<E> {
+
+    private final long tickDuration;
+    private final int mask;
+    private final Set<E>[] buckets;
+    private final ToLongFunction<E> deadlineFunction;
+    private final Map<E, Timeout> timeouts = new HashMap<>();
+
+    // Last tick visited by pollExpired(), elements are never placed on a previous tick
+    private long currentTick;
+
+    private static class Timeout {
+        final long deadline;
+        final int bucket;
+
+        Timeout(long deadline, int bucket) {
+            this.deadline = deadline;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * @param tickDuration the duration of a tick in ms, it is the resolution of the wheel
+     * @param requestedWheelSize the minimum number of buckets, it is rounded up to the next power of two
+     * @param deadlineFunction the function that computes the deadline of an element, in ms
+     * @param now the current time in ms
+     */
+    @SuppressWarnings("unchecked")
+    public TimeoutWheel(long tickDuration, int requestedWheelSize, ToLongFunction<E> deadlineFunction, long now) {
+        if (tickDuration < 1) {
+            throw new IllegalArgumentException("TickDuration must be >= 1");
+        }
+        if (requestedWheelSize < 1 || requestedWheelSize > (1 << 20)) {
+            throw new IllegalArgumentException("WheelSize must be between 1 and 2^20");
+        }
+        if (null == deadlineFunction) {
+            throw new IllegalArgumentException("DeadlineFunction must be not null");
+        }
+        int wheelSize = requestedWheelSize == 1 ? 1 : Integer.highestOneBit(requestedWheelSize - 1) << 1;
+        this.tickDuration = tickDuration;
+        this.mask = wheelSize - 1;
+        this.buckets = new Set[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new HashSet<>();
+        }
+        this.deadlineFunction = deadlineFunction;
+        this.currentTick = now / tickDuration;
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        if (null == e) {
+            throw new NullPointerException("Element must be not null");
+        }
+        if (timeouts.containsKey(e)) {
+            return false;
+        }
+        long deadline = deadlineFunction.applyAsLong(e);
+        int bucket = (int) (Math.max(deadline / tickDuration, currentTick) & mask);
+        timeouts.put(e, new Timeout(deadline, bucket));
+        buckets[bucket].add(e);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        Timeout timeout = timeouts.remove(o);
+        if (null == timeout) {
+            return false;
+        }
+        buckets[timeout.bucket].remove(o);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return timeouts.containsKey(o);
+    }
+
+    @Override
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return timeouts.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear() {
+        timeouts.clear();
+        for (Set<E> bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * The iterator works on a snapshot of the elements, removal through the iterator is supported.
+     */
+    @Override
+    public synchronized Iterator<E> iterator() {
+        Iterator<E> snapshot = new ArrayList<>(timeouts.keySet()).iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = snapshot.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (null == last) {
+                    throw new IllegalStateException();
+                }
+                TimeoutWheel.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Remove and return the elements with a deadline <= <code>now</code>.
+     *
+     * @param now the current time in ms
+     * @return the expired elements, empty if there is none
+     */
+    public synchronized List<E> pollExpired(long now) {
+        long nowTick = now / tickDuration;
+        if (timeouts.isEmpty() || nowTick < currentTick) {
+            currentTick = Math.max(currentTick, nowTick);
+            return Collections.emptyList();
+        }
+        List<E> expired = null;
+        // The current tick is visited again, it can hold elements with a deadline later on the same tick
+        long ticks = Math.min(nowTick - currentTick + 1, buckets.length);
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            Set<E> bucket = buckets[(int) (tick & mask)];
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            for (Iterator<E> i = bucket.iterator(); i.hasNext();) {
+                E e = i.next();
+                if (timeouts.get(e).deadline <= now) {
+                    i.remove();
+                    timeouts.remove(e);
+                    if (null == expired) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(e);
+                }
+            }
+        }
+        currentTick = nowTick;
+        return null == expired ? Collections.emptyList() : expired;
+    }
+
+    /**
+     * @return the earliest deadline of the elements on the wheel, rounded down to the tick for elements further than
+     * a wheel rotation, or Long.MAX_VALUE if the wheel is empty.
+     */
+    public synchronized long nextDeadline() {
+        if (timeouts.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        for (long tick = currentTick; tick < currentTick + buckets.length; tick++) {
+            Set<E> bucket = buckets[(int) (tick & mask)];
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            long next = Long.MAX_VALUE;
+            long tickEnd = (tick + 1) * tickDuration;
+            for (E e : bucket) {
+                long deadline = timeouts.get(e).deadline;
+                // Overdue elements are placed on the current tick, elements of later rotations are skipped
+                if (deadline < tickEnd) {
+                    next = Math.min(next, deadline);
+                }
+            }
+            if (next != Long.MAX_VALUE) {
+                return next;
+            }
+        }
+        // Only elements of later rotations, check again when the wheel completes this rotation
+        return (currentTick + buckets.length) * tickDuration;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TimeoutWheel [tickDuration=" + tickDuration + ", wheelSize=" + buckets.length + ", size="
+                + timeouts.size() + "]";
+    }
+}
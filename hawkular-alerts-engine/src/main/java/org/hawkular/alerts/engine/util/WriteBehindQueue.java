@@ -0,0 +1,473 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+/**
+ * A bounded write-behind queue. Producers hand items to the queue without waiting on storage, a worker task writes
+ * them in batches using a {@link BatchWriter}. The worker runs on the executor provided on {@link #start}, in the
+ * container it is the managed executor of the engine.
+ *
+ * <ul>
+ * <li>A failed batch write is retried up to <code>maxRetries</code> times, with an exponential backoff starting at
+ * <code>retryDelay</code> ms.</li>
+ * <li>Items that do not fit in the queue, and batches that could not be written after the retries, are spilled to
+ * JSON files in <code>spillDir</code>.</li>
+ * <li>Spilled files are written back to storage when the queue is idle. A file is rewritten with the items not yet
+ * written after each batch, and deleted once all its items are written, so a replay never writes an item twice.</li>
+ * <li>{@link #flush(long)} waits until the items handed to the queue, and the spilled ones, are written, for the
+ * callers that need to read them back from storage.</li>
+ * </ul>
+ *
+ * @author agent
+ */
+public class WriteBehindQueue<T> {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(WriteBehindQueue.class);
+
+    private static final long POLL_TIMEOUT = 100L;
+    private static final long REPLAY_BACKOFF = 30000L;
+    private static final String SPILL_SUFFIX = ".spill";
+
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        void write(Collection<T> batch) throws Exception;
+    }
+
+    private final String name;
+    private final Class<T> type;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final File spillDir;
+    private final BatchWriter<T> writer;
+
+    private Future<?> worker;
+    private CountDownLatch finished;
+    private volatile boolean running = false;
+    private volatile long nextReplay = 0L;
+    private final AtomicLong spillSequence = new AtomicLong();
+    private final Object spillLock = new Object();
+
+    // Items accepted by the queue, and items written, spilled or lost by the worker, for flush()
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final Object flushLock = new Object();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writeTimeNanos = new AtomicLong();
+    private final AtomicLong maxWriteTimeNanos = new AtomicLong();
+
+    /**
+     * @param name the name of the queue, used as prefix for the spill files
+     * @param type the type of the items, used to read spilled items
+     * @param capacity the max number of items waiting to be written
+     * @param batchSize the max number of items written in a single batch
+     * @param maxRetries the max number of retries of a failed batch before to spill it
+     * @param retryDelay the delay in ms before the first retry
+     * @param spillDir the directory to spill items, it is created if it does not exist
+     * @param writer the writer of batches to storage
+     */
+    public WriteBehindQueue(String name, Class<T> type, int capacity, int batchSize, int maxRetries,
+            long retryDelay, File spillDir, BatchWriter<T> writer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be >= 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be >= 1");
+        }
+        if (null == writer) {
+            throw new IllegalArgumentException("Writer must be not null");
+        }
+        this.name = name;
+        this.type = type;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelay = Math.max(0L, retryDelay);
+        this.spillDir = spillDir;
+        this.writer = writer;
+    }
+
+    /**
+     * Start the worker as a long running task of the <code>executor</code>.
+     *
+     * @param executor the executor running the worker
+     */
+    public synchronized void start(ExecutorService executor) {
+        if (running) {
+            return;
+        }
+        if (null == executor) {
+            throw new IllegalArgumentException("Executor must be not null");
+        }
+        running = true;
+        CountDownLatch workerFinished = new CountDownLatch(1);
+        finished = workerFinished;
+        worker = executor.submit(() -> {
+            try {
+                work();
+            } finally {
+                workerFinished.countDown();
+            }
+        });
+    }
+
+    /**
+     * Stop the worker, waiting up to <code>timeout</code> ms to write the queued items. Items not written are
+     * spilled.
+     */
+    public synchronized void stop(long timeout) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            if (!finished.await(timeout, TimeUnit.MILLISECONDS)) {
+                worker.cancel(true);
+            }
+        } catch (InterruptedException e) {
+            worker.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+            processed(remaining.size());
+        }
+    }
+
+    /**
+     * Hand items to the queue. This method never waits on storage: items that do not fit in the queue are spilled.
+     *
+     * @param items the items to write
+     */
+    public void offer(Collection<T> items) {
+        if (null == items || items.isEmpty()) {
+            return;
+        }
+        List<T> overflow = null;
+        for (T item : items) {
+            if (queue.offer(item)) {
+                offered.incrementAndGet();
+            } else {
+                if (null == overflow) {
+                    overflow = new ArrayList<>();
+                }
+                overflow.add(item);
+            }
+        }
+        if (null != overflow) {
+            spill(overflow);
+        }
+    }
+
+    private void work() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (null == first) {
+                    replay();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!write(batch)) {
+                    spill(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error on persistence queue " + name, e);
+            } finally {
+                if (!batch.isEmpty()) {
+                    processed(batch.size());
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void processed(int numItems) {
+        processed.addAndGet(numItems);
+        notifyFlush();
+    }
+
+    private void notifyFlush() {
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait up to <code>timeout</code> ms until the items handed to the queue before this call, and the spilled items,
+     * are written to storage. The spilled items are replayed without waiting for the backoff of a previous failure.
+     *
+     * @param timeout the max time to wait in ms
+     * @return true if all the items were written, false if there are items not written or spilled on timeout,
+     * interruption or if the queue is not running
+     */
+    public boolean flush(long timeout) {
+        long target = offered.get();
+        long deadline = System.currentTimeMillis() + timeout;
+        nextReplay = 0L;
+        synchronized (flushLock) {
+            while (processed.get() < target || hasSpilled()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (!running || remaining <= 0) {
+                    return false;
+                }
+                try {
+                    flushLock.wait(Math.min(remaining, POLL_TIMEOUT));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+        Write a batch with retries. Return false if the batch could not be written.
+     */
+    private boolean write(List<T> batch) throws InterruptedException {
+        long delay = retryDelay;
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                writer.write(batch);
+                long time = System.nanoTime() - start;
+                writes.incrementAndGet();
+                writeTimeNanos.addAndGet(time);
+                maxWriteTimeNanos.accumulateAndGet(time, Math::max);
+                written.addAndGet(batch.size());
+                return true;
+            } catch (Exception e) {
+                if (attempt >= maxRetries || !running) {
+                    msgLog.warnPersistenceQueueWrite(name, batch.size(), attempt, e.getMessage());
+                    return false;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying write of [" + batch.size() + "] items on " + name + " in " + delay + " ms: "
+                            + e.getMessage());
+                }
+                Thread.sleep(delay);
+                delay = delay * 2;
+            }
+        }
+    }
+
+    private void spill(List<T> items) {
+        synchronized (spillLock) {
+            File file = new File(spillDir, name + "-" + System.currentTimeMillis() + "-"
+                    + spillSequence.incrementAndGet() + SPILL_SUFFIX);
+            try {
+                if (!spillDir.exists() && !spillDir.mkdirs()) {
+                    throw new IOException("Cannot create directory " + spillDir);
+                }
+                // Write to a temporary file so the worker never replays a partial file
+                File tmp = new File(spillDir, file.getName() + ".tmp");
+                try (BufferedWriter out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                    for (T item : items) {
+                        out.write(JsonUtil.toJson(item));
+                        out.newLine();
+                    }
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                spilled.addAndGet(items.size());
+                msgLog.warnPersistenceQueueSpilled(name, items.size(), file.getAbsolutePath());
+            } catch (Exception e) {
+                dropped.addAndGet(items.size());
+                msgLog.errorPersistenceQueueSpill(name, items.size(), e.getMessage());
+            }
+        }
+    }
+
+    private File[] spillFiles() {
+        return spillDir.listFiles((dir, fileName) -> fileName.startsWith(name + "-")
+                && fileName.endsWith(SPILL_SUFFIX));
+    }
+
+    private boolean hasSpilled() {
+        File[] files = spillFiles();
+        return null != files && files.length > 0;
+    }
+
+    /*
+        Write back the spilled files, oldest first. On a failure replay is suspended for a while, storage is likely
+        unavailable.
+     */
+    private void replay() throws InterruptedException {
+        if (!running || System.currentTimeMillis() < nextReplay) {
+            return;
+        }
+        File[] files = spillFiles();
+        if (null == files || files.length == 0) {
+            return;
+        }
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (File file : files) {
+            if (!queue.isEmpty() || !running) {
+                return;
+            }
+            if (!replay(file)) {
+                nextReplay = System.currentTimeMillis() + REPLAY_BACKOFF;
+                return;
+            }
+        }
+    }
+
+    /*
+        Write back a spilled file in batches. After each batch the file is replaced by the items not yet written, so
+        a failure does not write again on the next replay the batches already written, which could overwrite later
+        updates of the same items. The file is deleted once all its items have been written.
+     */
+    private boolean replay(File file) throws InterruptedException {
+        int numReplayed = 0;
+        try {
+            List<String> lines = new ArrayList<>(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+            lines.removeIf(String::isEmpty);
+            for (int from = 0; from < lines.size(); from += batchSize) {
+                int to = Math.min(lines.size(), from + batchSize);
+                List<T> batch = new ArrayList<>(to - from);
+                for (String line : lines.subList(from, to)) {
+                    batch.add(JsonUtil.fromJson(line, type));
+                }
+                if (!write(batch)) {
+                    return false;
+                }
+                numReplayed += batch.size();
+                replayed.addAndGet(batch.size());
+                if (to < lines.size()) {
+                    rewrite(file, lines.subList(to, lines.size()));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.error("Cannot replay spilled file " + file + " on persistence queue " + name, e);
+            return false;
+        } finally {
+            notifyFlush();
+        }
+        if (!file.delete()) {
+            log.warn("Cannot delete replayed spill file " + file);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Replayed [" + numReplayed + "] items from " + file);
+        }
+        return true;
+    }
+
+    /*
+        Replace a spilled file by the lines not yet written, keeping its modification time for the replay order.
+     */
+    private void rewrite(File file, List<String> lines) throws IOException {
+        synchronized (spillLock) {
+            File tmp = new File(spillDir, file.getName() + ".tmp");
+            Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+            if (!tmp.setLastModified(file.lastModified())) {
+                log.debug("Cannot keep the modification time of " + file);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * @return the number of items waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of items written since the queue was created
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of items spilled to disk since the queue was created
+     */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * @return the number of spilled items written back to storage since the queue was created
+     */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return the number of items that could not be written nor spilled since the queue was created
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the average time of a batch write in ms
+     */
+    public long getAvgWriteLatency() {
+        long n = writes.get();
+        return n == 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(writeTimeNanos.get() / n);
+    }
+
+    /**
+     * @return the max time of a batch write in ms
+     */
+    public long getMaxWriteLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWriteTimeNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindQueue [name=" + name + ", queueSize=" + queue.size() + ", written=" + written
+                + ", spilled=" + spilled + ", replayed=" + replayed + ", dropped=" + dropped + "]";
+    }
+}
@@ -22,3 +22,4 @@ setKeyspace keyspace
 
 // Upgrade scripts are defined here:
 include '/org/hawkular/alerts/schema/updates/schema-1.2.1.groovy'
+include '/org/hawkular/alerts/schema/updates/schema-1.2.3.groovy'
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+setKeyspace keyspace
+
+schemaChange {
+  version '1.1'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+ALTER TABLE alerts ADD payload_blob blob
+"""
+}
+
+schemaChange {
+  version '1.2'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+ALTER TABLE events ADD payload_blob blob
+"""
+}
+
+schemaChange {
+  version '1.3'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+ALTER TABLE actions_history ADD payload_blob blob
+"""
+}
+
+schemaChange {
+  version '1.4'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE snapshots (
+    tenantId text,
+    hash text,
+    payload text,
+    payload_blob blob,
+    PRIMARY KEY (tenantId, hash)
+)
+"""
+}
+
+schemaChange {
+  version '1.5'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+ALTER TABLE alerts ADD snapshot text
+"""
+}
+
+schemaChange {
+  version '1.6'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+ALTER TABLE events ADD snapshot text
+"""
+}
+
+schemaChange {
+  version '1.7'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    payload text,
+    payload_blob blob,
+    snapshot text,
+    PRIMARY KEY ((tenantId, bucket), alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.8'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_triggers_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    triggerId text,
+    PRIMARY KEY ((tenantId, bucket), triggerId, alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.9'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_ctimes_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    ctime bigint,
+    PRIMARY KEY ((tenantId, bucket), ctime, alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.10'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_statuses_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    status text,
+    PRIMARY KEY ((tenantId, bucket), status, alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.11'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_severities_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    severity text,
+    PRIMARY KEY ((tenantId, bucket), severity, alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.12'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_lifecycle_bucketed (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    status text,
+    stime bigint,
+    PRIMARY KEY ((tenantId, bucket), status, stime, alertId)
+)
+"""
+}
+
+schemaChange {
+  version '1.13'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE events_bucketed (
+    tenantId text,
+    bucket bigint,
+    id text,
+    payload text,
+    payload_blob blob,
+    snapshot text,
+    PRIMARY KEY ((tenantId, bucket), id)
+)
+"""
+}
+
+schemaChange {
+  version '1.14'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE events_triggers_bucketed (
+    tenantId text,
+    bucket bigint,
+    id text,
+    triggerId text,
+    PRIMARY KEY ((tenantId, bucket), triggerId, id)
+)
+"""
+}
+
+schemaChange {
+  version '1.15'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE events_ctimes_bucketed (
+    tenantId text,
+    bucket bigint,
+    id text,
+    ctime bigint,
+    PRIMARY KEY ((tenantId, bucket), ctime, id)
+)
+"""
+}
+
+schemaChange {
+  version '1.16'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE events_categories_bucketed (
+    tenantId text,
+    bucket bigint,
+    id text,
+    category text,
+    PRIMARY KEY ((tenantId, bucket), category, id)
+)
+"""
+}
+
+schemaChange {
+  version '1.17'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE buckets (
+    tenantId text,
+    type text,
+    bucket bigint,
+    PRIMARY KEY ((tenantId, type), bucket)
+)
+"""
+}
+
+schemaChange {
+  version '1.18'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE buckets_ids (
+    tenantId text,
+    type text,
+    id text,
+    bucket bigint,
+    PRIMARY KEY ((tenantId, type, id))
+)
+"""
+}
+
+schemaChange {
+  version '1.19'
+  author 'agent'
+  tags '1.2.x'
+  cql """
+CREATE TABLE alerts_unresolved (
+    tenantId text,
+    triggerId text,
+    alertId text,
+    bucket bigint,
+    status text,
+    PRIMARY KEY (tenantId, triggerId, alertId)
+)
+"""
+}
\ No newline at end of file
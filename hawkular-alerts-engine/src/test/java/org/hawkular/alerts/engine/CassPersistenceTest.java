@@ -17,30 +17,46 @@
 package org.hawkular.alerts.engine;
 
 import static org.hawkular.commons.cassandra.EmbeddedConstants.CASSANDRA_YAML;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.net.URL;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.cassandra.service.EmbeddedCassandraService;
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.export.Definitions;
 import org.hawkular.alerts.api.model.export.ImportType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.ActionsCriteria;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.EventsCriteria;
 import org.hawkular.alerts.engine.impl.CassCluster;
+import org.hawkular.alerts.engine.impl.CassPayload;
+import org.hawkular.alerts.engine.impl.CassSnapshots;
 import org.hawkular.commons.cassandra.CassandraYaml;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
+import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -142,4 +158,228 @@ public class CassPersistenceTest extends PersistenceTest {
         logger.info("Deleted " + actionsService.deleteActions(TENANT, criteria) + " Actions before test.\n");
     }
 
+    @Test
+    public void test0150TextPayloadFallback() throws Exception {
+        logger.info("test0150TextPayloadFallback...");
+
+        Session session = cluster.getSession();
+        Trigger t = new Trigger("text-payload-trigger", "text-payload-trigger");
+        Alert alert = new Alert(TENANT, t, null);
+
+        // A row written by a previous version, with only the text payload and without time bucket
+        session.execute("INSERT INTO " + keyspace + ".alerts (tenantId, alertId, payload) VALUES (?, ?, ?)",
+                TENANT, alert.getAlertId(), JsonUtil.toJson(alert));
+        assertEquals(1, cluster.getTimeBuckets().migrate(session, false));
+        // Already on the bucketed tables
+        assertEquals(0, cluster.getTimeBuckets().migrate(session, false));
+
+        Alert textAlert = alertsService.getAlert(TENANT, alert.getAlertId(), false);
+        assertNotNull(textAlert);
+        assertEquals(alert, textAlert);
+        assertEquals("text-payload-trigger", textAlert.getTriggerId());
+
+        // An update rewrites the payload with the configured codec
+        alertsService.addNote(TENANT, alert.getAlertId(), "user1", "notes1");
+
+        // A later copy does not overwrite the update
+        assertEquals(0, cluster.getTimeBuckets().migrate(session, false));
+
+        Alert updatedAlert = alertsService.getAlert(TENANT, alert.getAlertId(), false);
+        assertNotNull(updatedAlert);
+        assertEquals(1, updatedAlert.getNotes().size());
+
+        Row row = session.execute("SELECT payload, payload_blob FROM " + keyspace + ".alerts_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ?", TENANT,
+                cluster.getTimeBuckets().bucket(alert.getCtime()), alert.getAlertId()).one();
+        assertNotNull(row);
+        if (CassPayload.isBinary()) {
+            assertNull(row.getString("payload"));
+            assertNotNull(row.getBytes("payload_blob"));
+        } else {
+            assertNotNull(row.getString("payload"));
+            assertNull(row.getBytes("payload_blob"));
+        }
+    }
+
+    @Test
+    public void test0160AlertSnapshots() throws Exception {
+        logger.info("test0160AlertSnapshots...");
+
+        Session session = cluster.getSession();
+        Trigger t = new Trigger(TENANT, "snapshot-trigger", "snapshot-trigger");
+        t.addContext("context1", "value1");
+        t.addTag("tag1", "value1");
+        Dampening d = Dampening.forStrict(TENANT, t.getId(), Mode.FIRING, 2);
+
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            alerts.add(new Alert(TENANT, t, d, null));
+        }
+        alertsService.addAlerts(alerts);
+
+        Set<String> snapshots = new HashSet<>();
+        for (Alert alert : alerts) {
+            Row row = session.execute("SELECT snapshot FROM " + keyspace + ".alerts_bucketed "
+                    + "WHERE tenantId = ? AND bucket = ? AND alertId = ?", TENANT,
+                    cluster.getTimeBuckets().bucket(alert.getCtime()), alert.getAlertId()).one();
+            assertNotNull(row);
+            snapshots.add(row.getString("snapshot"));
+        }
+        if (!CassSnapshots.isEnabled()) {
+            assertEquals(1, snapshots.size());
+            assertNull(snapshots.iterator().next());
+            return;
+        }
+        // All the alerts reference the same snapshot
+        assertEquals(1, snapshots.size());
+        String hash = snapshots.iterator().next();
+        assertNotNull(hash);
+        assertNotNull(session.execute("SELECT hash FROM " + keyspace + ".snapshots WHERE tenantId = ? AND hash = ?",
+                TENANT, hash).one());
+
+        // Hydrated from the snapshots table, not from the cache populated on write
+        CassSnapshots.clearCache();
+
+        Alert alert = alertsService.getAlert(TENANT, alerts.get(0).getAlertId(), false);
+        assertNotNull(alert);
+        assertEquals(t, alert.getTrigger());
+        assertEquals("value1", alert.getTrigger().getContext().get("context1"));
+        assertEquals("value1", alert.getTrigger().getTags().get("tag1"));
+        assertEquals(d, alert.getDampening());
+
+        // Thin alerts keep the trigger but not the dampening
+        AlertsCriteria criteria = new AlertsCriteria();
+        criteria.setTriggerId(t.getId());
+        criteria.setThin(true);
+        List<Alert> thinAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(3, thinAlerts.size());
+        for (Alert thinAlert : thinAlerts) {
+            assertEquals(t, thinAlert.getTrigger());
+            assertNull(thinAlert.getDampening());
+        }
+
+        // An update keeps the reference
+        alertsService.addNote(TENANT, alert.getAlertId(), "user1", "notes1");
+        Row row = session.execute("SELECT snapshot FROM " + keyspace + ".alerts_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ?", TENANT,
+                cluster.getTimeBuckets().bucket(alert.getCtime()), alert.getAlertId()).one();
+        assertEquals(hash, row.getString("snapshot"));
+        alert = alertsService.getAlert(TENANT, alert.getAlertId(), false);
+        assertEquals(1, alert.getNotes().size());
+        assertEquals(t, alert.getTrigger());
+    }
+
+    @Test
+    public void test0170TimeBuckets() throws Exception {
+        logger.info("test0170TimeBuckets...");
+
+        Session session = cluster.getSession();
+        Trigger t = new Trigger(TENANT, "bucket-trigger", "bucket-trigger");
+        long day = 24 * 60 * 60 * 1000L;
+        long now = System.currentTimeMillis();
+
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 2; i >= 0; i--) {
+            Alert alert = new Alert(TENANT, t, null);
+            alert.setCtime(now - (i * day));
+            alerts.add(alert);
+        }
+        alertsService.addAlerts(alerts);
+
+        // Every day is on its own bucket
+        Set<Long> buckets = new HashSet<>();
+        for (Row row : session.execute("SELECT bucket FROM " + keyspace + ".buckets WHERE tenantId = ? AND type = ?",
+                TENANT, "ALERT")) {
+            buckets.add(row.getLong("bucket"));
+        }
+        for (Alert alert : alerts) {
+            assertTrue(buckets.contains(cluster.getTimeBuckets().bucket(alert.getCtime())));
+        }
+
+        List<Alert> allAlerts = alertsService.getAlerts(TENANT, null, null);
+        assertEquals(3, allAlerts.size());
+
+        AlertsCriteria criteria = new AlertsCriteria();
+        criteria.setStartTime(now - (day / 2));
+        List<Alert> lastAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(1, lastAlerts.size());
+        assertEquals(alerts.get(2).getAlertId(), lastAlerts.get(0).getAlertId());
+
+        criteria = new AlertsCriteria();
+        criteria.setStartTime(now - (3 * day / 2));
+        criteria.setEndTime(now - (day / 2));
+        criteria.setTriggerId(t.getId());
+        List<Alert> middleAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(1, middleAlerts.size());
+        assertEquals(alerts.get(1).getAlertId(), middleAlerts.get(0).getAlertId());
+
+        // Sent again on another bucket, the rows of the previous one are deleted
+        Alert moved = alerts.get(0);
+        long previous = cluster.getTimeBuckets().bucket(moved.getCtime());
+        moved.setCtime(now);
+        alertsService.addAlerts(Arrays.asList(moved));
+        assertNull(session.execute("SELECT alertId FROM " + keyspace + ".alerts_bucketed "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ?", TENANT, previous, moved.getAlertId()).one());
+        assertEquals(3, alertsService.getAlerts(TENANT, null, null).size());
+
+        assertEquals(3, alertsService.deleteAlerts(TENANT, new AlertsCriteria()));
+        assertNull(alertsService.getAlert(TENANT, alerts.get(0).getAlertId(), false));
+
+        // Rows expire with the retention of their tenant, counted from the ctime
+        String ttlTenant = "ttl-tenant";
+        System.setProperty("hawkular-alerts.cassandra-ttl." + ttlTenant, String.valueOf(2 * 24 * 60 * 60));
+        try {
+            Trigger ttlTrigger = new Trigger(ttlTenant, "ttl-trigger", "ttl-trigger");
+            Alert ttlAlert = new Alert(ttlTenant, ttlTrigger, null);
+            ttlAlert.setCtime(now - day);
+            alertsService.addAlerts(Arrays.asList(ttlAlert));
+
+            Row row = session.execute("SELECT TTL(" + CassPayload.column() + ") FROM " + keyspace
+                    + ".alerts_bucketed WHERE tenantId = ? AND bucket = ? AND alertId = ?", ttlTenant,
+                    cluster.getTimeBuckets().bucket(ttlAlert.getCtime()), ttlAlert.getAlertId()).one();
+            assertNotNull(row);
+            int ttl = row.getInt(0);
+            assertTrue(ttl > 0 && ttl <= 24 * 60 * 60);
+            assertNotNull(alertsService.getAlert(ttlTenant, ttlAlert.getAlertId(), false));
+            assertEquals(1, alertsService.deleteAlerts(ttlTenant, new AlertsCriteria()));
+        } finally {
+            System.clearProperty("hawkular-alerts.cassandra-ttl." + ttlTenant);
+        }
+    }
+
+    @Test
+    public void test0180EndLifecycleTime() throws Exception {
+        logger.info("test0180EndLifecycleTime...");
+
+        Trigger t = new Trigger(TENANT, "lifecycle-trigger", "lifecycle-trigger");
+        Alert acked = new Alert(TENANT, t, null);
+        Alert resolved = new Alert(TENANT, t, null);
+        alertsService.addAlerts(Arrays.asList(acked, resolved));
+
+        alertsService.ackAlerts(TENANT, Arrays.asList(acked.getAlertId()), "user1", "ack");
+        alertsService.resolveAlerts(TENANT, Arrays.asList(resolved.getAlertId()), "user1", "resolve", null);
+        long end = System.currentTimeMillis() + 1;
+
+        // Only an end time, the lifecycle status must still be bound
+        AlertsCriteria criteria = new AlertsCriteria();
+        criteria.setEndResolvedTime(end);
+        List<Alert> resolvedAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(1, resolvedAlerts.size());
+        assertEquals(resolved.getAlertId(), resolvedAlerts.get(0).getAlertId());
+
+        criteria = new AlertsCriteria();
+        criteria.setEndAckTime(end);
+        List<Alert> ackedAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(1, ackedAlerts.size());
+        assertEquals(acked.getAlertId(), ackedAlerts.get(0).getAlertId());
+
+        // Unresolved alerts are read from their own index
+        criteria = new AlertsCriteria();
+        criteria.setTriggerId(t.getId());
+        criteria.setStatusSet(EnumSet.complementOf(EnumSet.of(Alert.Status.RESOLVED)));
+        List<Alert> unresolvedAlerts = alertsService.getAlerts(TENANT, criteria, null);
+        assertEquals(1, unresolvedAlerts.size());
+        assertEquals(acked.getAlertId(), unresolvedAlerts.get(0).getAlertId());
+    }
+
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Match;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.DampeningQueue;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the dampening of the triggers through the DampeningQueue: the QueueConditionEval rule queues the evals of
+ * each trigger and the DampenTriggers rule applies them, once per rules cycle, to the dampening of every dampening
+ * type.
+ *
+ * @author agent
+ */
+public class DampeningQueueRulesTest {
+    private static final Logger log = Logger.getLogger(DampeningQueueRulesTest.class);
+
+    // Count every rule activation
+    RulesEngine rulesEngine = new DroolsRulesEngineImpl(false, 1);
+    List<Alert> alerts = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new HashSet<>();
+    List<Event> outputEvents = new ArrayList<>();
+
+    @Before
+    public void before() {
+        rulesEngine.addGlobal("log", log);
+        rulesEngine.addGlobal("alerts", alerts);
+        rulesEngine.addGlobal("events", outputEvents);
+        rulesEngine.addGlobal("pendingTimeouts", pendingTimeouts);
+        rulesEngine.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rulesEngine.addGlobal("disabledTriggers", disabledTriggers);
+    }
+
+    @After
+    public void after() {
+        rulesEngine.reset();
+        alerts.clear();
+        pendingTimeouts.clear();
+        outputEvents.clear();
+    }
+
+    private long activations(String rule) {
+        Long activations = rulesEngine.getRuleActivations().get(rule);
+        return null == activations ? 0 : activations;
+    }
+
+    private DampeningQueue dampeningQueue() {
+        Collection<Object> facts = rulesEngine.getFacts(f -> f instanceof DampeningQueue);
+        assertEquals(1, facts.size());
+        return (DampeningQueue) facts.iterator().next();
+    }
+
+    private void addTrigger(String triggerId, Dampening dampening) {
+        Trigger t = new Trigger("tenant", triggerId, triggerId);
+        ThresholdCondition c = new ThresholdCondition("tenant", triggerId, 1, 1, "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        t.setEnabled(true);
+        rulesEngine.addFact(t);
+        rulesEngine.addFact(c);
+        rulesEngine.addFact(dampening);
+    }
+
+    private void fire(long timestamp, double value) {
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", timestamp, value));
+        rulesEngine.fire();
+    }
+
+    @Test
+    public void singleActivationPerCycleTest() {
+        for (int i = 0; i < 10; i++) {
+            addTrigger("trigger-" + i, Dampening.forStrict("tenant", "trigger-" + i, Mode.FIRING, 2));
+        }
+
+        fire(1, 15.0);
+
+        // Every trigger queues its eval, all of them are dampened by a single activation
+        assertEquals(10, activations("QueueConditionEval"));
+        assertEquals(1, activations("DampenTriggers"));
+        assertTrue(alerts.isEmpty());
+        assertTrue(dampeningQueue().isEmpty());
+        assertTrue(rulesEngine.getFacts(f -> f instanceof ConditionEval).isEmpty());
+
+        fire(2, 15.0);
+
+        assertEquals(20, activations("QueueConditionEval"));
+        assertEquals(2, activations("DampenTriggers"));
+        assertEquals(10, alerts.size());
+        assertTrue(dampeningQueue().isEmpty());
+    }
+
+    @Test
+    public void strictTest() {
+        addTrigger("trigger-1", Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 3));
+
+        fire(1, 15.0);
+        fire(2, 15.0);
+        fire(3, 5.0);
+        fire(4, 15.0);
+        fire(5, 15.0);
+        assertTrue(alerts.isEmpty());
+
+        fire(6, 15.0);
+        assertEquals(1, alerts.size());
+        assertEquals(3, alerts.get(0).getEvalSets().size());
+        assertEquals(6, activations("DampenTriggers"));
+        assertTrue(dampeningQueue().isEmpty());
+    }
+
+    @Test
+    public void relaxedCountTest() {
+        addTrigger("trigger-1", Dampening.forRelaxedCount("tenant", "trigger-1", Mode.FIRING, 2, 3));
+
+        fire(1, 15.0);
+        fire(2, 5.0);
+        fire(3, 5.0);
+        // Reset, 1 true eval out of 3
+        assertTrue(alerts.isEmpty());
+
+        fire(4, 15.0);
+        fire(5, 5.0);
+        fire(6, 15.0);
+        assertEquals(1, alerts.size());
+        assertEquals(2, alerts.get(0).getEvalSets().size());
+        assertTrue(dampeningQueue().isEmpty());
+    }
+
+    @Test
+    public void relaxedTimeTest() {
+        // The dampening clock is the data timestamp
+        rulesEngine.addGlobal("eventTime", true);
+        addTrigger("trigger-1", Dampening.forRelaxedTime("tenant", "trigger-1", Mode.FIRING, 2, 100L));
+
+        fire(1000, 15.0);
+        fire(1050, 5.0);
+        // Out of the period, the dampening starts again
+        fire(1200, 15.0);
+        assertTrue(alerts.isEmpty());
+
+        fire(1250, 5.0);
+        fire(1290, 15.0);
+        assertEquals(1, alerts.size());
+        assertEquals(2, alerts.get(0).getEvalSets().size());
+        assertTrue(dampeningQueue().isEmpty());
+    }
+
+    @Test
+    public void strictTimeoutTest() {
+        addTrigger("trigger-1", Dampening.forStrictTimeout("tenant", "trigger-1", Mode.FIRING, 1000L));
+
+        // The timeout is armed by the first true eval and removed by a false eval
+        fire(1, 15.0);
+        assertEquals(1, pendingTimeouts.size());
+        fire(2, 5.0);
+        assertTrue(pendingTimeouts.isEmpty());
+        fire(3, 15.0);
+        fire(4, 15.0);
+        assertEquals(1, pendingTimeouts.size());
+        assertTrue(alerts.isEmpty());
+
+        // The timeout expires
+        Dampening pendingTimeout = pendingTimeouts.iterator().next();
+        pendingTimeouts.clear();
+        pendingTimeout.setSatisfied(true);
+        rulesEngine.updateFact(pendingTimeout);
+        rulesEngine.fireNoData();
+
+        assertEquals(1, alerts.size());
+        assertTrue(dampeningQueue().isEmpty());
+    }
+
+    @Test
+    public void evalsOfACycleAreDampenedTogetherTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Any");
+        t1.setFiringMatch(Match.ANY);
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 2, 1, "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        ThresholdCondition t1c2 = new ThresholdCondition("tenant", "trigger-1", 2, 2, "NumericData-02",
+                ThresholdCondition.Operator.GT, 10.0);
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 2);
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1c2);
+        rulesEngine.addFact(t1d);
+
+        // Both evals of the cycle are a single dampening eval
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-02", 1, 15.0));
+        rulesEngine.fire();
+
+        assertEquals(2, activations("QueueConditionEval"));
+        assertEquals(1, activations("DampenTriggers"));
+        assertTrue(alerts.isEmpty());
+
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 2, 15.0));
+        rulesEngine.fire();
+
+        assertEquals(1, alerts.size());
+        assertEquals(2, alerts.get(0).getEvalSets().size());
+        assertEquals(2, alerts.get(0).getEvalSets().get(0).size());
+    }
+}
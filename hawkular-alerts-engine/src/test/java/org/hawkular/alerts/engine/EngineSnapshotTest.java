@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.EngineSnapshot;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Save the evaluation state of a rules engine and restore it into a new one, as done on a restart.
+ *
+ * @author agent
+ */
+public class EngineSnapshotTest {
+    private static final Logger log = Logger.getLogger(EngineSnapshotTest.class);
+
+    List<Alert> alerts = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
+
+    File file;
+    EngineSnapshot snapshot;
+
+    @Before
+    public void before() throws Exception {
+        file = File.createTempFile("hawkular-alerts-", ".snapshot");
+        snapshot = new EngineSnapshot(file);
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    private RulesEngine newRulesEngine() {
+        RulesEngine rulesEngine = new DroolsRulesEngineImpl();
+        rulesEngine.addGlobal("log", log);
+        rulesEngine.addGlobal("alerts", alerts);
+        rulesEngine.addGlobal("events", events);
+        rulesEngine.addGlobal("pendingTimeouts", pendingTimeouts);
+        rulesEngine.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rulesEngine.addGlobal("disabledTriggers", disabledTriggers);
+        return rulesEngine;
+    }
+
+    /*
+        The definitions as loaded from the backend on every start
+     */
+    private void loadDefinitions(RulesEngine rulesEngine, int numConsecutiveTrueEvals) {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold-GT");
+        t1.setEnabled(true);
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, numConsecutiveTrueEvals);
+
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Rate-Increasing");
+        t2.setEnabled(true);
+        RateCondition t2c1 = new RateCondition("tenant", "trigger-2", "CounterUp",
+                RateCondition.Direction.INCREASING, RateCondition.Period.MINUTE, RateCondition.Operator.GT, 20.0);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+    }
+
+    @Test
+    public void dampeningAndRateDataTest() throws Exception {
+        RulesEngine before = newRulesEngine();
+        loadDefinitions(before, 3);
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        before.addData(Data.forNumeric("tenant", "CounterUp", 60000L, 10.0));
+        before.fire();
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 2, 20.0));
+        before.fire();
+        assertEquals(alerts.toString(), 0, alerts.size());
+
+        // trigger-2 has no dampening state yet, only the previous datum of CounterUp
+        assertEquals(1, snapshot.save(before));
+
+        RulesEngine after = newRulesEngine();
+        loadDefinitions(after, 3);
+        assertEquals(1, snapshot.restore(after, 60000L));
+
+        Dampening d = (Dampening) after.getFact(Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 3));
+        assertEquals(2, d.getNumTrueEvals());
+        assertEquals(2, d.getNumEvals());
+        assertEquals(1, d.getCurrentEvals().size());
+        assertEquals(2, d.getSatisfyingEvals().size());
+
+        // The third true eval fires trigger-1 and the rate of CounterUp is computed against the restored datum
+        after.addData(Data.forNumeric("tenant", "NumericData-01", 3, 25.0));
+        after.addData(Data.forNumeric("tenant", "CounterUp", 180000L, 100.0));
+        after.fire();
+
+        assertEquals(alerts.toString(), 2, alerts.size());
+        assertEquals(3, alerts.stream().filter(a -> a.getTriggerId().equals("trigger-1")).findFirst().get()
+                .getEvalSets().size());
+        assertTrue(alerts.stream().anyMatch(a -> a.getTriggerId().equals("trigger-2")));
+    }
+
+    @Test
+    public void changedDampeningTest() throws Exception {
+        RulesEngine before = newRulesEngine();
+        loadDefinitions(before, 3);
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        before.fire();
+        snapshot.save(before);
+
+        // The dampening definition changed while the engine was down, its state is not restored
+        RulesEngine after = newRulesEngine();
+        loadDefinitions(after, 5);
+        snapshot.restore(after, 60000L);
+        Dampening d = (Dampening) after.getFact(Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 5));
+        assertEquals(0, d.getNumTrueEvals());
+
+        // Too old
+        RulesEngine tooLate = newRulesEngine();
+        loadDefinitions(tooLate, 3);
+        assertEquals(0, snapshot.restore(tooLate, -1L));
+    }
+
+    @Test
+    public void autoResolveModeTest() throws Exception {
+        RulesEngine before = newRulesEngine();
+        Trigger t1 = new Trigger("tenant", "trigger-1", "AutoResolve");
+        t1.setEnabled(true);
+        t1.setAutoResolve(true);
+        before.addFact(t1);
+        before.addFact(new ThresholdCondition("tenant", "trigger-1", Mode.FIRING, 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0));
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        before.fire();
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals(Mode.AUTORESOLVE, ((Trigger) before.getFact(t1)).getMode());
+        snapshot.save(before);
+
+        RulesEngine after = newRulesEngine();
+        Trigger reloaded = new Trigger("tenant", "trigger-1", "AutoResolve");
+        reloaded.setEnabled(true);
+        reloaded.setAutoResolve(true);
+        after.addFact(reloaded);
+        assertEquals(1, snapshot.restore(after, 60000L));
+        assertEquals(Mode.AUTORESOLVE, ((Trigger) after.getFact(reloaded)).getMode());
+    }
+
+    @Test
+    public void strictTimeoutTest() throws Exception {
+        RulesEngine before = newRulesEngine();
+        Trigger t1 = new Trigger("tenant", "trigger-1", "StrictTimeout");
+        t1.setEnabled(true);
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+        Dampening t1d = Dampening.forStrictTimeout("tenant", "trigger-1", Mode.FIRING, 60000L);
+        before.addFact(t1);
+        before.addFact(t1c1);
+        before.addFact(t1d);
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        before.fire();
+        before.addData(Data.forNumeric("tenant", "NumericData-01", 2, 20.0));
+        before.fire();
+        assertEquals(alerts.toString(), 0, alerts.size());
+        assertEquals(1, pendingTimeouts.size());
+        assertEquals(1, snapshot.save(before));
+        pendingTimeouts.clear();
+
+        RulesEngine after = newRulesEngine();
+        after.addFact(t1);
+        after.addFact(t1c1);
+        after.addFact(Dampening.forStrictTimeout("tenant", "trigger-1", Mode.FIRING, 60000L));
+        assertEquals(1, snapshot.restore(after, 60000L));
+
+        // The timeout in progress is armed again after 2 true evals, no rule would arm it
+        Collection<Dampening> restored = EngineSnapshot.pendingTimeouts(after);
+        assertEquals(1, restored.size());
+        Dampening d = restored.iterator().next();
+        assertEquals(2, d.getNumTrueEvals());
+        assertFalse(d.isSatisfied());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventCategory;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.util.DataQueue;
+import org.junit.Test;
+
+/**
+ * Run the RulesEngine basic tests processing all Data and Events in a single execution of the rules, plus the
+ * behavior specific to the ordered data mode.
+ *
+ * @author agent
+ */
+public class OrderedDataRulesEngineTest extends RulesEngineTest {
+
+    public OrderedDataRulesEngineTest() {
+        // Count every rule activation
+        rulesEngine = new DroolsRulesEngineImpl(true, 1);
+    }
+
+    private static List<Long> dataTimestamps(List<Alert> alerts, String triggerId) {
+        List<Long> timestamps = new ArrayList<>();
+        for (Alert a : alerts) {
+            if (a.getTriggerId().equals(triggerId)) {
+                for (Set<ConditionEval> evalSet : a.getEvalSets()) {
+                    for (ConditionEval eval : evalSet) {
+                        timestamps.add(eval.getDataTimestamp());
+                    }
+                }
+            }
+        }
+        return timestamps;
+    }
+
+    private long provideNextDataActivations() {
+        Long activations = rulesEngine.getRuleActivations().get("ProvideNextData");
+        return null == activations ? 0 : activations;
+    }
+
+    private DataQueue dataQueue() {
+        Collection<Object> facts = rulesEngine.getFacts(f -> f instanceof DataQueue);
+        assertEquals(1, facts.size());
+        return (DataQueue) facts.iterator().next();
+    }
+
+    @Test
+    public void singleExecutionTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold-GT");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+
+        List<Data> shuffled = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            shuffled.add(Data.forNumeric("tenant", "NumericData-01", i, 15.0));
+        }
+        Collections.shuffle(shuffled);
+        rulesEngine.addData(shuffled);
+        rulesEngine.fire();
+
+        // All the samples of the dataId are evaluated on the same execution, in timestamp order, none is deferred
+        assertEquals(alerts.toString(), 50, alerts.size());
+        List<Long> expected = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, dataTimestamps(alerts, "trigger-1"));
+        assertEquals(0, rulesEngine.getDeferredCount());
+        assertEquals(50, provideNextDataActivations());
+        assertTrue(dataQueue().isEmpty());
+    }
+
+    @Test
+    public void dataIdsInLockstepTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold-GT");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Threshold-GT");
+        ThresholdCondition t2c1 = new ThresholdCondition("tenant", "trigger-2", 1, 1,
+                "NumericData-02", ThresholdCondition.Operator.GT, 10.0);
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        for (int i = 1; i <= 30; i++) {
+            datums.add(Data.forNumeric("tenant", "NumericData-01", i, 15.0));
+        }
+        for (int i = 1; i <= 3; i++) {
+            datums.add(Data.forNumeric("tenant", "NumericData-02", i, 15.0));
+        }
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        // Every round provides the oldest sample of each dataId, so the rounds are the samples of the longest dataId
+        assertEquals(30, dataTimestamps(alerts, "trigger-1").size());
+        assertEquals(3, dataTimestamps(alerts, "trigger-2").size());
+        assertEquals(30, provideNextDataActivations());
+        assertTrue(dataQueue().isEmpty());
+    }
+
+    @Test
+    public void eventsInOrderTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Events Test");
+        EventCondition t1c1 = new EventCondition("tenant", "trigger-1", "myapp.war", "text == 'DOWN'");
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 2);
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+
+        String[] texts = { "DOWN", "UP", "DOWN", "DOWN", "UP" };
+        for (int i = texts.length; i >= 1; i--) {
+            inputEvents.add(new Event("tenant", UUID.randomUUID().toString(), i, "myapp.war",
+                    EventCategory.DEPLOYMENT.name(), texts[i - 1]));
+        }
+        rulesEngine.addEvents(inputEvents);
+        rulesEngine.fire();
+
+        // The events are dampened in ctime order on a single execution
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals(2, alerts.get(0).getEvalSets().size());
+        List<Long> expected = new ArrayList<>();
+        expected.add(3L);
+        expected.add(4L);
+        assertEquals(expected, dataTimestamps(alerts, "trigger-1"));
+        assertEquals(0, rulesEngine.getDeferredCount());
+    }
+
+    @Test
+    public void dampeningAcrossExecutionsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("tenant", "trigger-1", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 3);
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 2, AvailabilityType.DOWN));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), alerts.isEmpty());
+        assertTrue(dataQueue().isEmpty());
+
+        // The queue is reused by the next execution, which continues the dampening of the previous one
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 3, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        List<Long> expected = new ArrayList<>();
+        expected.add(1L);
+        expected.add(2L);
+        expected.add(3L);
+        assertEquals(expected, dataTimestamps(alerts, "trigger-1"));
+        assertEquals(1, rulesEngine.getFacts(f -> f instanceof DataQueue).size());
+    }
+}
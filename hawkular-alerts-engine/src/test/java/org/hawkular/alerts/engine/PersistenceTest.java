@@ -57,6 +57,7 @@ import org.hawkular.alerts.api.model.paging.EventComparator;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.model.paging.TriggerComparator;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
 import org.hawkular.alerts.api.model.trigger.Mode;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.model.trigger.TriggerAction;
@@ -101,6 +102,29 @@ public abstract class PersistenceTest {
         assertTrue(definitionsService.getAllActionDefinitionIds().size() > 0);
     }
 
+    @Test
+    public void test0005AllFullTriggers() throws Exception {
+        logger.info("test0005AllFullTriggers...");
+
+        Collection<FullTrigger> fullTriggers = definitionsService.getAllFullTriggers();
+        assertEquals(definitionsService.getAllTriggers().size(), fullTriggers.size());
+
+        int numConditions = 0;
+        int numDampenings = 0;
+        for (FullTrigger fullTrigger : fullTriggers) {
+            Trigger t = fullTrigger.getTrigger();
+            assertEquals(definitionsService.getTrigger(t.getTenantId(), t.getId()).getActions(), t.getActions());
+            assertEquals(new HashSet<>(definitionsService.getTriggerConditions(t.getTenantId(), t.getId(), null)),
+                    new HashSet<>(fullTrigger.getConditions()));
+            assertEquals(new HashSet<>(definitionsService.getTriggerDampenings(t.getTenantId(), t.getId(), null)),
+                    new HashSet<>(fullTrigger.getDampenings()));
+            numConditions += fullTrigger.getConditions().size();
+            numDampenings += fullTrigger.getDampenings().size();
+        }
+        assertTrue(numConditions > 0);
+        assertTrue(numDampenings > 0);
+    }
+
     @Test
     public void test001ExportImport() throws Exception {
         logger.info("test001ExportDefinitions");
@@ -1514,6 +1514,72 @@ public class RulesEngineTest {
         }
     }
 
+    @Test
+    public void dampeningStrictTimeEventTimeTest() {
+        rulesEngine.addGlobal("eventTime", true);
+
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("tenant", "trigger-1", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+
+        Dampening t1d = Dampening.forStrictTime("tenant", "trigger-1", Mode.FIRING, 250L);
+
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+
+        // Replayed data, the dampening clock is the data timestamp
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1000, AvailabilityType.DOWN));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1100, AvailabilityType.DOWN));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1200, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), alerts.isEmpty());
+
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1250, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        Alert a = alerts.get(0);
+        assertEquals("trigger-1", a.getTriggerId());
+        assertEquals(4, a.getEvalSets().size());
+    }
+
+    @Test
+    public void dampeningRelaxedTimeEventTimeTest() {
+        rulesEngine.addGlobal("eventTime", true);
+
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("tenant", "trigger-1", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+
+        Dampening t1d = Dampening.forRelaxedTime("tenant", "trigger-1", Mode.FIRING, 2, 500L);
+
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+
+        // The second true eval is out of the time period, so it starts over
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1000, AvailabilityType.DOWN));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1600, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), alerts.isEmpty());
+
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1700, AvailabilityType.UP));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1800, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        Alert a = alerts.get(0);
+        assertEquals("trigger-1", a.getTriggerId());
+        assertEquals(2, a.getEvalSets().size());
+    }
+
     @Test
     public void dampeningStrictTimeoutTest() {
         Trigger t1 = new Trigger("tenant", "trigger-1", "Avail-DOWN");
@@ -1831,6 +1897,62 @@ public class RulesEngineTest {
         assertTrue(t1.toString(), t1.getMode() == Mode.FIRING);
     }
 
+    @Test
+    public void removeTriggerFactsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold-GT");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Threshold-GT");
+        ThresholdCondition t2c1 = new ThresholdCondition("tenant", "trigger-2", 1, 1,
+                "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        Dampening t2d = Dampening.forStrict("tenant", "trigger-2", Mode.FIRING, 1);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+        rulesEngine.addFact(t2d);
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 2, alerts.size());
+
+        // Default dampening has been provided for trigger-1
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 1);
+        assertTrue(rulesEngine.getFact(t1d) != null);
+
+        rulesEngine.removeTriggerFacts("tenant", "trigger-2");
+
+        assertTrue(rulesEngine.getFact(t2) == null);
+        assertTrue(rulesEngine.getFact(t2c1) == null);
+        assertTrue(rulesEngine.getFact(t2d) == null);
+        assertTrue(rulesEngine.getFact(t1) != null);
+        assertTrue(rulesEngine.getFact(t1c1) != null);
+        assertTrue(rulesEngine.getFact(t1d) != null);
+
+        alerts.clear();
+        datums.clear();
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 2, 20.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-1", alerts.get(0).getTriggerId());
+
+        rulesEngine.removeTriggerFacts("tenant", "trigger-1");
+
+        assertTrue(rulesEngine.getFact(t1) == null);
+        assertTrue(rulesEngine.getFact(t1c1) == null);
+        assertTrue(rulesEngine.getFact(t1d) == null);
+    }
+
     @Test
     public void checkEqualityInRulesEngine() throws Exception {
 
@@ -1888,4 +2010,33 @@ public class RulesEngineTest {
         assertTrue(rulesEngine.getFact(jsonfmt1c2) != null);
         assertTrue(rulesEngine.getFact(jsonfmt1c2eval) != null);
     }
+
+    @Test
+    public void engineStatsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Compare-D1-LT-Half-D2");
+        CompareCondition t1c1 = new CompareCondition("tenant", "trigger-1", 1, 1,
+                "NumericData-01",
+                CompareCondition.Operator.LT, 0.5, "NumericData-02");
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        assertTrue(String.valueOf(rulesEngine.getFactCount()), rulesEngine.getFactCount() >= 2);
+
+        for (int i = 1; i <= 20; i++) {
+            datums.add(Data.forNumeric("tenant", "NumericData-01", i, 10.0));
+            datums.add(Data.forNumeric("tenant", "NumericData-02", i, 30.0));
+        }
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), !alerts.isEmpty());
+        Map<String, Long> activations = rulesEngine.getRuleActivations();
+        assertTrue(activations.toString(), !activations.isEmpty());
+        long total = 0;
+        for (Long n : activations.values()) {
+            total += n;
+        }
+        assertTrue(activations.toString(), total >= 20);
+    }
 }
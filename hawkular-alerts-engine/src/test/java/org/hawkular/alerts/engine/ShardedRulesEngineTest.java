@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.ShardedRulesEngineImpl;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Run the RulesEngine basic tests against a sharded RulesEngine implementation, plus the cases where the facts of a
+ * firing are spread across shards.
+ *
+ * @author agent
+ */
+public class ShardedRulesEngineTest extends RulesEngineTest {
+
+    private final ShardedRulesEngineImpl shardedEngine;
+
+    public ShardedRulesEngineTest() {
+        shardedEngine = new ShardedRulesEngineImpl(4);
+        rulesEngine = shardedEngine;
+    }
+
+    @Override
+    @After
+    public void after() {
+        super.after();
+        shardedEngine.close();
+    }
+
+    /*
+        Returns num triggerIds of the "tenant" tenant placed on different shards
+     */
+    private String[] triggersOnDifferentShards(int num) {
+        String[] triggerIds = new String[num];
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0, n = 0; n < num; i++) {
+            String triggerId = "trigger-" + i;
+            if (used.add(shardedEngine.getShard("tenant", triggerId))) {
+                triggerIds[n++] = triggerId;
+            }
+        }
+        return triggerIds;
+    }
+
+    private static List<Long> dataTimestamps(List<Alert> alerts, String triggerId) {
+        List<Long> timestamps = new ArrayList<>();
+        for (Alert a : alerts) {
+            if (a.getTriggerId().equals(triggerId)) {
+                for (Set<ConditionEval> evalSet : a.getEvalSets()) {
+                    for (ConditionEval eval : evalSet) {
+                        timestamps.add(eval.getDataTimestamp());
+                    }
+                }
+            }
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void crossShardTimeoutTest() {
+        String[] triggerIds = triggersOnDifferentShards(2);
+
+        Trigger t1 = new Trigger("tenant", triggerIds[0], "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("tenant", triggerIds[0], 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+        Dampening t1d = Dampening.forStrictTimeout("tenant", triggerIds[0], Mode.FIRING, 200L);
+
+        Trigger t2 = new Trigger("tenant", triggerIds[1], "Threshold-GT");
+        ThresholdCondition t2c1 = new ThresholdCondition("tenant", triggerIds[1], 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), alerts.isEmpty());
+        assertEquals(String.valueOf(pendingTimeouts), 1, pendingTimeouts.size());
+
+        // The timeout expires on a firing with data only for the shard of the other trigger
+        Dampening pendingTimeout = pendingTimeouts.iterator().next();
+        pendingTimeouts.clear();
+        pendingTimeout.setSatisfied(true);
+        rulesEngine.updateFact(pendingTimeout);
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 2, 15.0));
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 2, alerts.size());
+        Set<String> alerted = new HashSet<>();
+        for (Alert a : alerts) {
+            alerted.add(a.getTriggerId());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(triggerIds)), alerted);
+    }
+
+    @Test
+    public void crossShardTimeoutNoDataTest() {
+        String[] triggerIds = triggersOnDifferentShards(2);
+
+        Trigger t1 = new Trigger("tenant", triggerIds[0], "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("tenant", triggerIds[0], 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+        Dampening t1d = Dampening.forStrictTimeout("tenant", triggerIds[0], Mode.FIRING, 200L);
+
+        Trigger t2 = new Trigger("tenant", triggerIds[1], "Avail-DOWN");
+        AvailabilityCondition t2c1 = new AvailabilityCondition("tenant", triggerIds[1], 1, 1,
+                "AvailData-02", AvailabilityCondition.Operator.DOWN);
+        Dampening t2d = Dampening.forStrictTimeout("tenant", triggerIds[1], Mode.FIRING, 200L);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+        rulesEngine.addFact(t2d);
+
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.addData(Data.forAvailability("tenant", "AvailData-02", 1, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assertTrue(alerts.toString(), alerts.isEmpty());
+        assertEquals(String.valueOf(pendingTimeouts), 2, pendingTimeouts.size());
+
+        // Only the timeout of the first trigger expires, with no data at all
+        Dampening pendingTimeout = null;
+        for (Dampening d : pendingTimeouts) {
+            if (d.getTriggerId().equals(triggerIds[0])) {
+                pendingTimeout = d;
+            }
+        }
+        pendingTimeouts.remove(pendingTimeout);
+        pendingTimeout.setSatisfied(true);
+        rulesEngine.updateFact(pendingTimeout);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals(triggerIds[0], alerts.get(0).getTriggerId());
+    }
+
+    @Test
+    public void crossShardOrderingTest() {
+        String[] triggerIds = triggersOnDifferentShards(2);
+
+        Trigger t1 = new Trigger("tenant", triggerIds[0], "Threshold-GT");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", triggerIds[0], 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+        Trigger t2 = new Trigger("tenant", triggerIds[1], "Threshold-GTE");
+        ThresholdCondition t2c1 = new ThresholdCondition("tenant", triggerIds[1], 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GTE, 10.0);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        // Data of the same dataId are routed to both shards and processed in timestamp order on each one
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 3, 30.0));
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 1, 10.0));
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 2, 20.0));
+        rulesEngine.fire();
+
+        assertEquals(Arrays.asList(2L, 3L), dataTimestamps(alerts, triggerIds[0]));
+        assertEquals(Arrays.asList(1L, 2L, 3L), dataTimestamps(alerts, triggerIds[1]));
+    }
+
+    @Test
+    public void crossShardChainedEventsTest() {
+        String[] triggerIds = triggersOnDifferentShards(2);
+
+        Trigger t1 = new Trigger("tenant", triggerIds[0], "Threshold-GT");
+        t1.setEventType(EventType.EVENT);
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", triggerIds[0], 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0);
+
+        Trigger t2 = new Trigger("tenant", triggerIds[1], "Chained");
+        EventCondition t2c1 = new EventCondition("tenant", triggerIds[1], Mode.FIRING, 1, 1, triggerIds[0]);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        rulesEngine.addData(Data.forNumeric("tenant", "NumericData-01", 1, 15.0));
+        rulesEngine.fire();
+
+        // The event generated on the first shard is processed by the second shard on the same firing
+        assertEquals(outputEvents.toString(), 1, outputEvents.size());
+        assertEquals(triggerIds[0], outputEvents.get(0).getTrigger().getId());
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals(triggerIds[1], alerts.get(0).getTriggerId());
+    }
+}
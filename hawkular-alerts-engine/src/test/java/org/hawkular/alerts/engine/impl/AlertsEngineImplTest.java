@@ -0,0 +1,415 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.engine.service.PartitionManager;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Run the AlertsEngineImpl end to end, from sendData() to the stored alerts, with in memory definitions and alerts
+ * services.
+ *
+ * @author agent
+ */
+public class AlertsEngineImplTest {
+
+    private static final String TENANT = "tenant";
+    private static final long WAIT_TIMEOUT = 10000;
+
+    private final Map<String, String> engineProperties = new HashMap<>();
+    private final List<FullTrigger> triggers = new CopyOnWriteArrayList<>();
+    private final List<Alert> storedAlerts = new CopyOnWriteArrayList<>();
+    private volatile long writeLatency = 0;
+
+    // The Data handed to the rules engine on every rules execution
+    private final List<List<Data>> executions = new CopyOnWriteArrayList<>();
+    private final List<Data> executionData = new ArrayList<>();
+
+    private File spillDir;
+    private ExecutorService threads;
+    private AlertsEngineImpl engine;
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(Object[] args) throws Exception;
+    }
+
+    @Before
+    public void before() throws Exception {
+        spillDir = Files.createTempDirectory("alerts-engine-test").toFile();
+        threads = Executors.newCachedThreadPool();
+        engineProperties.put("hawkular-alerts.engine-delay", "0");
+        engineProperties.put("hawkular-alerts.engine-period", "100");
+        engineProperties.put("hawkular-alerts.engine-persist-spill-dir", spillDir.getPath());
+    }
+
+    @After
+    public void after() {
+        if (null != engine) {
+            engine.shutdown();
+        }
+        threads.shutdownNow();
+        for (String key : engineProperties.keySet()) {
+            System.clearProperty(key);
+        }
+        File[] files = spillDir.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Answer> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, (proxy, method, args) -> {
+            Answer answer = answers.get(method.getName());
+            if (null != answer) {
+                return answer.answer(null == args ? new Object[0] : args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    return Boolean.TYPE == method.getReturnType() ? Boolean.FALSE : null;
+            }
+        });
+    }
+
+    /*
+        The engine runs its tasks on the managed executor, here backed by a plain thread pool
+     */
+    private ManagedExecutorService managedExecutor() {
+        return (ManagedExecutorService) Proxy.newProxyInstance(ManagedExecutorService.class.getClassLoader(),
+                new Class[] { ManagedExecutorService.class }, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(threads, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /*
+        A DroolsRulesEngineImpl that records the Data of every execution
+     */
+    @SuppressWarnings("unchecked")
+    private RulesEngine recordingRules() {
+        RulesEngine rules = new DroolsRulesEngineImpl();
+        return (RulesEngine) Proxy.newProxyInstance(RulesEngine.class.getClassLoader(),
+                new Class[] { RulesEngine.class }, (proxy, method, args) -> {
+                    if ("addData".equals(method.getName())) {
+                        if (args[0] instanceof Data) {
+                            executionData.add((Data) args[0]);
+                        } else {
+                            executionData.addAll((Collection<Data>) args[0]);
+                        }
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(rules, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    // Recorded once fired, so the effects of the execution are visible
+                    if (method.getName().startsWith("fire") && !executionData.isEmpty()) {
+                        executions.add(new ArrayList<>(executionData));
+                        executionData.clear();
+                    }
+                    return result;
+                });
+    }
+
+    private static List<Data> numericData(String tenantId, int num) {
+        List<Data> data = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            data.add(Data.forNumeric(tenantId, "NumericData-01", i, 15.0));
+        }
+        return data;
+    }
+
+    private int numExecuted() {
+        return executions.stream().mapToInt(List::size).sum();
+    }
+
+    private boolean executed(String dataId, long timestamp) {
+        for (List<Data> execution : executions) {
+            for (Data d : execution) {
+                if (d.getId().equals(dataId) && d.getTimestamp() == timestamp) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int count(List<Data> data, String tenantId) {
+        int count = 0;
+        for (Data d : data) {
+            if (d.getTenantId().equals(tenantId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private FullTrigger fullTrigger(String triggerId) {
+        for (FullTrigger fullTrigger : triggers) {
+            if (fullTrigger.getTrigger().getId().equals(triggerId)) {
+                return fullTrigger;
+            }
+        }
+        return null;
+    }
+
+    private DefinitionsService definitions() {
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("getAllFullTriggers", args -> new ArrayList<>(triggers));
+        answers.put("getTrigger", args -> {
+            FullTrigger fullTrigger = fullTrigger((String) args[1]);
+            return null == fullTrigger ? null : fullTrigger.getTrigger();
+        });
+        answers.put("getTriggerConditions", args -> {
+            FullTrigger fullTrigger = fullTrigger((String) args[1]);
+            return null == fullTrigger ? new ArrayList<>() : new ArrayList<>(fullTrigger.getConditions());
+        });
+        answers.put("getTriggerDampenings", args -> {
+            FullTrigger fullTrigger = fullTrigger((String) args[1]);
+            return null == fullTrigger ? new ArrayList<>() : new ArrayList<>(fullTrigger.getDampenings());
+        });
+        return stub(DefinitionsService.class, answers);
+    }
+
+    /*
+        Alerts are stored in memory, after writeLatency ms, like a backend under load
+     */
+    @SuppressWarnings("unchecked")
+    private AlertsService alertsService() {
+        Map<String, Answer> answers = new HashMap<>();
+        answers.put("addAlerts", args -> {
+            Collection<Alert> alerts = (Collection<Alert>) args[0];
+            if (!alerts.isEmpty() && writeLatency > 0) {
+                Thread.sleep(writeLatency);
+            }
+            storedAlerts.addAll(alerts);
+            return null;
+        });
+        answers.put("resolveAlertsForTrigger", args -> {
+            String tenantId = (String) args[0];
+            String triggerId = (String) args[1];
+            for (Alert a : storedAlerts) {
+                if (a.getTenantId().equals(tenantId) && a.getTriggerId().equals(triggerId)
+                        && Alert.Status.RESOLVED != a.getStatus()) {
+                    a.addLifecycle(Alert.Status.RESOLVED, (String) args[2], System.currentTimeMillis());
+                }
+            }
+            engine.reloadTrigger(tenantId, triggerId);
+            return null;
+        });
+        return stub(AlertsService.class, answers);
+    }
+
+    private void startEngine() {
+        for (Map.Entry<String, String> property : engineProperties.entrySet()) {
+            System.setProperty(property.getKey(), property.getValue());
+        }
+        engine = new AlertsEngineImpl();
+        engine.setRules(recordingRules());
+        engine.setDefinitions(definitions());
+        engine.setAlertsService(alertsService());
+        engine.partitionManager = stub(PartitionManager.class, new HashMap<>());
+        engine.setExecutor(managedExecutor());
+        engine.initServices();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void asyncAutoResolveTest() throws Exception {
+        engineProperties.put("hawkular-alerts.engine-persist-mode", "async");
+        writeLatency = 500;
+
+        Trigger t1 = new Trigger(TENANT, "trigger-1", "AutoResolve");
+        t1.setEnabled(true);
+        t1.setAutoResolve(true);
+        t1.setAutoResolveAlerts(true);
+        List<Condition> conditions = Arrays.asList(
+                new ThresholdCondition(TENANT, "trigger-1", Mode.FIRING, 1, 1, "NumericData-01",
+                        ThresholdCondition.Operator.GT, 10.0),
+                new ThresholdCondition(TENANT, "trigger-1", Mode.AUTORESOLVE, 1, 1, "NumericData-01",
+                        ThresholdCondition.Operator.LTE, 10.0));
+        List<Dampening> dampenings = Arrays.asList(
+                Dampening.forStrict(TENANT, "trigger-1", Mode.FIRING, 1),
+                Dampening.forStrict(TENANT, "trigger-1", Mode.AUTORESOLVE, 1));
+        triggers.add(new FullTrigger(t1, dampenings, conditions));
+        startEngine();
+
+        // The alert is fired and auto resolved on the same execution, while it is still on the write-behind queue
+        engine.sendData(Arrays.asList(Data.forNumeric(TENANT, "NumericData-01", 1, 15.0),
+                Data.forNumeric(TENANT, "NumericData-01", 2, 5.0)));
+        waitFor(() -> !storedAlerts.isEmpty() && Alert.Status.RESOLVED == storedAlerts.get(0).getStatus());
+
+        assertEquals(storedAlerts.toString(), 1, storedAlerts.size());
+        assertEquals(Alert.Status.RESOLVED, storedAlerts.get(0).getStatus());
+    }
+
+    @Test
+    public void timerTenantFairnessTest() throws Exception {
+        engineProperties.put("hawkular-alerts.engine-mode", "timer");
+        engineProperties.put("hawkular-alerts.engine-delay", "500");
+        engineProperties.put("hawkular-alerts.engine-batch-size", "500");
+        engineProperties.put("hawkular-alerts.engine-tenant-fairness", "true");
+        startEngine();
+
+        // Both tenants are pending on the first tick
+        engine.sendData(numericData("noisy", 2000));
+        engine.sendData(numericData("quiet", 50));
+        waitFor(() -> 2050 == numExecuted());
+
+        // The tick is split in executions of batchSize datums, the quiet tenant is served on the first one
+        assertEquals(2050, numExecuted());
+        assertTrue(String.valueOf(executions.size()), executions.size() >= 5);
+        for (List<Data> execution : executions) {
+            assertTrue(String.valueOf(execution.size()), execution.size() <= 500);
+        }
+        assertEquals(50, count(executions.get(0), "quiet"));
+    }
+
+    @Test
+    public void eventTimeTimeoutTest() throws Exception {
+        engineProperties.put("hawkular-alerts.engine-event-time", "true");
+        engineProperties.put("hawkular-alerts.engine-persist-mode", "sync");
+
+        Trigger t1 = new Trigger(TENANT, "trigger-1", "StrictTimeout");
+        t1.setEnabled(true);
+        List<Condition> conditions = Arrays.asList(new ThresholdCondition(TENANT, "trigger-1", Mode.FIRING, 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0));
+        List<Dampening> dampenings = Arrays.asList(
+                Dampening.forStrictTimeout(TENANT, "trigger-1", Mode.FIRING, 1000L));
+        triggers.add(new FullTrigger(t1, dampenings, conditions));
+        startEngine();
+
+        // The timeout expires at 2000
+        engine.sendData(Data.forNumeric(TENANT, "NumericData-01", 1000, 15.0));
+        waitFor(() -> 1 == numExecuted());
+        assertEquals(1, numExecuted());
+
+        // The false evaluation at 1500 resets the dampening before the watermark reaches 2000, 2500 starts it again
+        engine.sendData(Arrays.asList(Data.forNumeric(TENANT, "NumericData-01", 1500, 5.0),
+                Data.forNumeric(TENANT, "NumericData-01", 2500, 15.0)));
+        waitFor(() -> 3 == numExecuted());
+        assertEquals(3, numExecuted());
+        assertTrue(storedAlerts.toString(), storedAlerts.isEmpty());
+
+        // The watermark reaches the deadline of the second timeout, at 3500
+        engine.sendData(Data.forNumeric(TENANT, "NumericData-01", 3600, 15.0));
+        waitFor(() -> !storedAlerts.isEmpty());
+        assertEquals(storedAlerts.toString(), 1, storedAlerts.size());
+    }
+
+    @Test
+    public void batchIngestionTest() throws Exception {
+        engineProperties.put("hawkular-alerts.engine-persist-mode", "sync");
+
+        Trigger t1 = new Trigger(TENANT, "trigger-1", "Threshold-GT");
+        t1.setEnabled(true);
+        List<Condition> conditions = Arrays.asList(new ThresholdCondition(TENANT, "trigger-1", Mode.FIRING, 1, 1,
+                "NumericData-01", ThresholdCondition.Operator.GT, 10.0));
+        triggers.add(new FullTrigger(t1, new ArrayList<>(), conditions));
+        startEngine();
+
+        DataBatch batch = new DataBatch(TENANT, "source")
+                .addNumeric("NumericData-01", 1, 15.0)
+                .addNumeric("NumericData-01", 2, 5.0)
+                .addNumeric("NumericData-02", 2, 50.0)
+                .addNumeric("NumericData-01", 3, 20.0);
+        engine.sendData(batch);
+        waitFor(() -> 4 == numExecuted() && 2 == storedAlerts.size());
+
+        assertEquals(4, numExecuted());
+        assertEquals(storedAlerts.toString(), 2, storedAlerts.size());
+        assertEquals(0L, engine.getPendingStats().get("pendingBatchSamples").longValue());
+    }
+
+    @Test
+    public void batchOverflowTest() throws Exception {
+        engineProperties.put("hawkular-alerts.engine-delay", "500");
+        engineProperties.put("hawkular-alerts.engine-queue-policy", "latest");
+        engineProperties.put("hawkular-alerts.engine-queue-capacity", "8");
+        engineProperties.put("hawkular-alerts.engine-queue-batch-capacity", "2");
+        startEngine();
+
+        // Batches of the same source overflow before the first execution, each one with its own dataId
+        for (int i = 0; i < 4; i++) {
+            engine.sendData(new DataBatch(TENANT, "source")
+                    .addNumeric("NumericData-" + i, 1, 15.0)
+                    .addNumeric("NumericData-" + i, 2, 15.0)
+                    .addNumeric("NumericData-" + i, 3, 15.0));
+        }
+        waitFor(() -> executed("NumericData-0", 3) && executed("NumericData-1", 3) && executed("NumericData-2", 3)
+                && executed("NumericData-3", 3));
+
+        // Older samples can be coalesced, the latest sample of every dataId is processed
+        for (int i = 0; i < 4; i++) {
+            assertTrue("NumericData-" + i, executed("NumericData-" + i, 3));
+        }
+    }
+}
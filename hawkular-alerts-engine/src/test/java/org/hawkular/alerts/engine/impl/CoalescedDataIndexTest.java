@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class CoalescedDataIndexTest {
+
+    private static Trigger trigger(String triggerId, boolean coalesce) {
+        Trigger trigger = new Trigger("o1", triggerId, triggerId);
+        if (coalesce) {
+            trigger.addContext(CoalescedDataIndex.COALESCE_CONTEXT, "true");
+        }
+        return trigger;
+    }
+
+    private static Condition threshold(String triggerId, String dataId) {
+        return new ThresholdCondition("o1", triggerId, 1, 1, dataId, ThresholdCondition.Operator.GT, 10.0);
+    }
+
+    @Test
+    public void coalesceTest() {
+        CoalescedDataIndex index = new CoalescedDataIndex();
+        assertTrue(index.isEmpty());
+
+        index.add(trigger("t1", true), Collections.singletonList(threshold("t1", "d1")));
+        assertTrue(index.isCoalesced("o1", "d1"));
+        assertFalse(index.isCoalesced("o2", "d1"));
+
+        // A trigger not opted in requires every Data of d1
+        index.add(trigger("t2", false), Collections.singletonList(threshold("t2", "d1")));
+        assertFalse(index.isCoalesced("o1", "d1"));
+
+        index.remove("o1", "t2");
+        assertTrue(index.isCoalesced("o1", "d1"));
+
+        index.remove("o1", "t1");
+        assertFalse(index.isCoalesced("o1", "d1"));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void reloadTest() {
+        CoalescedDataIndex index = new CoalescedDataIndex();
+        index.add(trigger("t1", true), Arrays.asList(threshold("t1", "d1"),
+                new CompareCondition("o1", "t1", 2, 2, "d2", CompareCondition.Operator.GT, 1.0, "d3")));
+        assertTrue(index.isCoalesced("o1", "d1"));
+        assertTrue(index.isCoalesced("o1", "d2"));
+        assertTrue(index.isCoalesced("o1", "d3"));
+
+        // Reloading a trigger replaces its previous registration
+        index.add(trigger("t1", false), Collections.singletonList(threshold("t1", "d1")));
+        assertFalse(index.isCoalesced("o1", "d1"));
+        assertFalse(index.isCoalesced("o1", "d2"));
+        index.add(trigger("t1", true), Collections.singletonList(threshold("t1", "d1")));
+        assertTrue(index.isCoalesced("o1", "d1"));
+
+        index.clear();
+        assertFalse(index.isCoalesced("o1", "d1"));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class BatchDispatcherTest {
+
+    ExecutorService executor;
+    AtomicInteger pending;
+    List<Integer> invocations;
+
+    @Before
+    public void before() {
+        executor = Executors.newCachedThreadPool();
+        pending = new AtomicInteger();
+        invocations = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private BatchDispatcher dispatcher(int batchSize, long batchLinger) {
+        return new BatchDispatcher(() -> invocations.add(pending.getAndSet(0)), pending::get, () -> Long.MAX_VALUE,
+                0, batchSize, batchLinger, 10);
+    }
+
+    private void waitFor(int numInvocations) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (invocations.size() < numInvocations && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void waitFinished(BatchDispatcher dispatcher) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!dispatcher.isFinished() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void lingerTest() throws Exception {
+        BatchDispatcher dispatcher = dispatcher(1000, 300);
+        executor.submit(dispatcher);
+
+        long start = System.currentTimeMillis();
+        pending.incrementAndGet();
+        dispatcher.signal();
+        Thread.sleep(50);
+        pending.incrementAndGet();
+        dispatcher.signal();
+        waitFor(1);
+        long elapsed = System.currentTimeMillis() - start;
+        dispatcher.shutdown();
+
+        // Both items arrived within the linger, they are processed on the same invocation
+        assertEquals(invocations.toString(), 1, invocations.size());
+        assertEquals(2, (int) invocations.get(0));
+        assertTrue("Elapsed " + elapsed, elapsed >= 250);
+    }
+
+    @Test
+    public void batchSizeTest() throws Exception {
+        BatchDispatcher dispatcher = dispatcher(10, 60000);
+        executor.submit(dispatcher);
+
+        long start = System.currentTimeMillis();
+        pending.addAndGet(5);
+        dispatcher.signal();
+        Thread.sleep(50);
+        assertTrue(invocations.isEmpty());
+
+        pending.addAndGet(5);
+        dispatcher.signal();
+        waitFor(1);
+        long elapsed = System.currentTimeMillis() - start;
+        dispatcher.shutdown();
+
+        // The linger ends as soon as batchSize items are pending
+        assertEquals(invocations.toString(), 1, invocations.size());
+        assertEquals(10, (int) invocations.get(0));
+        assertTrue("Elapsed " + elapsed, elapsed < 10000);
+    }
+
+    @Test
+    public void nextDeadlineTest() throws Exception {
+        long deadline = System.currentTimeMillis() + 200;
+        BatchDispatcher dispatcher = new BatchDispatcher(() -> invocations.add(0), pending::get,
+                () -> invocations.isEmpty() ? deadline : Long.MAX_VALUE, 0, 10, 10, 10);
+        executor.submit(dispatcher);
+
+        waitFor(1);
+        dispatcher.shutdown();
+
+        // With nothing pending the dispatcher wakes up at the next deadline only
+        assertEquals(1, invocations.size());
+        assertTrue(System.currentTimeMillis() >= deadline);
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        BatchDispatcher dispatcher = dispatcher(10, 60000);
+        executor.submit(dispatcher);
+
+        pending.incrementAndGet();
+        dispatcher.signal();
+        Thread.sleep(50);
+        dispatcher.shutdown();
+
+        // Shutdown ends the linger without invoking the task and waits for the loop to finish
+        assertTrue(dispatcher.isFinished());
+        assertTrue(invocations.isEmpty());
+
+        pending.incrementAndGet();
+        dispatcher.signal();
+        Thread.sleep(50);
+        assertTrue(invocations.isEmpty());
+    }
+
+    @Test
+    public void shutdownBeforeStartTest() throws Exception {
+        BatchDispatcher dispatcher = dispatcher(10, 10);
+        dispatcher.shutdown();
+        assertFalse(dispatcher.isFinished());
+
+        pending.incrementAndGet();
+        executor.submit(dispatcher).get();
+
+        assertTrue(dispatcher.isFinished());
+        assertTrue(invocations.isEmpty());
+    }
+
+    @Test
+    public void shutdownFromInvokerTest() throws Exception {
+        BatchDispatcher[] dispatcher = new BatchDispatcher[1];
+        dispatcher[0] = new BatchDispatcher(() -> {
+            invocations.add(pending.getAndSet(0));
+            dispatcher[0].shutdown();
+        }, pending::get, () -> Long.MAX_VALUE, 0, 10, 10, 10);
+        executor.submit(dispatcher[0]);
+
+        pending.incrementAndGet();
+        dispatcher[0].signal();
+        waitFinished(dispatcher[0]);
+
+        // A shutdown from the invoker does not wait for itself
+        assertTrue(dispatcher[0].isFinished());
+        assertEquals(1, invocations.size());
+    }
+
+    @Test
+    public void interruptTest() throws Exception {
+        BatchDispatcher dispatcher = dispatcher(10, 10);
+        Future<?> future = executor.submit(dispatcher);
+        Thread.sleep(50);
+
+        future.cancel(true);
+        waitFinished(dispatcher);
+        assertTrue(dispatcher.isFinished());
+
+        pending.incrementAndGet();
+        dispatcher.signal();
+        Thread.sleep(50);
+        assertTrue(invocations.isEmpty());
+
+        // Shutdown after an interruption does not block
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void delayTest() throws Exception {
+        BatchDispatcher dispatcher = new BatchDispatcher(() -> invocations.add(pending.getAndSet(0)), pending::get,
+                () -> Long.MAX_VALUE, 60000, 10, 0, 10);
+        executor.submit(dispatcher);
+
+        pending.incrementAndGet();
+        dispatcher.signal();
+        Thread.sleep(50);
+        assertTrue(invocations.isEmpty());
+
+        // Shutdown interrupts the initial delay
+        dispatcher.shutdown();
+        assertTrue(dispatcher.isFinished());
+        assertTrue(invocations.isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class HistogramTest {
+
+    @Test
+    public void bucketsTest() {
+        for (long v = 0; v < 100000; v++) {
+            int index = Histogram.index(v);
+            assertTrue(v + " >= " + Histogram.lowerBound(index), v >= Histogram.lowerBound(index));
+            assertTrue(v + " < " + Histogram.lowerBound(index + 1), v < Histogram.lowerBound(index + 1));
+        }
+        assertEquals(Histogram.index(Long.MAX_VALUE), Histogram.index(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void emptyTest() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void percentileTest() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+
+        long p50 = histogram.getPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 500 && p50 < 500 * 1.125);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 1000);
+        assertEquals(1000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+
+        histogram.record(-5);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
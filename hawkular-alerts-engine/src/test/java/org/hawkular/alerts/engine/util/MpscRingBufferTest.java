@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class MpscRingBufferTest {
+
+    @Test
+    public void capacityTest() {
+        assertEquals(1, new MpscRingBuffer<String>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<String>(8).capacity());
+        assertEquals(16, new MpscRingBuffer<String>(9).capacity());
+    }
+
+    @Test
+    public void offerPollTest() {
+        MpscRingBuffer<String> buffer = new MpscRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        assertTrue(buffer.offer("a"));
+        assertTrue(buffer.offer("b"));
+        assertTrue(buffer.offer("c"));
+        assertTrue(buffer.offer("d"));
+        assertFalse(buffer.offer("e"));
+        assertEquals(4, buffer.size());
+
+        assertEquals("a", buffer.poll());
+        assertTrue(buffer.offer("e"));
+        assertEquals("b", buffer.poll());
+        assertEquals("c", buffer.poll());
+        assertEquals("d", buffer.poll());
+        assertEquals("e", buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void drainTest() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(16);
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drain(drained::add, 4));
+        assertEquals(6, buffer.size());
+        assertEquals(6, buffer.drain(drained::add, 100));
+        assertEquals(10, drained.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, drained.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void concurrentProducersTest() throws Exception {
+        int producers = 8;
+        int perProducer = 50000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    long[] item = new long[] { producer, i };
+                    while (!buffer.offer(item)) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+
+        // Items from the same producer must be received in order
+        long[] lastSeen = new long[producers];
+        for (int p = 0; p < producers; p++) {
+            lastSeen[p] = -1;
+        }
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] item = buffer.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) item[0];
+            assertEquals(lastSeen[producer] + 1, item[1]);
+            lastSeen[producer] = item[1];
+            received++;
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(buffer.isEmpty());
+    }
+}
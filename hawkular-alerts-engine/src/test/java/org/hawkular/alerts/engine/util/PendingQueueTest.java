@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.exception.FullQueueException;
+import org.hawkular.alerts.engine.util.PendingQueue.Policy;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class PendingQueueTest {
+
+    private static String key(String item) {
+        return item.substring(0, 1);
+    }
+
+    @Test
+    public void rejectTest() {
+        PendingQueue<String> queue = new PendingQueue<>("test", 4, Policy.REJECT, null, 1, null);
+        queue.offer(Arrays.asList("a1", "b1", "c1"));
+        try {
+            queue.offer(Arrays.asList("a2", "b2"));
+            fail("Queue should be full");
+        } catch (FullQueueException e) {
+            // expected
+        }
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getRejected());
+
+        queue.offer(Arrays.asList("a2"));
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void rejectConcurrentTest() throws Exception {
+        int numProducers = 4;
+        int numOffers = 1000;
+        PendingQueue<String> queue = new PendingQueue<>("test", 16, Policy.REJECT, null, 1, null);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger drained = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < numOffers; i++) {
+                    try {
+                        queue.offer(Arrays.asList("a", "b", "c", "d", "e"));
+                        accepted.addAndGet(5);
+                    } catch (FullQueueException e) {
+                        // expected, the whole collection is rejected
+                    }
+                    // Single consumer at a time
+                    synchronized (drained) {
+                        drained.addAndGet(queue.drain(item -> { }, 3));
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        drained.addAndGet(queue.drain(item -> { }, Integer.MAX_VALUE));
+
+        // Every offer is either accepted or rejected as a whole, nothing is dropped
+        assertEquals(0, queue.getDropped());
+        assertEquals(numProducers * numOffers * 5, accepted.get() + queue.getRejected());
+        assertEquals(accepted.get(), drained.get());
+    }
+
+    @Test
+    public void rejectOversizedTest() {
+        PendingQueue<String> queue = new PendingQueue<>("test", 4, Policy.REJECT, null, 1, null);
+        try {
+            queue.offer(Arrays.asList("a1", "b1", "c1", "d1", "e1"));
+            fail("Collection larger than the capacity should be refused");
+        } catch (FullQueueException e) {
+            fail("Collection larger than the capacity should not be reported as a full queue");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getRejected());
+
+        // A collection of the capacity fits on an empty queue
+        queue.offer(Arrays.asList("a1", "b1", "c1", "d1"));
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void dropOldestKeepsBufferedTest() {
+        PendingQueue<String> queue = new PendingQueue<>("test", 2, Policy.DROP_OLDEST, PendingQueueTest::key, 1,
+                null);
+        queue.offer(Arrays.asList("a1", "a2", "a3", "a4"));
+        assertEquals(1, queue.getDropped());
+
+        // The oldest items were accepted by the ring buffer, only the oldest overflowed items are dropped
+        List<String> drained = new ArrayList<>();
+        queue.drain(drained::add, 100);
+        assertEquals(Arrays.asList("a1", "a2", "a4"), drained);
+    }
+
+    @Test
+    public void dropOldestTest() {
+        PendingQueue<String> queue = new PendingQueue<>("test", 2, Policy.DROP_OLDEST, PendingQueueTest::key, 2,
+                null);
+        queue.offer(Arrays.asList("a1", "a2", "a3", "a4", "a5", "b1"));
+        assertEquals(1, queue.getDropped());
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(3, queue.drain(drained::add, 3));
+        assertEquals(2, queue.drain(drained::add, 3));
+        assertEquals(Arrays.asList("a1", "a2", "a4", "a5", "b1"), drained);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void latestTest() {
+        PendingQueue<String> queue = new PendingQueue<>("test", 4, Policy.LATEST, PendingQueueTest::key, 10,
+                null);
+        queue.offer(Arrays.asList("a1", "b1", "a2", "b2", "a3", "b3", "a4", "c1"));
+        assertEquals(1, queue.getCoalesced());
+
+        List<String> drained = new ArrayList<>();
+        queue.drain(drained::add, 100);
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a4", "b3", "c1"), drained);
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class ReorderBufferTest {
+
+    // Items are "key:timestamp"
+    private static String key(String item) {
+        return item.substring(0, item.indexOf(':'));
+    }
+
+    private static long timestamp(String item) {
+        return Long.parseLong(item.substring(item.indexOf(':') + 1));
+    }
+
+    private static ReorderBuffer<String> buffer(long allowedLateness, int maxDepth) {
+        return new ReorderBuffer<>(allowedLateness, maxDepth, ReorderBufferTest::key, ReorderBufferTest::timestamp);
+    }
+
+    @Test
+    public void reorderTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:1000", 0);
+        buffer.add("a:1050", 0);
+        buffer.add("a:1020", 0);
+        assertEquals(0, buffer.release(0, released::add));
+        assertEquals(3, buffer.size());
+        assertEquals(1, buffer.getLate());
+
+        // The watermark of "a" passes 1000, 1020 and 1050
+        buffer.add("a:1150", 0);
+        assertEquals(3, buffer.release(0, released::add));
+        assertEquals(Arrays.asList("a:1000", "a:1020", "a:1050"), released);
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void tooLateTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:1000", 0);
+        buffer.add("a:1200", 0);
+        buffer.release(0, released::add);
+        assertEquals(Arrays.asList("a:1000"), released);
+
+        assertFalse(buffer.add("a:1000", 0));
+        assertFalse(buffer.add("a:900", 0));
+        assertTrue(buffer.add("a:1100", 0));
+        // Other keys are not affected
+        assertTrue(buffer.add("b:900", 0));
+        assertEquals(2, buffer.getDropped());
+    }
+
+    @Test
+    public void releaseByTimeTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:1000", 5000);
+        buffer.add("b:2000", 5050);
+        assertEquals(5100, buffer.nextRelease());
+        assertEquals(0, buffer.release(5099, released::add));
+        assertEquals(1, buffer.release(5100, released::add));
+        assertEquals(Arrays.asList("a:1000"), released);
+        assertEquals(5150, buffer.nextRelease());
+
+        assertEquals(1, buffer.flush(released::add));
+        assertTrue(buffer.isEmpty());
+        assertEquals(Long.MAX_VALUE, buffer.nextRelease());
+    }
+
+    @Test
+    public void maxDepthTest() {
+        ReorderBuffer<String> buffer = buffer(1000, 2);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:100", 0);
+        buffer.add("a:300", 0);
+        buffer.add("a:200", 0);
+        buffer.add("a:400", 0);
+        assertEquals(2, buffer.release(0, released::add));
+        assertEquals(Arrays.asList("a:100", "a:200"), released);
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void nextReleaseTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:1000", 5000);
+        buffer.add("a:900", 5010);
+        buffer.add("b:1000", 5020);
+        assertEquals(5100, buffer.nextRelease());
+
+        // Items released by the watermark are not the next release anymore
+        buffer.add("a:1200", 5030);
+        assertEquals(2, buffer.release(5030, released::add));
+        assertEquals(Arrays.asList("a:900", "a:1000"), released);
+        assertEquals(5120, buffer.nextRelease());
+
+        assertEquals(1, buffer.release(5120, released::add));
+        assertEquals(5130, buffer.nextRelease());
+        assertEquals(1, buffer.release(5130, released::add));
+        assertEquals(Long.MAX_VALUE, buffer.nextRelease());
+    }
+
+    @Test
+    public void idleKeysTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            buffer.add("key-" + i + ":1000", 0);
+        }
+        assertEquals(1000, buffer.release(100, released::add));
+        assertEquals(1000, buffer.getNumKeys());
+
+        // Idle keys are kept for the allowed lateness, so too late items are still dropped
+        assertFalse(buffer.add("key-1:900", 150));
+        buffer.release(150, released::add);
+        assertEquals(1000, buffer.getNumKeys());
+
+        // Then they are evicted, retaining their last released timestamp so too late items are still dropped
+        buffer.release(200, released::add);
+        assertEquals(0, buffer.getNumKeys());
+        assertEquals(1000, buffer.getNumRetiredKeys());
+        assertFalse(buffer.add("key-1:900", 200));
+        assertTrue(buffer.add("key-1:1100", 200));
+        assertEquals(999, buffer.getNumRetiredKeys());
+
+        // A key with held items is not evicted
+        buffer.add("a:1000", 200);
+        buffer.add("a:2000", 200);
+        assertEquals(1, buffer.release(250, released::add));
+        assertEquals(0, buffer.release(299, released::add));
+        assertEquals(2, buffer.getNumKeys());
+        assertEquals(2, buffer.release(300, released::add));
+        assertEquals(2, buffer.getNumKeys());
+        buffer.release(400, released::add);
+        assertEquals(0, buffer.getNumKeys());
+        assertEquals(1001, buffer.getNumRetiredKeys());
+    }
+
+    @Test
+    public void retiredKeysTest() {
+        ReorderBuffer<String> buffer = new ReorderBuffer<>(100, 10, 2, ReorderBufferTest::key,
+                ReorderBufferTest::timestamp);
+        List<String> released = new ArrayList<>();
+
+        buffer.add("a:1000", 0);
+        buffer.add("b:1000", 10);
+        buffer.add("c:1000", 20);
+        assertEquals(3, buffer.release(120, released::add));
+        buffer.release(300, released::add);
+        assertEquals(0, buffer.getNumKeys());
+
+        // Only the last 2 evicted keys are retained
+        assertEquals(2, buffer.getNumRetiredKeys());
+        assertTrue(buffer.add("a:900", 300));
+        assertFalse(buffer.add("b:900", 300));
+        assertFalse(buffer.add("c:900", 300));
+    }
+
+    @Test
+    public void releaseReadyKeysTest() {
+        ReorderBuffer<String> buffer = buffer(100, 10);
+        List<String> released = new ArrayList<>();
+
+        // An expired item behind a more recent head of its key is released right after its head
+        buffer.add("a:1050", 0);
+        buffer.add("a:1000", 50);
+        assertEquals(0, buffer.release(100, released::add));
+        assertEquals(150, buffer.nextRelease());
+        assertEquals(2, buffer.release(150, released::add));
+        assertEquals(Arrays.asList("a:1000", "a:1050"), released);
+        assertTrue(buffer.isEmpty());
+    }
+}
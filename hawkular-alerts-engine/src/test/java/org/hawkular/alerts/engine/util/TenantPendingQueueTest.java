@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.exception.FullQueueException;
+import org.hawkular.alerts.engine.util.PendingQueue.Policy;
+import org.hawkular.alerts.engine.util.TenantPendingQueue.Quota;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class TenantPendingQueueTest {
+
+    private static String tenant(String item) {
+        return item.substring(0, item.indexOf(':'));
+    }
+
+    private static List<String> items(String tenantId, int num) {
+        List<String> items = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            items.add(tenantId + ":" + i);
+        }
+        return items;
+    }
+
+    private static int count(List<String> items, String tenantId) {
+        int count = 0;
+        for (String item : items) {
+            if (tenant(item).equals(tenantId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void fairnessTest() {
+        TenantPendingQueue<String> queue = new TenantPendingQueue<>("test", Policy.BLOCK,
+                TenantPendingQueueTest::tenant, null, 1, t -> new Quota(4096, 1), null);
+        queue.offer(items("noisy", 2000));
+        queue.offer(items("quiet", 150));
+        assertEquals(2150, queue.size());
+        assertEquals(2, queue.getNumTenants());
+
+        // The quiet tenant does not wait for the backlog of the noisy tenant
+        List<String> drained = new ArrayList<>();
+        assertEquals(400, queue.drain(drained::add, 400));
+        assertEquals(250, count(drained, "noisy"));
+        assertEquals(150, count(drained, "quiet"));
+
+        drained.clear();
+        assertEquals(1750, queue.drain(drained::add, 5000));
+        assertEquals(1750, count(drained, "noisy"));
+        assertTrue(queue.isEmpty());
+
+        // Order is kept per tenant
+        assertEquals("noisy:250", drained.get(0));
+        assertEquals("noisy:1999", drained.get(1749));
+    }
+
+    @Test
+    public void weightTest() {
+        TenantPendingQueue<String> queue = new TenantPendingQueue<>("test", Policy.BLOCK,
+                TenantPendingQueueTest::tenant, null, 1, t -> new Quota(4096, "gold".equals(t) ? 3 : 1), null);
+        queue.offer(items("gold", 1000));
+        queue.offer(items("bronze", 1000));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(800, queue.drain(drained::add, 800));
+        assertEquals(600, count(drained, "gold"));
+        assertEquals(200, count(drained, "bronze"));
+    }
+
+    @Test
+    public void limitResumesTurnTest() {
+        TenantPendingQueue<String> queue = new TenantPendingQueue<>("test", Policy.BLOCK,
+                TenantPendingQueueTest::tenant, null, 1, t -> new Quota(4096, 1), null);
+        queue.offer(items("a", 200));
+        queue.offer(items("b", 200));
+
+        // A turn cut short by the limit is resumed on the next drain
+        List<String> drained = new ArrayList<>();
+        assertEquals(60, queue.drain(drained::add, 60));
+        assertEquals(60, queue.drain(drained::add, 60));
+        assertEquals(100, count(drained, "a"));
+        assertEquals(20, count(drained, "b"));
+    }
+
+    @Test
+    public void tenantCapacityTest() {
+        TenantPendingQueue<String> queue = new TenantPendingQueue<>("test", Policy.REJECT,
+                TenantPendingQueueTest::tenant, null, 1, t -> new Quota("small".equals(t) ? 4 : 64, 1), null);
+        queue.offer(items("small", 3));
+        try {
+            queue.offer(items("small", 3));
+            fail("Small tenant queue should be full");
+        } catch (FullQueueException e) {
+            // expected
+        }
+        try {
+            queue.offer(items("small", 10));
+            fail("Collection larger than the small tenant capacity should be refused");
+        } catch (IllegalArgumentException e) {
+            // expected, it can never fit
+        }
+        queue.offer(items("large", 10));
+        assertEquals(13, queue.size());
+        assertEquals(3, queue.getRejected());
+
+        Map<String, Map<String, Long>> stats = queue.getTenantStats();
+        assertEquals(3L, stats.get("small").get("rejected").longValue());
+        assertEquals(3L, stats.get("small").get("pending").longValue());
+        assertEquals(0L, stats.get("large").get("rejected").longValue());
+        assertEquals(10L, stats.get("large").get("pending").longValue());
+
+        queue.drain(i -> { }, 100);
+        stats = queue.getTenantStats();
+        assertEquals(10L, stats.get("large").get("drained").longValue());
+        assertEquals(0L, stats.get("large").get("pending").longValue());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class TimeoutWheelTest {
+
+    private final Map<String, Long> deadlines = new HashMap<>();
+
+    private TimeoutWheel<String> newWheel(long now) {
+        return new TimeoutWheel<>(10L, 8, deadlines::get, now);
+    }
+
+    @Test
+    public void addRemoveTest() {
+        TimeoutWheel<String> wheel = newWheel(1000L);
+        deadlines.put("a", 1050L);
+        deadlines.put("b", 1070L);
+        assertTrue(wheel.isEmpty());
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+
+        assertTrue(wheel.add("a"));
+        assertFalse(wheel.add("a"));
+        assertTrue(wheel.add("b"));
+        assertEquals(2, wheel.size());
+        assertTrue(wheel.contains("a"));
+        assertEquals(1050L, wheel.nextDeadline());
+
+        assertTrue(wheel.remove("a"));
+        assertFalse(wheel.remove("a"));
+        assertFalse(wheel.contains("a"));
+        assertEquals(1070L, wheel.nextDeadline());
+
+        Iterator<String> i = wheel.iterator();
+        assertEquals("b", i.next());
+        i.remove();
+        assertTrue(wheel.isEmpty());
+        assertTrue(wheel.pollExpired(2000L).isEmpty());
+    }
+
+    @Test
+    public void pollExpiredTest() {
+        TimeoutWheel<String> wheel = newWheel(1000L);
+        deadlines.put("a", 1015L);
+        deadlines.put("b", 1018L);
+        deadlines.put("c", 1045L);
+        deadlines.put("overdue", 900L);
+        wheel.addAll(deadlines.keySet());
+        assertEquals(900L, wheel.nextDeadline());
+
+        assertEquals(Collections.singletonList("overdue"), wheel.pollExpired(1005L));
+        assertEquals(1015L, wheel.nextDeadline());
+
+        // Same tick, only the elements with a deadline <= now expire
+        assertEquals(Collections.singletonList("a"), wheel.pollExpired(1016L));
+        assertEquals(1018L, wheel.nextDeadline());
+        assertEquals(Collections.singletonList("b"), wheel.pollExpired(1019L));
+
+        assertTrue(wheel.pollExpired(1044L).isEmpty());
+        assertEquals(Collections.singletonList("c"), wheel.pollExpired(1045L));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void rotationTest() {
+        // A rotation of the wheel is 80 ms
+        TimeoutWheel<String> wheel = newWheel(1000L);
+        deadlines.put("near", 1030L);
+        deadlines.put("far", 1030L + 80L * 3);
+        wheel.add("near");
+        wheel.add("far");
+        assertEquals(1030L, wheel.nextDeadline());
+
+        assertEquals(Collections.singletonList("near"), wheel.pollExpired(1035L));
+        // Only elements of later rotations, the next check is at the end of the rotation
+        assertEquals(1110L, wheel.nextDeadline());
+        assertTrue(wheel.pollExpired(1115L).isEmpty());
+        assertTrue(wheel.pollExpired(1195L).isEmpty());
+        assertEquals(1270L, wheel.nextDeadline());
+
+        // A poll after more than a rotation visits all the buckets once
+        assertEquals(Collections.singletonList("far"), wheel.pollExpired(5000L));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void manyTimeoutsTest() {
+        TimeoutWheel<String> wheel = newWheel(0L);
+        for (int i = 0; i < 1000; i++) {
+            deadlines.put("t" + i, (long) (i * 7 % 500));
+            wheel.add("t" + i);
+        }
+        List<String> expired = new ArrayList<>();
+        for (long now = 0; now <= 501; now += 3) {
+            long next = wheel.nextDeadline();
+            List<String> polled = wheel.pollExpired(now);
+            for (String e : polled) {
+                assertTrue(deadlines.get(e) <= now);
+                assertTrue(next <= now);
+            }
+            expired.addAll(polled);
+            if (!wheel.isEmpty()) {
+                assertTrue(wheel.nextDeadline() > now);
+            }
+        }
+        assertEquals(1000, expired.size());
+        assertTrue(wheel.isEmpty());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class WriteBehindQueueTest {
+
+    File spillDir;
+    ExecutorService executor;
+
+    @Before
+    public void before() throws Exception {
+        spillDir = Files.createTempDirectory("write-behind-test").toFile();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+        File[] files = spillDir.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    private static void waitFor(WriteBehindQueue<?> queue, long written) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (queue.getWritten() < written && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void writeInBatchesTest() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindQueue<String> queue = new WriteBehindQueue<>("test", String.class, 100, 10, 0, 0, spillDir,
+                batch -> batchSizes.add(batch.size()));
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            items.add("item-" + i);
+        }
+        queue.offer(items);
+        queue.start(executor);
+        waitFor(queue, 25);
+        queue.stop(1000);
+
+        assertEquals(25, queue.getWritten());
+        assertEquals(0, queue.getSpilled());
+        for (Integer size : batchSizes) {
+            assertTrue(batchSizes.toString(), size <= 10);
+        }
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue<String> queue = new WriteBehindQueue<>("test", String.class, 100, 10, 3, 1, spillDir,
+                batch -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new Exception("Storage not available");
+                    }
+                });
+        queue.start(executor);
+        queue.offer(Collections.singletonList("item"));
+        waitFor(queue, 1);
+        queue.stop(1000);
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, queue.getWritten());
+        assertEquals(0, queue.getSpilled());
+    }
+
+    @Test
+    public void spillAndReplayTest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindQueue<String> queue = new WriteBehindQueue<>("test", String.class, 4, 2, 0, 0, spillDir,
+                batch -> {
+                    blocked.await(10, TimeUnit.SECONDS);
+                    written.addAll(batch);
+                });
+        queue.start(executor);
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add("item-" + i);
+        }
+        // The worker is blocked on the first batch, so most of the items do not fit in the queue
+        queue.offer(items);
+        assertTrue(queue.getSpilled() > 0);
+        assertTrue(spillDir.list().length > 0);
+
+        blocked.countDown();
+        waitFor(queue, 20);
+        queue.stop(1000);
+
+        assertEquals(20, queue.getWritten());
+        assertEquals(queue.getSpilled(), queue.getReplayed());
+        assertEquals(0, queue.getDropped());
+        assertEquals(20, new TreeSet<>(written).size());
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void flushTest() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindQueue<String> queue = new WriteBehindQueue<>("test", String.class, 100, 10, 0, 0, spillDir,
+                batch -> {
+                    blocked.await(10, TimeUnit.SECONDS);
+                    written.addAll(batch);
+                });
+        queue.start(executor);
+        queue.offer(Collections.singletonList("item-1"));
+
+        // The item is still on the queue while the writer is blocked
+        assertFalse(queue.flush(100));
+
+        blocked.countDown();
+        assertTrue(queue.flush(10000));
+        assertEquals(Collections.singletonList("item-1"), written);
+
+        // Nothing pending
+        assertTrue(queue.flush(0));
+        queue.stop(1000);
+
+        // A stopped queue can not be flushed
+        queue.offer(Collections.singletonList("item-2"));
+        assertFalse(queue.flush(100));
+    }
+
+    @Test
+    public void replayProgressTest() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindQueue<String> queue = new WriteBehindQueue<>("test", String.class, 100, 2, 0, 0, spillDir,
+                batch -> {
+                    if (failing.get() && batch.contains("item-2")) {
+                        throw new Exception("Storage not available");
+                    }
+                    written.addAll(batch);
+                });
+        File spilled = new File(spillDir, "test-1-1.spill");
+        Files.write(spilled.toPath(), Arrays.asList("\"item-0\"", "\"item-1\"", "\"item-2\"", "\"item-3\""),
+                StandardCharsets.UTF_8);
+        queue.start(executor);
+
+        // The first batch is written, the file keeps only the items not written
+        assertFalse(queue.flush(1000));
+        assertEquals(Arrays.asList("item-0", "item-1"), written);
+        assertEquals(Arrays.asList("\"item-2\"", "\"item-3\""),
+                Files.readAllLines(spilled.toPath(), StandardCharsets.UTF_8));
+
+        // The flush replays the file again, without writing twice the first batch
+        failing.set(false);
+        assertTrue(queue.flush(10000));
+        assertEquals(Arrays.asList("item-0", "item-1", "item-2", "item-3"), written);
+        assertFalse(spilled.exists());
+        queue.stop(1000);
+    }
+}
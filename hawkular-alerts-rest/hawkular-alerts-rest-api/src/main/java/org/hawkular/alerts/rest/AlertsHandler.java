@@ -42,6 +42,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import org.hawkular.alerts.api.exception.FullQueueException;
 import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Alert;
@@ -622,7 +623,8 @@ public class AlertsHandler {
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Success, data added."),
             @ApiResponse(code = 500, message = "Internal server error.", response = ApiError.class),
-            @ApiResponse(code = 400, message = "Bad Request/Invalid Parameters", response = ApiError.class)
+            @ApiResponse(code = 400, message = "Bad Request/Invalid Parameters", response = ApiError.class),
+            @ApiResponse(code = 429, message = "Engine overloaded, retry later.", response = ApiError.class)
     })
     public Response sendData(
             @ApiParam(required = true, name = "datums", value = "Data to be processed by alerting.")
@@ -640,6 +642,9 @@ public class AlertsHandler {
                 }
                 return ResponseUtil.ok();
             }
+        } catch (FullQueueException e) {
+            log.debug(e.getMessage(), e);
+            return ResponseUtil.tooManyRequests(e.getMessage());
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
             if (e.getCause() != null && e.getCause() instanceof IllegalArgumentException) {
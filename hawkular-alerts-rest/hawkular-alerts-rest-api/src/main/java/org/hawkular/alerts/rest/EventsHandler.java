@@ -41,6 +41,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import org.hawkular.alerts.api.exception.FullQueueException;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
@@ -138,7 +139,8 @@ public class EventsHandler {
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Success, Event Created."),
             @ApiResponse(code = 500, message = "Internal server error.", response = ApiError.class),
-            @ApiResponse(code = 400, message = "Bad Request/Invalid Parameters.", response = ApiError.class)
+            @ApiResponse(code = 400, message = "Bad Request/Invalid Parameters.", response = ApiError.class),
+            @ApiResponse(code = 429, message = "Engine overloaded, retry later.", response = ApiError.class)
     })
     public Response sendEvents(
             @ApiParam(required = true, name = "datums", value = "Data to be processed by alerting.")
@@ -154,6 +156,9 @@ public class EventsHandler {
                 }
                 return ResponseUtil.ok();
             }
+        } catch (FullQueueException e) {
+            log.debug(e.getMessage(), e);
+            return ResponseUtil.tooManyRequests(e.getMessage());
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
             if (e.getCause() != null && e.getCause() instanceof IllegalArgumentException) {
@@ -76,6 +76,14 @@ public class ResponseUtil {
         return Response.status(Response.Status.OK).type(APPLICATION_JSON_TYPE).build();
     }
 
+    /*
+        JAX-RS 2.0 Response.Status does not define 429 Too Many Requests
+     */
+    public static Response tooManyRequests(String message) {
+        return Response.status(429)
+                .entity(new ApiError(message)).type(APPLICATION_JSON_TYPE).build();
+    }
+
     public static Response badRequest(String message) {
         return Response.status(Response.Status.BAD_REQUEST)
                 .entity(new ApiError(message)).type(APPLICATION_JSON_TYPE).build();
@@ -19,6 +19,7 @@ package org.hawkular.alerts.rest;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.ejb.EJB;
@@ -31,7 +32,9 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.jaxrs.filter.tenant.TenantRequired;
+import org.jboss.logging.Logger;
 
 import io.swagger.annotations.Api;
 
@@ -48,10 +51,17 @@ public class StatusHandler {
     private static final String STATUS = "status";
     private static final String STARTED = "STARTED";
     private static final String FAILED = "FAILED";
+    private static final String ENGINE = "engine";
+    private static final String PENDING = "pending";
+
+    private final Logger log = Logger.getLogger(StatusHandler.class);
 
     @EJB
     DefinitionsService definitionsService;
 
+    @EJB
+    AlertsEngine alertsEngine;
+
     @Inject
     ManifestUtil manifestUtil;
 
@@ -59,7 +69,7 @@ public class StatusHandler {
     @Path("/")
     @Produces(APPLICATION_JSON)
     public Response status(@Context ServletContext servletContext) {
-        Map<String, String> status = new HashMap<>();
+        Map<String, Object> status = new HashMap<>();
         status.putAll(manifestUtil.getFrom(servletContext));
         try {
             definitionsService.getActionPlugins();
@@ -67,6 +77,14 @@ public class StatusHandler {
         } catch (Exception e) {
             status.put(STATUS, FAILED);
         }
+        try {
+            Map<String, Map<String, Long>> engine = new LinkedHashMap<>();
+            engine.put(PENDING, alertsEngine.getPendingStats());
+            engine.putAll(alertsEngine.getEngineStats());
+            status.put(ENGINE, engine);
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+        }
         return ResponseUtil.ok(status);
     }
 